@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.aggregate;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Grouping {@link Collector}s for enum keys, such as an order's {@link com.gazbert.java8.common.Order.Type} or
+ * {@link com.gazbert.java8.common.Order.Market}, built for parallel streams.
+ * <p>
+ * {@link Collectors#groupingByConcurrent(Function, Collector)} has every worker thread update one shared
+ * ConcurrentHashMap. With only 2 order types, that is 2 hot buckets all the threads fight over, and it gets worse the
+ * more cores there are. These collectors do partial aggregation instead: each fork/join leaf gets its own private
+ * table, accumulates into it without any synchronisation, and the tables are merged pairwise as the leaves are
+ * joined. The tables are plain arrays indexed by the key's ordinal - no hashing, no map entries - and the
+ * averaging, summing and counting collectors keep primitive totals rather than boxing every value.
+ * <p>
+ * The results are {@link EnumMap}s holding only the keys that were seen, like {@link Collectors#groupingBy}. They work
+ * on serial streams too.
+ *
+ * @author gazbert
+ */
+public final class PartitionedCollectors {
+
+    private PartitionedCollectors() {
+    }
+
+    /**
+     * Groups by an enum key and reduces each group with a downstream collector.
+     *
+     * @param keyType    the enum class of the key.
+     * @param classifier maps an element to its key.
+     * @param downstream reduces the elements with the same key.
+     * @param <T>        the element type.
+     * @param <K>        the key type.
+     * @param <A>        the downstream accumulator type.
+     * @param <D>        the downstream result type.
+     * @return the collector.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, K extends Enum<K>, A, D> Collector<T, ?, Map<K, D>> groupingByEnum(
+            Class<K> keyType, Function<? super T, K> classifier, Collector<? super T, A, D> downstream) {
+
+        final K[] keys = keyType.getEnumConstants();
+        final Supplier<A> downstreamSupplier = downstream.supplier();
+        final BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        final BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        final Function<A, D> downstreamFinisher = downstream.finisher();
+
+        final BiConsumer<Object[], T> accumulator = (table, element) -> {
+            final int key = classifier.apply(element).ordinal();
+            if (table[key] == null) {
+                table[key] = downstreamSupplier.get();
+            }
+            ((BiConsumer<A, T>) downstreamAccumulator).accept((A) table[key], element);
+        };
+        final BinaryOperator<Object[]> combiner = (left, right) -> {
+            for (int key = 0; key < keys.length; key++) {
+                if (left[key] == null) {
+                    left[key] = right[key];
+                } else if (right[key] != null) {
+                    left[key] = downstreamCombiner.apply((A) left[key], (A) right[key]);
+                }
+            }
+            return left;
+        };
+        final Function<Object[], Map<K, D>> finisher = table -> {
+            final Map<K, D> result = new EnumMap<>(keyType);
+            for (int key = 0; key < keys.length; key++) {
+                if (table[key] != null) {
+                    result.put(keys[key], downstreamFinisher.apply((A) table[key]));
+                }
+            }
+            return result;
+        };
+        return Collector.of(() -> new Object[keys.length], accumulator, combiner, finisher);
+    }
+
+    /**
+     * Groups by an enum key and averages an int property of each group.
+     *
+     * @param keyType    the enum class of the key.
+     * @param classifier maps an element to its key.
+     * @param mapper     the property to average.
+     * @param <T>        the element type.
+     * @param <K>        the key type.
+     * @return the collector.
+     */
+    public static <T, K extends Enum<K>> Collector<T, ?, Map<K, Double>> averagingIntByEnum(
+            Class<K> keyType, Function<? super T, K> classifier, ToIntFunction<? super T> mapper) {
+        return totalsByEnum(keyType, classifier, mapper::applyAsInt, (sum, count) -> (double) sum / count);
+    }
+
+    /**
+     * Groups by an enum key and sums a long property of each group.
+     *
+     * @param keyType    the enum class of the key.
+     * @param classifier maps an element to its key.
+     * @param mapper     the property to sum.
+     * @param <T>        the element type.
+     * @param <K>        the key type.
+     * @return the collector.
+     * @throws ArithmeticException if a sum overflows a long.
+     */
+    public static <T, K extends Enum<K>> Collector<T, ?, Map<K, Long>> summingLongByEnum(
+            Class<K> keyType, Function<? super T, K> classifier, ToLongFunction<? super T> mapper) {
+        return totalsByEnum(keyType, classifier, mapper, (sum, count) -> sum);
+    }
+
+    /**
+     * Groups by an enum key and counts each group.
+     *
+     * @param keyType    the enum class of the key.
+     * @param classifier maps an element to its key.
+     * @param <T>        the element type.
+     * @param <K>        the key type.
+     * @return the collector.
+     */
+    public static <T, K extends Enum<K>> Collector<T, ?, Map<K, Long>> countingByEnum(
+            Class<K> keyType, Function<? super T, K> classifier) {
+        return totalsByEnum(keyType, classifier, element -> 0, (sum, count) -> count);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Util methods
+    // ------------------------------------------------------------------------------------------------
+
+    /*
+     * Result of a group from its sum and count.
+     */
+    @FunctionalInterface
+    private interface TotalsFinisher<R> {
+        R finish(long sum, long count);
+    }
+
+    /*
+     * The table is a long[] of (sum, count) pairs, indexed by key ordinal.
+     */
+    private static <T, K extends Enum<K>, R> Collector<T, ?, Map<K, R>> totalsByEnum(
+            Class<K> keyType, Function<? super T, K> classifier, ToLongFunction<? super T> mapper,
+            TotalsFinisher<R> totalsFinisher) {
+
+        final K[] keys = keyType.getEnumConstants();
+        return Collector.<T, long[], Map<K, R>>of(
+                () -> new long[keys.length * 2],
+                (table, element) -> {
+                    final int key = classifier.apply(element).ordinal() * 2;
+                    table[key] = Math.addExact(table[key], mapper.applyAsLong(element));
+                    table[key + 1]++;
+                },
+                (left, right) -> {
+                    for (int i = 0; i < left.length; i += 2) {
+                        left[i] = Math.addExact(left[i], right[i]);
+                        left[i + 1] += right[i + 1];
+                    }
+                    return left;
+                },
+                table -> {
+                    final Map<K, R> result = new EnumMap<>(keyType);
+                    for (int key = 0; key < keys.length; key++) {
+                        final long count = table[key * 2 + 1];
+                        if (count > 0) {
+                            result.put(keys[key], totalsFinisher.finish(table[key * 2], count));
+                        }
+                    }
+                    return result;
+                },
+                Collector.Characteristics.UNORDERED);
+    }
+}
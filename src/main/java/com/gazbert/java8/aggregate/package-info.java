@@ -4,6 +4,9 @@
  * Example code for using aggregate operations in Java 8. See the {@link TestBasicAggregateOperationsUsage} unit test class
  * for usage.
  * <p>
+ * {@link PartitionedCollectors} are contention-free alternatives to groupingByConcurrent for enum keys, shown in
+ * {@link TestParallelismAggregateOperationsUsage}.
+ * <p>
  * I recommend looking through the lambda stuff first as the demo code uses them - see {@link TestLambdaUsage}.
  * <p>
  * More info in the
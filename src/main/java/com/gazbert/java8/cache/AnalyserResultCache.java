@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.VersionedOrderBook;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * Caches the results of {@link OrderBookAnalyser} queries against a {@link VersionedOrderBook}.
+ * <p>
+ * Lambdas don't have a useful equals, so the caller names each query; the name identifies the query, and the same
+ * name must always be used with the same matcher. Results are cached against the book and its version. When the book
+ * is mutated its version moves on, and the next lookup of each query sees the stale version, runs the query again and
+ * replaces the entry - so there is no need to invalidate anything by hand.
+ * <p>
+ * The cache holds up to a fixed number of entries, evicting the least recently used one when full. Repeated queries
+ * on an unchanged book are a map lookup.
+ * <p>
+ * The cache is thread-safe, but queries run outside of its lock, so the book itself must be safe to read from the
+ * calling threads.
+ *
+ * @author gazbert
+ */
+public class AnalyserResultCache {
+
+    private final Map<Key, CachedResult> entries;
+    private final int maxEntries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxEntries the maximum number of results to hold.
+     */
+    public AnalyserResultCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) { // access order gives us LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                if (size() > AnalyserResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of matched orders for a given query, cached.
+     *
+     * @param queryName    identifies the query.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public int getNumberOfMatchedOrders(String queryName, VersionedOrderBook orderBook, OrderMatcher orderMatcher) {
+        return (Integer) lookup(QueryKind.COUNT, queryName, orderBook,
+                () -> OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, orderMatcher));
+    }
+
+    /**
+     * Looks for matching orders and returns the audit details, cached.
+     *
+     * @param queryName    identifies the query.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @param function     the get audit details function.
+     * @return an unmodifiable list of audit details of all matching orders, an empty list otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> List<R> getAuditDetailsForMatchingOrders(String queryName, VersionedOrderBook orderBook,
+                                                        Predicate<Order> orderMatcher, Function<Order, R> function) {
+        return (List<R>) lookup(QueryKind.AUDIT, queryName, orderBook, () -> Collections.unmodifiableList(
+                OrderBookAnalyser.getAuditDetailsForMatchingOrdersUsingGenericArgs(orderBook, orderMatcher, function)));
+    }
+
+    private Object lookup(QueryKind kind, String queryName, VersionedOrderBook orderBook, Supplier<Object> query) {
+
+        final Key key = new Key(kind, queryName, orderBook);
+        final long version = orderBook.getVersion();
+
+        synchronized (this) {
+            final CachedResult entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits++;
+                return entry.result;
+            }
+            misses++;
+        }
+
+        final Object result = query.get();
+
+        // only cache it if the book didn't change under us while the query was running
+        if (orderBook.getVersion() == version) {
+            synchronized (this) {
+                entries.put(key, new CachedResult(version, result));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return fraction of lookups that were hits, 0 if there have been none.
+     */
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return number of cached results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + entries.size() + " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    /**
+     * The kinds of query cached - each returns a different result type, so the same name can't share an entry.
+     */
+    private enum QueryKind {
+        COUNT, AUDIT
+    }
+
+    /**
+     * Query kind and name plus book identity.
+     */
+    private static final class Key {
+
+        private final QueryKind kind;
+        private final String queryName;
+        private final VersionedOrderBook orderBook;
+
+        private Key(QueryKind kind, String queryName, VersionedOrderBook orderBook) {
+            this.kind = kind;
+            this.queryName = queryName;
+            this.orderBook = orderBook;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return orderBook == other.orderBook && kind == other.kind && queryName.equals(other.queryName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * kind.hashCode() + queryName.hashCode()) + System.identityHashCode(orderBook);
+        }
+    }
+
+    /**
+     * A cached result and the book version it was computed from.
+     */
+    private static final class CachedResult {
+
+        private final long version;
+        private final Object result;
+
+        private CachedResult(long version, Object result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+}
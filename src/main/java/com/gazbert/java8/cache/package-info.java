@@ -0,0 +1,11 @@
+/**
+ * <h2>Result Cache</h2>
+ * 
+ * Caching for order book queries that get asked again and again of a book that hasn't changed. See the
+ * {@link TestAnalyserResultCacheUsage} unit test class for usage.
+ * <p>
+ * Results are keyed by query name and book version, so they go stale on their own as soon as the book is mutated.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.cache;
\ No newline at end of file
@@ -0,0 +1,265 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.clock;
+
+import java.lang.ref.WeakReference;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The exchange's clock: a {@link Clock} for java.time, plus allocation-free timestamps for the hot path.
+ * <p>
+ * 3 ways of telling the time, from cheapest to most expensive:
+ * <ul>
+ * <li>{@link #currentTimeMillis()} - coarse wall-clock millis, read from a field that a daemon ticker thread keeps up
+ * to date. One ticker thread serves every clock, so creating clocks doesn't leak threads. Good for logging and
+ * timeouts.</li>
+ * <li>{@link #nanoTime()} - monotonic nanos, for measuring intervals. Not related to the wall clock.</li>
+ * <li>{@link #epochNanos()} - high resolution wall-clock nanos since the epoch, for stamping orders. This is the
+ * monotonic time offset by the wall-clock time when the clock was created, so stamps never go backwards and are
+ * consistent with each other to the nanosecond, but drift from the system clock if that gets adjusted.</li>
+ * </ul>
+ * None of those create any objects. {@link #instant()} does, as it returns an {@link Instant}.
+ * <p>
+ * Use {@link #systemUTC()} for the shared exchange clock.
+ *
+ * @author gazbert
+ */
+public final class ExchangeClock extends Clock {
+
+    /**
+     * How often the coarse wall clock is updated.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 1;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final ExchangeClock SYSTEM_UTC = new ExchangeClock(
+            System::nanoTime, System::currentTimeMillis, ZoneOffset.UTC, DEFAULT_TICK_MILLIS);
+
+    private final LongSupplier nanoSource;
+    private final ZoneId zone;
+    private final long anchorEpochNanos;
+    private final long anchorNanoTime;
+    private final CoarseWallClock coarseWallClock;
+
+    /**
+     * Creates a clock. Mostly for tests - use {@link #systemUTC()} otherwise.
+     *
+     * @param nanoSource   monotonic nanosecond source, e.g. System::nanoTime.
+     * @param millisSource wall-clock millisecond source, e.g. System::currentTimeMillis.
+     * @param zone         the time zone.
+     * @param tickMillis   how often a ticker thread updates the coarse wall clock; 0 for no ticker thread, in which
+     *                     case it is only updated by calling {@link #tick()}.
+     */
+    public ExchangeClock(LongSupplier nanoSource, LongSupplier millisSource, ZoneId zone, long tickMillis) {
+        this(nanoSource, zone, millisSource.getAsLong() * NANOS_PER_MILLI, nanoSource.getAsLong(),
+                new CoarseWallClock(millisSource, tickMillis));
+    }
+
+    private ExchangeClock(LongSupplier nanoSource, ZoneId zone, long anchorEpochNanos, long anchorNanoTime,
+                          CoarseWallClock coarseWallClock) {
+        this.nanoSource = nanoSource;
+        this.zone = zone;
+        this.anchorEpochNanos = anchorEpochNanos;
+        this.anchorNanoTime = anchorNanoTime;
+        this.coarseWallClock = coarseWallClock;
+    }
+
+    /**
+     * @return the shared exchange clock, in UTC.
+     */
+    public static ExchangeClock systemUTC() {
+        return SYSTEM_UTC;
+    }
+
+    /**
+     * @return monotonic nanos; only differences between values mean anything.
+     */
+    public long nanoTime() {
+        return nanoSource.getAsLong();
+    }
+
+    /**
+     * @return high resolution nanos since the epoch; never goes backwards.
+     */
+    public long epochNanos() {
+        return anchorEpochNanos + (nanoSource.getAsLong() - anchorNanoTime);
+    }
+
+    /**
+     * @return the coarse wall-clock time in millis since the epoch, as of the last tick.
+     */
+    public long currentTimeMillis() {
+        return coarseWallClock.millis;
+    }
+
+    /**
+     * Updates the coarse wall clock now, rather than waiting for the ticker.
+     */
+    public void tick() {
+        coarseWallClock.tick();
+    }
+
+    /**
+     * Converts an {@link #epochNanos()} timestamp to an Instant.
+     *
+     * @param epochNanos nanos since the epoch.
+     * @return the instant.
+     */
+    public static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    }
+
+    @Override
+    public Instant instant() {
+        return toInstant(epochNanos());
+    }
+
+    /**
+     * High resolution millis - no Instant created.
+     *
+     * @return millis since the epoch.
+     */
+    @Override
+    public long millis() {
+        return Math.floorDiv(epochNanos(), NANOS_PER_MILLI);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public ExchangeClock withZone(ZoneId zone) {
+        if (zone.equals(this.zone)) {
+            return this;
+        }
+        return new ExchangeClock(nanoSource, zone, anchorEpochNanos, anchorNanoTime, coarseWallClock);
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeClock[" + zone + "]";
+    }
+
+    /*
+     * The cached wall-clock millis. Shared by all the zone variants of a clock.
+     */
+    private static final class CoarseWallClock {
+
+        private final LongSupplier millisSource;
+        private final long tickNanos;
+        private volatile long millis;
+        private long lastTickNanoTime; // only used by the ticker thread
+
+        CoarseWallClock(LongSupplier millisSource, long tickMillis) {
+            if (tickMillis < 0) {
+                throw new IllegalArgumentException("tickMillis must not be negative: " + tickMillis);
+            }
+            this.millisSource = millisSource;
+            tickNanos = tickMillis * NANOS_PER_MILLI;
+            tick();
+            if (tickMillis > 0) {
+                lastTickNanoTime = System.nanoTime();
+                Ticker.register(this);
+            }
+        }
+
+        void tick() {
+            millis = millisSource.getAsLong();
+        }
+
+        void tickIfDue(long nanoTime) {
+            if (nanoTime - lastTickNanoTime >= tickNanos) {
+                tick();
+                lastTickNanoTime = nanoTime;
+            }
+        }
+    }
+
+    /*
+     * The one daemon thread that ticks every coarse wall clock, every millisecond or so. It only holds the clocks
+     * weakly, so a clock that is no longer used gets collected, and it stops when there are none left; the next clock
+     * created starts it again.
+     */
+    private static final class Ticker implements Runnable {
+
+        private static final List<WeakReference<CoarseWallClock>> CLOCKS = new ArrayList<>(); // guarded by itself
+        private static boolean running; // guarded by CLOCKS
+
+        static void register(CoarseWallClock clock) {
+            synchronized (CLOCKS) {
+                CLOCKS.add(new WeakReference<>(clock));
+                if (!running) {
+                    running = true;
+                    final Thread ticker = new Thread(new Ticker(), "exchange-clock-ticker");
+                    ticker.setDaemon(true);
+                    ticker.start();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (tickAll(System.nanoTime())) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    synchronized (CLOCKS) {
+                        running = false;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private static boolean tickAll(long nanoTime) {
+            synchronized (CLOCKS) {
+                for (final Iterator<WeakReference<CoarseWallClock>> clocks = CLOCKS.iterator(); clocks.hasNext(); ) {
+                    final CoarseWallClock clock = clocks.next().get();
+                    if (clock == null) {
+                        clocks.remove();
+                    } else {
+                        clock.tickIfDue(nanoTime);
+                    }
+                }
+                if (CLOCKS.isEmpty()) {
+                    running = false;
+                }
+                return running;
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * <h2>Exchange Clock</h2>
+ * 
+ * A java.time {@link java.time.Clock} for the exchange, with allocation-free monotonic, high resolution and cached
+ * coarse timestamps for the order entry path. Orders are stamped with it as they are added. See the
+ * {@link TestExchangeClockUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.clock;
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+/**
+ * Tight loops over primitive order columns. Ranges are half open: min inclusive, max exclusive.
+ * <p>
+ * Get the best implementation for the running JVM from {@link ColumnKernels#get()}.
+ *
+ * @author gazbert
+ */
+public interface ColumnKernel {
+
+    /**
+     * Counts the values in a range.
+     *
+     * @param values the column.
+     * @param length number of values to scan, from the start of the column.
+     * @param min    lowest value to count, inclusive.
+     * @param max    value to count below, exclusive.
+     * @return the number of values in the range.
+     */
+    int countInRange(long[] values, int length, long min, long max);
+
+    /**
+     * Sums one column for the rows where another column is in a range, e.g. the total amount of all orders within a
+     * price band.
+     *
+     * @param keys   the column to filter on.
+     * @param values the column to sum.
+     * @param length number of rows to scan, from the start of the columns.
+     * @param min    lowest key to include, inclusive.
+     * @param max    key to include below, exclusive.
+     * @return the sum.
+     */
+    long sumWhereInRange(long[] keys, long[] values, int length, long min, long max);
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+/**
+ * Picks the {@link ColumnKernel} for the running JVM.
+ * <p>
+ * The project is built for Java 8, but the jar is a multi-release jar. When built on JDK 17 or later, it also contains a
+ * <code>VectorColumnKernel</code> under <code>META-INF/versions/17</code> that uses the incubating Vector API to scan
+ * several values per instruction. It is only used if the JVM is 17 or later and was started with
+ * <code>--add-modules jdk.incubator.vector</code>; otherwise we fall back to the {@link ScalarColumnKernel}.
+ *
+ * @author gazbert
+ */
+public final class ColumnKernels {
+
+    private static final String VECTOR_KERNEL_CLASS = "com.gazbert.java8.column.VectorColumnKernel";
+
+    private static final ColumnKernel KERNEL = load();
+
+    // lockdown
+    private ColumnKernels() {
+    }
+
+    /**
+     * @return the best kernel available.
+     */
+    public static ColumnKernel get() {
+        return KERNEL;
+    }
+
+    /**
+     * @return true if the kernel uses SIMD instructions via the Vector API.
+     */
+    public static boolean isVectorised() {
+        return !(KERNEL instanceof ScalarColumnKernel);
+    }
+
+    private static ColumnKernel load() {
+        try {
+            return (ColumnKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // pre Java 17, or the Vector API module wasn't added
+            return new ScalarColumnKernel();
+        }
+    }
+}
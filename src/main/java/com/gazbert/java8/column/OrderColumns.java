@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * A columnar copy of an order book's prices and amounts, for fast range scans.
+ * <p>
+ * Prices and amounts are held as {@link FixedPoint} values in their own long arrays, so a range filter is a straight
+ * run through contiguous memory that the {@link ColumnKernel} can vectorise.
+ *
+ * @author gazbert
+ */
+public final class OrderColumns {
+
+    private final ColumnKernel kernel = ColumnKernels.get();
+
+    private long[] prices;
+    private long[] amounts;
+    private int size;
+
+    /**
+     * Creates empty columns.
+     *
+     * @param initialCapacity initial number of rows to allocate space for.
+     */
+    public OrderColumns(int initialCapacity) {
+        prices = new long[Math.max(initialCapacity, 1)];
+        amounts = new long[prices.length];
+    }
+
+    /**
+     * Builds columns from an order book.
+     *
+     * @param orderBook the order book.
+     * @return the columns.
+     */
+    public static OrderColumns of(Iterable<Order> orderBook) {
+        final OrderColumns columns = new OrderColumns(16);
+        for (final Order order : orderBook) {
+            columns.add(order.getFixedPointPrice(), order.getFixedPointAmount());
+        }
+        return columns;
+    }
+
+    /**
+     * Builds columns from an off-heap store.
+     *
+     * @param store the store.
+     * @return the columns.
+     */
+    public static OrderColumns of(OffHeapOrderStore store) {
+        final OrderColumns columns = new OrderColumns(store.size());
+        for (int slot = 0; slot < store.size(); slot++) {
+            columns.add(store.getPrice(slot), store.getAmount(slot));
+        }
+        return columns;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param price  fixed-point price.
+     * @param amount fixed-point amount.
+     */
+    public void add(long price, long amount) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        prices[size] = price;
+        amounts[size] = amount;
+        size++;
+    }
+
+    /**
+     * Counts the orders priced in a range.
+     *
+     * @param minPrice lowest price, inclusive.
+     * @param maxPrice price to count below, exclusive.
+     * @return the number of orders.
+     */
+    public int countPriceInRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        return kernel.countInRange(prices, size, FixedPoint.toFixedPoint(minPrice), FixedPoint.toFixedPoint(maxPrice));
+    }
+
+    /**
+     * Sums the amounts of the orders priced in a range.
+     *
+     * @param minPrice lowest price, inclusive.
+     * @param maxPrice price to sum below, exclusive.
+     * @return the total amount.
+     */
+    public BigDecimal sumAmountWherePriceInRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        return FixedPoint.toBigDecimal(kernel.sumWhereInRange(prices, amounts, size,
+                FixedPoint.toFixedPoint(minPrice), FixedPoint.toFixedPoint(maxPrice)));
+    }
+
+    /**
+     * @return the price column; only the first {@link #size()} values are in use.
+     */
+    public long[] getPrices() {
+        return prices;
+    }
+
+    /**
+     * @return the amount column; only the first {@link #size()} values are in use.
+     */
+    public long[] getAmounts() {
+        return amounts;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+/**
+ * Plain Java loop implementation of the {@link ColumnKernel}. Runs on any JVM.
+ *
+ * @author gazbert
+ */
+public final class ScalarColumnKernel implements ColumnKernel {
+
+    @Override
+    public int countInRange(long[] values, int length, long min, long max) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            final long value = values[i];
+            if (value >= min && value < max) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long sumWhereInRange(long[] keys, long[] values, int length, long min, long max) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            final long key = keys[i];
+            if (key >= min && key < max) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+}
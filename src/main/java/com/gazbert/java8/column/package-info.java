@@ -0,0 +1,12 @@
+/**
+ * <h2>Columnar Scans</h2>
+ * 
+ * Columnar copies of the order book and SIMD range scans over them. See the {@link TestColumnScanUsage} unit test class
+ * for usage, and {@link ColumnKernelsBenchmark} for a comparison of the scalar and vector scans.
+ * <p>
+ * The jar is a multi-release jar: on Java 17 and later, with the <code>jdk.incubator.vector</code> module added, scans
+ * use the Vector API; on Java 8 they fall back to plain loops.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.column;
\ No newline at end of file
@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Utility class for converting between {@link BigDecimal} values and fixed-point <code>long</code> values.
+ * <p>
+ * All fixed-point values share the same implied scale of {@link #SCALE} decimal places, so they can be added and
+ * compared directly without any of the object and rounding overhead of BigDecimal arithmetic.
+ *
+ * @author gazbert
+ */
+public final class FixedPoint {
+
+    /**
+     * Number of implied decimal places in a fixed-point value.
+     */
+    public static final int SCALE = 8;
+
+    /**
+     * The value 1 as a fixed-point value.
+     */
+    public static final long ONE = 100_000_000L;
+
+    // lockdown
+    private FixedPoint() {
+    }
+
+    /**
+     * Converts a BigDecimal into a fixed-point value, rounding HALF_UP if it has more than {@link #SCALE} decimal
+     * places.
+     *
+     * @param value the value to convert.
+     * @return the fixed-point value.
+     * @throws ArithmeticException if the value does not fit in a long at {@link #SCALE} decimal places.
+     */
+    public static long toFixedPoint(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a fixed-point value into a BigDecimal with {@link #SCALE} decimal places.
+     *
+     * @param value the fixed-point value.
+     * @return the BigDecimal value.
+     */
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A {@link Spliterator} over an indexed range, for order book containers that can get an element by index.
+ * <p>
+ * Splitting halves the range exactly and only creates the new spliterator, so every split is SIZED and SUBSIZED, and a
+ * parallel stream hands each core the same amount of work. Compare an {@link Iterable}'s default spliterator, which
+ * copies batches of elements into arrays and knows nothing about the size, or a linked list's, which has to walk the
+ * list to split it.
+ *
+ * @param <T> the element type.
+ * @author gazbert
+ */
+public abstract class IndexedSpliterator<T> implements Spliterator<T> {
+
+    private int index;
+    private final int fence;
+
+    /**
+     * Creates a spliterator over a range.
+     *
+     * @param origin the first index, inclusive.
+     * @param fence  the last index, exclusive.
+     */
+    protected IndexedSpliterator(int origin, int fence) {
+        this.index = origin;
+        this.fence = fence;
+    }
+
+    /**
+     * Creates a spliterator over elements a stateless function can get by index, e.g. <code>list::get</code> for a
+     * random access list.
+     *
+     * @param elements gets an element by index.
+     * @param size     the number of elements.
+     * @param <T>      the element type.
+     * @return the spliterator.
+     */
+    public static <T> IndexedSpliterator<T> of(IntFunction<? extends T> elements, int size) {
+        return new FunctionSpliterator<>(elements, 0, size);
+    }
+
+    /**
+     * @param index the index.
+     * @return the element at the index.
+     */
+    protected abstract T get(int index);
+
+    /**
+     * Creates a spliterator over part of this one's range. Called when splitting.
+     *
+     * @param origin the first index, inclusive.
+     * @param fence  the last index, exclusive.
+     * @return the new spliterator.
+     */
+    protected abstract IndexedSpliterator<T> slice(int origin, int fence);
+
+    @Override
+    public Spliterator<T> trySplit() {
+        final int origin = index;
+        final int mid = (origin + fence) >>> 1;
+        if (origin >= mid) {
+            return null;
+        }
+        index = mid;
+        return slice(origin, mid);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(get(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        final int end = fence;
+        int i = index;
+        index = end;
+        for (; i < end; i++) {
+            action.accept(get(i));
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED;
+    }
+
+    /*
+     * Spliterator over a stateless get-by-index function.
+     */
+    private static final class FunctionSpliterator<T> extends IndexedSpliterator<T> {
+
+        private final IntFunction<? extends T> elements;
+
+        FunctionSpliterator(IntFunction<? extends T> elements, int origin, int fence) {
+            super(origin, fence);
+            this.elements = elements;
+        }
+
+        @Override
+        protected T get(int index) {
+            return elements.apply(index);
+        }
+
+        @Override
+        protected IndexedSpliterator<T> slice(int origin, int fence) {
+            return new FunctionSpliterator<>(elements, origin, fence);
+        }
+    }
+}
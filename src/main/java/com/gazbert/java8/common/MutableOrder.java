@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A mutable, reusable counterpart to {@link Order}.
+ * <p>
+ * State is held as primitives - the id as its 2 long halves and the amount, price and fee as {@link FixedPoint}
+ * values - so an order can be filled in and handed to a TradingApi without creating any objects. Use it with an
+ * {@link OrderPool} on the order entry hot path, where creating a new Order, UUID and 3 BigDecimals per order soon
+ * adds up to a lot of young GCs.
+ * <p>
+ * The BigDecimal and UUID getters still work, but they create a new value on every call.
+ *
+ * @author gazbert
+ */
+public class MutableOrder extends Order {
+
+    private long idMostSignificantBits;
+    private long idLeastSignificantBits;
+    private Market marketId;
+    private Type type;
+    private long amount;
+    private long price;
+    private long fee;
+    private int tradeCountToFill;
+    private long entryTimestamp;
+
+    /**
+     * Constructor builds an empty order; see {@link #reset()} for what empty means.
+     */
+    public MutableOrder() {
+        reset();
+    }
+
+    /**
+     * Sets the order details. Amount, price and fee are {@link FixedPoint} values.
+     *
+     * @param marketId the market id.
+     * @param type the order type
+     * @param amount the order amount.
+     * @param price the order price.
+     * @param fee the order fee.
+     * @return this order.
+     */
+    public MutableOrder set(Market marketId, Type type, long amount, long price, long fee) {
+        this.marketId = marketId;
+        this.type = type;
+        this.amount = amount;
+        this.price = price;
+        this.fee = fee;
+        return this;
+    }
+
+    /**
+     * Sets the order id.
+     *
+     * @param mostSignificantBits the most significant bits of the id.
+     * @param leastSignificantBits the least significant bits of the id.
+     * @return this order.
+     */
+    public MutableOrder setId(long mostSignificantBits, long leastSignificantBits) {
+        this.idMostSignificantBits = mostSignificantBits;
+        this.idLeastSignificantBits = leastSignificantBits;
+        return this;
+    }
+
+    /**
+     * Copies the details of another order, including its id, into this one.
+     *
+     * @param order the order to copy.
+     * @return this order.
+     */
+    public MutableOrder copyFrom(Order order) {
+        setId(order.getIdMostSignificantBits(), order.getIdLeastSignificantBits());
+        set(order.getMarketId(), order.getType(),
+                order.getFixedPointAmount(), order.getFixedPointPrice(), order.getFixedPointFee());
+        tradeCountToFill = order.getTradeCountToFill();
+        entryTimestamp = order.getEntryTimestamp();
+        return this;
+    }
+
+    /**
+     * Copies this order into a new, immutable {@link Order} - for when you need to hang on to it.
+     *
+     * @return the copy.
+     */
+    public Order toOrder() {
+        final Order order = new Order(getId(), marketId, type, getAmount(), getPrice(), getFee());
+        order.setTradeCountToFill(tradeCountToFill);
+        order.setEntryTimestamp(entryTimestamp);
+        return order;
+    }
+
+    /**
+     * Resets the order: the id is zeroed, the market and type cleared, and all the amounts zeroed.
+     */
+    public void reset() {
+        idMostSignificantBits = 0;
+        idLeastSignificantBits = 0;
+        marketId = null;
+        type = null;
+        amount = 0;
+        price = 0;
+        fee = 0;
+        tradeCountToFill = 0;
+        entryTimestamp = 0;
+    }
+
+    @Override
+    public UUID getId() {
+        return new UUID(idMostSignificantBits, idLeastSignificantBits);
+    }
+
+    @Override
+    public Market getMarketId() {
+        return marketId;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public BigDecimal getAmount() {
+        return FixedPoint.toBigDecimal(amount);
+    }
+
+    @Override
+    public BigDecimal getPrice() {
+        return FixedPoint.toBigDecimal(price);
+    }
+
+    @Override
+    public BigDecimal getFee() {
+        return FixedPoint.toBigDecimal(fee);
+    }
+
+    @Override
+    public long getIdMostSignificantBits() {
+        return idMostSignificantBits;
+    }
+
+    @Override
+    public long getIdLeastSignificantBits() {
+        return idLeastSignificantBits;
+    }
+
+    @Override
+    public long getFixedPointAmount() {
+        return amount;
+    }
+
+    @Override
+    public long getFixedPointPrice() {
+        return price;
+    }
+
+    @Override
+    public long getFixedPointFee() {
+        return fee;
+    }
+
+    @Override
+    public int getTradeCountToFill() {
+        return tradeCountToFill;
+    }
+
+    @Override
+    public void setTradeCountToFill(int tradeCountToFill) {
+        this.tradeCountToFill = tradeCountToFill;
+    }
+
+    @Override
+    public long getEntryTimestamp() {
+        return entryTimestamp;
+    }
+
+    @Override
+    public void setEntryTimestamp(long entryTimestamp) {
+        this.entryTimestamp = entryTimestamp;
+    }
+}
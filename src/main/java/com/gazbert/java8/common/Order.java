@@ -107,6 +107,11 @@ public class Order {
      */
     private int tradeCountToFill;
 
+    /**
+     * When the order was entered on the exchange, in nanos since the epoch; 0 if it hasn't been
+     */
+    private long entryTimestamp;
+
 
     /**
      * Constructor builds an order.
@@ -118,14 +123,34 @@ public class Order {
      * @param fee the order fee.
      */
     public Order(Market marketId, Type type, BigDecimal amount, BigDecimal price, BigDecimal fee) {
+        this(UUID.randomUUID(), marketId, type, amount, price, fee);
+    }
+
+    /**
+     * Constructor builds an order with an existing id, e.g. when copying an order out of a store.
+     *
+     * @param id the order id.
+     * @param marketId the market id.
+     * @param type the order type
+     * @param amount the order amount.
+     * @param price the order price.
+     * @param fee the order fee.
+     */
+    public Order(UUID id, Market marketId, Type type, BigDecimal amount, BigDecimal price, BigDecimal fee) {
 
+        this.id = id;
         this.marketId = marketId;
         this.type = type;
         this.amount = amount;
         this.price = price;
         this.fee = fee;
+    }
 
-        id = UUID.randomUUID();
+    /**
+     * Constructor for subclasses that hold the order state themselves, e.g. flyweight views over order storage.
+     * Such subclasses must override all the getters.
+     */
+    protected Order() {
     }
 
     public UUID getId() {
@@ -152,6 +177,40 @@ public class Order {
         return fee;
     }
 
+    /*
+     * Primitive versions of the getters. Subclasses that hold their state as primitives override these so callers
+     * on the hot path can read an order without creating any UUIDs or BigDecimals.
+     */
+
+    public long getIdMostSignificantBits() {
+        return getId().getMostSignificantBits();
+    }
+
+    public long getIdLeastSignificantBits() {
+        return getId().getLeastSignificantBits();
+    }
+
+    /**
+     * @return the order amount as a {@link FixedPoint} value.
+     */
+    public long getFixedPointAmount() {
+        return FixedPoint.toFixedPoint(getAmount());
+    }
+
+    /**
+     * @return the order price as a {@link FixedPoint} value.
+     */
+    public long getFixedPointPrice() {
+        return FixedPoint.toFixedPoint(getPrice());
+    }
+
+    /**
+     * @return the order fee as a {@link FixedPoint} value.
+     */
+    public long getFixedPointFee() {
+        return FixedPoint.toFixedPoint(getFee());
+    }
+
     /**
      * Returns the order details required for auditing.
      *
@@ -159,7 +218,8 @@ public class Order {
      */
     public String provideAuditDetails() {
         // keep it simple for the demo.
-        return "OrderId: " + id + " Market: " + marketId + " Amount: " + amount + " Price: " + price;
+        return "OrderId: " + getId() + " Market: " + getMarketId() + " Amount: " + getAmount()
+                + " Price: " + getPrice();
     }
 
     public int getTradeCountToFill() {
@@ -169,4 +229,15 @@ public class Order {
     public void setTradeCountToFill(int tradeCountToFill) {
         this.tradeCountToFill = tradeCountToFill;
     }
+
+    /**
+     * @return when the order was entered on the exchange, in nanos since the epoch, or 0 if it hasn't been.
+     */
+    public long getEntryTimestamp() {
+        return entryTimestamp;
+    }
+
+    public void setEntryTimestamp(long entryTimestamp) {
+        this.entryTimestamp = entryTimestamp;
+    }
 }
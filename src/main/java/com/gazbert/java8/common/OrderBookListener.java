@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import com.gazbert.java8.common.Order.Market;
+
+/**
+ * Told about each change to an order book as it happens.
+ * <p>
+ * Callbacks run on the thread changing the book, while the change is being made, so they must be quick and must not
+ * call back into the book. The order passed in may be a flyweight view - don't hang on to it.
+ *
+ * @author gazbert
+ */
+public interface OrderBookListener {
+
+    /**
+     * Called after an order is added.
+     *
+     * @param order the order as it now is in the book.
+     */
+    void orderAdded(Order order);
+
+    /**
+     * Called just before an order is cancelled.
+     *
+     * @param order the order being cancelled.
+     */
+    void orderCancelled(Order order);
+
+    /**
+     * Called just before an order is filled, in full or in part. A full fill takes the order out of the book.
+     *
+     * @param order                the order being filled, with its amount before the fill.
+     * @param fixedPointFillAmount the amount filled as a {@link FixedPoint} value.
+     */
+    void orderFilled(Order order, long fixedPointFillAmount);
+
+    /*
+     * Most listeners only care about individual orders, so these have default impls that ignore the event.
+     */
+
+    /**
+     * Called before a mass cancel. Each order cancelled is then passed to {@link #orderCancelled(Order)}, followed by
+     * one call to {@link #massCancelFinished(Market, int)}.
+     *
+     * @param market the market being cleared, or null if the cancel is by predicate across markets.
+     */
+    default void massCancelStarted(Market market) {
+    }
+
+    /**
+     * Called after a mass cancel.
+     *
+     * @param market         the market that was cleared, or null if the cancel was by predicate across markets.
+     * @param cancelledCount number of orders cancelled.
+     */
+    default void massCancelFinished(Market market, int cancelledCount) {
+    }
+
+    /**
+     * Called after the book was changed directly, without a callback per order, so anything the listener keeps about
+     * the book's contents has to be rebuilt from it.
+     *
+     * @param book the whole book as it now is; must not be used after the call returns.
+     */
+    default void bookChanged(Iterable<Order> book) {
+    }
+
+    /**
+     * Returns a listener that tells this listener about each change, then the other one, so a book with a single
+     * listener can feed several.
+     *
+     * @param after the listener to tell second.
+     * @return the combined listener.
+     */
+    default OrderBookListener andThen(OrderBookListener after) {
+        final OrderBookListener before = this;
+        return new OrderBookListener() {
+
+            @Override
+            public void orderAdded(Order order) {
+                before.orderAdded(order);
+                after.orderAdded(order);
+            }
+
+            @Override
+            public void orderCancelled(Order order) {
+                before.orderCancelled(order);
+                after.orderCancelled(order);
+            }
+
+            @Override
+            public void orderFilled(Order order, long fixedPointFillAmount) {
+                before.orderFilled(order, fixedPointFillAmount);
+                after.orderFilled(order, fixedPointFillAmount);
+            }
+
+            @Override
+            public void massCancelStarted(Market market) {
+                before.massCancelStarted(market);
+                after.massCancelStarted(market);
+            }
+
+            @Override
+            public void massCancelFinished(Market market, int cancelledCount) {
+                before.massCancelFinished(market, cancelledCount);
+                after.massCancelFinished(market, cancelledCount);
+            }
+
+            @Override
+            public void bookChanged(Iterable<Order> book) {
+                before.bookChanged(book);
+                after.bookChanged(book);
+            }
+        };
+    }
+}
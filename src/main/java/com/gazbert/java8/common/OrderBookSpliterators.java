@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Gets a well-splitting {@link Spliterator} for any order book, so parallel streams over it spread the work evenly.
+ *
+ * @author gazbert
+ */
+public final class OrderBookSpliterators {
+
+    private OrderBookSpliterators() {
+    }
+
+    /**
+     * Returns a spliterator over an order book that splits exactly:
+     * <ul>
+     * <li>Random access lists get an {@link IndexedSpliterator}. ArrayList's own spliterator splits exactly
+     * too, but an AbstractList-based list's is iterator-based.</li>
+     * <li>Other collections, e.g. a LinkedList, are copied into an array first. The copy is one cheap sequential pass;
+     * a LinkedList's own spliterator splits off batches of growing size, so the last cores get most of the work.</li>
+     * <li>Anything else uses its own spliterator, e.g. the
+     * {@link com.gazbert.java8.offheap.OffHeapOrderStore#spliterator()}.</li>
+     * </ul>
+     *
+     * @param orderBook the order book.
+     * @return the spliterator.
+     */
+    public static Spliterator<Order> of(Iterable<Order> orderBook) {
+        if (orderBook instanceof List && orderBook instanceof RandomAccess) {
+            final List<Order> list = (List<Order>) orderBook;
+            return IndexedSpliterator.of(list::get, list.size());
+        }
+        if (orderBook instanceof Collection) {
+            return Spliterators.spliterator(((Collection<Order>) orderBook).toArray(), Spliterator.ORDERED);
+        }
+        return orderBook.spliterator();
+    }
+
+    /**
+     * Returns a stream over an order book using {@link #of(Iterable)}.
+     *
+     * @param orderBook the order book.
+     * @param parallel  true for a parallel stream.
+     * @return the stream.
+     */
+    public static Stream<Order> stream(Iterable<Order> orderBook, boolean parallel) {
+        return StreamSupport.stream(of(orderBook), parallel);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.util.UUID;
+
+/**
+ * A fixed size pool of {@link MutableOrder}s for the order entry hot path.
+ * <p>
+ * Typical use is: acquire an order, fill it in, add it to a TradingApi that copies orders into its own storage (like
+ * the {@link com.gazbert.java8.offheap.OffHeapTradingApi}), then release it straight back to the pool. Once the pool
+ * is warmed up, order entry creates no garbage at all.
+ * <p>
+ * Acquired orders come with a fresh id. Ids are a random most significant half picked when the pool is created, plus
+ * a sequence number for the least significant half, so we don't pay for {@link UUID#randomUUID()} on every order.
+ * <p>
+ * If the pool runs dry, a new order is created rather than failing; {@link #getMisses()} tells you if the pool is
+ * too small. Pools are not thread-safe - use one per order entry thread.
+ *
+ * @author gazbert
+ */
+public final class OrderPool {
+
+    private final MutableOrder[] orders;
+    private int available;
+
+    private final long idMostSignificantBits;
+    private long nextIdSequence;
+
+    private long misses;
+
+    /**
+     * Creates a pool, filled with orders up front.
+     *
+     * @param size the number of orders in the pool.
+     */
+    public OrderPool(int size) {
+        orders = new MutableOrder[size];
+        for (int i = 0; i < size; i++) {
+            orders[i] = new MutableOrder();
+        }
+        available = size;
+        idMostSignificantBits = UUID.randomUUID().getMostSignificantBits();
+    }
+
+    /**
+     * Takes an order from the pool. It has been reset and given a new id.
+     *
+     * @return the order.
+     */
+    public MutableOrder acquire() {
+        final MutableOrder order;
+        if (available > 0) {
+            order = orders[--available];
+            orders[available] = null;
+        } else {
+            order = new MutableOrder();
+            misses++;
+        }
+        return order.setId(idMostSignificantBits, nextIdSequence++);
+    }
+
+    /**
+     * Returns an order to the pool. Don't use the order after releasing it.
+     * <p>
+     * If the pool is already full, the order is left for the garbage collector.
+     *
+     * @param order the order to release.
+     */
+    public void release(MutableOrder order) {
+        order.reset();
+        if (available < orders.length) {
+            orders[available++] = order;
+        }
+    }
+
+    /**
+     * @return the number of orders currently in the pool.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return the number of times an order had to be created because the pool was empty.
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
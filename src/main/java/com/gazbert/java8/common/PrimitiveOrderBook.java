@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+/**
+ * An order book whose orders can be read field by field as primitives, by row: market and type as enum ordinals, and
+ * amount, price and fee as {@link FixedPoint} longs. Reading a row creates no objects.
+ *
+ * @author gazbert
+ */
+public interface PrimitiveOrderBook {
+
+    /**
+     * @return the number of rows; rows <code>0</code> to <code>size() - 1</code> hold orders.
+     */
+    int size();
+
+    /**
+     * @param row the row.
+     * @return the ordinal of the order's {@link Order.Market}.
+     */
+    int getMarketOrdinal(int row);
+
+    /**
+     * @param row the row.
+     * @return the ordinal of the order's {@link Order.Type}.
+     */
+    int getTypeOrdinal(int row);
+
+    /**
+     * @param row the row.
+     * @return the order amount as a fixed-point value.
+     */
+    long getAmount(int row);
+
+    /**
+     * @param row the row.
+     * @return the order price as a fixed-point value.
+     */
+    long getPrice(int row);
+
+    /**
+     * @param row the row.
+     * @return the order fee as a fixed-point value.
+     */
+    long getFee(int row);
+}
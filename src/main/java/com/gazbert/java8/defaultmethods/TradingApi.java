@@ -23,11 +23,15 @@
 
 package com.gazbert.java8.defaultmethods;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import com.gazbert.java8.clock.ExchangeClock;
 import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.lambda.OrderMatcher;
 
 /**
  * A simple, not real-world, part-built Trading API to show use of Java 8 default methods.
@@ -73,12 +77,74 @@ public interface TradingApi {
         return "Default API Impl";
     }
 
+    /**
+     * Cancels all your open orders in a market - e.g. pulling quotes on a risk event.
+     * <p>
+     * The default impl cancels the orders one at a time; implementations that can clear a market in one go should
+     * override it.
+     *
+     * @param marketId id of market to cancel orders in.
+     * @return number of orders cancelled.
+     */
+    default int cancelAll(int marketId) {
+        int cancelled = 0;
+        for (final Order order : getOpenOrders(marketId)) {
+            if (cancelOrder(order.getId())) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels all your open orders that match a query, in any market.
+     * <p>
+     * The default impl fetches the open orders for each market and cancels the matches one at a time;
+     * implementations that can do it in one pass should override it.
+     *
+     * @param orderMatcher picks the orders to cancel.
+     * @return number of orders cancelled.
+     */
+    default int cancelMatching(OrderMatcher orderMatcher) {
+        int cancelled = 0;
+        for (final Market market : Market.values()) {
+            for (final Order order : getOpenOrders(market.ordinal())) {
+                if (orderMatcher.executeQuery(order) && cancelOrder(order.getId())) {
+                    cancelled++;
+                }
+            }
+        }
+        return cancelled;
+    }
+
     /*
      * Also new in Java 8 is ability to include staitic methods in the interface.
      * 
-     * Note the use of Date - another demo will cover the new Java 8 java.time API :-)
+     * Note the use of Date - getExchangeTime() below shows the new Java 8 java.time API replacing it :-)
      */
+    /**
+     * @return the current exchange time, to the millisecond.
+     * @deprecated allocates a new Date on every call and only has millisecond resolution; use
+     *             {@link #getExchangeTime()}, or {@link #getExchangeClock()} for allocation-free timestamps.
+     */
+    @Deprecated
     static Date getCurrentExchangeTime() {
         return new Date();
     }
+
+    /**
+     * The java.time replacement for {@link #getCurrentExchangeTime()}.
+     *
+     * @return the current exchange time, to the nanosecond.
+     */
+    static Instant getExchangeTime() {
+        return ExchangeClock.systemUTC().instant();
+    }
+
+    /**
+     * @return the exchange clock - pass it to java.time APIs, or use its primitive timestamps on the hot path.
+     */
+    static ExchangeClock getExchangeClock() {
+        return ExchangeClock.systemUTC();
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.feed;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+
+/**
+ * An incremental change to the order book.
+ * <p>
+ * Order events - {@link Kind#ADD}, {@link Kind#CANCEL} and {@link Kind#FILL} - are each followed by a
+ * {@link Kind#LEVEL_CHANGE} giving the new totals at the order's price level, so a consumer can keep either an order
+ * by order view or an aggregated depth view of the book. A {@link Kind#MASS_CANCEL} is followed by the level changes
+ * for all the levels it touched.
+ * <p>
+ * Prices and amounts are {@link FixedPoint} values. Events are immutable.
+ *
+ * @author gazbert
+ */
+public final class BookEvent {
+
+    /**
+     * What changed.
+     */
+    public enum Kind {
+
+        /**
+         * An order was added; amount is the order amount.
+         */
+        ADD,
+
+        /**
+         * An order was cancelled; amount is the amount that was left on it.
+         */
+        CANCEL,
+
+        /**
+         * An order was filled, in full or in part; amount is the amount filled.
+         */
+        FILL,
+
+        /**
+         * Many orders were cancelled at once; orderCount is how many, market is the market cleared, or null if the
+         * cancel was by predicate across markets. Followed by a level change for each level affected, rather than an
+         * event per order.
+         */
+        MASS_CANCEL,
+
+        /**
+         * The totals at a price level changed; amount is the total resting amount and orderCount the number of
+         * orders at the level. Both are 0 when the level has gone.
+         */
+        LEVEL_CHANGE
+    }
+
+    private final Kind kind;
+    private final long sequence;
+    private final UUID orderId;
+    private final Market market;
+    private final Type type;
+    private final long price;
+    private final long amount;
+    private final int orderCount;
+
+    BookEvent(Kind kind, long sequence, UUID orderId, Market market, Type type, long price, long amount,
+              int orderCount) {
+        this.kind = kind;
+        this.sequence = sequence;
+        this.orderId = orderId;
+        this.market = market;
+        this.type = type;
+        this.price = price;
+        this.amount = amount;
+        this.orderCount = orderCount;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the feed sequence number; it goes up by one for each event published.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the order id, or null for a level change or mass cancel.
+     */
+    public UUID getOrderId() {
+        return orderId;
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the price as a fixed-point value.
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * @return the amount as a fixed-point value - see {@link Kind} for what it is the amount of.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the number of orders at the level for a level change, the number cancelled for a mass cancel, 0
+     *         otherwise.
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    @Override
+    public String toString() {
+        if (kind == Kind.MASS_CANCEL) {
+            return "#" + sequence + " " + kind + " " + (market == null ? "matching" : market) + " orders: "
+                    + orderCount;
+        }
+        final BigDecimal displayPrice = FixedPoint.toBigDecimal(price);
+        final BigDecimal displayAmount = FixedPoint.toBigDecimal(amount);
+        return "#" + sequence + " " + kind + " " + market + " " + type + " " + displayAmount.stripTrailingZeros()
+                .toPlainString() + " @ " + displayPrice.stripTrailingZeros().toPlainString()
+                + (kind == Kind.LEVEL_CHANGE ? " orders: " + orderCount : " id: " + orderId);
+    }
+}
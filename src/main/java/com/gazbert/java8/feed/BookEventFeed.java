@@ -0,0 +1,436 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.feed;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.OrderBookListener;
+import com.gazbert.java8.feed.BookEvent.Kind;
+
+/**
+ * Turns order book changes into a feed of {@link BookEvent}s for any number of subscribers.
+ * <p>
+ * The feed is an {@link OrderBookListener}: the book tells it about each add, cancel and fill, and it publishes the
+ * order event plus a level change. The book's writer never waits for subscribers. Each subscriber has its own bounded
+ * buffer, and events are delivered on the feed's {@link Executor} only as fast as the subscriber asks for them.
+ * <p>
+ * A subscriber that lets its buffer fill up is conflated: order events are dropped and only the latest level change
+ * for each price level is kept. Once the subscriber has worked through its buffer it is told how many events it
+ * missed and sent the kept level changes, after which it gets every event again. So a slow consumer's depth view is
+ * late, but never wrong, and never costs the writer anything.
+ * <p>
+ * While nobody is subscribed, the feed does nothing - not even level bookkeeping - so order entry runs as if it were
+ * not there. The levels are rebuilt from the book when the next subscriber arrives.
+ * <p>
+ * A mass cancel is published as one {@link Kind#MASS_CANCEL} event followed by one level change per level it touched,
+ * however many orders it took out.
+ * <p>
+ * When the book is changed directly, without an event per order, the levels are rebuilt from it and only the levels
+ * that changed are published.
+ * <p>
+ * The listener methods and {@link #subscribe(BookEventSubscriber, int, Iterable)} must be called one at a time, e.g.
+ * under the book's write lock. {@link BookEventSubscription}s can be used from any thread.
+ *
+ * @author gazbert
+ */
+public final class BookEventFeed implements OrderBookListener {
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final Executor executor;
+    private final List<FeedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Resting totals per price level. Only kept up to date while there are subscribers.
+     */
+    private final Map<Level, LevelTotals> levels = new HashMap<>();
+    private boolean levelsCurrent;
+    private long sequence;
+
+    /**
+     * Levels touched by the mass cancel in progress, or null if there isn't one.
+     */
+    private Set<Level> massCancelLevels;
+
+    /**
+     * Creates the feed.
+     *
+     * @param executor runs event delivery. Subscriber callbacks run on it, so it should not run tasks on the calling
+     *                 thread if subscribers query the book.
+     */
+    public BookEventFeed(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to the feed. The subscriber gets a level change for each level in the current book, then every
+     * change published after that.
+     *
+     * @param subscriber  the subscriber.
+     * @param bufferSize  number of events to hold for the subscriber before it is conflated.
+     * @param currentBook the book as it is now; must not change during the call.
+     * @return the subscription.
+     */
+    public BookEventSubscription subscribe(BookEventSubscriber subscriber, int bufferSize,
+                                           Iterable<Order> currentBook) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1: " + bufferSize);
+        }
+
+        if (!levelsCurrent) {
+            levels.clear();
+            for (final Order order : currentBook) {
+                levelOf(order).add(order.getFixedPointAmount());
+            }
+            levelsCurrent = true;
+        }
+
+        final FeedSubscription subscription = new FeedSubscription(subscriber, bufferSize);
+        for (final Map.Entry<Level, LevelTotals> level : levels.entrySet()) {
+            subscription.offer(levelChange(level.getKey(), level.getValue()));
+        }
+        subscriptions.add(subscription);
+        subscription.signal(); // delivers onSubscribe
+        return subscription;
+    }
+
+    /**
+     * @return true if anyone is subscribed.
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    @Override
+    public void orderAdded(Order order) {
+        if (noSubscribers()) {
+            return;
+        }
+        final LevelTotals totals = levelOf(order);
+        totals.add(order.getFixedPointAmount());
+        publish(orderEvent(Kind.ADD, order, order.getFixedPointAmount()));
+        publish(levelChange(new Level(order), totals));
+    }
+
+    @Override
+    public void orderCancelled(Order order) {
+        if (noSubscribers()) {
+            return;
+        }
+        final Level level = new Level(order);
+        final LevelTotals totals = levels.get(level);
+        totals.remove(order.getFixedPointAmount(), true);
+        if (massCancelLevels != null) {
+            massCancelLevels.add(level); // published when the mass cancel finishes
+            return;
+        }
+        publish(orderEvent(Kind.CANCEL, order, order.getFixedPointAmount()));
+        publish(levelChange(level, removeIfEmpty(level, totals)));
+    }
+
+    @Override
+    public void massCancelStarted(Market market) {
+        if (noSubscribers()) {
+            return;
+        }
+        massCancelLevels = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void massCancelFinished(Market market, int cancelledCount) {
+        final Set<Level> touched = massCancelLevels;
+        massCancelLevels = null;
+        if (touched == null || noSubscribers()) {
+            return;
+        }
+        publish(new BookEvent(Kind.MASS_CANCEL, ++sequence, null, market, null, 0, 0, cancelledCount));
+        for (final Level level : touched) {
+            publish(levelChange(level, removeIfEmpty(level, levels.get(level))));
+        }
+    }
+
+    @Override
+    public void orderFilled(Order order, long fixedPointFillAmount) {
+        if (noSubscribers()) {
+            return;
+        }
+        final Level level = new Level(order);
+        final LevelTotals totals = levels.get(level);
+        totals.remove(fixedPointFillAmount, fixedPointFillAmount == order.getFixedPointAmount());
+        publish(orderEvent(Kind.FILL, order, fixedPointFillAmount));
+        publish(levelChange(level, removeIfEmpty(level, totals)));
+    }
+
+    @Override
+    public void bookChanged(Iterable<Order> book) {
+        if (noSubscribers()) {
+            return;
+        }
+        final Map<Level, LevelTotals> previous = new HashMap<>(levels);
+        levels.clear();
+        for (final Order order : book) {
+            levelOf(order).add(order.getFixedPointAmount());
+        }
+        for (final Map.Entry<Level, LevelTotals> level : levels.entrySet()) {
+            final LevelTotals was = previous.remove(level.getKey());
+            final LevelTotals now = level.getValue();
+            if (was == null || was.amount != now.amount || was.orderCount != now.orderCount) {
+                publish(levelChange(level.getKey(), now));
+            }
+        }
+        for (final Level emptied : previous.keySet()) {
+            publish(levelChange(emptied, new LevelTotals()));
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Publishing helpers
+    // ------------------------------------------------------------------------------------------------
+
+    private boolean noSubscribers() {
+        if (subscriptions.isEmpty()) {
+            levelsCurrent = false; // changes are going unrecorded
+            return true;
+        }
+        return false;
+    }
+
+    private void publish(BookEvent event) {
+        for (final FeedSubscription subscription : subscriptions) {
+            subscription.offer(event);
+            subscription.signal();
+        }
+    }
+
+    private LevelTotals levelOf(Order order) {
+        return levels.computeIfAbsent(new Level(order), level -> new LevelTotals());
+    }
+
+    private LevelTotals removeIfEmpty(Level level, LevelTotals totals) {
+        if (totals.orderCount == 0) {
+            levels.remove(level);
+        }
+        return totals;
+    }
+
+    private BookEvent orderEvent(Kind kind, Order order, long amount) {
+        return new BookEvent(kind, ++sequence, new UUID(order.getIdMostSignificantBits(),
+                order.getIdLeastSignificantBits()), order.getMarketId(), order.getType(), order.getFixedPointPrice(),
+                amount, 0);
+    }
+
+    private BookEvent levelChange(Level level, LevelTotals totals) {
+        return new BookEvent(Kind.LEVEL_CHANGE, ++sequence, null, MARKETS[level.market], TYPES[level.type],
+                level.price, totals.amount, totals.orderCount);
+    }
+
+    /*
+     * A price level: market, side and price.
+     */
+    private static final class Level {
+
+        private final int market;
+        private final int type;
+        private final long price;
+
+        Level(Order order) {
+            this(order.getMarketId(), order.getType(), order.getFixedPointPrice());
+        }
+
+        Level(Market market, Type type, long price) {
+            this.market = market.ordinal();
+            this.type = type.ordinal();
+            this.price = price;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Level)) {
+                return false;
+            }
+            final Level other = (Level) o;
+            return market == other.market && type == other.type && price == other.price;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * (31 * market + type)) + Long.hashCode(price);
+        }
+    }
+
+    private static final class LevelTotals {
+
+        private long amount;
+        private int orderCount;
+
+        void add(long orderAmount) {
+            amount += orderAmount;
+            orderCount++;
+        }
+
+        void remove(long removedAmount, boolean orderGone) {
+            amount -= removedAmount;
+            if (orderGone) {
+                orderCount--;
+            }
+        }
+    }
+
+    /*
+     * One subscriber's buffer, conflation state and demand. The publisher offers events; a drain task on the
+     * executor delivers them. The wip counter makes sure only one drain runs at a time, and that a signal arriving
+     * while one is running makes it go round again rather than being lost.
+     */
+    private final class FeedSubscription implements BookEventSubscription, Runnable {
+
+        private final BookEventSubscriber subscriber;
+        private final int bufferSize;
+
+        // guarded by this
+        private final ArrayDeque<BookEvent> buffer = new ArrayDeque<>();
+        private final Map<Level, BookEvent> conflatedLevels = new LinkedHashMap<>();
+        private boolean conflating;
+        private long droppedEvents;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private boolean subscribed;
+
+        FeedSubscription(BookEventSubscriber subscriber, int bufferSize) {
+            this.subscriber = subscriber;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Requested events must be positive: " + n);
+            }
+            demand.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        synchronized void offer(BookEvent event) {
+            if (!conflating && buffer.size() < bufferSize) {
+                buffer.add(event);
+                return;
+            }
+            conflating = true;
+            if (event.getKind() == Kind.LEVEL_CHANGE) {
+                final Level level = new Level(event.getMarket(), event.getType(), event.getPrice());
+                if (conflatedLevels.remove(level) != null) { // keep them in the order they last changed
+                    droppedEvents++;
+                }
+                conflatedLevels.put(level, event);
+            } else {
+                droppedEvents++;
+            }
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Delivers as much as the subscriber has asked for.
+         */
+        @Override
+        public void run() {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                cancel(); // a subscriber that throws gets nothing more
+                throw e;
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                while (!cancelled && demand.get() > 0) {
+                    final BookEvent event;
+                    long dropped = 0;
+                    synchronized (this) {
+                        BookEvent next = buffer.poll();
+                        if (next == null && conflating) {
+                            dropped = droppedEvents;
+                            droppedEvents = 0;
+                            final Iterator<BookEvent> kept = conflatedLevels.values().iterator();
+                            if (kept.hasNext()) {
+                                next = kept.next();
+                                kept.remove();
+                            } else {
+                                conflating = false; // caught up
+                            }
+                        }
+                        event = next;
+                    }
+                    if (dropped > 0) {
+                        subscriber.onConflated(dropped);
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onEvent(event);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.feed;
+
+/**
+ * Something - typically a {@link com.gazbert.java8.defaultmethods.TradingApi} implementation - that publishes a feed
+ * of changes to its order book.
+ *
+ * @author gazbert
+ */
+public interface BookEventSource {
+
+    /**
+     * Subscribes to the book's changes. The subscriber is first sent a {@link BookEvent.Kind#LEVEL_CHANGE} for each
+     * price level currently in the book, then every change after that.
+     *
+     * @param subscriber the subscriber.
+     * @param bufferSize number of events to hold for the subscriber before it is conflated.
+     * @return the subscription; also passed to {@link BookEventSubscriber#onSubscribe(BookEventSubscription)}.
+     */
+    BookEventSubscription subscribe(BookEventSubscriber subscriber, int bufferSize);
+}
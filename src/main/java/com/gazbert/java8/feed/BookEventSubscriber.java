@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.feed;
+
+/**
+ * Receives {@link BookEvent}s from a {@link BookEventFeed}.
+ * <p>
+ * Callbacks for one subscriber are never made at the same time, and nothing is delivered beyond what has been asked
+ * for with {@link BookEventSubscription#request(long)}.
+ *
+ * @author gazbert
+ */
+public interface BookEventSubscriber {
+
+    /**
+     * Called first, before any events. Request events from here to get going.
+     *
+     * @param subscription the subscription.
+     */
+    void onSubscribe(BookEventSubscription subscription);
+
+    /**
+     * Called for each event.
+     *
+     * @param event the event.
+     */
+    void onEvent(BookEvent event);
+
+    /**
+     * Called when the subscriber fell so far behind that its buffer filled up and events were dropped. The
+     * events that follow are the latest {@link BookEvent.Kind#LEVEL_CHANGE}s for every level that changed in the
+     * meantime, so a depth view is up to date again once they have been applied; an order by order view is not.
+     * <p>
+     * The default does nothing.
+     *
+     * @param droppedEvents number of events dropped since the subscriber last caught up.
+     */
+    default void onConflated(long droppedEvents) {
+    }
+}
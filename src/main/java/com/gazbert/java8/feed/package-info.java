@@ -0,0 +1,13 @@
+/**
+ * <h2>Order Book Feed</h2>
+ * 
+ * An incremental feed of order book changes - adds, cancels, fills and price level changes - pushed to subscribers
+ * with per-subscriber buffers, demand based backpressure, and conflation of slow subscribers. See the
+ * {@link TestBookEventFeedUsage} unit test class for usage.
+ * <p>
+ * Much cheaper than polling {@link com.gazbert.java8.defaultmethods.TradingApi#getOpenOrders(int)} and diffing the
+ * lists: a subscriber only sees what changed.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.feed;
@@ -0,0 +1,346 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fees;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+
+/**
+ * A tiered exchange fee schedule.
+ * <p>
+ * Fees are set per {@link Market} and {@link Type}, and banded by order amount - the bigger the order, the lower the
+ * fee, typically. The fee is a per unit amount that gets added to the order price, same as the fee lambdas in the
+ * {@link com.gazbert.java8.lambda.OrderBookAnalyser} demos.
+ * <p>
+ * When the schedule is built, the tiers are compiled into one pair of lookup tables per Market/Type holding the band
+ * floors and fees as {@link FixedPoint} values. Resolving a fee is then a short scan of a tiny long array - no
+ * BigDecimal arithmetic, and no allocation.
+ * <p>
+ * Fee-adjusted prices are rounded HALF_UP to the schedule's price decimal places, whether they are computed one at a
+ * time as BigDecimals or in bulk as fixed-point values, so all callers get the same answer for the same order.
+ * <p>
+ * Instances are immutable and thread-safe; use the {@link Builder} to create one.
+ *
+ * @author gazbert
+ */
+public final class FeeSchedule {
+
+    private static final int TYPE_COUNT = Type.values().length;
+    private static final int TABLE_COUNT = Market.values().length * TYPE_COUNT;
+
+    /**
+     * Band floors for each Market/Type table, ascending.
+     */
+    private final long[][] bandFloors;
+
+    /**
+     * Fee for each band in each Market/Type table.
+     */
+    private final long[][] bandFees;
+
+    /**
+     * BigDecimal version of bandFees so we can hand out fees without allocating.
+     */
+    private final BigDecimal[][] bandFeeValues;
+
+    private final long defaultFee;
+    private final BigDecimal defaultFeeValue;
+    private final int priceDecimals;
+
+    /**
+     * Fixed-point value of one unit in the last price decimal place, e.g. 0.01 for 2 decimal places.
+     */
+    private final long priceUnit;
+
+    private FeeSchedule(Builder builder) {
+
+        bandFloors = new long[TABLE_COUNT][];
+        bandFees = new long[TABLE_COUNT][];
+        bandFeeValues = new BigDecimal[TABLE_COUNT][];
+
+        for (int table = 0; table < TABLE_COUNT; table++) {
+
+            final List<Tier> tiers = builder.tiers.get(table);
+            tiers.sort(Comparator.comparingLong(t -> t.floor));
+
+            bandFloors[table] = new long[tiers.size()];
+            bandFees[table] = new long[tiers.size()];
+            bandFeeValues[table] = new BigDecimal[tiers.size()];
+
+            for (int i = 0; i < tiers.size(); i++) {
+                final Tier tier = tiers.get(i);
+                if (i > 0 && tier.floor == bandFloors[table][i - 1]) {
+                    throw new IllegalArgumentException("Duplicate fee band " + FixedPoint.toBigDecimal(tier.floor)
+                            + " for " + Market.values()[table / TYPE_COUNT] + " " + Type.values()[table % TYPE_COUNT]);
+                }
+                bandFloors[table][i] = tier.floor;
+                bandFees[table][i] = tier.fee;
+                bandFeeValues[table][i] = tier.feeValue;
+            }
+        }
+
+        defaultFee = FixedPoint.toFixedPoint(builder.defaultFee);
+        defaultFeeValue = builder.defaultFee;
+        priceDecimals = builder.priceDecimals;
+        long unit = 1;
+        for (int i = priceDecimals; i < FixedPoint.SCALE; i++) {
+            unit *= 10;
+        }
+        priceUnit = unit;
+    }
+
+    /**
+     * Returns a builder for creating a fee schedule.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the lookup table index for a given Market and Type. This is the table id expected by the columnar
+     * {@link #computeFeeAdjustedPrices(int[], long[], long[], long[], int)} method.
+     *
+     * @param market the market.
+     * @param type   the order type.
+     * @return the table index.
+     */
+    public static int tableIndex(Market market, Type type) {
+        return market.ordinal() * TYPE_COUNT + type.ordinal();
+    }
+
+    /**
+     * Resolves the fee for an order amount.
+     *
+     * @param table  the lookup table index - see {@link #tableIndex(Market, Type)}.
+     * @param amount the order amount as a fixed-point value.
+     * @return the fee as a fixed-point value.
+     */
+    public long getFee(int table, long amount) {
+        final long[] floors = bandFloors[table];
+        for (int i = floors.length - 1; i >= 0; i--) {
+            if (amount >= floors[i]) {
+                return bandFees[table][i];
+            }
+        }
+        return defaultFee;
+    }
+
+    /**
+     * Resolves the fee for an order.
+     *
+     * @param order the order.
+     * @return the fee.
+     */
+    public BigDecimal getFee(Order order) {
+        final int table = tableIndex(order.getMarketId(), order.getType());
+        final long amount = order.getFixedPointAmount();
+        final long[] floors = bandFloors[table];
+        for (int i = floors.length - 1; i >= 0; i--) {
+            if (amount >= floors[i]) {
+                return bandFeeValues[table][i];
+            }
+        }
+        return defaultFeeValue;
+    }
+
+    /**
+     * Returns the order price with the schedule fee added, rounded HALF_UP to the schedule's price decimal places.
+     *
+     * @param order the order.
+     * @return the fee-adjusted price.
+     */
+    public BigDecimal getFeeAdjustedPrice(Order order) {
+        return order.getPrice().add(getFee(order)).setScale(priceDecimals, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Computes the fee-adjusted prices for a whole order book.
+     *
+     * @param orderBook the order book.
+     * @return the fee-adjusted prices as fixed-point values rounded to the schedule's price decimal places, in order
+     *     book order.
+     */
+    public long[] computeFeeAdjustedPrices(List<Order> orderBook) {
+
+        final int size = orderBook.size();
+        final int[] tables = new int[size];
+        final long[] amounts = new long[size];
+        final long[] prices = new long[size];
+
+        int i = 0;
+        for (final Order order : orderBook) {
+            tables[i] = tableIndex(order.getMarketId(), order.getType());
+            amounts[i] = order.getFixedPointAmount();
+            prices[i] = order.getFixedPointPrice();
+            i++;
+        }
+
+        final long[] adjustedPrices = new long[size];
+        computeFeeAdjustedPrices(tables, amounts, prices, adjustedPrices, size);
+        return adjustedPrices;
+    }
+
+    /**
+     * Computes fee-adjusted prices for an order book held in columns.
+     * <p>
+     * This is done in 2 passes: the first resolves every fee into the output array, the second adds the prices and
+     * rounds HALF_UP to the schedule's price decimal places, giving the same values as
+     * {@link #getFeeAdjustedPrice(Order)}. The second pass is a plain loop over primitive arrays, so the JIT is free to
+     * vectorise it.
+     *
+     * @param tables         lookup table index of each order - see {@link #tableIndex(Market, Type)}.
+     * @param amounts        fixed-point amount of each order.
+     * @param prices         fixed-point price of each order.
+     * @param adjustedPrices receives the fixed-point fee-adjusted price of each order, rounded.
+     * @param length         number of orders to process.
+     */
+    public void computeFeeAdjustedPrices(int[] tables, long[] amounts, long[] prices, long[] adjustedPrices,
+                                         int length) {
+        for (int i = 0; i < length; i++) {
+            adjustedPrices[i] = getFee(tables[i], amounts[i]);
+        }
+        final long unit = priceUnit;
+        final long half = unit / 2;
+        for (int i = 0; i < length; i++) {
+            final long adjusted = adjustedPrices[i] + prices[i];
+            adjustedPrices[i] = adjusted >= 0 ? (adjusted + half) / unit * unit : -((half - adjusted) / unit * unit);
+        }
+    }
+
+    /**
+     * @return number of decimal places fee-adjusted prices are rounded to.
+     */
+    public int getPriceDecimals() {
+        return priceDecimals;
+    }
+
+    /**
+     * Builds a {@link FeeSchedule}.
+     *
+     * @author gazbert
+     */
+    public static final class Builder {
+
+        private final List<List<Tier>> tiers = new ArrayList<>();
+        private BigDecimal defaultFee = BigDecimal.ZERO;
+        private int priceDecimals = 2;
+
+        private Builder() {
+            for (int i = 0; i < TABLE_COUNT; i++) {
+                tiers.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * Adds a fee tier. The tier applies to orders with an amount greater than or equal to the minimum amount, up
+         * to the minimum amount of the next tier.
+         *
+         * @param market    the market.
+         * @param type      the order type.
+         * @param minAmount the minimum order amount for the tier.
+         * @param fee       the fee for the tier.
+         * @return this builder.
+         */
+        public Builder addTier(Market market, Type type, BigDecimal minAmount, BigDecimal fee) {
+            tiers.get(tableIndex(market, type)).add(new Tier(FixedPoint.toFixedPoint(minAmount), fee));
+            return this;
+        }
+
+        /**
+         * Adds a fee tier for all order types in a market.
+         *
+         * @param market    the market.
+         * @param minAmount the minimum order amount for the tier.
+         * @param fee       the fee for the tier.
+         * @return this builder.
+         */
+        public Builder addTier(Market market, BigDecimal minAmount, BigDecimal fee) {
+            for (final Type type : Type.values()) {
+                addTier(market, type, minAmount, fee);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the fee used for orders that fall below the lowest tier. Defaults to zero.
+         *
+         * @param defaultFee the default fee.
+         * @return this builder.
+         */
+        public Builder defaultFee(BigDecimal defaultFee) {
+            this.defaultFee = defaultFee;
+            return this;
+        }
+
+        /**
+         * Sets the number of decimal places fee-adjusted prices are rounded to. Defaults to 2.
+         *
+         * @param priceDecimals the number of decimal places, from 0 to {@link FixedPoint#SCALE}.
+         * @return this builder.
+         */
+        public Builder priceDecimals(int priceDecimals) {
+            if (priceDecimals < 0 || priceDecimals > FixedPoint.SCALE) {
+                throw new IllegalArgumentException("Price decimals must be between 0 and " + FixedPoint.SCALE + ": "
+                        + priceDecimals);
+            }
+            this.priceDecimals = priceDecimals;
+            return this;
+        }
+
+        /**
+         * Compiles the tiers into a fee schedule.
+         *
+         * @return the fee schedule.
+         * @throws IllegalArgumentException if a Market/Type has more than one tier with the same minimum amount.
+         */
+        public FeeSchedule build() {
+            return new FeeSchedule(this);
+        }
+    }
+
+    /**
+     * A fee tier before it is compiled into the lookup tables.
+     */
+    private static final class Tier {
+        private final long floor;
+        private final long fee;
+        private final BigDecimal feeValue;
+
+        private Tier(long floor, BigDecimal feeValue) {
+            this.floor = floor;
+            this.fee = FixedPoint.toFixedPoint(feeValue);
+            this.feeValue = feeValue;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * <h2>Fees</h2>
+ * 
+ * Tiered exchange fee schedules for use with the {@link com.gazbert.java8.lambda.OrderMatcherWithFees} queries.
+ * See the {@link TestFeeScheduleUsage} unit test class for usage.
+ * <p>
+ * Schedules are precompiled into fixed-point lookup tables, so resolving a fee is an array lookup rather than
+ * BigDecimal arithmetic. There is also a bulk API for computing fee-adjusted prices for a whole order book in one pass.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.fees;
\ No newline at end of file
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fx;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Aggregate queries across all markets, in one reporting currency.
+ * <p>
+ * Each query totals the book per market partition with {@link MarketTotals}, then converts each partition's total
+ * with the {@link FxRateCache}'s current rates - so the FX cost is a handful of BigDecimal multiplies whatever the
+ * size of the book, and every partition in a query uses the same rates even if they are swapped mid-query.
+ *
+ * @author gazbert
+ */
+public final class CrossMarketAggregator {
+
+    private final FxRateCache rates;
+
+    /**
+     * Creates the aggregator.
+     *
+     * @param rates the rates to convert with.
+     */
+    public CrossMarketAggregator(FxRateCache rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * @param orderBook the order book.
+     * @return total order amount across all markets, in the reporting currency.
+     */
+    public BigDecimal getTotalVolume(Iterable<Order> orderBook) {
+        return MarketTotals.of(orderBook).getNormalisedVolume(rates.current());
+    }
+
+    /**
+     * @param orderBook the order book.
+     * @return total amount x price across all markets, in the reporting currency.
+     */
+    public BigDecimal getTotalNotional(Iterable<Order> orderBook) {
+        return MarketTotals.of(orderBook).getNormalisedNotional(rates.current());
+    }
+
+    /**
+     * Totals a big on-heap book using a parallel stream.
+     *
+     * @param orderBook the order book.
+     * @return total amount x price across all markets, in the reporting currency.
+     */
+    public BigDecimal getTotalNotionalInParallel(Collection<Order> orderBook) {
+        return orderBook.parallelStream().collect(MarketTotals.toMarketTotals())
+                .getNormalisedNotional(rates.current());
+    }
+
+    /**
+     * @param store the off-heap store.
+     * @return total order amount across all markets, in the reporting currency.
+     */
+    public BigDecimal getTotalVolume(OffHeapOrderStore store) {
+        return MarketTotals.of(store).getNormalisedVolume(rates.current());
+    }
+
+    /**
+     * @param store the off-heap store.
+     * @return total amount x price across all markets, in the reporting currency.
+     */
+    public BigDecimal getTotalNotional(OffHeapOrderStore store) {
+        return MarketTotals.of(store).getNormalisedNotional(rates.current());
+    }
+
+    /**
+     * @return the rates used for conversion.
+     */
+    public FxRateCache getRates() {
+        return rates;
+    }
+}
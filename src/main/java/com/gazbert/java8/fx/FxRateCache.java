@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fx;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.gazbert.java8.common.Order.Market;
+
+/**
+ * Holds the current {@link FxRateTable}, swapped atomically when rates change.
+ * <p>
+ * Readers take the table once per query with {@link #current()} and use it for every market partition, so a query
+ * never mixes old and new rates, and rate updates never wait for queries.
+ *
+ * @author gazbert
+ */
+public final class FxRateCache {
+
+    private final AtomicReference<FxRateTable> table;
+
+    /**
+     * Creates the cache.
+     *
+     * @param initial the starting rates.
+     */
+    public FxRateCache(FxRateTable initial) {
+        table = new AtomicReference<>(initial);
+    }
+
+    /**
+     * @return the current rates.
+     */
+    public FxRateTable current() {
+        return table.get();
+    }
+
+    /**
+     * Replaces all the rates at once.
+     *
+     * @param rates the new rates.
+     * @return the rates that were replaced.
+     */
+    public FxRateTable swap(FxRateTable rates) {
+        return table.getAndSet(rates);
+    }
+
+    /**
+     * Changes one rate. Safe to call from several threads; no update is lost.
+     *
+     * @param market the market whose rate to change.
+     * @param rate   the new rate.
+     * @return the new rates.
+     */
+    public FxRateTable updateRate(Market market, BigDecimal rate) {
+        return table.updateAndGet(current -> current.withRate(market, rate));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order.Market;
+
+/**
+ * FX rates for converting each {@link Market}'s currency into a reporting currency.
+ * <p>
+ * A rate is the number of units of the reporting currency one unit of the market currency is worth; the reporting
+ * currency's own rate is always 1. Every market must have a rate, so a conversion never has a gap.
+ * <p>
+ * Instances are immutable and thread-safe; use the {@link Builder} to create one, or {@link #withRate(Market,
+ * BigDecimal)} to derive a new table with one rate changed.
+ *
+ * @author gazbert
+ */
+public final class FxRateTable {
+
+    private static final Market[] MARKETS = Market.values();
+
+    private final Market reportingCurrency;
+    private final BigDecimal[] rates;
+
+    private FxRateTable(Market reportingCurrency, BigDecimal[] rates) {
+        this.reportingCurrency = reportingCurrency;
+        this.rates = rates;
+    }
+
+    /**
+     * Returns a builder for creating a rate table.
+     *
+     * @param reportingCurrency the currency to convert into.
+     * @return a new builder.
+     */
+    public static Builder builder(Market reportingCurrency) {
+        return new Builder(reportingCurrency);
+    }
+
+    public Market getReportingCurrency() {
+        return reportingCurrency;
+    }
+
+    /**
+     * @param market the market whose currency to convert from.
+     * @return the rate into the reporting currency.
+     */
+    public BigDecimal getRate(Market market) {
+        return rates[market.ordinal()];
+    }
+
+    /**
+     * Converts an amount in a market's currency into the reporting currency.
+     *
+     * @param amount the amount.
+     * @param market the market whose currency the amount is in.
+     * @return the converted amount, rounded HALF_UP to {@link FixedPoint#SCALE} decimal places.
+     */
+    public BigDecimal convert(BigDecimal amount, Market market) {
+        return amount.multiply(getRate(market)).setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Returns a copy of this table with one rate changed.
+     *
+     * @param market the market whose rate to change; not the reporting currency.
+     * @param rate   the new rate.
+     * @return the new table.
+     */
+    public FxRateTable withRate(Market market, BigDecimal rate) {
+        final Builder builder = new Builder(reportingCurrency);
+        for (final Market other : MARKETS) {
+            if (other != reportingCurrency) {
+                builder.rate(other, getRate(other));
+            }
+        }
+        return builder.rate(market, rate).build();
+    }
+
+    @Override
+    public String toString() {
+        final Map<Market, BigDecimal> display = new EnumMap<>(Market.class);
+        for (final Market market : MARKETS) {
+            display.put(market, getRate(market));
+        }
+        return "FxRateTable{reportingCurrency=" + reportingCurrency + ", rates=" + display + "}";
+    }
+
+    /**
+     * Builds {@link FxRateTable}s.
+     */
+    public static final class Builder {
+
+        private final Market reportingCurrency;
+        private final BigDecimal[] rates = new BigDecimal[MARKETS.length];
+
+        private Builder(Market reportingCurrency) {
+            this.reportingCurrency = reportingCurrency;
+            rates[reportingCurrency.ordinal()] = BigDecimal.ONE;
+        }
+
+        /**
+         * Sets the rate for a market's currency.
+         *
+         * @param market the market.
+         * @param rate   units of the reporting currency per unit of the market's currency; must be positive.
+         * @return this builder.
+         */
+        public Builder rate(Market market, BigDecimal rate) {
+            if (market == reportingCurrency) {
+                throw new IllegalArgumentException("The rate for the reporting currency " + market + " is always 1");
+            }
+            if (rate.signum() <= 0) {
+                throw new IllegalArgumentException("Rate for " + market + " must be positive: " + rate);
+            }
+            rates[market.ordinal()] = rate;
+            return this;
+        }
+
+        /**
+         * Builds the rate table.
+         *
+         * @return the rate table.
+         * @throws IllegalStateException if a market has no rate.
+         */
+        public FxRateTable build() {
+            for (final Market market : MARKETS) {
+                if (rates[market.ordinal()] == null) {
+                    throw new IllegalStateException("No rate for " + market + " into " + reportingCurrency);
+                }
+            }
+            return new FxRateTable(reportingCurrency, rates.clone());
+        }
+    }
+}
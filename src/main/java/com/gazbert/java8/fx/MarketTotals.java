@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fx;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.stream.Collector;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Order count, volume and notional for each {@link Market}, each in the market's own currency.
+ * <p>
+ * Totals are accumulated per market partition on the orders' {@link FixedPoint} values, with no BigDecimal work per
+ * order: volume is a long sum of amounts, and notional (amount x price) is summed exactly in 128 bits, since the
+ * product of 2 fixed-point values quickly overflows a long. Conversion to a reporting currency then happens once per
+ * market, not once per order.
+ * <p>
+ * Totals are mutable and not thread-safe; use {@link #toMarketTotals()} to build them from a parallel stream.
+ *
+ * @author gazbert
+ */
+public final class MarketTotals {
+
+    private static final Market[] MARKETS = Market.values();
+
+    /**
+     * Scale of an amount x price product of 2 fixed-point values.
+     */
+    private static final int NOTIONAL_SCALE = FixedPoint.SCALE * 2;
+
+    private final long[] orderCounts = new long[MARKETS.length];
+    private final long[] volumes = new long[MARKETS.length];
+    private final long[] notionalHigh = new long[MARKETS.length];
+    private final long[] notionalLow = new long[MARKETS.length];
+
+    /**
+     * Totals up an order book.
+     *
+     * @param orderBook the order book.
+     * @return the totals.
+     */
+    public static MarketTotals of(Iterable<Order> orderBook) {
+        final MarketTotals totals = new MarketTotals();
+        for (final Order order : orderBook) {
+            totals.add(order);
+        }
+        return totals;
+    }
+
+    /**
+     * Totals up an off-heap store straight from its records.
+     *
+     * @param store the store.
+     * @return the totals.
+     */
+    public static MarketTotals of(OffHeapOrderStore store) {
+        final MarketTotals totals = new MarketTotals();
+        for (int slot = 0; slot < store.size(); slot++) {
+            totals.add(store.getMarketId(slot), store.getAmount(slot), store.getPrice(slot));
+        }
+        return totals;
+    }
+
+    /**
+     * Returns a collector that totals up a stream of orders. Partial totals from a parallel stream are merged.
+     *
+     * @return the collector.
+     */
+    public static Collector<Order, ?, MarketTotals> toMarketTotals() {
+        return Collector.of(MarketTotals::new, MarketTotals::add, MarketTotals::merge,
+                Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Adds an order.
+     *
+     * @param order the order.
+     */
+    public void add(Order order) {
+        add(order.getMarketId(), order.getFixedPointAmount(), order.getFixedPointPrice());
+    }
+
+    /**
+     * Adds an order from its fixed-point values.
+     *
+     * @param market the order's market.
+     * @param amount the order amount as a fixed-point value.
+     * @param price  the order price as a fixed-point value.
+     */
+    public void add(Market market, long amount, long price) {
+        final int m = market.ordinal();
+        orderCounts[m]++;
+        volumes[m] = Math.addExact(volumes[m], amount);
+        addNotional(m, multiplyHigh(amount, price), amount * price);
+    }
+
+    /**
+     * Adds another set of totals to this one.
+     *
+     * @param other the totals to add.
+     * @return this, for chaining.
+     */
+    public MarketTotals merge(MarketTotals other) {
+        for (int m = 0; m < MARKETS.length; m++) {
+            orderCounts[m] += other.orderCounts[m];
+            volumes[m] = Math.addExact(volumes[m], other.volumes[m]);
+            addNotional(m, other.notionalHigh[m], other.notionalLow[m]);
+        }
+        return this;
+    }
+
+    /**
+     * @param market the market.
+     * @return number of orders in the market.
+     */
+    public long getOrderCount(Market market) {
+        return orderCounts[market.ordinal()];
+    }
+
+    /**
+     * @param market the market.
+     * @return total order amount in the market, in the market's currency.
+     */
+    public BigDecimal getVolume(Market market) {
+        return FixedPoint.toBigDecimal(volumes[market.ordinal()]);
+    }
+
+    /**
+     * @param market the market.
+     * @return exact total of amount x price in the market, in the market's currency.
+     */
+    public BigDecimal getNotional(Market market) {
+        final int m = market.ordinal();
+        final BigInteger unscaled = BigInteger.valueOf(notionalHigh[m]).shiftLeft(Long.SIZE)
+                .add(BigInteger.valueOf(notionalLow[m] >>> 1).shiftLeft(1))
+                .add(BigInteger.valueOf(notionalLow[m] & 1));
+        return new BigDecimal(unscaled, NOTIONAL_SCALE);
+    }
+
+    /**
+     * Converts each market's volume into the reporting currency and adds them up.
+     *
+     * @param rates the rates to use.
+     * @return total volume in the rates' reporting currency, rounded HALF_UP to {@link FixedPoint#SCALE} places.
+     */
+    public BigDecimal getNormalisedVolume(FxRateTable rates) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (final Market market : MARKETS) {
+            total = total.add(getVolume(market).multiply(rates.getRate(market)));
+        }
+        return total.setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Converts each market's notional into the reporting currency and adds them up.
+     *
+     * @param rates the rates to use.
+     * @return total notional in the rates' reporting currency, rounded HALF_UP to {@link FixedPoint#SCALE} places.
+     */
+    public BigDecimal getNormalisedNotional(FxRateTable rates) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (final Market market : MARKETS) {
+            total = total.add(getNotional(market).multiply(rates.getRate(market)));
+        }
+        return total.setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // 128 bit helpers
+    // ------------------------------------------------------------------------------------------------
+
+    private void addNotional(int m, long high, long low) {
+        final long sum = notionalLow[m] + low;
+        final long carry = Long.compareUnsigned(sum, notionalLow[m]) < 0 ? 1 : 0;
+        notionalLow[m] = sum;
+        notionalHigh[m] += high + carry;
+    }
+
+    /*
+     * High 64 bits of the signed 128 bit product - what Math.multiplyHigh does in Java 9+.
+     */
+    static long multiplyHigh(long x, long y) {
+        final long x1 = x >> 32;
+        final long x2 = x & 0xFFFFFFFFL;
+        final long y1 = y >> 32;
+        final long y2 = y & 0xFFFFFFFFL;
+        final long z2 = x2 * y2;
+        final long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        final long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
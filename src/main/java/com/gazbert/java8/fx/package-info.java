@@ -0,0 +1,10 @@
+/**
+ * <h2>Cross-Market Aggregation</h2>
+ * 
+ * Order book totals across the USD, CNY and EUR markets in a single reporting currency. Amounts are totalled per
+ * market, then each market total is converted once using a cached, atomically swapped FX rate table. See the
+ * {@link TestCrossMarketAggregationUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.fx;
@@ -0,0 +1,805 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed bitmap of non-negative ints, along the lines of a Roaring bitmap.
+ * <p>
+ * Values are split into a 16 bit high part, which picks a container, and a 16 bit low part, which is stored in the
+ * container. Each container uses whichever of 3 representations suits its contents:
+ * <ul>
+ * <li>array - a sorted array of values, for sparse containers of up to {@link #ARRAY_MAX} values.</li>
+ * <li>bitset - 1024 longs, one bit per value, for dense containers.</li>
+ * <li>run - start and length pairs, for containers made up of long runs of consecutive values. Call
+ * {@link #runOptimize()} once a bitmap has been built to convert containers to runs where that is smaller.</li>
+ * </ul>
+ * AND and OR work container by container, using the cheapest algorithm for each pair of representations, and
+ * {@link #andCardinality(CompressedBitmap)} counts an intersection without building it.
+ * <p>
+ * Bitmaps are not thread-safe.
+ *
+ * @author gazbert
+ */
+public final class CompressedBitmap {
+
+    /**
+     * Maximum number of values in an array container; bigger than this and a bitset is smaller.
+     */
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value, must not be negative.
+     */
+    public void add(int value) {
+        final char high = (char) (value >>> 16);
+        final int i = find(high);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) value);
+        } else {
+            insertAt(-i - 1, high, new ArrayContainer().add((char) value));
+        }
+    }
+
+    /**
+     * Adds all values from start to end.
+     *
+     * @param start first value, inclusive.
+     * @param end   last value, exclusive.
+     */
+    public void addRange(int start, int end) {
+        for (int value = start; value < end; value++) {
+            add(value);
+        }
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value the value.
+     */
+    public void remove(int value) {
+        final int i = find((char) (value >>> 16));
+        if (i >= 0) {
+            final Container container = containers[i].remove((char) value);
+            if (container.cardinality() == 0) {
+                removeAt(i);
+            } else {
+                containers[i] = container;
+            }
+        }
+    }
+
+    /**
+     * @param value the value.
+     * @return true if the bitmap contains the value.
+     */
+    public boolean contains(int value) {
+        final int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /**
+     * @return the number of values in the bitmap.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return true if the bitmap holds no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the intersection of this bitmap and another. Neither bitmap is changed.
+     *
+     * @param other the other bitmap.
+     * @return a new bitmap.
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        final CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                final Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertAt(result.size, keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of values in both this bitmap and another, without building the intersection.
+     *
+     * @param other the other bitmap.
+     * @return the intersection cardinality.
+     */
+    public int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the union of this bitmap and another. Neither bitmap is changed.
+     *
+     * @param other the other bitmap.
+     * @return a new bitmap.
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        final CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insertAt(result.size, keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insertAt(result.size, other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.insertAt(result.size, keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts each container to its smallest representation, including runs.
+     *
+     * @return this bitmap.
+     */
+    public CompressedBitmap runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].optimize();
+        }
+        return this;
+    }
+
+    /**
+     * Passes each value in the bitmap to a consumer, in ascending order.
+     *
+     * @param consumer the consumer.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return the representation of each container, e.g. "[array, run]" - handy for seeing how well a bitmap
+     * compresses.
+     */
+    public String describeContainers() {
+        final String[] kinds = new String[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = containers[i].kind();
+        }
+        return Arrays.toString(kinds);
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertAt(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Containers
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Holds the low 16 bits of the values sharing a high 16 bits. Mutators may return a different container if the
+     * representation had to change.
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        /**
+         * Sets this container's bits in a bitset.
+         */
+        abstract void orInto(long[] words);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract Container optimize();
+
+        abstract String kind();
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= ARRAY_MAX) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            final BitmapContainer result = new BitmapContainer();
+            orInto(result.words);
+            other.orInto(result.words);
+            return result.recount().normalise();
+        }
+
+        BitmapContainer toBitmap() {
+            final BitmapContainer bitmap = new BitmapContainer();
+            orInto(bitmap.words);
+            return bitmap.recount();
+        }
+    }
+
+    /**
+     * Sorted array of values.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            final int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            final int insertAt = -i - 1;
+            System.arraycopy(values, insertAt, values, insertAt + 1, cardinality - insertAt);
+            values[insertAt] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            final int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            final char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            final char[] result = new char[cardinality + other.cardinality];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (values[i] < other.values[j]) {
+                    result[count++] = values[i++];
+                } else if (values[i] > other.values[j]) {
+                    result[count++] = other.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            while (i < cardinality) {
+                result[count++] = values[i++];
+            }
+            while (j < other.cardinality) {
+                result[count++] = other.values[j++];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        Container optimize() {
+            int runs = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return RunContainer.sizeInBytes(runs) < cardinality * 2 ? RunContainer.from(this) : this;
+        }
+
+        @Override
+        String kind() {
+            return "array";
+        }
+    }
+
+    /**
+     * One bit per value.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            final long before = words[value >>> 6];
+            final long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            final long before = words[value >>> 6];
+            final long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            if (before != after) {
+                cardinality--;
+            }
+            return normalise();
+        }
+
+        @Override
+        Container and(Container other) {
+            if (!(other instanceof BitmapContainer)) {
+                return other.and(this);
+            }
+            final BitmapContainer result = new BitmapContainer();
+            final long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & otherWords[i];
+            }
+            return result.recount().normalise();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (!(other instanceof BitmapContainer)) {
+                return other.andCardinality(this);
+            }
+            final long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        /**
+         * Counts the bits set from start to end, both inclusive.
+         */
+        int rangeCardinality(int start, int end) {
+            final int firstWord = start >>> 6;
+            final int lastWord = end >>> 6;
+            if (firstWord == lastWord) {
+                return Long.bitCount(words[firstWord] & (-1L << start) & (-1L >>> (63 - (end & 63))));
+            }
+            int count = Long.bitCount(words[firstWord] & (-1L << start));
+            for (int i = firstWord + 1; i < lastWord; i++) {
+                count += Long.bitCount(words[i]);
+            }
+            return count + Long.bitCount(words[lastWord] & (-1L >>> (63 - (end & 63))));
+        }
+
+        @Override
+        void orInto(long[] target) {
+            for (int i = 0; i < words.length; i++) {
+                target[i] |= words[i];
+            }
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            final BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        Container optimize() {
+            int runs = 0;
+            for (int i = 0; i < words.length; i++) {
+                final long word = words[i];
+                final long previousBit = i == 0 ? 0 : words[i - 1] >>> 63;
+                // a run starts wherever a set bit follows a clear one
+                runs += Long.bitCount(word & ~((word << 1) | previousBit));
+            }
+            if (RunContainer.sizeInBytes(runs) < Math.min(words.length * 8, cardinality * 2)) {
+                return RunContainer.from(this);
+            }
+            return normalise();
+        }
+
+        @Override
+        String kind() {
+            return "bitset";
+        }
+
+        BitmapContainer recount() {
+            int count = 0;
+            for (final long word : words) {
+                count += Long.bitCount(word);
+            }
+            cardinality = count;
+            return this;
+        }
+
+        Container normalise() {
+            if (cardinality > ARRAY_MAX) {
+                return this;
+            }
+            final char[] values = new char[Math.max(cardinality, 4)];
+            final int[] count = new int[1];
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+
+    /**
+     * Runs of consecutive values, each held as a start and a length minus 1.
+     */
+    private static final class RunContainer extends Container {
+
+        private final char[] starts;
+        private final char[] lengths;
+        private final int runs;
+        private final int cardinality;
+
+        private RunContainer(char[] starts, char[] lengths, int runs) {
+            this.starts = starts;
+            this.lengths = lengths;
+            this.runs = runs;
+            int count = 0;
+            for (int i = 0; i < runs; i++) {
+                count += lengths[i] + 1;
+            }
+            cardinality = count;
+        }
+
+        static int sizeInBytes(int runs) {
+            return 2 + runs * 4;
+        }
+
+        static RunContainer from(Container container) {
+            final char[] starts = new char[16];
+            final char[] lengths = new char[16];
+            final RunBuilder builder = new RunBuilder(starts, lengths);
+            container.forEach(0, value -> builder.append((char) value));
+            return builder.build();
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int i = Arrays.binarySearch(starts, 0, runs, value);
+            if (i >= 0) {
+                return true;
+            }
+            i = -i - 2; // the run starting before the value
+            return i >= 0 && value <= starts[i] + lengths[i];
+        }
+
+        @Override
+        Container add(char value) {
+            return contains(value) ? this : mutable().add(value);
+        }
+
+        @Override
+        Container remove(char value) {
+            return contains(value) ? mutable().remove(value) : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            if (other instanceof BitmapContainer) {
+                return toBitmap().and(other);
+            }
+            final RunContainer that = (RunContainer) other;
+            final RunBuilder builder = new RunBuilder(new char[16], new char[16]);
+            intersect(that, (start, end) -> builder.appendRun((char) start, (char) end));
+            return builder.build();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            if (other instanceof BitmapContainer) {
+                final BitmapContainer bitmap = (BitmapContainer) other;
+                for (int i = 0; i < runs; i++) {
+                    count += bitmap.rangeCardinality(starts[i], starts[i] + lengths[i]);
+                }
+                return count;
+            }
+            final int[] total = new int[1];
+            intersect((RunContainer) other, (start, end) -> total[0] += end - start + 1);
+            return total[0];
+        }
+
+        private void intersect(RunContainer other, RangeConsumer consumer) {
+            int i = 0;
+            int j = 0;
+            while (i < runs && j < other.runs) {
+                final int end = starts[i] + lengths[i];
+                final int otherEnd = other.starts[j] + other.lengths[j];
+                final int start = Math.max(starts[i], other.starts[j]);
+                final int stop = Math.min(end, otherEnd);
+                if (start <= stop) {
+                    consumer.accept(start, stop);
+                }
+                if (end < otherEnd) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < runs; i++) {
+                final int start = starts[i];
+                final int end = start + lengths[i];
+                final int firstWord = start >>> 6;
+                final int lastWord = end >>> 6;
+                if (firstWord == lastWord) {
+                    words[firstWord] |= (-1L << start) & (-1L >>> (63 - (end & 63)));
+                } else {
+                    words[firstWord] |= -1L << start;
+                    for (int w = firstWord + 1; w < lastWord; w++) {
+                        words[w] = -1L;
+                    }
+                    words[lastWord] |= -1L >>> (63 - (end & 63));
+                }
+            }
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < runs; i++) {
+                final int end = starts[i] + lengths[i];
+                for (int value = starts[i]; value <= end; value++) {
+                    consumer.accept(high | value);
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return this; // immutable
+        }
+
+        @Override
+        Container optimize() {
+            return this;
+        }
+
+        @Override
+        String kind() {
+            return "run";
+        }
+
+        private Container mutable() {
+            return cardinality <= ARRAY_MAX ? toBitmap().normalise() : toBitmap();
+        }
+    }
+
+    /**
+     * Builds up the runs for a run container from ascending values or ranges.
+     */
+    private static final class RunBuilder {
+
+        private char[] starts;
+        private char[] lengths;
+        private int runs;
+
+        RunBuilder(char[] starts, char[] lengths) {
+            this.starts = starts;
+            this.lengths = lengths;
+        }
+
+        void append(char value) {
+            if (runs > 0 && value == starts[runs - 1] + lengths[runs - 1] + 1) {
+                lengths[runs - 1]++;
+            } else {
+                appendRun(value, value);
+            }
+        }
+
+        void appendRun(char start, char end) {
+            if (runs == starts.length) {
+                starts = Arrays.copyOf(starts, runs * 2);
+                lengths = Arrays.copyOf(lengths, runs * 2);
+            }
+            starts[runs] = start;
+            lengths[runs] = (char) (end - start);
+            runs++;
+        }
+
+        RunContainer build() {
+            return new RunContainer(starts, lengths, runs);
+        }
+    }
+
+    /**
+     * Receives an inclusive range of values.
+     */
+    @FunctionalInterface
+    private interface RangeConsumer {
+        void accept(int start, int end);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Bitmap indexes over the slots of an {@link OffHeapOrderStore}: one {@link CompressedBitmap} per {@link Market}, per
+ * {@link Type} and per price bucket.
+ * <p>
+ * An {@link OrderQuery} is answered by ORing the bitmaps for each condition, then ANDing the conditions together and
+ * counting the bits. Only orders in a price bucket that straddles one of the query's price bounds are read from the
+ * store; everything else is bitmap operations. Pick a bucket width that matches the price bounds you query on and no
+ * orders are read at all.
+ * <p>
+ * The index is built from a snapshot of the store. Slots move when orders are removed, so rather than patching the
+ * bitmaps the index is rebuilt when a query finds the store version has moved on - it suits books that are queried a
+ * lot more often than they change.
+ * <p>
+ * The index is not thread-safe.
+ *
+ * @author gazbert
+ */
+public final class OrderBitmapIndex {
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final OffHeapOrderStore store;
+    private final long priceBucketWidth;
+
+    private final CompressedBitmap[] marketBitmaps = new CompressedBitmap[MARKETS.length];
+    private final CompressedBitmap[] typeBitmaps = new CompressedBitmap[TYPES.length];
+    private final TreeMap<Long, CompressedBitmap> priceBucketBitmaps = new TreeMap<>();
+
+    private long indexedVersion = -1;
+
+    /**
+     * Creates the index. It is built on first use.
+     *
+     * @param store            the store to index.
+     * @param priceBucketWidth the width of each price bucket.
+     */
+    public OrderBitmapIndex(OffHeapOrderStore store, BigDecimal priceBucketWidth) {
+        this.store = store;
+        this.priceBucketWidth = FixedPoint.toFixedPoint(priceBucketWidth);
+        if (this.priceBucketWidth <= 0) {
+            throw new IllegalArgumentException("Price bucket width must be positive: " + priceBucketWidth);
+        }
+    }
+
+    /**
+     * Returns the number of orders matching a query.
+     *
+     * @param query the query.
+     * @return the number of matching orders.
+     */
+    public int count(OrderQuery query) {
+        refresh();
+        final List<CompressedBitmap> conditions = conditions(query);
+        if (conditions.isEmpty()) {
+            return store.size();
+        }
+        if (conditions.size() == 1) {
+            return conditions.get(0).cardinality();
+        }
+        CompressedBitmap result = conditions.get(0);
+        for (int i = 1; i < conditions.size() - 1; i++) {
+            result = result.and(conditions.get(i));
+        }
+        return result.andCardinality(conditions.get(conditions.size() - 1)); // don't build the last intersection
+    }
+
+    /**
+     * Returns the slots of the orders matching a query.
+     *
+     * @param query the query.
+     * @return a new bitmap of matching slots.
+     */
+    public CompressedBitmap matching(OrderQuery query) {
+        refresh();
+        final List<CompressedBitmap> conditions = conditions(query);
+        if (conditions.isEmpty()) {
+            final CompressedBitmap all = new CompressedBitmap();
+            all.addRange(0, store.size());
+            return all.runOptimize();
+        }
+        CompressedBitmap result = conditions.get(0);
+        for (int i = 1; i < conditions.size(); i++) {
+            result = result.and(conditions.get(i));
+        }
+        return conditions.size() == 1 ? result.or(new CompressedBitmap()) : result; // always hand back a copy
+    }
+
+    /**
+     * Rebuilds the index if the store has changed since it was built.
+     */
+    public void refresh() {
+        if (indexedVersion == store.getVersion()) {
+            return;
+        }
+        for (int i = 0; i < marketBitmaps.length; i++) {
+            marketBitmaps[i] = new CompressedBitmap();
+        }
+        for (int i = 0; i < typeBitmaps.length; i++) {
+            typeBitmaps[i] = new CompressedBitmap();
+        }
+        priceBucketBitmaps.clear();
+
+        for (int slot = 0; slot < store.size(); slot++) {
+            marketBitmaps[store.getMarketId(slot).ordinal()].add(slot);
+            typeBitmaps[store.getType(slot).ordinal()].add(slot);
+            priceBucketBitmaps.computeIfAbsent(priceBucketOf(store.getPrice(slot)), b -> new CompressedBitmap())
+                    .add(slot);
+        }
+
+        for (final CompressedBitmap bitmap : marketBitmaps) {
+            bitmap.runOptimize();
+        }
+        for (final CompressedBitmap bitmap : typeBitmaps) {
+            bitmap.runOptimize();
+        }
+        priceBucketBitmaps.values().forEach(CompressedBitmap::runOptimize);
+        indexedVersion = store.getVersion();
+    }
+
+    /**
+     * @return true if the store has changed since the index was built.
+     */
+    public boolean isStale() {
+        return indexedVersion != store.getVersion();
+    }
+
+    /**
+     * @param market the market.
+     * @return the slots of the orders in the market - don't modify it.
+     */
+    public CompressedBitmap getMarketBitmap(Market market) {
+        refresh();
+        return marketBitmaps[market.ordinal()];
+    }
+
+    /**
+     * @param type the type.
+     * @return the slots of the orders of the type - don't modify it.
+     */
+    public CompressedBitmap getTypeBitmap(Type type) {
+        refresh();
+        return typeBitmaps[type.ordinal()];
+    }
+
+    /**
+     * Returns the price bucket a price falls in. Bucket n holds prices from n * width, inclusive, to (n + 1) * width,
+     * exclusive.
+     *
+     * @param price the fixed-point price.
+     * @return the bucket.
+     */
+    public long priceBucketOf(long price) {
+        return Math.floorDiv(price, priceBucketWidth);
+    }
+
+    /**
+     * @return the store being indexed.
+     */
+    public OffHeapOrderStore getStore() {
+        return store;
+    }
+
+    private List<CompressedBitmap> conditions(OrderQuery query) {
+        final List<CompressedBitmap> conditions = new ArrayList<>(3);
+        if (query.getMarkets() != null) {
+            CompressedBitmap markets = new CompressedBitmap();
+            for (final Market market : query.getMarkets()) {
+                markets = markets.or(marketBitmaps[market.ordinal()]);
+            }
+            conditions.add(markets);
+        }
+        if (query.getTypes() != null) {
+            CompressedBitmap types = new CompressedBitmap();
+            for (final Type type : query.getTypes()) {
+                types = types.or(typeBitmaps[type.ordinal()]);
+            }
+            conditions.add(types);
+        }
+        if (query.hasPriceRange()) {
+            conditions.add(priceRange(query.getMinPrice(), query.getMaxPrice()));
+        }
+        return conditions;
+    }
+
+    private CompressedBitmap priceRange(long minPrice, long maxPrice) {
+        CompressedBitmap prices = new CompressedBitmap();
+        if (minPrice >= maxPrice) {
+            return prices;
+        }
+        final Map<Long, CompressedBitmap> buckets =
+                priceBucketBitmaps.subMap(priceBucketOf(minPrice), true, priceBucketOf(maxPrice - 1), true);
+
+        for (final Map.Entry<Long, CompressedBitmap> bucket : buckets.entrySet()) {
+            final long bucketStart = bucket.getKey() * priceBucketWidth;
+            if (bucketStart >= minPrice && bucketStart + priceBucketWidth <= maxPrice) {
+                prices = prices.or(bucket.getValue());
+            } else {
+                // bucket straddles a bound, so check each order's price
+                final CompressedBitmap inRange = new CompressedBitmap();
+                bucket.getValue().forEach(slot -> {
+                    final long price = store.getPrice(slot);
+                    if (price >= minPrice && price < maxPrice) {
+                        inRange.add(slot);
+                    }
+                });
+                prices = prices.or(inRange);
+            }
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * A conjunctive order query: the order's market is one of a set of markets, AND its type is one of a set of types,
+ * AND its price is in a range.
+ * <p>
+ * Unlike a lambda, the conditions in a query can be seen from the outside, so as well as being run against each order
+ * like any other {@link OrderMatcher}, it can be answered from an {@link OrderBitmapIndex} without looking at the
+ * orders at all.
+ * <p>
+ * Queries are immutable; each of the methods returns a new query with the extra condition.
+ * <pre>
+ * OrderQuery.anyOrder().inMarkets(Market.USD, Market.EUR).ofType(Type.SELL).priceAtLeast(new BigDecimal("1.70"))
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class OrderQuery implements OrderMatcher {
+
+    private static final OrderQuery ANY_ORDER = new OrderQuery(null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Markets to match, null for any market. Unmodifiable, so it can be handed out.
+     */
+    private final Set<Market> markets;
+
+    /**
+     * Types to match, null for any type. Unmodifiable, so it can be handed out.
+     */
+    private final Set<Type> types;
+
+    private final long minPrice;
+    private final long maxPrice;
+
+    private OrderQuery(Set<Market> markets, Set<Type> types, long minPrice, long maxPrice) {
+        this.markets = markets;
+        this.types = types;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * @return a query that matches every order.
+     */
+    public static OrderQuery anyOrder() {
+        return ANY_ORDER;
+    }
+
+    /**
+     * @param markets the markets to match.
+     * @return a new query that only matches orders in one of the given markets.
+     */
+    public OrderQuery inMarkets(Market... markets) {
+        final Set<Market> matching = EnumSet.noneOf(Market.class);
+        matching.addAll(Arrays.asList(markets));
+        return new OrderQuery(Collections.unmodifiableSet(matching), types, minPrice, maxPrice);
+    }
+
+    /**
+     * @param types the types to match.
+     * @return a new query that only matches orders of one of the given types.
+     */
+    public OrderQuery ofType(Type... types) {
+        final Set<Type> matching = EnumSet.noneOf(Type.class);
+        matching.addAll(Arrays.asList(types));
+        return new OrderQuery(markets, Collections.unmodifiableSet(matching), minPrice, maxPrice);
+    }
+
+    /**
+     * @param price the lowest price to match, inclusive.
+     * @return a new query that only matches orders priced at or above the given price.
+     */
+    public OrderQuery priceAtLeast(BigDecimal price) {
+        return new OrderQuery(markets, types, FixedPoint.toFixedPoint(price), maxPrice);
+    }
+
+    /**
+     * @param price the price to match below, exclusive.
+     * @return a new query that only matches orders priced below the given price.
+     */
+    public OrderQuery priceBelow(BigDecimal price) {
+        return new OrderQuery(markets, types, minPrice, FixedPoint.toFixedPoint(price));
+    }
+
+    @Override
+    public boolean executeQuery(Order order) {
+        final long price = order.getFixedPointPrice();
+        return (markets == null || markets.contains(order.getMarketId()))
+                && (types == null || types.contains(order.getType()))
+                && price >= minPrice && price < maxPrice;
+    }
+
+    /**
+     * @return the markets to match, unmodifiable, or null for any market.
+     */
+    public Set<Market> getMarkets() {
+        return markets;
+    }
+
+    /**
+     * @return the types to match, unmodifiable, or null for any type.
+     */
+    public Set<Type> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return the lowest price to match as a fixed-point value, inclusive.
+     */
+    public long getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * @return the price to match below as a fixed-point value, exclusive.
+     */
+    public long getMaxPrice() {
+        return maxPrice;
+    }
+
+    /**
+     * @return true if the query has a price condition.
+     */
+    public boolean hasPriceRange() {
+        return minPrice != Long.MIN_VALUE || maxPrice != Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.PrimitiveOrderBook;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * A batch of queries compiled to run together in a single pass over the order book, returning a count per query.
+ * <p>
+ * Running 30 queries one after the other reads the whole book 30 times. A batch reads each order once, and for the
+ * {@link OrderQuery}s in it, shares the work the queries have in common:
+ * <ul>
+ * <li>Each order's market, type and fixed-point price are read once, not once per query. On heap orders that saves
+ * converting the BigDecimal price for every query.</li>
+ * <li>The market and type conditions are resolved when the batch is compiled: for each market and type combination
+ * there is a list of the queries that accept it, so per order those conditions are a single array lookup.</li>
+ * <li>Queries with the same price range share one range check per order.</li>
+ * </ul>
+ * Any other {@link OrderMatcher}s in the batch are called for each order as usual; they still gain from the single
+ * pass. Batches are immutable and thread-safe, so compile them once and reuse them.
+ * <pre>
+ * QueryBatch batch = QueryBatch.of(Arrays.asList(usdSells, eurBuysAbove170, someLambda));
+ * int[] counts = batch.count(orderBook);
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class QueryBatch {
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final int queryCount;
+
+    // distinct price ranges, [min, max)
+    private final long[] minPrices;
+    private final long[] maxPrices;
+
+    // per market/type cell: the ranges to check, and for each range the queries to count if the price is in it
+    private final int[][] cellRanges;
+    private final int[][][] cellRangeQueries;
+
+    // matchers the batch can't see into, and their query positions
+    private final OrderMatcher[] opaqueMatchers;
+    private final int[] opaqueQueries;
+
+    private QueryBatch(List<? extends OrderMatcher> queries) {
+        queryCount = queries.size();
+
+        final Map<List<Long>, Integer> rangeIds = new LinkedHashMap<>();
+        final List<List<List<Integer>>> cells = new ArrayList<>(); // cell -> range id -> queries
+        for (int cell = 0; cell < MARKETS.length * TYPES.length; cell++) {
+            cells.add(new ArrayList<>());
+        }
+        final List<OrderMatcher> opaque = new ArrayList<>();
+        final List<Integer> opaquePositions = new ArrayList<>();
+
+        for (int q = 0; q < queryCount; q++) {
+            final OrderMatcher matcher = queries.get(q);
+            if (!(matcher instanceof OrderQuery)) {
+                opaque.add(matcher);
+                opaquePositions.add(q);
+                continue;
+            }
+            final OrderQuery query = (OrderQuery) matcher;
+            final int rangeId = rangeIds.computeIfAbsent(
+                    Arrays.asList(query.getMinPrice(), query.getMaxPrice()), range -> rangeIds.size());
+            for (final Market market : MARKETS) {
+                if (query.getMarkets() != null && !query.getMarkets().contains(market)) {
+                    continue;
+                }
+                for (final Type type : TYPES) {
+                    if (query.getTypes() != null && !query.getTypes().contains(type)) {
+                        continue;
+                    }
+                    final List<List<Integer>> ranges = cells.get(cellOf(market.ordinal(), type.ordinal()));
+                    while (ranges.size() <= rangeId) {
+                        ranges.add(new ArrayList<>());
+                    }
+                    ranges.get(rangeId).add(q);
+                }
+            }
+        }
+
+        minPrices = new long[rangeIds.size()];
+        maxPrices = new long[rangeIds.size()];
+        rangeIds.forEach((range, id) -> {
+            minPrices[id] = range.get(0);
+            maxPrices[id] = range.get(1);
+        });
+
+        cellRanges = new int[cells.size()][];
+        cellRangeQueries = new int[cells.size()][][];
+        for (int cell = 0; cell < cells.size(); cell++) {
+            final List<List<Integer>> ranges = cells.get(cell);
+            final List<Integer> used = new ArrayList<>();
+            for (int rangeId = 0; rangeId < ranges.size(); rangeId++) {
+                if (!ranges.get(rangeId).isEmpty()) {
+                    used.add(rangeId);
+                }
+            }
+            cellRanges[cell] = used.stream().mapToInt(Integer::intValue).toArray();
+            cellRangeQueries[cell] = used.stream()
+                    .map(rangeId -> ranges.get(rangeId).stream().mapToInt(Integer::intValue).toArray())
+                    .toArray(int[][]::new);
+        }
+
+        opaqueMatchers = opaque.toArray(new OrderMatcher[0]);
+        opaqueQueries = opaquePositions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compiles a batch of queries.
+     *
+     * @param queries the queries; {@link OrderQuery}s share evaluation, anything else is called per order.
+     * @return the batch.
+     */
+    public static QueryBatch of(List<? extends OrderMatcher> queries) {
+        return new QueryBatch(queries);
+    }
+
+    /**
+     * Counts the orders matching each query, in one pass over the book. If the book is a {@link PrimitiveOrderBook},
+     * e.g. an off-heap store, and every query is an {@link OrderQuery}, the fields are read as primitives.
+     *
+     * @param orderBook the order book.
+     * @return the number of matched orders for each query, in the same order as the queries.
+     */
+    public int[] count(Iterable<Order> orderBook) {
+        final int[] counts = new int[queryCount];
+        if (opaqueMatchers.length == 0 && orderBook instanceof PrimitiveOrderBook) {
+            final PrimitiveOrderBook rows = (PrimitiveOrderBook) orderBook;
+            final int size = rows.size();
+            for (int row = 0; row < size; row++) {
+                countQueries(cellOf(rows.getMarketOrdinal(row), rows.getTypeOrdinal(row)), rows.getPrice(row),
+                        counts);
+            }
+            return counts;
+        }
+        for (final Order order : orderBook) {
+            countQueries(cellOf(order.getMarketId().ordinal(), order.getType().ordinal()), order.getFixedPointPrice(),
+                    counts);
+            for (int i = 0; i < opaqueMatchers.length; i++) {
+                if (opaqueMatchers[i].executeQuery(order)) {
+                    counts[opaqueQueries[i]]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of queries in the batch.
+     */
+    public int size() {
+        return queryCount;
+    }
+
+    /**
+     * @return the number of distinct price ranges checked per order for the {@link OrderQuery}s in the batch.
+     */
+    public int getDistinctPriceRanges() {
+        return minPrices.length;
+    }
+
+    private void countQueries(int cell, long price, int[] counts) {
+        final int[] ranges = cellRanges[cell];
+        for (int i = 0; i < ranges.length; i++) {
+            final int range = ranges[i];
+            if (price >= minPrices[range] && price < maxPrices[range]) {
+                for (final int query : cellRangeQueries[cell][i]) {
+                    counts[query]++;
+                }
+            }
+        }
+    }
+
+    private static int cellOf(int market, int type) {
+        return market * TYPES.length + type;
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * <h2>Bitmap Indexes</h2>
+ * 
+ * Compressed bitmap indexes over order book slots. See the {@link TestOrderBitmapIndexUsage} unit test class for usage.
+ * <p>
+ * Most order queries are ANDs of a few low cardinality conditions - market, type, price band. With a bitmap per
+ * condition value, a query like that becomes a handful of bitmap ANDs and ORs followed by a population count, and never
+ * has to look at the orders themselves.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.index;
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waiting on a {@link MappedQueue} passes the time: spin at first for the lowest latency, then yield so
+ * the other side can run if there are no spare cores, then park briefly so an idle queue doesn't burn a core.
+ *
+ * @author gazbert
+ */
+final class Backoff {
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 1_000;
+    private static final long PARK_NANOS = 50_000;
+
+    private int idleCount;
+
+    /**
+     * Waits a little; call each time there was nothing to do.
+     */
+    void idle() {
+        if (idleCount < SPINS) {
+            idleCount++;
+        } else if (idleCount < SPINS + YIELDS) {
+            idleCount++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Starts spinning again; call after doing some work.
+     */
+    void reset() {
+        idleCount = 0;
+    }
+}
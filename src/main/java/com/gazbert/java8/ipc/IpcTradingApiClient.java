@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.ipc.MappedQueue.Producers;
+import com.gazbert.java8.net.TradingProtocol;
+
+/**
+ * A {@link TradingApi} client for an {@link IpcTradingEngine} in another process on the same machine.
+ * <p>
+ * Each call writes a {@link TradingProtocol} request straight into the engine's shared request queue, then spins on
+ * this client's own response queue until the answer arrives - no sockets, no system calls, no garbage on the request
+ * path. Both queues are memory-mapped files in a directory the client and engine agree on. A request the engine
+ * answers with a {@link TradingProtocol#ERROR} throws an {@link IllegalStateException} carrying the engine's message.
+ * <p>
+ * Each call waits at most <code>responseTimeoutMillis</code>, counting any wait for room on the request queue, then
+ * throws an {@link UncheckedIOException}. Its response is skipped if it turns up later. So that a response meant for
+ * an earlier connection with the same id is never taken for one of ours, connecting empties the response queue and
+ * tags this session's correlation ids with a random session number.
+ * <p>
+ * A client is not thread-safe: its response queue has a single consumer. Give each strategy thread a client with its
+ * own id.
+ * <p>
+ * A matcher can't be sent to the engine, so {@link #cancelMatching(com.gazbert.java8.lambda.OrderMatcher)} is the
+ * interface default: it fetches each market's open orders and cancels the matches one request at a time.
+ *
+ * @author gazbert
+ */
+public final class IpcTradingApiClient implements TradingApi {
+
+    /**
+     * Default response queue capacity: 1MB.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * Default time a call waits for its response: 5 seconds.
+     */
+    public static final long DEFAULT_RESPONSE_TIMEOUT_MILLIS = 5_000;
+
+    private static final int MAX_CLIENT_ID = 0xffff;
+    private static final int MAX_SESSION = 0xffff;
+
+    private final MappedQueue requests;
+    private final MappedQueue responses;
+    private final ByteBuffer request = ByteBuffer.allocateDirect(TradingProtocol.ADD_ORDER_REQUEST_SIZE);
+    private final Backoff backoff = new Backoff();
+    private final long firstCorrelationId;
+    private final long responseTimeoutMillis;
+
+    private int sequence;
+    private long correlationId;
+    private Function<ByteBuffer, ?> decoder;
+    private Object result;
+    private String error;
+    private boolean answered;
+
+    private IpcTradingApiClient(MappedQueue requests, MappedQueue responses, int clientId,
+                                long responseTimeoutMillis) {
+        this.requests = requests;
+        this.responses = responses;
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        firstCorrelationId = IpcTradingEngine.firstCorrelationId(clientId,
+                ThreadLocalRandom.current().nextInt(MAX_SESSION + 1));
+        responses.poll(stale -> { }, Integer.MAX_VALUE); // answers to an earlier connection with this id
+    }
+
+    /**
+     * Connects to an engine, waiting {@link #DEFAULT_RESPONSE_TIMEOUT_MILLIS} for each response.
+     *
+     * @param directory the directory holding the engine's queues.
+     * @param clientId  this client's id, from 0 to 65535, unique among the engine's clients.
+     * @return the client.
+     * @throws IOException if the queues can't be mapped.
+     */
+    public static IpcTradingApiClient connect(Path directory, int clientId) throws IOException {
+        return connect(directory, clientId, DEFAULT_RESPONSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Connects to an engine, creating this client's response queue and, if the engine hasn't started yet, the
+     * request queue.
+     *
+     * @param directory             the directory holding the engine's queues.
+     * @param clientId              this client's id, from 0 to 65535, unique among the engine's clients.
+     * @param responseTimeoutMillis how long a call waits for its response.
+     * @return the client.
+     * @throws IOException if the queues can't be mapped.
+     */
+    public static IpcTradingApiClient connect(Path directory, int clientId, long responseTimeoutMillis)
+            throws IOException {
+        if (clientId < 0 || clientId > MAX_CLIENT_ID) {
+            throw new IllegalArgumentException("Client id must be between 0 and " + MAX_CLIENT_ID + ": " + clientId);
+        }
+        if (responseTimeoutMillis < 1) {
+            throw new IllegalArgumentException("responseTimeoutMillis must be positive: " + responseTimeoutMillis);
+        }
+        final MappedQueue responses = MappedQueue.map(directory.resolve(IpcTradingEngine.responseQueueFile(clientId)),
+                DEFAULT_CAPACITY, Producers.SINGLE);
+        final MappedQueue requests = MappedQueue.map(directory.resolve(IpcTradingEngine.REQUEST_QUEUE),
+                IpcTradingEngine.DEFAULT_CAPACITY, Producers.MULTIPLE);
+        return new IpcTradingApiClient(requests, responses, clientId, responseTimeoutMillis);
+    }
+
+    @Override
+    public boolean addOrder(Order order) {
+        request.clear();
+        TradingProtocol.putAddOrder(request, nextCorrelationId(), order);
+        return call(TradingProtocol::readBoolean);
+    }
+
+    @Override
+    public boolean cancelOrder(UUID orderId) {
+        request.clear();
+        TradingProtocol.putCancelOrder(request, nextCorrelationId(), orderId.getMostSignificantBits(),
+                orderId.getLeastSignificantBits());
+        return call(TradingProtocol::readBoolean);
+    }
+
+    @Override
+    public List<Order> getOpenOrders(int marketId) {
+        request.clear();
+        TradingProtocol.putMarketRequest(request, TradingProtocol.GET_OPEN_ORDERS, nextCorrelationId(), marketId);
+        return call(TradingProtocol::readOrders);
+    }
+
+    @Override
+    public int cancelAll(int marketId) {
+        request.clear();
+        TradingProtocol.putMarketRequest(request, TradingProtocol.CANCEL_ALL, nextCorrelationId(), marketId);
+        return call(TradingProtocol::readInt);
+    }
+
+    @Override
+    public String getImplName() {
+        return "Shared Memory IPC API Impl";
+    }
+
+    private long nextCorrelationId() {
+        correlationId = firstCorrelationId | ++sequence & 0xffffffffL;
+        return correlationId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T call(Function<ByteBuffer, T> responseDecoder) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis);
+        request.flip();
+        backoff.reset();
+        while (!requests.offer(request)) {
+            checkDeadline(deadline);
+            backoff.idle(); // engine is behind
+        }
+        decoder = responseDecoder;
+        answered = false;
+        backoff.reset();
+        while (!answered) {
+            if (responses.poll(this::onResponse, 1) == 0) {
+                checkDeadline(deadline);
+                backoff.idle();
+            }
+        }
+        final Object answer = result;
+        final String failure = error;
+        result = null;
+        error = null;
+        if (failure != null) {
+            throw new IllegalStateException("Request " + Long.toHexString(correlationId) + " failed in the engine: "
+                    + failure);
+        }
+        return (T) answer;
+    }
+
+    private void checkDeadline(long deadline) {
+        if (System.nanoTime() - deadline >= 0) {
+            throw new UncheckedIOException(new InterruptedIOException("No response to request "
+                    + Long.toHexString(correlationId) + " within " + responseTimeoutMillis + "ms"));
+        }
+    }
+
+    private void onResponse(ByteBuffer message) {
+        try {
+            TradingProtocol.readFrames(message, (command, responseId, payload) -> {
+                if (responseId != correlationId) {
+                    return; // a late answer to a call that timed out
+                }
+                if (command == TradingProtocol.ERROR) {
+                    error = TradingProtocol.readError(payload);
+                } else {
+                    result = decoder.apply(payload);
+                }
+                answered = true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.net.ProtocolException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.ipc.MappedQueue.Producers;
+import com.gazbert.java8.net.TradingProtocol;
+
+/**
+ * The engine side of {@link TradingApi} over shared memory: takes {@link TradingProtocol} requests off a
+ * multi-producer {@link MappedQueue}, runs them against an API and puts each response on the queue of the client that
+ * sent it.
+ * <p>
+ * All the queues live in one directory. Every client process offers to the shared {@link #REQUEST_QUEUE}, and polls a
+ * single-producer response queue of its own, named by {@link #responseQueueFile(int)}. The top 16 bits of each
+ * request's correlation id carry the client id, so the engine knows where to reply, and the next 16 a session tag the
+ * client picks each time it connects - see {@link IpcTradingApiClient}.
+ * <p>
+ * Call {@link #doWork(int)} from a thread of your own, e.g. one that also runs other engine duties, or
+ * {@link #start()} a dedicated thread. The API is only ever called from that thread.
+ * <p>
+ * Every request gets an answer if its client is still there. A request that is malformed or that the API throws on
+ * gets a {@link TradingProtocol#errorResponse(long, String) error response}, and so does one whose response is too big
+ * for the client's queue, such as the open orders of a huge market; use the network client for those. The client
+ * throws on an error response. If a client's queue stays full for longer than the response timeout, e.g. because the
+ * client has stopped polling, the response is dropped and logged rather than holding up every other client.
+ *
+ * @author gazbert
+ */
+public final class IpcTradingEngine implements Closeable {
+
+    /**
+     * File name of the shared request queue.
+     */
+    public static final String REQUEST_QUEUE = "requests.queue";
+
+    /**
+     * Default request queue capacity: 1MB.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * Default time to wait for room on a client's response queue before dropping the response: 1 second.
+     */
+    public static final long DEFAULT_RESPONSE_TIMEOUT_MILLIS = 1_000;
+
+    private static final Logger LOG = Logger.getLogger(IpcTradingEngine.class.getName());
+    private static final int CLIENT_ID_SHIFT = 48;
+    private static final int SESSION_SHIFT = 32;
+
+    private final TradingApi tradingApi;
+    private final Path directory;
+    private final MappedQueue requests;
+    private final Map<Integer, MappedQueue> responseQueues = new HashMap<>();
+    private final Backoff backoff = new Backoff();
+    private final Backoff responseBackoff = new Backoff();
+    private final long responseTimeoutNanos;
+    private final AtomicLong droppedResponses = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Creates the engine, creating the request queue if no client has yet.
+     *
+     * @param tradingApi the API to run requests against.
+     * @param directory  the directory holding the queues.
+     * @throws IOException if the request queue can't be mapped.
+     */
+    public IpcTradingEngine(TradingApi tradingApi, Path directory) throws IOException {
+        this(tradingApi, directory, DEFAULT_RESPONSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates the engine, creating the request queue if no client has yet.
+     *
+     * @param tradingApi            the API to run requests against.
+     * @param directory             the directory holding the queues.
+     * @param responseTimeoutMillis how long to wait for room on a client's response queue before dropping the
+     *                              response.
+     * @throws IOException if the request queue can't be mapped.
+     */
+    public IpcTradingEngine(TradingApi tradingApi, Path directory, long responseTimeoutMillis) throws IOException {
+        if (responseTimeoutMillis < 0) {
+            throw new IllegalArgumentException("responseTimeoutMillis must not be negative: " + responseTimeoutMillis);
+        }
+        this.tradingApi = tradingApi;
+        this.directory = directory;
+        responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis);
+        requests = MappedQueue.map(directory.resolve(REQUEST_QUEUE), DEFAULT_CAPACITY, Producers.MULTIPLE);
+    }
+
+    /**
+     * @param clientId the client id.
+     * @return the file name of the client's response queue.
+     */
+    public static String responseQueueFile(int clientId) {
+        return "responses-" + clientId + ".queue";
+    }
+
+    /**
+     * @param correlationId a request's correlation id.
+     * @return the id of the client that sent the request.
+     */
+    static int clientId(long correlationId) {
+        return (int) (correlationId >>> CLIENT_ID_SHIFT);
+    }
+
+    /**
+     * @param clientId a client id, from 0 to 65535.
+     * @return the first correlation id for the client in session 0.
+     */
+    static long firstCorrelationId(int clientId) {
+        return firstCorrelationId(clientId, 0);
+    }
+
+    /**
+     * @param clientId a client id, from 0 to 65535.
+     * @param session  a session tag, from 0 to 65535.
+     * @return the first correlation id for the client in the session; the low 32 bits are a sequence number.
+     */
+    static long firstCorrelationId(int clientId, int session) {
+        return (long) clientId << CLIENT_ID_SHIFT | (long) session << SESSION_SHIFT;
+    }
+
+    /**
+     * Runs queued requests.
+     *
+     * @param limit the most requests to run.
+     * @return number of requests run.
+     */
+    public int doWork(int limit) {
+        return requests.poll(this::onRequest, limit);
+    }
+
+    /**
+     * Starts a thread that runs requests until {@link #close()}.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        running = true;
+        thread = new Thread(() -> {
+            while (running) {
+                if (doWork(64) == 0) {
+                    backoff.idle();
+                } else {
+                    backoff.reset();
+                }
+            }
+        }, "ipc-trading-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread started by {@link #start()}.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return number of responses dropped because the client's queue stayed full, or it had no queue.
+     */
+    public long getDroppedResponses() {
+        return droppedResponses.get();
+    }
+
+    private void onRequest(ByteBuffer message) {
+        try {
+            TradingProtocol.readFrames(message, this::onFrame);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Dropped a malformed request message", e);
+        }
+    }
+
+    private void onFrame(byte command, long correlationId, ByteBuffer payload) {
+        ByteBuffer response;
+        try {
+            response = TradingProtocol.execute(tradingApi, command, correlationId, payload);
+        } catch (ProtocolException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Request " + Long.toHexString(correlationId) + " failed", e);
+            response = TradingProtocol.errorResponse(correlationId, e.toString());
+        }
+
+        final MappedQueue responses;
+        try {
+            responses = responseQueue(clientId(correlationId));
+        } catch (IOException e) {
+            dropResponse(correlationId, "the client has no response queue");
+            return;
+        }
+        if (response.remaining() > responses.getMaxMessageLength()) {
+            response = TradingProtocol.errorResponse(correlationId, "Response of " + response.remaining()
+                    + " bytes is bigger than the client's response queue takes: " + responses.getMaxMessageLength());
+        }
+
+        responseBackoff.reset();
+        final long deadline = System.nanoTime() + responseTimeoutNanos;
+        while (!responses.offer(response)) {
+            if (System.nanoTime() - deadline >= 0) {
+                dropResponse(correlationId, "the client's response queue stayed full");
+                return;
+            }
+            responseBackoff.idle(); // wait for the client to catch up
+        }
+    }
+
+    private void dropResponse(long correlationId, String reason) {
+        droppedResponses.incrementAndGet();
+        LOG.warning("Dropped the response to request " + Long.toHexString(correlationId) + ": " + reason);
+    }
+
+    private MappedQueue responseQueue(int clientId) throws IOException {
+        MappedQueue responses = responseQueues.get(clientId);
+        if (responses == null) {
+            responses = MappedQueue.map(directory.resolve(responseQueueFile(clientId)));
+            responseQueues.put(clientId, responses);
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import sun.misc.Unsafe;
+
+/**
+ * Plain, ordered and atomic access to memory by address, for {@link MappedQueue}.
+ * <p>
+ * Java 8 has no public API for atomic or ordered access to mapped memory, so this is the one class that uses
+ * <code>sun.misc.Unsafe</code>, which works on HotSpot 8 through 17. Everything else goes through these methods, so a
+ * move to VarHandles or the foreign memory API only has to change this class.
+ * <p>
+ * Nothing is bounds checked: callers must only pass addresses inside memory they have mapped and are keeping mapped.
+ *
+ * @author gazbert
+ */
+final class MappedMemory {
+
+    private static final Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+    private static final long BYTE_ARRAY_OFFSET;
+
+    static {
+        try {
+            final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            UNSAFE = (Unsafe) field.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            BYTE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MappedMemory() {
+    }
+
+    /**
+     * @param buffer a direct buffer.
+     * @return the address of the buffer's first byte.
+     */
+    static long addressOf(ByteBuffer buffer) {
+        return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    }
+
+    static int getInt(long address) {
+        return UNSAFE.getInt(address);
+    }
+
+    static void putInt(long address, int value) {
+        UNSAFE.putInt(address, value);
+    }
+
+    static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, address);
+    }
+
+    /**
+     * A release store: earlier writes are visible to any thread that sees this one.
+     *
+     * @param address the address.
+     * @param value   the value to store.
+     */
+    static void putIntOrdered(long address, int value) {
+        UNSAFE.putOrderedInt(null, address, value);
+    }
+
+    static boolean compareAndSwapInt(long address, int expected, int value) {
+        return UNSAFE.compareAndSwapInt(null, address, expected, value);
+    }
+
+    static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    /**
+     * A release store: earlier writes are visible to any thread that sees this one.
+     *
+     * @param address the address.
+     * @param value   the value to store.
+     */
+    static void putLongOrdered(long address, long value) {
+        UNSAFE.putOrderedLong(null, address, value);
+    }
+
+    static boolean compareAndSwapLong(long address, long expected, long value) {
+        return UNSAFE.compareAndSwapLong(null, address, expected, value);
+    }
+
+    /**
+     * Copies the bytes from a buffer's position to its limit to an address. The buffer's position is not moved.
+     *
+     * @param from    the buffer, direct or heap.
+     * @param address where to copy to.
+     */
+    static void copy(ByteBuffer from, long address) {
+        if (from.isDirect()) {
+            UNSAFE.copyMemory(addressOf(from) + from.position(), address, from.remaining());
+        } else {
+            UNSAFE.copyMemory(from.array(), BYTE_ARRAY_OFFSET + from.arrayOffset() + from.position(), null, address,
+                    from.remaining());
+        }
+    }
+
+    static void zero(long address, int length) {
+        UNSAFE.setMemory(address, length, (byte) 0);
+    }
+}
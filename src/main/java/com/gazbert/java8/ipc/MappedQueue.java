@@ -0,0 +1,286 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free queue of variable-length messages in a memory-mapped file, for passing messages between threads or
+ * JVMs on the same machine without going through the network stack.
+ * <p>
+ * The file holds a header followed by a ring buffer of <code>capacity</code> bytes. Producers claim space by moving
+ * the tail on, write their message, then publish it by writing its length into the record header last, with a
+ * release store. The consumer spots a message by its non-zero length, hands it to the handler, zeroes the record
+ * and moves the head on. The head and tail live on cache lines of their own so producers and the consumer don't
+ * slow each other down. Nothing blocks: {@link #offer(ByteBuffer)} returns false when the queue is full, and
+ * {@link #poll(Consumer, int)} returns 0 when it is empty.
+ * <p>
+ * With {@link Producers#SINGLE} the producer just stores the new tail. With {@link Producers#MULTIPLE} producers
+ * claim space with a compare-and-swap on the tail, so any number of threads, in any number of processes, can offer
+ * at once. There must only ever be one consumer.
+ * <p>
+ * The head, tail and record headers need atomic and ordered access, which Java 8 only offers through
+ * <code>sun.misc.Unsafe</code>; all of that is kept in {@link MappedMemory}.
+ *
+ * @author gazbert
+ */
+public final class MappedQueue {
+
+    /**
+     * Who may offer messages.
+     */
+    public enum Producers {
+        SINGLE,
+        MULTIPLE
+    }
+
+    /**
+     * Size of the header in front of each message.
+     */
+    public static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int ALIGNMENT = 8;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAGIC = 0x4d51_5545;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int PRODUCERS_OFFSET = 8;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEAD_OFFSET = 256;
+    private static final int HEADER_SIZE = 384;
+
+    private final MappedByteBuffer buffer; // keeps the mapping alive
+    private final ByteBuffer reader;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+    private final int maxMessageLength;
+    private final Producers producers;
+
+    private long cachedHead;
+    private long head;
+
+    private MappedQueue(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        reader = buffer.duplicate();
+        address = MappedMemory.addressOf(buffer);
+        capacity = MappedMemory.getInt(address + CAPACITY_OFFSET);
+        mask = capacity - 1;
+        maxMessageLength = capacity / 2 - RECORD_HEADER_SIZE;
+        producers = Producers.values()[MappedMemory.getInt(address + PRODUCERS_OFFSET)];
+        head = MappedMemory.getLongVolatile(address + HEAD_OFFSET);
+        cachedHead = head;
+    }
+
+    /**
+     * Maps a queue file, creating and initialising it if it doesn't exist yet. Every process using the queue maps the
+     * same file.
+     *
+     * @param file      the file to map.
+     * @param capacity  size of the ring buffer in bytes; a power of 2, at least 1024.
+     * @param producers whether more than one producer may offer messages.
+     * @return the queue.
+     * @throws IOException if the file can't be mapped, or already holds a queue with a different capacity or
+     *                     producers.
+     */
+    public static MappedQueue map(Path file, int capacity, Producers producers) throws IOException {
+        if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2, at least " + MIN_CAPACITY + ": "
+                    + capacity);
+        }
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            final long address = MappedMemory.addressOf(buffer);
+            if (MappedMemory.getIntVolatile(address + MAGIC_OFFSET) != MAGIC) {
+                MappedMemory.putInt(address + CAPACITY_OFFSET, capacity);
+                MappedMemory.putInt(address + PRODUCERS_OFFSET, producers.ordinal());
+                MappedMemory.compareAndSwapInt(address + MAGIC_OFFSET, 0, MAGIC);
+            }
+            final int existingCapacity = MappedMemory.getInt(address + CAPACITY_OFFSET);
+            if (existingCapacity != capacity) {
+                throw new IOException(file + " holds a queue with capacity " + existingCapacity + ", not " + capacity);
+            }
+            final int existingProducers = MappedMemory.getInt(address + PRODUCERS_OFFSET);
+            if (existingProducers != producers.ordinal()) {
+                throw new IOException(file + " holds a queue for " + Producers.values()[existingProducers]
+                        + " producers, not " + producers);
+            }
+            return new MappedQueue(buffer);
+        }
+    }
+
+    /**
+     * Maps an existing queue file, using the capacity and producers it was created with.
+     *
+     * @param file the file to map.
+     * @return the queue.
+     * @throws IOException if the file can't be mapped or doesn't hold a queue.
+     */
+    public static MappedQueue map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " doesn't hold a queue");
+            }
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            final long headerAddress = MappedMemory.addressOf(header);
+            if (MappedMemory.getIntVolatile(headerAddress + MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(file + " doesn't hold a queue");
+            }
+            final int capacity = MappedMemory.getInt(headerAddress + CAPACITY_OFFSET);
+            return new MappedQueue(channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity));
+        }
+    }
+
+    /**
+     * Offers a message. The bytes from the buffer's position to its limit are copied into the queue, and the
+     * position is moved to the limit.
+     *
+     * @param message the message; at most {@link #getMaxMessageLength()} bytes.
+     * @return true if the message was queued, false if the queue is full.
+     */
+    public boolean offer(ByteBuffer message) {
+        final int length = message.remaining();
+        if (length == 0 || length > maxMessageLength) {
+            throw new IllegalArgumentException("Message length must be between 1 and " + maxMessageLength + ": "
+                    + length);
+        }
+        final int recordLength = align(RECORD_HEADER_SIZE + length);
+        final long tailAddress = address + TAIL_OFFSET;
+
+        long tail;
+        int index;
+        int padding;
+        do {
+            tail = MappedMemory.getLongVolatile(tailAddress);
+            index = (int) tail & mask;
+            padding = index + recordLength > capacity ? capacity - index : 0; // records don't wrap
+            if (!hasSpace(tail, padding + recordLength)) {
+                return false;
+            }
+            if (producers == Producers.SINGLE) {
+                MappedMemory.putLongOrdered(tailAddress, tail + padding + recordLength);
+                break;
+            }
+        } while (!MappedMemory.compareAndSwapLong(tailAddress, tail, tail + padding + recordLength));
+
+        if (padding > 0) {
+            MappedMemory.putIntOrdered(recordAddress(index), -padding);
+            index = 0;
+        }
+        final long recordAddress = recordAddress(index);
+        MappedMemory.copy(message, recordAddress + RECORD_HEADER_SIZE);
+        MappedMemory.putIntOrdered(recordAddress, length); // publishes the message
+        message.position(message.limit());
+        return true;
+    }
+
+    /**
+     * Hands queued messages to a handler, oldest first. Only one thread, in one process, may poll a queue.
+     *
+     * @param handler given each message, from position to limit; the buffer is only valid during the call.
+     * @param limit   the most messages to hand over.
+     * @return the number of messages handed over.
+     */
+    public int poll(Consumer<ByteBuffer> handler, int limit) {
+        int count = 0;
+        while (count < limit) {
+            final int index = (int) head & mask;
+            final long recordAddress = recordAddress(index);
+            final int length = MappedMemory.getIntVolatile(recordAddress);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0) {
+                consume(recordAddress, -length);
+                continue;
+            }
+            try {
+                final int start = HEADER_SIZE + index + RECORD_HEADER_SIZE;
+                reader.limit(start + length).position(start);
+                handler.accept(reader);
+            } finally {
+                consume(recordAddress, align(RECORD_HEADER_SIZE + length));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return size of the ring buffer in bytes.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the longest message that can be offered.
+     */
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public Producers getProducers() {
+        return producers;
+    }
+
+    /**
+     * @return bytes queued and not yet consumed, including record headers; only a snapshot while others are busy.
+     */
+    public long getQueuedBytes() {
+        final long queuedHead = MappedMemory.getLongVolatile(address + HEAD_OFFSET);
+        return MappedMemory.getLongVolatile(address + TAIL_OFFSET) - queuedHead;
+    }
+
+    private boolean hasSpace(long tail, int required) {
+        if (producers == Producers.SINGLE && tail + required - cachedHead <= capacity) {
+            return true;
+        }
+        final long currentHead = MappedMemory.getLongVolatile(address + HEAD_OFFSET);
+        cachedHead = currentHead;
+        return tail + required - currentHead <= capacity;
+    }
+
+    private void consume(long recordAddress, int recordLength) {
+        MappedMemory.zero(recordAddress, recordLength);
+        head += recordLength;
+        MappedMemory.putLongOrdered(address + HEAD_OFFSET, head);
+    }
+
+    private long recordAddress(int index) {
+        return address + HEADER_SIZE + index;
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
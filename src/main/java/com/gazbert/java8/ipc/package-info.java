@@ -0,0 +1,11 @@
+/**
+ * <h2>Shared Memory IPC</h2>
+ * 
+ * A lock-free, memory-mapped {@link com.gazbert.java8.ipc.MappedQueue} for messages between JVMs on the same machine,
+ * with single or multiple producers, and the {@link com.gazbert.java8.defaultmethods.TradingApi} carried over it
+ * between {@link com.gazbert.java8.ipc.IpcTradingApiClient}s and an {@link com.gazbert.java8.ipc.IpcTradingEngine}.
+ * See the {@link TestMappedQueueUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.ipc;
@@ -24,11 +24,15 @@
 package com.gazbert.java8.lambda;
 
 import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.OrderBookSpliterators;
+import com.gazbert.java8.common.PrimitiveOrderBook;
+import com.gazbert.java8.fees.FeeSchedule;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * Utility class for analysing an order book.
@@ -50,7 +54,7 @@ public final class OrderBookAnalyser {
      * @param orderMatcher used to match orders.
      * @return the number of matched orders.
      */
-    public static int getNumberOfMatchedOrders(List<Order> orderBook, OrderMatcher orderMatcher) {
+    public static int getNumberOfMatchedOrders(Iterable<Order> orderBook, OrderMatcher orderMatcher) {
         int orderCount = 0;
         for (final Order order : orderBook) {
             if (orderMatcher.executeQuery(order)) {
@@ -60,6 +64,134 @@ public final class OrderBookAnalyser {
         return orderCount;
     }
 
+    /**
+     * Returns the number of matched orders for a given query, scanning the book with a parallel stream.
+     * <p>
+     * Only worth it for big books or expensive matchers - see {@link ExecutionPlan#PARALLEL}. The matcher must be
+     * safe to call from many threads at once.
+     *
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public static int getNumberOfMatchedOrdersInParallel(Iterable<Order> orderBook, OrderMatcher orderMatcher) {
+        return (int) OrderBookSpliterators.stream(orderBook, true)
+                .filter(orderMatcher::executeQuery)
+                .count();
+    }
+
+    /**
+     * Returns the number of matched orders for each of a batch of queries, in one pass over the book. Each order is
+     * read once for all the queries, instead of once per query.
+     * <p>
+     * For batches of {@link com.gazbert.java8.index.OrderQuery}s, a {@link com.gazbert.java8.index.QueryBatch} also
+     * shares the evaluation of the conditions the queries have in common.
+     *
+     * @param orderBook     the order book.
+     * @param orderMatchers the queries.
+     * @return the number of matched orders for each query, in the same order as the queries.
+     */
+    public static int[] getNumberOfMatchedOrders(
+            Iterable<Order> orderBook, List<? extends OrderMatcher> orderMatchers) {
+        final OrderMatcher[] matchers = orderMatchers.toArray(new OrderMatcher[0]);
+        final int[] orderCounts = new int[matchers.length];
+        for (final Order order : orderBook) {
+            for (int i = 0; i < matchers.length; i++) {
+                if (matchers[i].executeQuery(order)) {
+                    orderCounts[i]++;
+                }
+            }
+        }
+        return orderCounts;
+    }
+
+    /**
+     * Returns the number of matched orders for each of a batch of primitive queries, in one pass over primitive
+     * storage. Each row's fields are read once for all the queries.
+     *
+     * @param orderBook     the order book.
+     * @param orderMatchers the queries.
+     * @return the number of matched orders for each query, in the same order as the queries.
+     */
+    public static int[] getNumberOfMatchedOrders(
+            PrimitiveOrderBook orderBook, List<? extends PrimitiveOrderMatcher> orderMatchers) {
+        final PrimitiveOrderMatcher[] matchers = orderMatchers.toArray(new PrimitiveOrderMatcher[0]);
+        final int[] orderCounts = new int[matchers.length];
+        final int size = orderBook.size();
+        for (int row = 0; row < size; row++) {
+            final int market = orderBook.getMarketOrdinal(row);
+            final int type = orderBook.getTypeOrdinal(row);
+            final long amount = orderBook.getAmount(row);
+            final long price = orderBook.getPrice(row);
+            final long fee = orderBook.getFee(row);
+            for (int i = 0; i < matchers.length; i++) {
+                if (matchers[i].executeQuery(market, type, amount, price, fee)) {
+                    orderCounts[i]++;
+                }
+            }
+        }
+        return orderCounts;
+    }
+
+    /**
+     * Returns the number of matched orders for a given query, reading each order's fields straight from primitive
+     * storage. No orders, BigDecimals or boxes are created.
+     *
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public static int getNumberOfMatchedOrders(PrimitiveOrderBook orderBook, PrimitiveOrderMatcher orderMatcher) {
+        final int size = orderBook.size();
+        int orderCount = 0;
+        for (int row = 0; row < size; row++) {
+            if (orderMatcher.executeQuery(orderBook.getMarketOrdinal(row), orderBook.getTypeOrdinal(row),
+                    orderBook.getAmount(row), orderBook.getPrice(row), orderBook.getFee(row))) {
+                orderCount++;
+            }
+        }
+        return orderCount;
+    }
+
+    /**
+     * Returns the number of matched orders for a given query, reading primitive storage with a parallel stream.
+     * The book must not change during the scan.
+     *
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public static int getNumberOfMatchedOrdersInParallel(
+            PrimitiveOrderBook orderBook, PrimitiveOrderMatcher orderMatcher) {
+        return (int) IntStream.range(0, orderBook.size())
+                .parallel()
+                .filter(row -> orderMatcher.executeQuery(orderBook.getMarketOrdinal(row),
+                        orderBook.getTypeOrdinal(row), orderBook.getAmount(row), orderBook.getPrice(row),
+                        orderBook.getFee(row)))
+                .count();
+    }
+
+    /**
+     * Returns the total fixed-point amount of the matched orders for a given query, reading primitive storage.
+     *
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the total amount as a fixed-point value.
+     * @throws ArithmeticException if the total overflows a long.
+     */
+    public static long getAmountOfMatchedOrders(PrimitiveOrderBook orderBook, PrimitiveOrderMatcher orderMatcher) {
+        final int size = orderBook.size();
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            final long amount = orderBook.getAmount(row);
+            if (orderMatcher.executeQuery(orderBook.getMarketOrdinal(row), orderBook.getTypeOrdinal(row), amount,
+                    orderBook.getPrice(row), orderBook.getFee(row))) {
+                total = Math.addExact(total, amount);
+            }
+        }
+        return total;
+    }
+
     /**
      * Returns the number of matched orders for a given query (fees factored in).
      * Only here to demo 2 args being passed to lambda function.
@@ -68,7 +200,7 @@ public final class OrderBookAnalyser {
      * @param orderMatcher used to match orders.
      * @return the number of matched orders.
      */
-    public static int getNumberOfMatchedOrders(List<Order> orderBook, OrderMatcherWithFees orderMatcher) {
+    public static int getNumberOfMatchedOrders(Iterable<Order> orderBook, OrderMatcherWithFees orderMatcher) {
         int orderCount = 0;
         for (final Order order : orderBook) {
             if (orderMatcher.executeQuery(order, order.getFee())) {
@@ -78,6 +210,26 @@ public final class OrderBookAnalyser {
         return orderCount;
     }
 
+    /**
+     * Returns the number of matched orders for a given query, with the fee for each order resolved from a fee
+     * schedule instead of the order itself.
+     *
+     * @param orderBook    the order book.
+     * @param feeSchedule  the fee schedule.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public static int getNumberOfMatchedOrders(
+            Iterable<Order> orderBook, FeeSchedule feeSchedule, OrderMatcherWithFees orderMatcher) {
+        int orderCount = 0;
+        for (final Order order : orderBook) {
+            if (orderMatcher.executeQuery(order, feeSchedule.getFee(order))) {
+                orderCount++;
+            }
+        }
+        return orderCount;
+    }
+
     /**
      * Returns the number of matched orders for a given query using a Java 8 JDK Standard Functional Interface.
      * <p>
@@ -88,7 +240,7 @@ public final class OrderBookAnalyser {
      * @return the number of matched orders.
      */
     public static int getNumberOfMatchedOrdersUsingJdkPredicateFunctionalInterface(
-            final List<Order> orderBook, final Predicate<Order> orderMatcher) {
+            final Iterable<Order> orderBook, final Predicate<Order> orderMatcher) {
         int orderCount = 0;
         for (final Order order : orderBook) {
             if (orderMatcher.test(order)) // test is the functional interface of Predicate
@@ -108,7 +260,7 @@ public final class OrderBookAnalyser {
      * @return a list of audit details of all matching orders, an empty list otherwise.
      */
     public static List<String> getAuditDetailsForMatchingOrders(
-            List<Order> orderBook, Predicate<Order> orderMatcher, Function<Order, String> function) {
+            Iterable<Order> orderBook, Predicate<Order> orderMatcher, Function<Order, String> function) {
 
         final List<String> auditDetails = new ArrayList<>();
 
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.lambda;
+
+import java.math.BigDecimal;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.PrimitiveOrderBook;
+
+/**
+ * Interface for providing query implementations that match orders on primitive fields: market and type as enum
+ * ordinals, and amount, price and fee as {@link FixedPoint} longs.
+ * <p>
+ * Compare {@link OrderMatcher} and {@link OrderMatcherWithFees}, which get an {@link Order} and have to go through its
+ * getters and do BigDecimal arithmetic. Run against a {@link PrimitiveOrderBook} with
+ * {@link OrderBookAnalyser#getNumberOfMatchedOrders(PrimitiveOrderBook, PrimitiveOrderMatcher)}, a price threshold
+ * query is just long comparisons in a loop, which the JIT can inline and unroll.
+ * <p>
+ * Build matchers with lambdas, or from the static factories, which convert their BigDecimal arguments to fixed point
+ * once, up front:
+ * <pre>
+ * PrimitiveOrderMatcher.inMarket(Market.USD).and(PrimitiveOrderMatcher.priceAtLeast(new BigDecimal("1.70")))
+ * </pre>
+ *
+ * @author gazbert
+ */
+@FunctionalInterface
+public interface PrimitiveOrderMatcher {
+
+    /**
+     * Executes a query to see if an order matches.
+     *
+     * @param market the ordinal of the order's market.
+     * @param type   the ordinal of the order's type.
+     * @param amount the order amount as a fixed-point value.
+     * @param price  the order price as a fixed-point value.
+     * @param fee    the order fee as a fixed-point value.
+     * @return true if order matched query, false otherwise.
+     */
+    boolean executeQuery(int market, int type, long amount, long price, long fee);
+
+    /**
+     * @param other the other matcher.
+     * @return a matcher that matches orders both matchers match.
+     */
+    default PrimitiveOrderMatcher and(PrimitiveOrderMatcher other) {
+        return (market, type, amount, price, fee) -> executeQuery(market, type, amount, price, fee)
+                && other.executeQuery(market, type, amount, price, fee);
+    }
+
+    /**
+     * @param other the other matcher.
+     * @return a matcher that matches orders either matcher matches.
+     */
+    default PrimitiveOrderMatcher or(PrimitiveOrderMatcher other) {
+        return (market, type, amount, price, fee) -> executeQuery(market, type, amount, price, fee)
+                || other.executeQuery(market, type, amount, price, fee);
+    }
+
+    /**
+     * @return a matcher that matches the orders this one doesn't.
+     */
+    default PrimitiveOrderMatcher negate() {
+        return (market, type, amount, price, fee) -> !executeQuery(market, type, amount, price, fee);
+    }
+
+    /**
+     * Adapts this matcher for use where an {@link OrderMatcher} is needed, e.g. to run it over a list of orders.
+     *
+     * @return the adapted matcher.
+     */
+    default OrderMatcher asOrderMatcher() {
+        return order -> executeQuery(order.getMarketId().ordinal(), order.getType().ordinal(),
+                order.getFixedPointAmount(), order.getFixedPointPrice(), order.getFixedPointFee());
+    }
+
+    /**
+     * @param market the market.
+     * @return a matcher for orders in the market.
+     */
+    static PrimitiveOrderMatcher inMarket(Market market) {
+        final int ordinal = market.ordinal();
+        return (m, type, amount, price, fee) -> m == ordinal;
+    }
+
+    /**
+     * @param type the order type.
+     * @return a matcher for orders of the type.
+     */
+    static PrimitiveOrderMatcher ofType(Type type) {
+        final int ordinal = type.ordinal();
+        return (market, t, amount, price, fee) -> t == ordinal;
+    }
+
+    /**
+     * @param minPrice the lowest price to match, inclusive.
+     * @return a matcher for orders priced at or above the price.
+     */
+    static PrimitiveOrderMatcher priceAtLeast(BigDecimal minPrice) {
+        final long min = FixedPoint.toFixedPoint(minPrice);
+        return (market, type, amount, price, fee) -> price >= min;
+    }
+
+    /**
+     * @param maxPrice the price to match below, exclusive.
+     * @return a matcher for orders priced below the price.
+     */
+    static PrimitiveOrderMatcher priceBelow(BigDecimal maxPrice) {
+        final long max = FixedPoint.toFixedPoint(maxPrice);
+        return (market, type, amount, price, fee) -> price < max;
+    }
+
+    /**
+     * @param minAmount the lowest amount to match, inclusive.
+     * @return a matcher for orders for at least the amount.
+     */
+    static PrimitiveOrderMatcher amountAtLeast(BigDecimal minAmount) {
+        final long min = FixedPoint.toFixedPoint(minAmount);
+        return (market, type, amount, price, fee) -> amount >= min;
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.loader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.gazbert.java8.column.OrderColumns;
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.MutableOrder;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Loads order book files for backtesting and replay.
+ * <p>
+ * A file holds one order per line:
+ * <pre>
+ * id,market,type,amount,price,fee
+ * 0b9a4d1e-6c0f-4a55-8e37-1d2c3b4a5f60,USD,BUY,100.00,1.69,0.01
+ * </pre>
+ * The header line is optional. Lines can end with LF or CRLF; blank lines are skipped. Amounts, price and fee can
+ * have up to 8 decimal places, or are rounded HALF_UP to 8 places same as {@link FixedPoint#toFixedPoint}.
+ * <p>
+ * The file is split into chunks on line boundaries, and each chunk is memory-mapped and parsed on its own thread in
+ * a parallel stream. Fields are parsed straight from the mapped bytes into {@link FixedPoint} longs, enum ordinals and
+ * UUID halves - no Strings, no BigDecimals, no per-line garbage. Only then are the parsed columns turned into whatever
+ * the caller asked for: on-heap {@link Order}s, {@link OrderColumns} or records in an {@link OffHeapOrderStore}. Order
+ * in the file is kept.
+ * <p>
+ * Only {@link #loadColumns} and {@link #loadInto} are fast paths. {@link #loadOrders} still has to create a UUID and 3
+ * BigDecimals per order, and that allocation costs about as much as reading lines and splitting Strings does - see
+ * OrderFileLoaderBenchmark in the test tree for MB/s figures on your own hardware.
+ *
+ * @author gazbert
+ */
+public final class OrderFileLoader {
+
+    /**
+     * Default size of the chunks a file is split into for parsing.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Longest line we look for a line end in when splitting the file into chunks.
+     */
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+    private static final byte[][] MARKET_NAMES = names(MARKETS);
+    private static final byte[][] TYPE_NAMES = names(TYPES);
+
+    private final int chunkSize;
+
+    /**
+     * Creates a loader using the default chunk size.
+     */
+    public OrderFileLoader() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param chunkSize roughly how many bytes each parallel task parses.
+     */
+    public OrderFileLoader(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads a file as on-heap orders. This is not much quicker than reading lines and splitting Strings, as building
+     * the orders dominates; prefer {@link #loadColumns} or {@link #loadInto} when throughput matters.
+     *
+     * @param file the file.
+     * @return the orders, in file order.
+     * @throws IOException if the file can't be read or holds a malformed line.
+     */
+    public List<Order> loadOrders(Path file) throws IOException {
+        final List<ParsedChunk> chunks = parse(file);
+        final int[] offsets = new int[chunks.size() + 1];
+        for (int c = 0; c < chunks.size(); c++) {
+            offsets[c + 1] = offsets[c] + chunks.get(c).size;
+        }
+        final Order[] orders = new Order[offsets[chunks.size()]];
+        IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+            final ParsedChunk chunk = chunks.get(c);
+            for (int i = 0; i < chunk.size; i++) {
+                orders[offsets[c] + i] = chunk.toOrder(i);
+            }
+        });
+        return new ArrayList<>(Arrays.asList(orders));
+    }
+
+    /**
+     * Loads the prices and amounts in a file as columns.
+     *
+     * @param file the file.
+     * @return the columns, in file order.
+     * @throws IOException if the file can't be read or holds a malformed line.
+     */
+    public OrderColumns loadColumns(Path file) throws IOException {
+        final List<ParsedChunk> chunks = parse(file);
+        final OrderColumns columns = new OrderColumns(chunks.stream().mapToInt(c -> c.size).sum());
+        for (final ParsedChunk chunk : chunks) {
+            for (int i = 0; i < chunk.size; i++) {
+                columns.add(chunk.prices[i], chunk.amounts[i]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Loads a file into an off-heap store. Parsing is done in parallel; the store is filled on the calling thread.
+     *
+     * @param file  the file.
+     * @param store the store to add the orders to.
+     * @return the number of orders added; orders already in the store, or that don't fit, are not added.
+     * @throws IOException if the file can't be read or holds a malformed line.
+     */
+    public int loadInto(Path file, OffHeapOrderStore store) throws IOException {
+        final MutableOrder order = new MutableOrder();
+        int added = 0;
+        for (final ParsedChunk chunk : parse(file)) {
+            for (int i = 0; i < chunk.size; i++) {
+                chunk.copyInto(i, order);
+                if (store.add(order)) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Chunking
+    // ------------------------------------------------------------------------------------------------
+
+    private List<ParsedChunk> parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long[] bounds = chunkBounds(channel);
+            final List<MappedByteBuffer> buffers = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]));
+            }
+            // mappings stay valid after the channel is closed, but we're done with them by then anyway
+            return IntStream.range(0, buffers.size()).parallel()
+                    .mapToObj(i -> new ChunkParser(buffers.get(i), bounds[i]).parse())
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Chunk start offsets plus the file size. Each chunk ends just after a line end, so no line is split.
+     */
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        final List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        final ByteBuffer window = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        long next = chunkSize;
+        while (next < fileSize) {
+            window.clear();
+            channel.read(window, next);
+            window.flip();
+            int lineEnd = -1;
+            for (int i = 0; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    lineEnd = i;
+                    break;
+                }
+            }
+            if (lineEnd < 0) {
+                if (next + window.limit() >= fileSize) {
+                    break; // last line has no line end
+                }
+                throw new IOException("No line end within " + MAX_LINE_LENGTH + " bytes of offset " + next);
+            }
+            final long chunkEnd = next + lineEnd + 1;
+            if (chunkEnd < fileSize) {
+                bounds.add(chunkEnd);
+            }
+            next = chunkEnd + chunkSize;
+        }
+        bounds.add(fileSize);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static byte[][] names(Enum<?>[] values) {
+        final byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Parsing
+    // ------------------------------------------------------------------------------------------------
+
+    /*
+     * The orders parsed from one chunk, as primitive columns.
+     */
+    private static final class ParsedChunk {
+
+        private long[] idMsbs = new long[1024];
+        private long[] idLsbs = new long[1024];
+        private byte[] markets = new byte[1024];
+        private byte[] types = new byte[1024];
+        private long[] amounts = new long[1024];
+        private long[] prices = new long[1024];
+        private long[] fees = new long[1024];
+        private int size;
+
+        void add(long idMsb, long idLsb, int market, int type, long amount, long price, long fee) {
+            if (size == idMsbs.length) {
+                final int capacity = size * 2;
+                idMsbs = Arrays.copyOf(idMsbs, capacity);
+                idLsbs = Arrays.copyOf(idLsbs, capacity);
+                markets = Arrays.copyOf(markets, capacity);
+                types = Arrays.copyOf(types, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                fees = Arrays.copyOf(fees, capacity);
+            }
+            idMsbs[size] = idMsb;
+            idLsbs[size] = idLsb;
+            markets[size] = (byte) market;
+            types[size] = (byte) type;
+            amounts[size] = amount;
+            prices[size] = price;
+            fees[size] = fee;
+            size++;
+        }
+
+        Order toOrder(int i) {
+            return new Order(new UUID(idMsbs[i], idLsbs[i]), MARKETS[markets[i]], TYPES[types[i]],
+                    FixedPoint.toBigDecimal(amounts[i]), FixedPoint.toBigDecimal(prices[i]),
+                    FixedPoint.toBigDecimal(fees[i]));
+        }
+
+        void copyInto(int i, MutableOrder order) {
+            order.set(MARKETS[markets[i]], TYPES[types[i]], amounts[i], prices[i], fees[i])
+                    .setId(idMsbs[i], idLsbs[i]);
+        }
+    }
+
+    /*
+     * Parses the lines in one mapped chunk. Each parse method starts at pos and leaves it just past the field's
+     * trailing comma (or at the line end for the last field).
+     */
+    private static final class ChunkParser {
+
+        private final ByteBuffer bytes;
+        private final long fileOffset;
+        private final int limit;
+        private int pos;
+        private int lineStart;
+
+        ChunkParser(ByteBuffer bytes, long fileOffset) {
+            this.bytes = bytes;
+            this.fileOffset = fileOffset;
+            limit = bytes.limit();
+        }
+
+        ParsedChunk parse() {
+            final ParsedChunk chunk = new ParsedChunk();
+            while (pos < limit) {
+                lineStart = pos;
+                if (atLineEnd()) {
+                    skipLineEnd(); // blank line
+                    continue;
+                }
+                if (fileOffset == 0 && pos == 0 && bytes.get(0) == 'i') {
+                    skipLine(); // header
+                    continue;
+                }
+                final long idMsb = parseHex(8) << 32 | parseHex(4, '-') << 16 | parseHex(4, '-');
+                final long idLsb = parseHex(4, '-') << 48 | parseHex(12, '-');
+                expect(',');
+                final int market = parseName(MARKET_NAMES);
+                final int type = parseName(TYPE_NAMES);
+                final long amount = parseFixedPoint();
+                expect(',');
+                final long price = parseFixedPoint();
+                expect(',');
+                final long fee = parseFixedPoint();
+                if (!atLineEnd()) {
+                    throw malformed("unexpected data after fee");
+                }
+                skipLineEnd();
+                chunk.add(idMsb, idLsb, market, type, amount, price, fee);
+            }
+            return chunk;
+        }
+
+        private boolean atLineEnd() {
+            return pos >= limit || bytes.get(pos) == '\n' || bytes.get(pos) == '\r';
+        }
+
+        private void skipLineEnd() {
+            if (pos < limit && bytes.get(pos) == '\r') {
+                pos++;
+            }
+            if (pos < limit && bytes.get(pos) == '\n') {
+                pos++;
+            }
+        }
+
+        private void skipLine() {
+            while (!atLineEnd()) {
+                pos++;
+            }
+            skipLineEnd();
+        }
+
+        private void expect(char c) {
+            if (pos >= limit || bytes.get(pos) != c) {
+                throw malformed("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private long parseHex(int digits, char separator) {
+            expect(separator);
+            return parseHex(digits);
+        }
+
+        private long parseHex(int digits) {
+            long value = 0;
+            for (int i = 0; i < digits; i++) {
+                if (pos >= limit) {
+                    throw malformed("id too short");
+                }
+                final int b = bytes.get(pos++);
+                final int digit;
+                if (b >= '0' && b <= '9') {
+                    digit = b - '0';
+                } else if (b >= 'a' && b <= 'f') {
+                    digit = b - 'a' + 10;
+                } else if (b >= 'A' && b <= 'F') {
+                    digit = b - 'A' + 10;
+                } else {
+                    throw malformed("bad hex digit in id");
+                }
+                value = value << 4 | digit;
+            }
+            return value;
+        }
+
+        /*
+         * Matches the field against the enum names, returning the ordinal.
+         */
+        private int parseName(byte[][] names) {
+            final int start = pos;
+            while (pos < limit && bytes.get(pos) != ',') {
+                pos++;
+            }
+            final int length = pos - start;
+            expect(',');
+            for (int n = 0; n < names.length; n++) {
+                final byte[] name = names[n];
+                if (name.length != length) {
+                    continue;
+                }
+                int i = 0;
+                while (i < length && bytes.get(start + i) == name[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return n;
+                }
+            }
+            throw malformed("unknown market or type");
+        }
+
+        /*
+         * Parses a decimal into a fixed-point long at FixedPoint.SCALE, rounding HALF_UP like BigDecimal does.
+         */
+        private long parseFixedPoint() {
+            boolean negative = false;
+            if (pos < limit && (bytes.get(pos) == '-' || bytes.get(pos) == '+')) {
+                negative = bytes.get(pos) == '-';
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            int fractionDigits = -1; // -1 until we see the point
+            int firstDroppedDigit = -1; // the 9th fraction digit decides HALF_UP
+            while (pos < limit) {
+                final int b = bytes.get(pos);
+                if (b >= '0' && b <= '9') {
+                    if (fractionDigits < FixedPoint.SCALE) {
+                        value = Math.addExact(Math.multiplyExact(value, 10), b - '0');
+                        if (fractionDigits >= 0) {
+                            fractionDigits++;
+                        }
+                    } else if (firstDroppedDigit < 0) {
+                        firstDroppedDigit = b - '0';
+                    }
+                    digits++;
+                } else if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+            if (digits == 0) {
+                throw malformed("expected a number");
+            }
+            for (int i = Math.max(fractionDigits, 0); i < FixedPoint.SCALE; i++) {
+                value = Math.multiplyExact(value, 10);
+            }
+            if (firstDroppedDigit >= 5) {
+                value = Math.addExact(value, 1);
+            }
+            return negative ? -value : value;
+        }
+
+        private UncheckedIOException malformed(String reason) {
+            return new UncheckedIOException(new IOException("Malformed order at byte " + (fileOffset + lineStart)
+                    + ": " + reason));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * <h2>Order File Loading</h2>
+ * 
+ * Fast loading of historical order book files for backtesting and replay with the
+ * {@link com.gazbert.java8.lambda.OrderBookAnalyser}: memory-mapped, split into chunks, and parsed in parallel
+ * straight from bytes. See the {@link TestOrderFileLoaderUsage} unit test class for usage, and
+ * {@link OrderFileLoaderBenchmark} for a comparison with BufferedReader and String.split.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.loader;
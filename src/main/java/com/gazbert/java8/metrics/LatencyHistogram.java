@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, high dynamic range histogram of latencies in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets, the same scheme HdrHistogram uses: each power of 2 is split into 64
+ * equal sub-buckets, so any recorded value is reported to within 1/64 (about 1.6%) of its real value, from 1ns right up
+ * to the highest trackable value. Recording is a couple of shifts and an atomic increment, so it is safe and cheap to
+ * call from any number of threads at once.
+ * <p>
+ * The histogram never resets. Take a {@link #snapshot()} for the totals so far, and use
+ * {@link LatencySnapshot#minus(LatencySnapshot)} to get the latencies for an interval between 2 snapshots.
+ *
+ * @author gazbert
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final long SUB_BUCKET_MASK = (1L << SUB_BUCKET_BITS) - 1;
+
+    /**
+     * Default highest trackable value - 1 hour.
+     */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3_600_000_000_000L;
+
+    private final AtomicLongArray counts;
+    private final long highestTrackableValue;
+
+    /**
+     * Creates a histogram that can track values up to 1 hour.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    /**
+     * Creates a histogram. Values above the highest trackable value are counted as the highest trackable value.
+     *
+     * @param highestTrackableValue the highest value to track, in nanoseconds.
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("Highest trackable value must be positive: " + highestTrackableValue);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param value the latency in nanoseconds. Negative values are counted as 0.
+     */
+    public void record(long value) {
+        counts.incrementAndGet(bucketIndex(Math.max(0, Math.min(value, highestTrackableValue))));
+    }
+
+    /**
+     * Records a latency, correcting for coordinated omission.
+     * <p>
+     * If the caller issues requests at a fixed interval, a slow request holds up all the ones that should have been
+     * sent while it was running. Those requests never get measured, so the histogram ends up far too optimistic. This
+     * method fills in the missing requests: for a latency longer than the expected interval, it also records the
+     * latencies the held up requests would have seen, i.e. value - interval, value - 2 * interval and so on.
+     *
+     * @param value                  the latency in nanoseconds.
+     * @param expectedIntervalNanos  the expected interval between requests in nanoseconds; 0 turns correction off.
+     */
+    public void recordWithExpectedInterval(long value, long expectedIntervalNanos) {
+        record(value);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missed = value - expectedIntervalNanos; missed >= expectedIntervalNanos;
+             missed -= expectedIntervalNanos) {
+            record(missed);
+        }
+    }
+
+    /**
+     * Takes a copy of the counts recorded so far.
+     * <p>
+     * Values recorded while the copy is being taken may or may not be included.
+     *
+     * @return the snapshot.
+     */
+    public LatencySnapshot snapshot() {
+        final long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new LatencySnapshot(copy);
+    }
+
+    /**
+     * @return the highest value tracked, in nanoseconds.
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    static int bucketIndex(long value) {
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        final int shift = magnitude - SUB_BUCKET_HALF_BITS;
+        return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >>> shift);
+    }
+
+    static long lowestValueInBucket(int index) {
+        if (index <= SUB_BUCKET_MASK) {
+            return index;
+        }
+        final int shift = (index >> SUB_BUCKET_HALF_BITS) - 1;
+        return (long) (index - (shift << SUB_BUCKET_HALF_BITS)) << shift;
+    }
+
+    static long highestValueInBucket(int index) {
+        return lowestValueInBucket(index + 1) - 1;
+    }
+}
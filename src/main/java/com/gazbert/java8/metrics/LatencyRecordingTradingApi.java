@@ -0,0 +1,316 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * Decorates any {@link TradingApi} to record how long each operation takes.
+ * <p>
+ * Latencies go into a {@link LatencyHistogram} per operation. Recording costs 2 calls to {@link System#nanoTime()}
+ * and an atomic increment. The nanoTime calls are most of that, and what they cost depends on the host's clock
+ * source: LatencyRecordingBenchmark, in the test tree, measures both on yours.
+ * <p>
+ * The latencies can be read in 3 ways:
+ * <ul>
+ * <li>{@link #getLatencySnapshot(Operation)} for the totals so far.</li>
+ * <li>{@link #snapshotInterval()} for the latencies since the last interval was taken - use
+ * {@link #publishIntervals(ScheduledExecutorService, long, TimeUnit, Consumer)} to have this done periodically.</li>
+ * <li>Over JMX, once {@link #registerMBean()} has been called.</li>
+ * </ul>
+ *
+ * @author gazbert
+ */
+public class LatencyRecordingTradingApi implements TradingApi, TradingApiLatencyMXBean {
+
+    /**
+     * The operations we record latencies for.
+     *
+     * @author gazbert
+     */
+    public enum Operation {
+        /**
+         * {@link TradingApi#addOrder(Order)}
+         */
+        ADD_ORDER,
+
+        /**
+         * {@link TradingApi#cancelOrder(UUID)}
+         */
+        CANCEL_ORDER,
+
+        /**
+         * {@link TradingApi#getOpenOrders(int)}
+         */
+        GET_OPEN_ORDERS,
+
+        /**
+         * {@link TradingApi#cancelAll(int)}
+         */
+        CANCEL_ALL,
+
+        /**
+         * {@link TradingApi#cancelMatching(OrderMatcher)}
+         */
+        CANCEL_MATCHING
+    }
+
+    private final TradingApi tradingApi;
+    private final long expectedIntervalNanos;
+
+    private final LatencyHistogram addOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram cancelOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram getOpenOrdersLatency = new LatencyHistogram();
+    private final LatencyHistogram cancelAllLatency = new LatencyHistogram();
+    private final LatencyHistogram cancelMatchingLatency = new LatencyHistogram();
+
+    private volatile Map<Operation, LatencySnapshot> intervalStart;
+    private volatile Map<Operation, LatencySnapshot> lastInterval;
+
+    /**
+     * Creates the decorator.
+     *
+     * @param tradingApi the API to decorate.
+     */
+    public LatencyRecordingTradingApi(TradingApi tradingApi) {
+        this(tradingApi, 0);
+    }
+
+    /**
+     * Creates the decorator, with coordinated omission correction for callers that send requests at a fixed rate.
+     * See {@link LatencyHistogram#recordWithExpectedInterval(long, long)}.
+     *
+     * @param tradingApi            the API to decorate.
+     * @param expectedIntervalNanos the expected interval between calls in nanoseconds; 0 turns correction off.
+     */
+    public LatencyRecordingTradingApi(TradingApi tradingApi, long expectedIntervalNanos) {
+        this.tradingApi = tradingApi;
+        this.expectedIntervalNanos = expectedIntervalNanos;
+        intervalStart = takeSnapshots();
+        lastInterval = intervalStart;
+    }
+
+    @Override
+    public boolean addOrder(Order order) {
+        final long start = System.nanoTime();
+        try {
+            return tradingApi.addOrder(order);
+        } finally {
+            addOrderLatency.recordWithExpectedInterval(System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    @Override
+    public boolean cancelOrder(UUID orderId) {
+        final long start = System.nanoTime();
+        try {
+            return tradingApi.cancelOrder(orderId);
+        } finally {
+            cancelOrderLatency.recordWithExpectedInterval(System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    @Override
+    public List<Order> getOpenOrders(int marketId) {
+        final long start = System.nanoTime();
+        try {
+            return tradingApi.getOpenOrders(marketId);
+        } finally {
+            getOpenOrdersLatency.recordWithExpectedInterval(System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    /**
+     * Passed straight on, so the decorated API's own mass cancel is used and timed as one operation.
+     */
+    @Override
+    public int cancelAll(int marketId) {
+        final long start = System.nanoTime();
+        try {
+            return tradingApi.cancelAll(marketId);
+        } finally {
+            cancelAllLatency.recordWithExpectedInterval(System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    /**
+     * Passed straight on, so the decorated API's own mass cancel is used and timed as one operation.
+     */
+    @Override
+    public int cancelMatching(OrderMatcher orderMatcher) {
+        final long start = System.nanoTime();
+        try {
+            return tradingApi.cancelMatching(orderMatcher);
+        } finally {
+            cancelMatchingLatency.recordWithExpectedInterval(System.nanoTime() - start, expectedIntervalNanos);
+        }
+    }
+
+    @Override
+    public String getImplName() {
+        return tradingApi.getImplName();
+    }
+
+    /**
+     * Returns the latencies recorded for an operation so far.
+     *
+     * @param operation the operation.
+     * @return the snapshot.
+     */
+    public LatencySnapshot getLatencySnapshot(Operation operation) {
+        return histogram(operation).snapshot();
+    }
+
+    /**
+     * Returns the latencies recorded since the last time this method was called, or since the API was created.
+     *
+     * @return the interval snapshot for each operation.
+     */
+    public synchronized Map<Operation, LatencySnapshot> snapshotInterval() {
+        final Map<Operation, LatencySnapshot> intervalEnd = takeSnapshots();
+        final Map<Operation, LatencySnapshot> interval = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            interval.put(operation, intervalEnd.get(operation).minus(intervalStart.get(operation)));
+        }
+        intervalStart = intervalEnd;
+        lastInterval = interval;
+        return interval;
+    }
+
+    /**
+     * Takes an interval snapshot periodically and passes it to a listener.
+     *
+     * @param executor the executor to run on.
+     * @param period   the interval length.
+     * @param unit     the unit of the interval length.
+     * @param listener receives each interval.
+     * @return the scheduled task; cancel it to stop publishing.
+     */
+    public ScheduledFuture<?> publishIntervals(ScheduledExecutorService executor, long period, TimeUnit unit,
+                                               Consumer<Map<Operation, LatencySnapshot>> listener) {
+        return executor.scheduleAtFixedRate(() -> listener.accept(snapshotInterval()), period, period, unit);
+    }
+
+    /**
+     * Registers this API as an MXBean with the platform MBean server, under the name
+     * <code>com.gazbert.java8:type=TradingApiLatency,name=&lt;impl name&gt;</code>.
+     *
+     * @return the name it was registered under.
+     * @throws JMException if registration fails, e.g. an MBean with the same name is already registered.
+     */
+    public ObjectName registerMBean() throws JMException {
+        final ObjectName name = new ObjectName("com.gazbert.java8:type=TradingApiLatency,name="
+                + ObjectName.quote(getImplName()));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    @Override
+    public LatencySnapshot getAddOrderLatency() {
+        return getLatencySnapshot(Operation.ADD_ORDER);
+    }
+
+    @Override
+    public LatencySnapshot getCancelOrderLatency() {
+        return getLatencySnapshot(Operation.CANCEL_ORDER);
+    }
+
+    @Override
+    public LatencySnapshot getGetOpenOrdersLatency() {
+        return getLatencySnapshot(Operation.GET_OPEN_ORDERS);
+    }
+
+    @Override
+    public LatencySnapshot getCancelAllLatency() {
+        return getLatencySnapshot(Operation.CANCEL_ALL);
+    }
+
+    @Override
+    public LatencySnapshot getCancelMatchingLatency() {
+        return getLatencySnapshot(Operation.CANCEL_MATCHING);
+    }
+
+    @Override
+    public LatencySnapshot getAddOrderIntervalLatency() {
+        return lastInterval.get(Operation.ADD_ORDER);
+    }
+
+    @Override
+    public LatencySnapshot getCancelOrderIntervalLatency() {
+        return lastInterval.get(Operation.CANCEL_ORDER);
+    }
+
+    @Override
+    public LatencySnapshot getGetOpenOrdersIntervalLatency() {
+        return lastInterval.get(Operation.GET_OPEN_ORDERS);
+    }
+
+    @Override
+    public LatencySnapshot getCancelAllIntervalLatency() {
+        return lastInterval.get(Operation.CANCEL_ALL);
+    }
+
+    @Override
+    public LatencySnapshot getCancelMatchingIntervalLatency() {
+        return lastInterval.get(Operation.CANCEL_MATCHING);
+    }
+
+    private LatencyHistogram histogram(Operation operation) {
+        switch (operation) {
+            case ADD_ORDER:
+                return addOrderLatency;
+            case CANCEL_ORDER:
+                return cancelOrderLatency;
+            case CANCEL_ALL:
+                return cancelAllLatency;
+            case CANCEL_MATCHING:
+                return cancelMatchingLatency;
+            default:
+                return getOpenOrdersLatency;
+        }
+    }
+
+    private Map<Operation, LatencySnapshot> takeSnapshots() {
+        final Map<Operation, LatencySnapshot> snapshots = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            snapshots.put(operation, getLatencySnapshot(operation));
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+/**
+ * An immutable copy of the counts in a {@link LatencyHistogram}.
+ * <p>
+ * The getters make this usable as a JMX open type, so it can be returned straight from an MXBean.
+ *
+ * @author gazbert
+ */
+public final class LatencySnapshot {
+
+    private final long[] counts;
+    private final long totalCount;
+
+    LatencySnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        totalCount = total;
+    }
+
+    /**
+     * Returns the counts recorded between an earlier snapshot of the same histogram and this one.
+     *
+     * @param earlier the earlier snapshot.
+     * @return the interval snapshot.
+     */
+    public LatencySnapshot minus(LatencySnapshot earlier) {
+        final long[] interval = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            interval[i] = counts[i] - earlier.counts[i];
+        }
+        return new LatencySnapshot(interval);
+    }
+
+    /**
+     * Returns the value at a given percentile. The value is the highest value that is equivalent to the real one,
+     * i.e. the top of the bucket it was counted in.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return the value in nanoseconds, or 0 if no values were recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= countAtPercentile) {
+                return LatencyHistogram.highestValueInBucket(i);
+            }
+        }
+        return LatencyHistogram.highestValueInBucket(counts.length - 1);
+    }
+
+    /**
+     * @return number of values recorded.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the mean value in nanoseconds, using the middle of each bucket.
+     */
+    public double getMeanNanos() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                final long low = LatencyHistogram.lowestValueInBucket(i);
+                final long high = LatencyHistogram.highestValueInBucket(i);
+                total += counts[i] * (low + (high - low) / 2.0);
+            }
+        }
+        return total / totalCount;
+    }
+
+    public long getP50Nanos() {
+        return getValueAtPercentile(50.0);
+    }
+
+    public long getP90Nanos() {
+        return getValueAtPercentile(90.0);
+    }
+
+    public long getP99Nanos() {
+        return getValueAtPercentile(99.0);
+    }
+
+    public long getP999Nanos() {
+        return getValueAtPercentile(99.9);
+    }
+
+    public long getP9999Nanos() {
+        return getValueAtPercentile(99.99);
+    }
+
+    public long getMaxNanos() {
+        return getValueAtPercentile(100.0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + totalCount + " mean=" + Math.round(getMeanNanos()) + "ns p50=" + getP50Nanos()
+                + "ns p99=" + getP99Nanos() + "ns p99.9=" + getP999Nanos() + "ns p99.99=" + getP9999Nanos()
+                + "ns max=" + getMaxNanos() + "ns";
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.lambda.ExecutionPlan;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * Optional instrumentation for {@link OrderBookAnalyser} queries.
+ * <p>
+ * Run a query through one of the methods here, instead of calling the analyser directly, and it is recorded under
+ * the query name you give it: number of executions, rows scanned, rows matched, elapsed time and matcher cost, plus
+ * how many times each {@link ExecutionPlan} was used. With those you can tell whether a slow query is down to the
+ * book growing, the selectivity changing, or the matcher getting expensive.
+ * <p>
+ * Timing every matcher call would cost more than most matchers do, so only every {@link #getSampleInterval()}th call
+ * is timed and the total matcher cost is estimated from the samples.
+ * <p>
+ * Statistics are aggregated using {@link LongAdder}s, so many threads can run queries at once without contending.
+ * Read them with {@link #getStatistics(String)}, or over JMX once {@link #registerMBean(String)} has been called.
+ *
+ * @author gazbert
+ */
+public class QueryMetrics implements QueryMetricsMXBean {
+
+    /**
+     * Default matcher call sampling interval.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    private final ConcurrentMap<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+    private final int sampleInterval;
+
+    /**
+     * Creates the metrics with the default sample interval.
+     */
+    public QueryMetrics() {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Creates the metrics.
+     *
+     * @param sampleInterval time every nth matcher call; 1 times every call.
+     */
+    public QueryMetrics(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be at least 1: " + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Runs {@link OrderBookAnalyser#getNumberOfMatchedOrders(Iterable, OrderMatcher)} and records it.
+     *
+     * @param queryName    the name to record the query under.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public int getNumberOfMatchedOrders(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher) {
+        final Probe<Order> probe = new Probe<>(orderMatcher::executeQuery, sampleInterval);
+        final long start = System.nanoTime();
+        final int orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, probe::test);
+        record(queryName, ExecutionPlan.SERIAL, probe.rowsScanned, orderCount, System.nanoTime() - start,
+                probe.estimateMatcherNanos());
+        return orderCount;
+    }
+
+    /**
+     * Runs {@link OrderBookAnalyser#getAuditDetailsForMatchingOrdersUsingGenericArgs(Iterable, Predicate, Function)}
+     * and records it.
+     *
+     * @param queryName    the name to record the query under.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @param function     the get audit details function.
+     * @return a list of audit details of all matching orders, an empty list otherwise.
+     */
+    public <T, R> List<R> getAuditDetailsForMatchingOrders(
+            String queryName, Iterable<T> orderBook, Predicate<T> orderMatcher, Function<T, R> function) {
+        final Probe<T> probe = new Probe<>(orderMatcher, sampleInterval);
+        final long start = System.nanoTime();
+        final List<R> auditDetails =
+                OrderBookAnalyser.getAuditDetailsForMatchingOrdersUsingGenericArgs(orderBook, probe, function);
+        record(queryName, ExecutionPlan.SERIAL, probe.rowsScanned, auditDetails.size(), System.nanoTime() - start,
+                probe.estimateMatcherNanos());
+        return auditDetails;
+    }
+
+    /**
+     * Records a query execution. For scans done outside of this class.
+     *
+     * @param queryName    the name to record the query under.
+     * @param rowsScanned  number of rows the query looked at.
+     * @param rowsMatched  number of rows the query matched.
+     * @param elapsedNanos how long the query took.
+     * @param matcherNanos how much of that was spent in the matcher, if known, 0 otherwise.
+     */
+    public void record(String queryName, long rowsScanned, long rowsMatched, long elapsedNanos, long matcherNanos) {
+        record(queryName, null, rowsScanned, rowsMatched, elapsedNanos, matcherNanos);
+    }
+
+    /**
+     * Records a query execution, along with how it was executed.
+     *
+     * @param queryName    the name to record the query under.
+     * @param plan         how the query was executed; null if not known.
+     * @param rowsScanned  number of rows the query looked at.
+     * @param rowsMatched  number of rows the query matched.
+     * @param elapsedNanos how long the query took.
+     * @param matcherNanos how much of that was spent in the matcher, if known, 0 otherwise.
+     */
+    public void record(String queryName, ExecutionPlan plan, long rowsScanned, long rowsMatched, long elapsedNanos,
+                       long matcherNanos) {
+        accumulators.computeIfAbsent(queryName, name -> new Accumulator())
+                .record(plan, rowsScanned, rowsMatched, elapsedNanos, matcherNanos);
+    }
+
+    /**
+     * Returns the statistics for a query.
+     *
+     * @param queryName the query name.
+     * @return the statistics, or null if the query has not been run.
+     */
+    public QueryStatistics getStatistics(String queryName) {
+        final Accumulator accumulator = accumulators.get(queryName);
+        return accumulator == null ? null : accumulator.toStatistics(queryName);
+    }
+
+    @Override
+    public Map<String, QueryStatistics> getQueryStatistics() {
+        final Map<String, QueryStatistics> statistics = new TreeMap<>();
+        accumulators.forEach((name, accumulator) -> statistics.put(name, accumulator.toStatistics(name)));
+        return statistics;
+    }
+
+    @Override
+    public void reset() {
+        accumulators.clear();
+    }
+
+    /**
+     * @return the matcher call sampling interval.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Registers these metrics as an MXBean with the platform MBean server, under the name
+     * <code>com.gazbert.java8:type=QueryMetrics,name=&lt;name&gt;</code>.
+     *
+     * @param name name to register under.
+     * @return the full name it was registered under.
+     * @throws JMException if registration fails, e.g. an MBean with the same name is already registered.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        final ObjectName objectName =
+                new ObjectName("com.gazbert.java8:type=QueryMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Wraps the caller's matcher to count rows and sample matcher timings. Used by one query on one thread.
+     */
+    private static final class Probe<T> implements Predicate<T> {
+
+        private final Predicate<T> matcher;
+        private final int sampleInterval;
+        private long rowsScanned;
+        private long sampledCalls;
+        private long sampledNanos;
+
+        private Probe(Predicate<T> matcher, int sampleInterval) {
+            this.matcher = matcher;
+            this.sampleInterval = sampleInterval;
+        }
+
+        @Override
+        public boolean test(T order) {
+            if (rowsScanned++ % sampleInterval != 0) {
+                return matcher.test(order);
+            }
+            final long start = System.nanoTime();
+            final boolean matched = matcher.test(order);
+            sampledNanos += System.nanoTime() - start;
+            sampledCalls++;
+            return matched;
+        }
+
+        private long estimateMatcherNanos() {
+            return sampledCalls == 0 ? 0 : sampledNanos * rowsScanned / sampledCalls;
+        }
+    }
+
+    /**
+     * Running totals for one query.
+     */
+    private static final class Accumulator {
+
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rowsScanned = new LongAdder();
+        private final LongAdder rowsMatched = new LongAdder();
+        private final LongAdder elapsedNanos = new LongAdder();
+        private final LongAccumulator maxElapsedNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram elapsedHistogram = new LatencyHistogram();
+        private final LongAdder matcherNanos = new LongAdder();
+        private final LongAdder[] executionsByPlan = new LongAdder[ExecutionPlan.values().length];
+        private volatile ExecutionPlan lastPlan;
+
+        private Accumulator() {
+            for (int i = 0; i < executionsByPlan.length; i++) {
+                executionsByPlan[i] = new LongAdder();
+            }
+        }
+
+        private void record(ExecutionPlan plan, long scanned, long matched, long elapsed, long matcher) {
+            if (plan != null) {
+                executionsByPlan[plan.ordinal()].increment();
+                lastPlan = plan;
+            }
+            executions.increment();
+            rowsScanned.add(scanned);
+            rowsMatched.add(matched);
+            elapsedNanos.add(elapsed);
+            maxElapsedNanos.accumulate(elapsed);
+            elapsedHistogram.record(elapsed);
+            matcherNanos.add(matcher);
+        }
+
+        private QueryStatistics toStatistics(String queryName) {
+            return new QueryStatistics(queryName, executions.sum(), rowsScanned.sum(), rowsMatched.sum(),
+                    elapsedNanos.sum(), maxElapsedNanos.get(), elapsedHistogram.snapshot().getP99Nanos(),
+                    matcherNanos.sum(), executionsByPlan[ExecutionPlan.SERIAL.ordinal()].sum(),
+                    executionsByPlan[ExecutionPlan.PARALLEL.ordinal()].sum(),
+                    executionsByPlan[ExecutionPlan.INDEX.ordinal()].sum(), lastPlan);
+        }
+    }
+}
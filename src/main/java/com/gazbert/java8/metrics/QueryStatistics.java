@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import com.gazbert.java8.lambda.ExecutionPlan;
+
+/**
+ * Immutable statistics for an order book query, as recorded by {@link QueryMetrics}.
+ * <p>
+ * The getters make this usable as a JMX open type.
+ *
+ * @author gazbert
+ */
+public final class QueryStatistics {
+
+    private final String queryName;
+    private final long executions;
+    private final long rowsScanned;
+    private final long rowsMatched;
+    private final long totalElapsedNanos;
+    private final long maxElapsedNanos;
+    private final long p99ElapsedNanos;
+    private final long matcherNanos;
+    private final long serialExecutions;
+    private final long parallelExecutions;
+    private final long indexExecutions;
+    private final ExecutionPlan lastPlan;
+
+    QueryStatistics(String queryName, long executions, long rowsScanned, long rowsMatched, long totalElapsedNanos,
+                    long maxElapsedNanos, long p99ElapsedNanos, long matcherNanos, long serialExecutions,
+                    long parallelExecutions, long indexExecutions, ExecutionPlan lastPlan) {
+        this.queryName = queryName;
+        this.executions = executions;
+        this.rowsScanned = rowsScanned;
+        this.rowsMatched = rowsMatched;
+        this.totalElapsedNanos = totalElapsedNanos;
+        this.maxElapsedNanos = maxElapsedNanos;
+        this.p99ElapsedNanos = p99ElapsedNanos;
+        this.matcherNanos = matcherNanos;
+        this.serialExecutions = serialExecutions;
+        this.parallelExecutions = parallelExecutions;
+        this.indexExecutions = indexExecutions;
+        this.lastPlan = lastPlan;
+    }
+
+    public String getQueryName() {
+        return queryName;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public long getRowsMatched() {
+        return rowsMatched;
+    }
+
+    /**
+     * @return fraction of scanned rows that matched, 0 if nothing was scanned.
+     */
+    public double getSelectivity() {
+        return rowsScanned == 0 ? 0 : (double) rowsMatched / rowsScanned;
+    }
+
+    public long getTotalElapsedNanos() {
+        return totalElapsedNanos;
+    }
+
+    public double getMeanElapsedNanos() {
+        return executions == 0 ? 0 : (double) totalElapsedNanos / executions;
+    }
+
+    public long getMaxElapsedNanos() {
+        return maxElapsedNanos;
+    }
+
+    public long getP99ElapsedNanos() {
+        return p99ElapsedNanos;
+    }
+
+    /**
+     * @return estimated total time spent evaluating the matcher - see {@link QueryMetrics} for how it is sampled.
+     */
+    public long getMatcherNanos() {
+        return matcherNanos;
+    }
+
+    /**
+     * @return estimated matcher cost per row scanned.
+     */
+    public double getMatcherNanosPerRow() {
+        return rowsScanned == 0 ? 0 : (double) matcherNanos / rowsScanned;
+    }
+
+    /**
+     * @return executions that scanned the book serially.
+     */
+    public long getSerialExecutions() {
+        return serialExecutions;
+    }
+
+    /**
+     * @return executions that scanned the book in parallel.
+     */
+    public long getParallelExecutions() {
+        return parallelExecutions;
+    }
+
+    /**
+     * @return executions answered from an index.
+     */
+    public long getIndexExecutions() {
+        return indexExecutions;
+    }
+
+    /**
+     * @return the plan the latest execution used; null if no execution recorded its plan.
+     */
+    public ExecutionPlan getLastPlan() {
+        return lastPlan;
+    }
+
+    @Override
+    public String toString() {
+        return queryName + ": executions=" + executions + " rowsScanned=" + rowsScanned + " rowsMatched="
+                + rowsMatched + " meanElapsed=" + Math.round(getMeanElapsedNanos()) + "ns maxElapsed="
+                + maxElapsedNanos + "ns matcherPerRow=" + Math.round(getMatcherNanosPerRow()) + "ns lastPlan="
+                + lastPlan;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.OrderBookListener;
+
+/**
+ * A lock-free histogram of the number of trades it took to fill each order, kept per {@link Market} and
+ * {@link Type}.
+ * <p>
+ * The average trade count hides the orders that take dozens of fills to complete, which are the ones worth knowing
+ * about. Rather than re-aggregating the whole book for every report, this keeps a running histogram that is updated
+ * as each order is filled: one atomic increment per fill, safe from any number of threads. Trade counts are small
+ * whole numbers, so each count up to the highest trackable one has a bucket of its own and percentiles are exact;
+ * higher counts share the top bucket, but the max is still tracked exactly.
+ * <p>
+ * As an {@link OrderBookListener}, it records an order's trade count when a fill completes it - the trade count the
+ * book had kept for the order plus one for the final fill. Partial fills, adds and cancels are ignored. Use
+ * {@link OrderBookListener#andThen(OrderBookListener)} to listen alongside another listener.
+ * <p>
+ * Take a {@link #snapshot(Market, Type)} to read percentiles. Snapshots from several histograms, e.g. one per book
+ * shard, can be combined with {@link TradeCountSnapshot#plus(TradeCountSnapshot)}.
+ *
+ * @author gazbert
+ */
+public final class TradeCountHistogram implements OrderBookListener {
+
+    /**
+     * Default highest trackable trade count.
+     */
+    public static final int DEFAULT_HIGHEST_TRACKABLE_VALUE = 1024;
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final int highestTrackableValue;
+    private final int bucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray maxes;
+
+    /**
+     * Creates a histogram that can track trade counts up to 1024.
+     */
+    public TradeCountHistogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    /**
+     * Creates a histogram. Trade counts above the highest trackable value are counted in the top bucket.
+     *
+     * @param highestTrackableValue the highest trade count to give its own bucket.
+     */
+    public TradeCountHistogram(int highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("Highest trackable value must be positive: " + highestTrackableValue);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        bucketCount = highestTrackableValue + 1;
+        counts = new AtomicLongArray(MARKETS.length * TYPES.length * bucketCount);
+        maxes = new AtomicLongArray(MARKETS.length * TYPES.length);
+    }
+
+    /**
+     * Records the trade count of a filled order.
+     *
+     * @param market           the order's market.
+     * @param type             the order's type.
+     * @param tradeCountToFill number of trades it took to fill the order. Negative values are counted as 0.
+     */
+    public void record(Market market, Type type, int tradeCountToFill) {
+        final int cell = cell(market, type);
+        final int value = Math.max(0, tradeCountToFill);
+        counts.incrementAndGet(cell * bucketCount + Math.min(value, highestTrackableValue));
+        long max = maxes.get(cell);
+        while (value > max && !maxes.compareAndSet(cell, max, value)) {
+            max = maxes.get(cell);
+        }
+    }
+
+    /**
+     * Records the trade count of a filled order, e.g. to seed the histogram from orders filled before it was created.
+     *
+     * @param order the filled order.
+     */
+    public void record(Order order) {
+        record(order.getMarketId(), order.getType(), order.getTradeCountToFill());
+    }
+
+    @Override
+    public void orderAdded(Order order) {
+    }
+
+    @Override
+    public void orderCancelled(Order order) {
+    }
+
+    @Override
+    public void orderFilled(Order order, long fixedPointFillAmount) {
+        if (fixedPointFillAmount == order.getFixedPointAmount()) {
+            record(order.getMarketId(), order.getType(), order.getTradeCountToFill() + 1);
+        }
+    }
+
+    /**
+     * Takes a copy of the trade counts recorded so far for one market and type.
+     * <p>
+     * Values recorded while the copy is being taken may or may not be included.
+     *
+     * @param market the market.
+     * @param type   the order type.
+     * @return the snapshot.
+     */
+    public TradeCountSnapshot snapshot(Market market, Type type) {
+        final int cell = cell(market, type);
+        final long[] copy = new long[bucketCount];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(cell * bucketCount + i);
+        }
+        return new TradeCountSnapshot(copy, maxes.get(cell));
+    }
+
+    /**
+     * Takes a copy of the trade counts recorded so far for both order types in a market.
+     *
+     * @param market the market.
+     * @return the snapshot.
+     */
+    public TradeCountSnapshot snapshot(Market market) {
+        TradeCountSnapshot snapshot = snapshot(market, TYPES[0]);
+        for (int type = 1; type < TYPES.length; type++) {
+            snapshot = snapshot.plus(snapshot(market, TYPES[type]));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a copy of the trade counts recorded so far across all markets and types.
+     *
+     * @return the snapshot.
+     */
+    public TradeCountSnapshot snapshot() {
+        TradeCountSnapshot snapshot = snapshot(MARKETS[0]);
+        for (int market = 1; market < MARKETS.length; market++) {
+            snapshot = snapshot.plus(snapshot(MARKETS[market]));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the highest trade count with a bucket of its own.
+     */
+    public int getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    private static int cell(Market market, Type type) {
+        return market.ordinal() * TYPES.length + type.ordinal();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+/**
+ * An immutable copy of the trade counts in a {@link TradeCountHistogram}, for one market and type or several
+ * combined.
+ * <p>
+ * The getters make this usable as a JMX open type, so it can be returned straight from an MXBean.
+ *
+ * @author gazbert
+ */
+public final class TradeCountSnapshot {
+
+    private final long[] counts;
+    private final long max;
+    private final long totalCount;
+
+    TradeCountSnapshot(long[] counts, long max) {
+        this.counts = counts;
+        this.max = max;
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        totalCount = total;
+    }
+
+    /**
+     * Combines this snapshot with another, e.g. from another market or another book shard. The result is the
+     * snapshot one histogram would have given had it recorded every fill.
+     *
+     * @param other a snapshot of a histogram with the same highest trackable value.
+     * @return the combined snapshot.
+     */
+    public TradeCountSnapshot plus(TradeCountSnapshot other) {
+        if (other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Can't combine snapshots with highest trackable values "
+                    + (counts.length - 1) + " and " + (other.counts.length - 1));
+        }
+        final long[] combined = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            combined[i] = counts[i] + other.counts[i];
+        }
+        return new TradeCountSnapshot(combined, Math.max(max, other.max));
+    }
+
+    /**
+     * Returns the trade count at a given percentile. This is exact unless it is above the histogram's highest
+     * trackable value, when the max is returned.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     * @return the trade count, or 0 if no fills were recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length - 1; i++) {
+            count += counts[i];
+            if (count >= countAtPercentile) {
+                return i;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return number of filled orders recorded.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the mean trade count; counts above the highest trackable value are taken as that value.
+     */
+    public double getMean() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += (double) counts[i] * i;
+        }
+        return total / totalCount;
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    public long getP90() {
+        return getValueAtPercentile(90.0);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    /**
+     * @return the highest trade count recorded, exact even above the highest trackable value.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + totalCount + " mean=" + String.format("%.2f", getMean()) + " p50=" + getP50() + " p90="
+                + getP90() + " p99=" + getP99() + " max=" + getMax();
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * <h2>Metrics</h2>
+ * 
+ * Low overhead instrumentation for the trading API and order book queries. See the
+ * {@link TestLatencyRecordingUsage} unit test class for usage.
+ * <p>
+ * {@link com.gazbert.java8.metrics.LatencyRecordingTradingApi} decorates any
+ * {@link com.gazbert.java8.defaultmethods.TradingApi} and records per-operation latencies into lock-free
+ * {@link com.gazbert.java8.metrics.LatencyHistogram}s, published over JMX and as periodic snapshots.
+ * <p>
+ * {@link com.gazbert.java8.metrics.QueryMetrics} runs {@link com.gazbert.java8.lambda.OrderBookAnalyser} queries and
+ * records rows scanned, rows matched, elapsed time and matcher cost for each named query. See the
+ * {@link TestQueryMetricsUsage} unit test class for usage.
+ * <p>
+ * {@link com.gazbert.java8.metrics.TradeCountHistogram} keeps a running, mergeable histogram of trades-to-fill per
+ * market and type, updated on each fill. See the {@link TestTradeCountHistogramUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.metrics;
\ No newline at end of file
@@ -0,0 +1,458 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.net;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.defaultmethods.TradingApi;
+
+/**
+ * A {@link TradingApi} client for a remote exchange, talking the {@link TradingProtocol} over one non-blocking
+ * connection.
+ * <p>
+ * A blocking client sends a request and waits for its response before sending the next, so it manages one request per
+ * network round trip however fast the exchange is. This client pipelines instead: the async methods, e.g.
+ * {@link #addOrderAsync(Order)}, tag each request with a correlation id, queue it and return a
+ * {@link CompletableFuture} straight away. A single I/O thread runs a {@link Selector}, batching queued requests into
+ * as few socket writes as it can and completing each future as its response arrives, in whatever order the exchange
+ * answers. Any number of threads can share one client.
+ * <p>
+ * At most <code>maxInFlight</code> requests are outstanding at a time; callers block when the window is full, so a
+ * slow exchange pushes back on them rather than the queue growing without limit.
+ * <p>
+ * The {@link TradingApi} methods wait for their response, so they still pay a round trip each - use the async
+ * methods to pipeline. They wait at most <code>requestTimeoutMillis</code>; a request that times out is dropped from
+ * the window, its future fails with a {@link SocketTimeoutException}, and the response is ignored if it turns up
+ * later. Futures are completed on the I/O thread: dependent actions should be quick, and must not wait on another
+ * response from this client. A request the exchange answers with a {@link TradingProtocol#ERROR} fails with an
+ * {@link IllegalStateException} carrying the exchange's message. If the connection fails, outstanding and later
+ * requests fail with the {@link IOException}; the blocking methods rethrow it as an {@link UncheckedIOException}.
+ * <p>
+ * A matcher can't be sent over the wire, so {@link #cancelMatching(com.gazbert.java8.lambda.OrderMatcher)} is the
+ * interface default: it fetches each market's open orders and cancels the matches one request at a time.
+ * <p>
+ * Use {@link StubExchangeServer} to try it out over loopback.
+ *
+ * @author gazbert
+ */
+public class NioTradingApiClient implements TradingApi, Closeable {
+
+    /**
+     * Default maximum number of requests in flight.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    /**
+     * Default time the {@link TradingApi} methods wait for a response.
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final Thread ioThread;
+    private final Semaphore inFlight;
+    private final long requestTimeoutMillis;
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private volatile IOException failure;
+
+    private NioTradingApiClient(SocketChannel channel, int maxInFlight, long requestTimeoutMillis)
+            throws IOException {
+        this.channel = channel;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        inFlight = new Semaphore(maxInFlight);
+        selector = Selector.open();
+        key = channel.register(selector, SelectionKey.OP_READ);
+        ioThread = new Thread(this::run, "nio-trading-api-client");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Connects to an exchange, allowing {@link #DEFAULT_MAX_IN_FLIGHT} requests in flight and waiting
+     * {@link #DEFAULT_REQUEST_TIMEOUT_MILLIS} for each response.
+     *
+     * @param address the exchange's address.
+     * @return the connected client.
+     * @throws IOException if the connection can't be made.
+     */
+    public static NioTradingApiClient connect(InetSocketAddress address) throws IOException {
+        return connect(address, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Connects to an exchange, waiting {@link #DEFAULT_REQUEST_TIMEOUT_MILLIS} for each response.
+     *
+     * @param address     the exchange's address.
+     * @param maxInFlight the most requests to have outstanding at once.
+     * @return the connected client.
+     * @throws IOException if the connection can't be made.
+     */
+    public static NioTradingApiClient connect(InetSocketAddress address, int maxInFlight) throws IOException {
+        return connect(address, maxInFlight, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Connects to an exchange.
+     *
+     * @param address              the exchange's address.
+     * @param maxInFlight          the most requests to have outstanding at once.
+     * @param requestTimeoutMillis how long the {@link TradingApi} methods wait for a response.
+     * @return the connected client.
+     * @throws IOException if the connection can't be made.
+     */
+    public static NioTradingApiClient connect(InetSocketAddress address, int maxInFlight, long requestTimeoutMillis)
+            throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        if (requestTimeoutMillis < 1) {
+            throw new IllegalArgumentException("requestTimeoutMillis must be positive: " + requestTimeoutMillis);
+        }
+        final SocketChannel channel = SocketChannel.open(address);
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            return new NioTradingApiClient(channel, maxInFlight, requestTimeoutMillis);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Async API
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Sends an add order request.
+     *
+     * @param order order to add.
+     * @return completes with true if the order was placed, false otherwise.
+     */
+    public CompletableFuture<Boolean> addOrderAsync(Order order) {
+        final long correlationId = nextCorrelationId.incrementAndGet();
+        final ByteBuffer request = ByteBuffer.allocate(TradingProtocol.ADD_ORDER_REQUEST_SIZE);
+        TradingProtocol.putAddOrder(request, correlationId, order);
+        return send(correlationId, request, TradingProtocol::readBoolean);
+    }
+
+    /**
+     * Sends a cancel order request.
+     *
+     * @param orderId id of order to cancel.
+     * @return completes with true if the order was cancelled, false otherwise.
+     */
+    public CompletableFuture<Boolean> cancelOrderAsync(UUID orderId) {
+        final long correlationId = nextCorrelationId.incrementAndGet();
+        final ByteBuffer request = ByteBuffer.allocate(TradingProtocol.CANCEL_ORDER_REQUEST_SIZE);
+        TradingProtocol.putCancelOrder(request, correlationId, orderId.getMostSignificantBits(),
+                orderId.getLeastSignificantBits());
+        return send(correlationId, request, TradingProtocol::readBoolean);
+    }
+
+    /**
+     * Sends a get open orders request.
+     *
+     * @param marketId id of market to fetch orders for.
+     * @return completes with the open orders for the market.
+     */
+    public CompletableFuture<List<Order>> getOpenOrdersAsync(int marketId) {
+        return sendMarketRequest(TradingProtocol.GET_OPEN_ORDERS, marketId, TradingProtocol::readOrders);
+    }
+
+    /**
+     * Sends a cancel all request, which the exchange carries out in one go.
+     *
+     * @param marketId id of market to cancel orders in.
+     * @return completes with the number of orders cancelled.
+     */
+    public CompletableFuture<Integer> cancelAllAsync(int marketId) {
+        return sendMarketRequest(TradingProtocol.CANCEL_ALL, marketId, TradingProtocol::readInt);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // TradingApi
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public boolean addOrder(Order order) {
+        return await(addOrderAsync(order));
+    }
+
+    @Override
+    public boolean cancelOrder(UUID orderId) {
+        return await(cancelOrderAsync(orderId));
+    }
+
+    @Override
+    public List<Order> getOpenOrders(int marketId) {
+        return await(getOpenOrdersAsync(marketId));
+    }
+
+    @Override
+    public int cancelAll(int marketId) {
+        return await(cancelAllAsync(marketId));
+    }
+
+    @Override
+    public String getImplName() {
+        return "NIO Client API Impl";
+    }
+
+    /**
+     * @return number of requests sent and not yet answered.
+     */
+    public int getInFlightCount() {
+        return pending.size();
+    }
+
+    /**
+     * Closes the connection. Requests still in flight fail.
+     */
+    @Override
+    public void close() {
+        fail(new IOException("Client closed"));
+        selector.wakeup();
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Caller side
+    // ------------------------------------------------------------------------------------------------
+
+    private <T> CompletableFuture<T> sendMarketRequest(byte command, int marketId,
+                                                       Function<ByteBuffer, T> decoder) {
+        final long correlationId = nextCorrelationId.incrementAndGet();
+        final ByteBuffer request = ByteBuffer.allocate(TradingProtocol.MARKET_REQUEST_SIZE);
+        TradingProtocol.putMarketRequest(request, command, correlationId, marketId);
+        return send(correlationId, request, decoder);
+    }
+
+    private <T> CompletableFuture<T> send(long correlationId, ByteBuffer request, Function<ByteBuffer, T> decoder) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        inFlight.acquireUninterruptibly();
+        pending.put(correlationId, new Pending<>(future, decoder));
+        if (failure != null) {
+            failPending(); // the I/O thread may have finished before this request was registered
+            return future;
+        }
+        request.flip();
+        outbound.add(request);
+        selector.wakeup();
+        return future;
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new UncheckedIOException(abandon(future,
+                    new SocketTimeoutException("No response within " + requestTimeoutMillis + "ms")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(abandon(future,
+                    new InterruptedIOException("Interrupted waiting for a response")));
+        }
+    }
+
+    /*
+     * Gives up on a request: frees its slot in the window and fails its future. complete() ignores the response if
+     * it still arrives.
+     */
+    private IOException abandon(CompletableFuture<?> future, IOException cause) {
+        if (pending.values().removeIf(request -> request.future == future)) {
+            inFlight.release();
+        }
+        future.completeExceptionally(cause);
+        return cause;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // I/O thread
+    // ------------------------------------------------------------------------------------------------
+
+    private void run() {
+        try {
+            while (failure == null) {
+                selector.select();
+                if (selector.selectedKeys().remove(key) && key.isReadable()) {
+                    read();
+                }
+                write();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException("Client I/O thread failed", e));
+        } finally {
+            fail(new IOException("Client I/O thread stopped")); // no-op unless an Error got past the catches
+            failPending();
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException("Connection closed by exchange");
+        }
+        readBuffer.flip();
+        final int partialFrameSize = TradingProtocol.readFrames(readBuffer, this::complete);
+        readBuffer.compact();
+        if (partialFrameSize > readBuffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocateDirect(partialFrameSize);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+    }
+
+    private void complete(byte command, long correlationId, ByteBuffer payload) throws ProtocolException {
+        final Pending<?> request = pending.remove(correlationId);
+        if (request == null) {
+            if (correlationId > 0 && correlationId <= nextCorrelationId.get()) {
+                return; // a late response to a request that timed out
+            }
+            throw new ProtocolException("Response to unknown request " + correlationId);
+        }
+        inFlight.release();
+        if (command == TradingProtocol.ERROR) {
+            request.future.completeExceptionally(new IllegalStateException("Request " + correlationId
+                    + " failed on the exchange: " + TradingProtocol.readError(payload)));
+        } else {
+            request.complete(payload);
+        }
+    }
+
+    private void write() throws IOException {
+        while (true) {
+            ByteBuffer request;
+            while ((request = outbound.peek()) != null && request.remaining() <= writeBuffer.remaining()) {
+                writeBuffer.put(request);
+                outbound.poll();
+            }
+            if (writeBuffer.position() == 0) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            final boolean written = !writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (!written) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE); // socket buffer full
+                return;
+            }
+        }
+    }
+
+    private synchronized void fail(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+    }
+
+    private void failPending() {
+        for (final Long correlationId : pending.keySet()) {
+            final Pending<?> request = pending.remove(correlationId);
+            if (request != null) {
+                inFlight.release();
+                request.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    private static final class Pending<T> {
+
+        private final CompletableFuture<T> future;
+        private final Function<ByteBuffer, T> decoder;
+
+        Pending(CompletableFuture<T> future, Function<ByteBuffer, T> decoder) {
+            this.future = future;
+            this.decoder = decoder;
+        }
+
+        void complete(ByteBuffer payload) {
+            try {
+                future.complete(decoder.apply(payload));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(new ProtocolException("Bad response payload: " + e));
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+import com.gazbert.java8.defaultmethods.TradingApi;
+
+/**
+ * An in-process exchange that serves the {@link TradingProtocol} over loopback, for testing clients such as
+ * {@link NioTradingApiClient} without a real matching service.
+ * <p>
+ * One thread runs a {@link Selector} over all the connections, reading each request, running it against the
+ * {@link TradingApi} it was given - e.g. an {@link com.gazbert.java8.offheap.OffHeapTradingApi} - and writing the
+ * response back. Requests are answered in the order they arrive on a connection, and the API is only ever called from
+ * the server thread. A request the API throws on, or with an unknown command or wrong size payload, gets an
+ * {@link TradingProtocol#ERROR} response; a connection that sends a frame with a bad length is closed.
+ *
+ * @author gazbert
+ */
+public final class StubExchangeServer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_GATHER = 1024;
+
+    private final TradingApi tradingApi;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Thread serverThread;
+
+    private volatile boolean closed;
+
+    private StubExchangeServer(TradingApi tradingApi) throws IOException {
+        this.tradingApi = tradingApi;
+        serverChannel = ServerSocketChannel.open();
+        selector = Selector.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            selector.close();
+            serverChannel.close();
+            throw e;
+        }
+        serverThread = new Thread(this::run, "stub-exchange-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @param tradingApi the API to run requests against.
+     * @return the running server.
+     * @throws IOException if the server socket can't be opened.
+     */
+    public static StubExchangeServer start(TradingApi tradingApi) throws IOException {
+        return new StubExchangeServer(tradingApi);
+    }
+
+    /**
+     * @return the address clients should connect to.
+     * @throws IOException if the server has been closed.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops the server and closes all its connections.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            serverThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        final Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            connection.write();
+                        } catch (IOException | RuntimeException e) {
+                            key.cancel();
+                            connection.channel.close();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the server is going down either way
+        } finally {
+            for (final SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * One client connection's buffers.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Queue<ByteBuffer> responses = new ArrayDeque<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                throw new IOException("Connection closed by client");
+            }
+            readBuffer.flip();
+            final int partialFrameSize = TradingProtocol.readFrames(readBuffer, (command, correlationId, payload) ->
+                    responses.add(respond(command, correlationId, payload)));
+            readBuffer.compact();
+            if (partialFrameSize > readBuffer.capacity()) {
+                final ByteBuffer larger = ByteBuffer.allocateDirect(partialFrameSize);
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+        }
+
+        private ByteBuffer respond(byte command, long correlationId, ByteBuffer payload) {
+            try {
+                return TradingProtocol.execute(tradingApi, command, correlationId, payload);
+            } catch (ProtocolException | RuntimeException e) {
+                return TradingProtocol.errorResponse(correlationId, e.toString());
+            }
+        }
+
+        void write() throws IOException {
+            while (!responses.isEmpty()) {
+                // gather up to MAX_GATHER queued responses into one write
+                final ByteBuffer[] batch = new ByteBuffer[Math.min(responses.size(), MAX_GATHER)];
+                final Iterator<ByteBuffer> queued = responses.iterator();
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = queued.next();
+                }
+                final long written = channel.write(batch);
+                while (!responses.isEmpty() && !responses.peek().hasRemaining()) {
+                    responses.poll();
+                }
+                if (written == 0) {
+                    break; // socket buffer full
+                }
+            }
+            key.interestOps(responses.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+}
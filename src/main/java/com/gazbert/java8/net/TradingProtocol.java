@@ -0,0 +1,409 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.net;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.defaultmethods.TradingApi;
+
+/**
+ * The binary wire format for {@link TradingApi} commands and their responses.
+ * <p>
+ * Every message is a frame:
+ * <pre>
+ * int  length          bytes after this field
+ * byte command         {@link #ADD_ORDER}, {@link #CANCEL_ORDER}, {@link #GET_OPEN_ORDERS} or {@link #CANCEL_ALL};
+ *                      a response has the request's command, or {@link #ERROR}
+ * long correlationId   chosen by the client, echoed in the response
+ * ...  payload
+ * </pre>
+ * Request payloads are an encoded order, an order id (2 longs), or a market id (int). Response payloads are a byte
+ * (1 for true) for adds and cancels, an int for mass cancels, and an int count followed by that many encoded orders
+ * for open orders. Responses can come back in any order; the correlation id ties each to its request, so a client can
+ * have many requests in flight on one connection.
+ * <p>
+ * A request the server can't carry out - the API threw, the request was malformed, or the answer is too big to send -
+ * gets an {@link #ERROR} response instead, whose payload is a UTF-8 message of up to {@value #MAX_ERROR_MESSAGE_SIZE}
+ * bytes. Clients turn it into an exception, so a failure never looks like a real false, 0 or empty answer.
+ * <p>
+ * An order is encoded in {@value #ORDER_SIZE} bytes with the same fixed-point fields as an
+ * {@link com.gazbert.java8.offheap.OffHeapOrderStore} record: id, amount, price, fee, trade count, market ordinal,
+ * type ordinal and entry timestamp. All values are big-endian.
+ *
+ * @author gazbert
+ */
+public final class TradingProtocol {
+
+    public static final byte ADD_ORDER = 1;
+    public static final byte CANCEL_ORDER = 2;
+    public static final byte GET_OPEN_ORDERS = 3;
+    public static final byte CANCEL_ALL = 4;
+
+    /**
+     * Command of the response to a request that failed.
+     */
+    public static final byte ERROR = -1;
+
+    /**
+     * Size of the length field at the start of each frame.
+     */
+    public static final int LENGTH_SIZE = 4;
+
+    /**
+     * Size of the command and correlation id, which are counted in the frame length.
+     */
+    public static final int HEADER_SIZE = 1 + 8;
+
+    /**
+     * Size of an encoded order.
+     */
+    public static final int ORDER_SIZE = 54;
+
+    /**
+     * Size of an add order request frame.
+     */
+    public static final int ADD_ORDER_REQUEST_SIZE = LENGTH_SIZE + HEADER_SIZE + ORDER_SIZE;
+
+    /**
+     * Size of a cancel order request frame.
+     */
+    public static final int CANCEL_ORDER_REQUEST_SIZE = LENGTH_SIZE + HEADER_SIZE + 16;
+
+    /**
+     * Size of a get open orders or cancel all request frame.
+     */
+    public static final int MARKET_REQUEST_SIZE = LENGTH_SIZE + HEADER_SIZE + 4;
+
+    /**
+     * Largest frame length accepted - guards against reading garbage as a huge length.
+     */
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Most bytes of message an error response carries; longer messages are cut short.
+     */
+    public static final int MAX_ERROR_MESSAGE_SIZE = 256;
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private TradingProtocol() {
+    }
+
+    /**
+     * Handles one frame read by {@link #readFrames(ByteBuffer, FrameHandler)}.
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+
+        /**
+         * @param command       the frame's command.
+         * @param correlationId the frame's correlation id.
+         * @param payload       the payload, from position to limit; only valid during the call.
+         * @throws IOException if the frame can't be handled.
+         */
+        void frame(byte command, long correlationId, ByteBuffer payload) throws IOException;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Requests
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes an add order request frame.
+     *
+     * @param out           the buffer to write to; needs {@link #ADD_ORDER_REQUEST_SIZE} bytes free.
+     * @param correlationId the correlation id.
+     * @param order         the order to add.
+     */
+    public static void putAddOrder(ByteBuffer out, long correlationId, Order order) {
+        putHeader(out, ADD_ORDER, correlationId, ORDER_SIZE);
+        putOrder(out, order);
+    }
+
+    /**
+     * Writes a cancel order request frame.
+     *
+     * @param out                    the buffer to write to; needs {@link #CANCEL_ORDER_REQUEST_SIZE} bytes free.
+     * @param correlationId          the correlation id.
+     * @param idMostSignificantBits  most significant bits of the id of the order to cancel.
+     * @param idLeastSignificantBits least significant bits of the id of the order to cancel.
+     */
+    public static void putCancelOrder(ByteBuffer out, long correlationId, long idMostSignificantBits,
+                                      long idLeastSignificantBits) {
+        putHeader(out, CANCEL_ORDER, correlationId, 16);
+        out.putLong(idMostSignificantBits);
+        out.putLong(idLeastSignificantBits);
+    }
+
+    /**
+     * Writes a get open orders or cancel all request frame.
+     *
+     * @param out           the buffer to write to; needs {@link #MARKET_REQUEST_SIZE} bytes free.
+     * @param command       {@link #GET_OPEN_ORDERS} or {@link #CANCEL_ALL}.
+     * @param correlationId the correlation id.
+     * @param marketId      the market id.
+     */
+    public static void putMarketRequest(ByteBuffer out, byte command, long correlationId, int marketId) {
+        if (command != GET_OPEN_ORDERS && command != CANCEL_ALL) {
+            throw new IllegalArgumentException("Not a market command: " + command);
+        }
+        putHeader(out, command, correlationId, 4);
+        out.putInt(marketId);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Server side
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs a request against an API and returns the response frame.
+     *
+     * @param api           the API to run the request against.
+     * @param command       the request's command.
+     * @param correlationId the request's correlation id.
+     * @param payload       the request's payload.
+     * @return the response frame, ready to be written.
+     * @throws ProtocolException if the command is unknown or the payload is the wrong size.
+     */
+    public static ByteBuffer execute(TradingApi api, byte command, long correlationId, ByteBuffer payload)
+            throws ProtocolException {
+        final ByteBuffer response;
+        switch (command) {
+            case ADD_ORDER:
+                checkPayload(command, payload, ORDER_SIZE);
+                response = booleanResponse(command, correlationId, api.addOrder(getOrder(payload)));
+                break;
+            case CANCEL_ORDER:
+                checkPayload(command, payload, 16);
+                response = booleanResponse(command, correlationId,
+                        api.cancelOrder(new UUID(payload.getLong(), payload.getLong())));
+                break;
+            case GET_OPEN_ORDERS:
+                checkPayload(command, payload, 4);
+                response = ordersResponse(command, correlationId, api.getOpenOrders(payload.getInt()));
+                break;
+            case CANCEL_ALL:
+                checkPayload(command, payload, 4);
+                response = intResponse(command, correlationId, api.cancelAll(payload.getInt()));
+                break;
+            default:
+                throw new ProtocolException("Unknown command " + command);
+        }
+        response.flip();
+        return response;
+    }
+
+    /**
+     * Returns the {@link #ERROR} response for a request that couldn't be run, e.g. because the API threw, or whose
+     * real response can't be sent.
+     *
+     * @param correlationId the request's correlation id.
+     * @param message       what went wrong; cut to {@link #MAX_ERROR_MESSAGE_SIZE} bytes.
+     * @return the response frame, ready to be written.
+     */
+    public static ByteBuffer errorResponse(long correlationId, String message) {
+        final byte[] bytes = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        final int size = Math.min(bytes.length, MAX_ERROR_MESSAGE_SIZE);
+        final ByteBuffer response = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + size);
+        putHeader(response, ERROR, correlationId, size);
+        response.put(bytes, 0, size);
+        response.flip();
+        return response;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Client side
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * @param payload an add or cancel order response payload.
+     * @return the result.
+     */
+    public static boolean readBoolean(ByteBuffer payload) {
+        return payload.get() != 0;
+    }
+
+    /**
+     * @param payload a cancel all response payload.
+     * @return the number of orders cancelled.
+     */
+    public static int readInt(ByteBuffer payload) {
+        return payload.getInt();
+    }
+
+    /**
+     * @param payload an {@link #ERROR} response payload.
+     * @return the error message.
+     */
+    public static String readError(ByteBuffer payload) {
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param payload a get open orders response payload.
+     * @return the orders.
+     * @throws IllegalArgumentException if the count is more than the payload holds.
+     */
+    public static List<Order> readOrders(ByteBuffer payload) {
+        final int count = payload.getInt();
+        if (count < 0 || count > payload.remaining() / ORDER_SIZE) {
+            throw new IllegalArgumentException("Count of " + count + " orders in a payload with "
+                    + payload.remaining() + " bytes left");
+        }
+        final List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(getOrder(payload));
+        }
+        return orders;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Framing and orders
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the complete frames in a buffer, leaving any partial frame at the end unread.
+     *
+     * @param in      the buffer, ready for reading; its position is moved past the frames read.
+     * @param handler called for each frame.
+     * @return the size of the partial frame left in the buffer, including its length field, or 0 if there is no
+     *     partial frame or its length hasn't arrived yet. The buffer must have at least this capacity to read it.
+     * @throws IOException if a frame length is out of range, or the handler throws it.
+     */
+    public static int readFrames(ByteBuffer in, FrameHandler handler) throws IOException {
+        while (in.remaining() >= LENGTH_SIZE) {
+            final int start = in.position();
+            final int length = in.getInt(start);
+            if (length < HEADER_SIZE || length > MAX_FRAME_LENGTH) {
+                throw new ProtocolException("Bad frame length " + length);
+            }
+            if (in.remaining() < LENGTH_SIZE + length) {
+                return LENGTH_SIZE + length;
+            }
+            final int end = start + LENGTH_SIZE + length;
+            final int limit = in.limit();
+            in.position(start + LENGTH_SIZE);
+            final byte command = in.get();
+            final long correlationId = in.getLong();
+            in.limit(end);
+            try {
+                handler.frame(command, correlationId, in);
+            } finally {
+                in.limit(limit);
+                in.position(end);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Encodes an order.
+     *
+     * @param out   the buffer to write to; needs {@link #ORDER_SIZE} bytes free.
+     * @param order the order.
+     */
+    public static void putOrder(ByteBuffer out, Order order) {
+        out.putLong(order.getIdMostSignificantBits());
+        out.putLong(order.getIdLeastSignificantBits());
+        out.putLong(order.getFixedPointAmount());
+        out.putLong(order.getFixedPointPrice());
+        out.putLong(order.getFixedPointFee());
+        out.putInt(order.getTradeCountToFill());
+        out.put((byte) order.getMarketId().ordinal());
+        out.put((byte) order.getType().ordinal());
+        out.putLong(order.getEntryTimestamp());
+    }
+
+    /**
+     * Decodes an order.
+     *
+     * @param in the buffer to read from.
+     * @return the order.
+     */
+    public static Order getOrder(ByteBuffer in) {
+        final UUID id = new UUID(in.getLong(), in.getLong());
+        final long amount = in.getLong();
+        final long price = in.getLong();
+        final long fee = in.getLong();
+        final int tradeCountToFill = in.getInt();
+        final Market market = MARKETS[in.get()];
+        final Type type = TYPES[in.get()];
+        final long entryTimestamp = in.getLong();
+        final Order order = new Order(id, market, type, FixedPoint.toBigDecimal(amount), FixedPoint.toBigDecimal(price),
+                FixedPoint.toBigDecimal(fee));
+        order.setTradeCountToFill(tradeCountToFill);
+        order.setEntryTimestamp(entryTimestamp);
+        return order;
+    }
+
+    private static void putHeader(ByteBuffer out, byte command, long correlationId, int payloadSize) {
+        out.putInt(HEADER_SIZE + payloadSize);
+        out.put(command);
+        out.putLong(correlationId);
+    }
+
+    private static ByteBuffer booleanResponse(byte command, long correlationId, boolean result) {
+        final ByteBuffer response = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + 1);
+        putHeader(response, command, correlationId, 1);
+        response.put((byte) (result ? 1 : 0));
+        return response;
+    }
+
+    private static ByteBuffer intResponse(byte command, long correlationId, int result) {
+        final ByteBuffer response = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + 4);
+        putHeader(response, command, correlationId, 4);
+        response.putInt(result);
+        return response;
+    }
+
+    private static ByteBuffer ordersResponse(byte command, long correlationId, List<Order> orders) {
+        final ByteBuffer response = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + 4 + orders.size() * ORDER_SIZE);
+        putHeader(response, command, correlationId, 4 + orders.size() * ORDER_SIZE);
+        response.putInt(orders.size());
+        for (final Order order : orders) {
+            putOrder(response, order);
+        }
+        return response;
+    }
+
+    private static void checkPayload(byte command, ByteBuffer payload, int size) throws ProtocolException {
+        if (payload.remaining() != size) {
+            throw new ProtocolException("Command " + command + " needs a " + size + " byte payload, got "
+                    + payload.remaining());
+        }
+    }
+}
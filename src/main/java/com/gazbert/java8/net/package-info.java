@@ -0,0 +1,11 @@
+/**
+ * <h2>Networked Trading API</h2>
+ * 
+ * A binary {@link com.gazbert.java8.net.TradingProtocol} for {@link com.gazbert.java8.defaultmethods.TradingApi}
+ * commands, a non-blocking {@link com.gazbert.java8.net.NioTradingApiClient} that pipelines many requests over one
+ * connection, and a {@link com.gazbert.java8.net.StubExchangeServer} for testing over loopback. See the
+ * {@link TestNioTradingApiClientUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.net;
@@ -0,0 +1,704 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.IndexedSpliterator;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.PrimitiveOrderBook;
+import com.gazbert.java8.common.VersionedOrderBook;
+
+/**
+ * Stores orders outside of the Java heap.
+ * <p>
+ * Each order is held as a fixed size record in a direct or memory-mapped {@link ByteBuffer}. Amounts, prices and fees
+ * are stored as {@link FixedPoint} longs, and the UUID as its 2 long halves. The records are kept dense: removing an
+ * order moves the last record into the hole, so slots <code>0</code> to <code>size() - 1</code> are always in use.
+ * <p>
+ * Orders are looked up by id using an open addressing hash index that also lives off-heap. So, apart from a handful of
+ * fields, the heap footprint of the store is the same no matter how many orders it holds.
+ * <p>
+ * The store also keeps an off-heap partition of slots per {@link Market}, so the orders in one market can be walked -
+ * or all cancelled - in time proportional to the number of orders in that market, not the size of the store.
+ * <p>
+ * Record layout:
+ * <pre>
+ *  0  id most significant bits   long
+ *  8  id least significant bits  long
+ * 16  amount                     long (fixed-point)
+ * 24  price                      long (fixed-point)
+ * 32  fee                        long (fixed-point)
+ * 40  trade count to fill        int
+ * 44  market ordinal             byte
+ * 45  type ordinal               byte
+ * 46  reserved
+ * 48  entry sequence             long
+ * 56  entry timestamp            long (nanos since the epoch)
+ * </pre>
+ * The entry sequence goes up by one for each order added, so it gives the time priority of resting orders. The entry
+ * timestamp says when the order was added, as far as whoever added it is concerned.
+ * Every add, remove, amount and trade count update bumps the store {@link #getVersion() version}.
+ * <p>
+ * The store is not thread-safe.
+ *
+ * @author gazbert
+ */
+public final class OffHeapOrderStore implements VersionedOrderBook, PrimitiveOrderBook {
+
+    /**
+     * Size of an order record in bytes.
+     */
+    public static final int RECORD_SIZE = 64;
+
+    /**
+     * Maximum number of orders a single store can hold.
+     */
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE / RECORD_SIZE - 1;
+
+    private static final int ID_MSB_OFFSET = 0;
+    private static final int ID_LSB_OFFSET = 8;
+    private static final int AMOUNT_OFFSET = 16;
+    private static final int PRICE_OFFSET = 24;
+    private static final int FEE_OFFSET = 32;
+    private static final int TRADE_COUNT_OFFSET = 40;
+    private static final int MARKET_OFFSET = 44;
+    private static final int TYPE_OFFSET = 45;
+    private static final int SEQUENCE_OFFSET = 48;
+    private static final int ENTRY_TIMESTAMP_OFFSET = 56;
+
+    /**
+     * The first record holds the store header - the size and next entry sequence - so a mapped store can be reopened.
+     */
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    private static final int SIZE_OFFSET = 0;
+    private static final int NEXT_SEQUENCE_OFFSET = 8;
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final ByteBuffer records;
+
+    /**
+     * Hash index of slot + 1 for each order id; 0 marks an empty index entry.
+     */
+    private final ByteBuffer index;
+    private final int indexMask;
+
+    /**
+     * Slots of the orders in each market: market m's slots are entries m * capacity up to m * capacity + its size.
+     */
+    private final ByteBuffer marketSlots;
+
+    /**
+     * Where each slot's entry is within its market's partition.
+     */
+    private final ByteBuffer marketPositions;
+    private final int[] marketSizes = new int[MARKETS.length];
+
+    private final int capacity;
+    private int size;
+    private long version;
+
+    private OffHeapOrderStore(ByteBuffer records, int capacity) {
+
+        this.records = records.order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+
+        int indexSize = Integer.highestOneBit(Math.max(capacity, 1)) << 2; // keeps load factor at or below 0.5
+        index = ByteBuffer.allocateDirect(indexSize * Integer.BYTES).order(ByteOrder.nativeOrder());
+        indexMask = indexSize - 1;
+
+        marketSlots = ByteBuffer.allocateDirect(MARKETS.length * capacity * Integer.BYTES)
+                .order(ByteOrder.nativeOrder());
+        marketPositions = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+
+        size = this.records.getInt(SIZE_OFFSET);
+        for (int slot = 0; slot < size; slot++) {
+            indexPut(idMsb(slot), idLsb(slot), slot);
+            partitionAdd(slot);
+        }
+    }
+
+    /**
+     * Creates a store backed by a direct buffer.
+     *
+     * @param capacity the maximum number of orders the store can hold.
+     * @return the store.
+     */
+    public static OffHeapOrderStore allocateDirect(int capacity) {
+        checkCapacity(capacity);
+        return new OffHeapOrderStore(ByteBuffer.allocateDirect(HEADER_SIZE + capacity * RECORD_SIZE), capacity);
+    }
+
+    /**
+     * Creates a store backed by a memory-mapped file. If the file already holds a store, its orders are loaded.
+     * <p>
+     * The mapping stays valid after the channel used to create it is closed.
+     *
+     * @param file     the file to map; it is created if it does not exist.
+     * @param capacity the maximum number of orders the store can hold.
+     * @return the store.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static OffHeapOrderStore map(Path file, int capacity) throws IOException {
+        checkCapacity(capacity);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            return new OffHeapOrderStore(buffer, capacity);
+        }
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity < 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 0 and " + MAX_CAPACITY + ": " + capacity);
+        }
+    }
+
+    /**
+     * Adds an order, keeping its {@link Order#getEntryTimestamp() entry timestamp}.
+     *
+     * @param order the order to add.
+     * @return true if the order was added, false if the store is full or already holds an order with the same id.
+     */
+    public boolean add(Order order) {
+        return add(order, order.getEntryTimestamp());
+    }
+
+    /**
+     * Adds an order, stamping it with an entry timestamp.
+     *
+     * @param order          the order to add.
+     * @param entryTimestamp when the order was entered, in nanos since the epoch.
+     * @return true if the order was added, false if the store is full or already holds an order with the same id.
+     */
+    public boolean add(Order order, long entryTimestamp) {
+
+        final long msb = order.getIdMostSignificantBits();
+        final long lsb = order.getIdLeastSignificantBits();
+        if (size == capacity || indexFind(msb, lsb) >= 0) {
+            return false;
+        }
+
+        final int slot = size;
+        final int offset = offset(slot);
+        records.putLong(offset + ID_MSB_OFFSET, msb);
+        records.putLong(offset + ID_LSB_OFFSET, lsb);
+        records.putLong(offset + AMOUNT_OFFSET, order.getFixedPointAmount());
+        records.putLong(offset + PRICE_OFFSET, order.getFixedPointPrice());
+        records.putLong(offset + FEE_OFFSET, order.getFixedPointFee());
+        records.putInt(offset + TRADE_COUNT_OFFSET, order.getTradeCountToFill());
+        records.put(offset + MARKET_OFFSET, (byte) order.getMarketId().ordinal());
+        records.put(offset + TYPE_OFFSET, (byte) order.getType().ordinal());
+        final long sequence = records.getLong(NEXT_SEQUENCE_OFFSET);
+        records.putLong(offset + SEQUENCE_OFFSET, sequence);
+        records.putLong(NEXT_SEQUENCE_OFFSET, sequence + 1);
+        records.putLong(offset + ENTRY_TIMESTAMP_OFFSET, entryTimestamp);
+
+        indexPut(msb, lsb, slot);
+        partitionAdd(slot);
+        setSize(size + 1);
+        version++;
+        return true;
+    }
+
+    /**
+     * Removes an order. The last order in the store is moved into the removed order's slot.
+     *
+     * @param orderId id of the order to remove.
+     * @return true if the order was removed, false if it was not found.
+     */
+    public boolean remove(UUID orderId) {
+        return remove(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits());
+    }
+
+    /**
+     * Removes an order without needing a UUID object. The last order in the store is moved into the removed order's
+     * slot.
+     *
+     * @param msb most significant bits of the id of the order to remove.
+     * @param lsb least significant bits of the id of the order to remove.
+     * @return true if the order was removed, false if it was not found.
+     */
+    public boolean remove(long msb, long lsb) {
+
+        final int position = indexFind(msb, lsb);
+        if (position < 0) {
+            return false;
+        }
+
+        removeSlot(index.getInt(position * Integer.BYTES) - 1, position);
+        return true;
+    }
+
+    /**
+     * Removes the order in a slot. The last order in the store is moved into the slot.
+     *
+     * @param slot the slot.
+     */
+    public void removeAt(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " not in use, size is " + size);
+        }
+        removeSlot(slot, indexFind(idMsb(slot), idLsb(slot)));
+    }
+
+    /**
+     * Returns the slot an order is stored in. Slots change when orders are removed.
+     *
+     * @param orderId the order id.
+     * @return the slot, or -1 if the order is not in the store.
+     */
+    public int slotOf(UUID orderId) {
+        return slotOf(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits());
+    }
+
+    /**
+     * Returns the slot an order is stored in, without needing a UUID object. Slots change when orders are removed.
+     *
+     * @param msb most significant bits of the order id.
+     * @param lsb least significant bits of the order id.
+     * @return the slot, or -1 if the order is not in the store.
+     */
+    public int slotOf(long msb, long lsb) {
+        final int position = indexFind(msb, lsb);
+        return position < 0 ? -1 : index.getInt(position * Integer.BYTES) - 1;
+    }
+
+    /**
+     * @return the number of orders in the store.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param market the market.
+     * @return the number of orders in the market.
+     */
+    public int marketSize(Market market) {
+        return marketSizes[market.ordinal()];
+    }
+
+    /**
+     * Returns the slot of one of a market's orders. Together with {@link #marketSize(Market)}, this walks a market's
+     * orders without looking at any others. Positions are in no particular order; removing an order moves the last
+     * order in its market into its position.
+     *
+     * @param market   the market.
+     * @param position position in the market, from 0 to <code>marketSize(market) - 1</code>.
+     * @return the slot.
+     */
+    public int marketSlot(Market market, int position) {
+        if (position < 0 || position >= marketSizes[market.ordinal()]) {
+            throw new IndexOutOfBoundsException("Position " + position + " not in use, " + market + " size is "
+                    + marketSizes[market.ordinal()]);
+        }
+        return partitionSlot(market.ordinal(), position);
+    }
+
+    /**
+     * @return the maximum number of orders the store can hold.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public UUID getId(int slot) {
+        return new UUID(idMsb(slot), idLsb(slot));
+    }
+
+    public long getIdMostSignificantBits(int slot) {
+        return idMsb(slot);
+    }
+
+    public long getIdLeastSignificantBits(int slot) {
+        return idLsb(slot);
+    }
+
+    public Market getMarketId(int slot) {
+        return MARKETS[records.get(offset(slot) + MARKET_OFFSET)];
+    }
+
+    public Type getType(int slot) {
+        return TYPES[records.get(offset(slot) + TYPE_OFFSET)];
+    }
+
+    @Override
+    public int getMarketOrdinal(int slot) {
+        return records.get(offset(slot) + MARKET_OFFSET);
+    }
+
+    @Override
+    public int getTypeOrdinal(int slot) {
+        return records.get(offset(slot) + TYPE_OFFSET);
+    }
+
+    /**
+     * @param slot the slot.
+     * @return the order amount as a fixed-point value.
+     */
+    @Override
+    public long getAmount(int slot) {
+        return records.getLong(offset(slot) + AMOUNT_OFFSET);
+    }
+
+    /**
+     * Sets the amount still to fill, e.g. after a partial fill.
+     *
+     * @param slot   the slot.
+     * @param amount the new amount as a fixed-point value.
+     */
+    public void setAmount(int slot, long amount) {
+        records.putLong(offset(slot) + AMOUNT_OFFSET, amount);
+        version++;
+    }
+
+    /**
+     * @param slot the slot.
+     * @return the order price as a fixed-point value.
+     */
+    @Override
+    public long getPrice(int slot) {
+        return records.getLong(offset(slot) + PRICE_OFFSET);
+    }
+
+    /**
+     * @param slot the slot.
+     * @return the order fee as a fixed-point value.
+     */
+    @Override
+    public long getFee(int slot) {
+        return records.getLong(offset(slot) + FEE_OFFSET);
+    }
+
+    /**
+     * @param slot the slot.
+     * @return the entry sequence of the order - lower sequences were added first.
+     */
+    public long getSequence(int slot) {
+        return records.getLong(offset(slot) + SEQUENCE_OFFSET);
+    }
+
+    /**
+     * @param slot the slot.
+     * @return when the order was entered, in nanos since the epoch.
+     */
+    public long getEntryTimestamp(int slot) {
+        return records.getLong(offset(slot) + ENTRY_TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * Re-stamps an order, e.g. when it is re-entered and so loses its place in the queue.
+     *
+     * @param slot           the slot.
+     * @param entryTimestamp when the order was entered, in nanos since the epoch.
+     */
+    public void setEntryTimestamp(int slot, long entryTimestamp) {
+        records.putLong(offset(slot) + ENTRY_TIMESTAMP_OFFSET, entryTimestamp);
+        version++;
+    }
+
+    public int getTradeCountToFill(int slot) {
+        return records.getInt(offset(slot) + TRADE_COUNT_OFFSET);
+    }
+
+    public void setTradeCountToFill(int slot, int tradeCountToFill) {
+        records.putInt(offset(slot) + TRADE_COUNT_OFFSET, tradeCountToFill);
+        version++;
+    }
+
+    /**
+     * Returns a new flyweight view onto this store. Move it to a slot using {@link OrderView#moveTo(int)}.
+     *
+     * @return the view.
+     */
+    public OrderView newView() {
+        return new OrderView(this);
+    }
+
+    /**
+     * Copies an order out of the store onto the heap.
+     *
+     * @param slot the slot.
+     * @return the order copy.
+     */
+    public Order copyOf(int slot) {
+        final Order order = new Order(getId(slot), getMarketId(slot), getType(slot),
+                FixedPoint.toBigDecimal(getAmount(slot)), FixedPoint.toBigDecimal(getPrice(slot)),
+                FixedPoint.toBigDecimal(getFee(slot)));
+        order.setTradeCountToFill(getTradeCountToFill(slot));
+        order.setEntryTimestamp(getEntryTimestamp(slot));
+        return order;
+    }
+
+    /**
+     * Iterates over the orders in the store.
+     * <p>
+     * The iterator returns the same {@link OrderView} each time, moved on to the next slot - don't hang on to it.
+     * Use {@link #copyOf(int)} if you need to keep an order.
+     *
+     * @return the iterator.
+     */
+    @Override
+    public Iterator<Order> iterator() {
+
+        final OrderView view = newView();
+
+        return new Iterator<Order>() {
+            private int slot;
+
+            @Override
+            public boolean hasNext() {
+                return slot < size;
+            }
+
+            @Override
+            public Order next() {
+                if (slot >= size) {
+                    throw new NoSuchElementException();
+                }
+                return view.moveTo(slot++);
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator over the orders in the store that splits exactly in half, so parallel streams over the
+     * store are evenly balanced.
+     * <p>
+     * Each split has its own {@link OrderView}, moved on to each slot in turn like {@link #iterator()}'s - map it to
+     * something else, or use {@link #copyOf(int)}, before collecting orders. The store must not be changed during
+     * traversal; if it is, a {@link ConcurrentModificationException} is thrown at the end.
+     *
+     * @return the spliterator.
+     */
+    @Override
+    public Spliterator<Order> spliterator() {
+        return new SlotSpliterator(0, size, version);
+    }
+
+    /**
+     * @return a sequential stream over the orders in the store, see {@link #spliterator()}.
+     */
+    public Stream<Order> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream over the orders in the store, see {@link #spliterator()}.
+     */
+    public Stream<Order> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Record helpers
+    // ------------------------------------------------------------------------------------------------
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+
+    private long idMsb(int slot) {
+        return records.getLong(offset(slot) + ID_MSB_OFFSET);
+    }
+
+    private long idLsb(int slot) {
+        return records.getLong(offset(slot) + ID_LSB_OFFSET);
+    }
+
+    private void removeSlot(int slot, int indexPosition) {
+
+        indexRemove(indexPosition);
+        partitionRemove(slot);
+
+        final int last = size - 1;
+        if (slot != last) {
+            final int from = offset(last);
+            final int to = offset(slot);
+            for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+                records.putLong(to + i, records.getLong(from + i));
+            }
+            index.putInt(indexFind(idMsb(slot), idLsb(slot)) * Integer.BYTES, slot + 1);
+            partitionMove(last, slot);
+        }
+        setSize(last);
+        version++;
+    }
+
+    private void setSize(int size) {
+        this.size = size;
+        records.putInt(SIZE_OFFSET, size);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Market partition helpers
+    // ------------------------------------------------------------------------------------------------
+
+    private int partitionSlot(int market, int position) {
+        return marketSlots.getInt((market * capacity + position) * Integer.BYTES);
+    }
+
+    private void setPartitionSlot(int market, int position, int slot) {
+        marketSlots.putInt((market * capacity + position) * Integer.BYTES, slot);
+        marketPositions.putInt(slot * Integer.BYTES, position);
+    }
+
+    private void partitionAdd(int slot) {
+        final int market = records.get(offset(slot) + MARKET_OFFSET);
+        setPartitionSlot(market, marketSizes[market]++, slot);
+    }
+
+    private void partitionRemove(int slot) {
+        final int market = records.get(offset(slot) + MARKET_OFFSET);
+        final int last = --marketSizes[market];
+        setPartitionSlot(market, marketPositions.getInt(slot * Integer.BYTES), partitionSlot(market, last));
+    }
+
+    /*
+     * The record in slot from has been copied to slot to; point its partition entry at the new slot.
+     */
+    private void partitionMove(int from, int to) {
+        final int market = records.get(offset(to) + MARKET_OFFSET);
+        setPartitionSlot(market, marketPositions.getInt(from * Integer.BYTES), to);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Index helpers - linear probing, with backward shift on removal so we never need tombstones.
+    // ------------------------------------------------------------------------------------------------
+
+    private int home(long msb, long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & indexMask;
+    }
+
+    private int indexFind(long msb, long lsb) {
+        int position = home(msb, lsb);
+        int entry;
+        while ((entry = index.getInt(position * Integer.BYTES)) != 0) {
+            if (idMsb(entry - 1) == msb && idLsb(entry - 1) == lsb) {
+                return position;
+            }
+            position = (position + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private void indexPut(long msb, long lsb, int slot) {
+        int position = home(msb, lsb);
+        while (index.getInt(position * Integer.BYTES) != 0) {
+            position = (position + 1) & indexMask;
+        }
+        index.putInt(position * Integer.BYTES, slot + 1);
+    }
+
+    private void indexRemove(int position) {
+        int hole = position;
+        int next = position;
+        while (true) {
+            next = (next + 1) & indexMask;
+            final int entry = index.getInt(next * Integer.BYTES);
+            if (entry == 0) {
+                break;
+            }
+            // move the entry back into the hole unless its home lies cyclically between the hole and where it is
+            final int entryHome = home(idMsb(entry - 1), idLsb(entry - 1));
+            final boolean homeInRange = hole <= next
+                    ? hole < entryHome && entryHome <= next
+                    : hole < entryHome || entryHome <= next;
+            if (!homeInRange) {
+                index.putInt(hole * Integer.BYTES, entry);
+                hole = next;
+            }
+        }
+        index.putInt(hole * Integer.BYTES, 0);
+    }
+
+    /*
+     * Splits the slot range, giving each split its own view.
+     */
+    private final class SlotSpliterator extends IndexedSpliterator<Order> {
+
+        private final OrderView view = newView();
+        private final long expectedVersion;
+
+        SlotSpliterator(int origin, int fence, long expectedVersion) {
+            super(origin, fence);
+            this.expectedVersion = expectedVersion;
+        }
+
+        @Override
+        protected Order get(int slot) {
+            return view.moveTo(slot);
+        }
+
+        @Override
+        protected IndexedSpliterator<Order> slice(int origin, int fence) {
+            return new SlotSpliterator(origin, fence, expectedVersion);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Order> action) {
+            super.forEachRemaining(action);
+            if (version != expectedVersion) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public int characteristics() {
+            return super.characteristics() | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.gazbert.java8.clock.ExchangeClock;
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.feed.BookEventFeed;
+import com.gazbert.java8.feed.BookEventSource;
+import com.gazbert.java8.feed.BookEventSubscriber;
+import com.gazbert.java8.feed.BookEventSubscription;
+import com.gazbert.java8.lambda.OrderMatcher;
+import com.gazbert.java8.metrics.TradeCountHistogram;
+
+/**
+ * An implementation of the Trading API that keeps its open orders in an {@link OffHeapOrderStore}.
+ * <p>
+ * Orders are entered through a {@link StampedOrderBook}, so other threads can query the live book with
+ * {@link #getOrderBook()} and {@link StampedOrderBook#read(java.util.function.Function)}, e.g. running the
+ * {@link com.gazbert.java8.lambda.OrderBookAnalyser} over it, without blocking order entry. When nothing else is
+ * changing the book, {@link #getOrderStore()} can be passed to the analyser directly.
+ * <p>
+ * Changes to the book are published as a {@link BookEventSource}, so consumers can follow the book without polling
+ * {@link #getOpenOrders(int)}.
+ * <p>
+ * The number of trades each filled order took is kept in a {@link TradeCountHistogram} per market and type, so tail
+ * trade counts can be read with {@link #getTradeCountHistogram()} without going back over the book.
+ *
+ * @author gazbert
+ */
+public class OffHeapTradingApi implements TradingApi, BookEventSource {
+
+    private static final Market[] MARKETS = Market.values();
+
+    private final StampedOrderBook orderBook;
+    private final BookEventFeed bookEventFeed;
+    private final TradeCountHistogram tradeCountHistogram = new TradeCountHistogram();
+    private final ExchangeClock clock;
+
+    /**
+     * Creates the API using the given store. Book events are delivered on the common fork-join pool.
+     *
+     * @param orderStore the store to hold open orders in.
+     */
+    public OffHeapTradingApi(OffHeapOrderStore orderStore) {
+        this(orderStore, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates the API using the given store, stamping orders with the shared {@link ExchangeClock}.
+     *
+     * @param orderStore        the store to hold open orders in.
+     * @param bookEventExecutor runs delivery of book events to subscribers.
+     */
+    public OffHeapTradingApi(OffHeapOrderStore orderStore, Executor bookEventExecutor) {
+        this(orderStore, bookEventExecutor, ExchangeClock.systemUTC());
+    }
+
+    /**
+     * Creates the API using the given store.
+     *
+     * @param orderStore        the store to hold open orders in.
+     * @param bookEventExecutor runs delivery of book events to subscribers.
+     * @param clock             stamps orders with their entry time.
+     */
+    public OffHeapTradingApi(OffHeapOrderStore orderStore, Executor bookEventExecutor, ExchangeClock clock) {
+        this.clock = clock;
+        bookEventFeed = new BookEventFeed(bookEventExecutor);
+        orderBook = new StampedOrderBook(orderStore, StampedOrderBook.DEFAULT_MAX_OPTIMISTIC_ATTEMPTS,
+                bookEventFeed.andThen(tradeCountHistogram));
+    }
+
+    /**
+     * Adds an order, stamping its copy in the store with the current {@link ExchangeClock#epochNanos()}. The order
+     * passed in is not changed.
+     *
+     * @param order order to add.
+     * @return true if order placed successfully, false otherwise.
+     */
+    @Override
+    public boolean addOrder(Order order) {
+        return orderBook.add(order, clock.epochNanos());
+    }
+
+    @Override
+    public boolean cancelOrder(UUID orderId) {
+        return orderBook.remove(orderId);
+    }
+
+    /**
+     * Cancels an order without needing a UUID object.
+     *
+     * @param idMostSignificantBits most significant bits of the id of the order to cancel.
+     * @param idLeastSignificantBits least significant bits of the id of the order to cancel.
+     * @return true if order cancelled successfully, false otherwise.
+     */
+    public boolean cancelOrder(long idMostSignificantBits, long idLeastSignificantBits) {
+        return orderBook.remove(idMostSignificantBits, idLeastSignificantBits);
+    }
+
+    /**
+     * Cancels all open orders in a market in one go, touching only that market's orders. Subscribers to the book
+     * get a single mass cancel event rather than one per order.
+     *
+     * @param marketId ordinal of the {@link Market} to cancel orders in.
+     * @return number of orders cancelled.
+     */
+    @Override
+    public int cancelAll(int marketId) {
+        if (marketId < 0 || marketId >= MARKETS.length) {
+            return 0;
+        }
+        return orderBook.cancelAll(MARKETS[marketId]);
+    }
+
+    /**
+     * Cancels all open orders matching a query in one pass over the book. Subscribers to the book get a single mass
+     * cancel event rather than one per order.
+     *
+     * @param orderMatcher picks the orders to cancel. It is given flyweight views - don't hang on to them.
+     * @return number of orders cancelled.
+     */
+    @Override
+    public int cancelMatching(OrderMatcher orderMatcher) {
+        return orderBook.cancelMatching(null, orderMatcher);
+    }
+
+    /**
+     * Cancels the open orders in one market that match a query, looking only at that market's orders.
+     *
+     * @param marketId     ordinal of the {@link Market} to cancel orders in.
+     * @param orderMatcher picks the orders to cancel. It is given flyweight views - don't hang on to them.
+     * @return number of orders cancelled.
+     */
+    public int cancelMatching(int marketId, OrderMatcher orderMatcher) {
+        if (marketId < 0 || marketId >= MARKETS.length) {
+            return 0;
+        }
+        return orderBook.cancelMatching(MARKETS[marketId], orderMatcher);
+    }
+
+    /**
+     * Fills an order, in full or in part. A full fill takes the order off the book.
+     *
+     * @param orderId id of the order to fill.
+     * @param amount  the amount filled.
+     * @return true if the order was filled, false if it was not found.
+     * @throws IllegalArgumentException if the amount is not positive or is more than the order's remaining amount.
+     */
+    public boolean fillOrder(UUID orderId, BigDecimal amount) {
+        return orderBook.fill(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits(),
+                FixedPoint.toFixedPoint(amount));
+    }
+
+    /**
+     * Returns on-heap copies of the open orders for a market.
+     *
+     * @param marketId ordinal of the {@link Market} to fetch orders for.
+     * @return list of open orders for given market, empty list if none found.
+     */
+    @Override
+    public List<Order> getOpenOrders(int marketId) {
+        if (marketId < 0 || marketId >= MARKETS.length) {
+            return new ArrayList<>();
+        }
+        final Market market = MARKETS[marketId];
+        return orderBook.read(orderStore -> {
+            final int marketSize = orderStore.marketSize(market);
+            final List<Order> openOrders = new ArrayList<>(marketSize);
+            for (int position = 0; position < marketSize; position++) {
+                openOrders.add(orderStore.copyOf(orderStore.marketSlot(market, position)));
+            }
+            return openOrders;
+        });
+    }
+
+    /**
+     * Subscribes to changes to the book. The snapshot of current price levels is taken under the book's write lock,
+     * so it lines up exactly with the changes that follow.
+     *
+     * @param subscriber the subscriber.
+     * @param bufferSize number of events to hold for the subscriber before it is conflated.
+     * @return the subscription.
+     */
+    @Override
+    public BookEventSubscription subscribe(BookEventSubscriber subscriber, int bufferSize) {
+        final AtomicReference<BookEventSubscription> subscription = new AtomicReference<>();
+        orderBook.write(orderStore -> subscription.set(bookEventFeed.subscribe(subscriber, bufferSize, orderStore)));
+        return subscription.get();
+    }
+
+    @Override
+    public String getImplName() {
+        return "Off-Heap API Impl";
+    }
+
+    /**
+     * @return the store holding the open orders.
+     */
+    public OffHeapOrderStore getOrderStore() {
+        return orderBook.getOrderStore();
+    }
+
+    /**
+     * @return the clock orders are stamped with.
+     */
+    public ExchangeClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the number of trades it took to fill each order filled through {@link #fillOrder(UUID, BigDecimal)}.
+     */
+    public TradeCountHistogram getTradeCountHistogram() {
+        return tradeCountHistogram;
+    }
+
+    /**
+     * @return the thread-safe book wrapping the store, for querying while orders are being entered.
+     */
+    public StampedOrderBook getOrderBook() {
+        return orderBook;
+    }
+}
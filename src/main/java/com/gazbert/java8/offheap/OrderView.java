@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+
+/**
+ * A flyweight {@link Order} that reads its state straight out of an {@link OffHeapOrderStore} slot.
+ * <p>
+ * One view can be moved across any number of slots, so scanning a store creates no order objects. The BigDecimal and
+ * UUID getters do have to create values though; use the fixed-point getters for allocation-free access.
+ *
+ * @author gazbert
+ */
+public final class OrderView extends Order {
+
+    private final OffHeapOrderStore store;
+    private int slot;
+
+    OrderView(OffHeapOrderStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Moves the view to a slot.
+     *
+     * @param slot the slot.
+     * @return this view.
+     */
+    public OrderView moveTo(int slot) {
+        this.slot = slot;
+        return this;
+    }
+
+    /**
+     * @return the slot the view is on.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public UUID getId() {
+        return store.getId(slot);
+    }
+
+    @Override
+    public Market getMarketId() {
+        return store.getMarketId(slot);
+    }
+
+    @Override
+    public Type getType() {
+        return store.getType(slot);
+    }
+
+    @Override
+    public BigDecimal getAmount() {
+        return FixedPoint.toBigDecimal(store.getAmount(slot));
+    }
+
+    @Override
+    public BigDecimal getPrice() {
+        return FixedPoint.toBigDecimal(store.getPrice(slot));
+    }
+
+    @Override
+    public BigDecimal getFee() {
+        return FixedPoint.toBigDecimal(store.getFee(slot));
+    }
+
+    @Override
+    public long getIdMostSignificantBits() {
+        return store.getIdMostSignificantBits(slot);
+    }
+
+    @Override
+    public long getIdLeastSignificantBits() {
+        return store.getIdLeastSignificantBits(slot);
+    }
+
+    @Override
+    public long getFixedPointAmount() {
+        return store.getAmount(slot);
+    }
+
+    @Override
+    public long getFixedPointPrice() {
+        return store.getPrice(slot);
+    }
+
+    @Override
+    public long getFixedPointFee() {
+        return store.getFee(slot);
+    }
+
+    @Override
+    public int getTradeCountToFill() {
+        return store.getTradeCountToFill(slot);
+    }
+
+    @Override
+    public void setTradeCountToFill(int tradeCountToFill) {
+        store.setTradeCountToFill(slot, tradeCountToFill);
+    }
+
+    @Override
+    public long getEntryTimestamp() {
+        return store.getEntryTimestamp(slot);
+    }
+
+    @Override
+    public void setEntryTimestamp(long entryTimestamp) {
+        store.setEntryTimestamp(slot, entryTimestamp);
+    }
+}
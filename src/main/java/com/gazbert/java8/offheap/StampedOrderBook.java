@@ -0,0 +1,403 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.OrderBookListener;
+import com.gazbert.java8.lambda.OrderMatcher;
+
+/**
+ * Makes an {@link OffHeapOrderStore} safe to read while another thread is entering orders, without readers holding
+ * up the writer.
+ * <p>
+ * Writers take a {@link StampedLock} write lock; uncontended, that is a single CAS. Readers don't lock at all: they
+ * run their query against the store with an optimistic stamp and then validate it. If a write happened during the
+ * query, the result is thrown away and the query runs again. So a query either returns a result computed from a
+ * consistent book, or it retries - it never sees a half-done add or a cancel that moved an order mid-scan.
+ * <p>
+ * After <code>maxOptimisticAttempts</code> failed attempts a reader falls back to the read lock so it can't be
+ * starved by a busy writer; that briefly blocks writers. Use {@link Integer#MAX_VALUE} to never fall back.
+ * <p>
+ * Queries may run against a book that is being changed, so they must:
+ * <ul>
+ * <li>have no side effects other than building their result, as they may be run more than once.</li>
+ * <li>not return or keep {@link OrderView}s - copy out the values needed.</li>
+ * <li>cope with reading nonsense; a query that throws is retried if the read was invalid anyway.</li>
+ * </ul>
+ * Usage with the analyser:
+ * <pre>
+ * int matches = orderBook.read(store -&gt; OrderBookAnalyser.getNumberOfMatchedOrders(store, matcher));
+ * </pre>
+ * An optional {@link OrderBookListener} is told about each add, cancel, fill and mass cancel while the write lock is
+ * held, so it sees changes in the same order readers do.
+ *
+ * @author gazbert
+ */
+public final class StampedOrderBook {
+
+    /**
+     * Default number of optimistic attempts before falling back to the read lock.
+     */
+    public static final int DEFAULT_MAX_OPTIMISTIC_ATTEMPTS = 16;
+
+    private final OffHeapOrderStore orderStore;
+    private final int maxOptimisticAttempts;
+    private final StampedLock lock = new StampedLock();
+    private final OrderBookListener listener;
+
+    /**
+     * Flyweight passed to the listener and mass cancel matchers; only used under the write lock.
+     */
+    private final OrderView listenerView;
+
+    private final LongAdder optimisticReads = new LongAdder();
+    private final LongAdder failedOptimisticReads = new LongAdder();
+    private final LongAdder lockedReads = new LongAdder();
+
+    /**
+     * Wraps a store, using the default number of optimistic attempts.
+     *
+     * @param orderStore the store. Don't change it other than through this book.
+     */
+    public StampedOrderBook(OffHeapOrderStore orderStore) {
+        this(orderStore, DEFAULT_MAX_OPTIMISTIC_ATTEMPTS);
+    }
+
+    /**
+     * Wraps a store.
+     *
+     * @param orderStore            the store. Don't change it other than through this book.
+     * @param maxOptimisticAttempts failed optimistic attempts before a reader takes the read lock.
+     */
+    public StampedOrderBook(OffHeapOrderStore orderStore, int maxOptimisticAttempts) {
+        this(orderStore, maxOptimisticAttempts, null);
+    }
+
+    /**
+     * Wraps a store, telling a listener about each change.
+     *
+     * @param orderStore            the store. Don't change it other than through this book.
+     * @param maxOptimisticAttempts failed optimistic attempts before a reader takes the read lock.
+     * @param listener              told about each add, cancel and fill; may be null.
+     */
+    public StampedOrderBook(OffHeapOrderStore orderStore, int maxOptimisticAttempts, OrderBookListener listener) {
+        if (maxOptimisticAttempts < 1) {
+            throw new IllegalArgumentException("maxOptimisticAttempts must be at least 1: " + maxOptimisticAttempts);
+        }
+        this.orderStore = orderStore;
+        this.maxOptimisticAttempts = maxOptimisticAttempts;
+        this.listener = listener;
+        listenerView = orderStore.newView();
+    }
+
+    /**
+     * Adds an order under the write lock, keeping its entry timestamp.
+     *
+     * @param order the order to add.
+     * @return true if added, false if the store is full or already holds an order with the same id.
+     */
+    public boolean add(Order order) {
+        return add(order, order.getEntryTimestamp());
+    }
+
+    /**
+     * Adds an order under the write lock, stamping it with an entry timestamp. Its trade count starts at zero,
+     * whatever the order says, as {@link #fill(long, long, long)} uses it to count the order's fills in this book.
+     *
+     * @param order          the order to add.
+     * @param entryTimestamp when the order was entered, in nanos since the epoch.
+     * @return true if added, false if the store is full or already holds an order with the same id.
+     */
+    public boolean add(Order order, long entryTimestamp) {
+        final long stamp = lock.writeLock();
+        try {
+            if (!orderStore.add(order, entryTimestamp)) {
+                return false;
+            }
+            final int slot = orderStore.size() - 1;
+            orderStore.setTradeCountToFill(slot, 0);
+            if (listener != null) {
+                listener.orderAdded(listenerView.moveTo(slot));
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes an order under the write lock.
+     *
+     * @param orderId id of the order to remove.
+     * @return true if the order was removed, false if it was not found.
+     */
+    public boolean remove(UUID orderId) {
+        return remove(orderId.getMostSignificantBits(), orderId.getLeastSignificantBits());
+    }
+
+    /**
+     * Removes an order under the write lock, without needing a UUID object.
+     *
+     * @param msb most significant bits of the id of the order to remove.
+     * @param lsb least significant bits of the id of the order to remove.
+     * @return true if the order was removed, false if it was not found.
+     */
+    public boolean remove(long msb, long lsb) {
+        final long stamp = lock.writeLock();
+        try {
+            if (listener != null) {
+                final int slot = orderStore.slotOf(msb, lsb);
+                if (slot < 0) {
+                    return false;
+                }
+                listener.orderCancelled(listenerView.moveTo(slot));
+            }
+            return orderStore.remove(msb, lsb);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Cancels every order in a market under one write lock, walking only that market's partition of the store.
+     *
+     * @param market the market to clear.
+     * @return number of orders cancelled.
+     */
+    public int cancelAll(Market market) {
+        final long stamp = lock.writeLock();
+        try {
+            if (listener != null) {
+                listener.massCancelStarted(market);
+            }
+            int cancelled = 0;
+            try {
+                int remaining;
+                while ((remaining = orderStore.marketSize(market)) > 0) {
+                    final int slot = orderStore.marketSlot(market, remaining - 1);
+                    if (listener != null) {
+                        listener.orderCancelled(listenerView.moveTo(slot));
+                    }
+                    orderStore.removeAt(slot);
+                    cancelled++;
+                }
+            } finally {
+                // a listener can throw part way through; report what did get cancelled
+                if (listener != null) {
+                    listener.massCancelFinished(market, cancelled);
+                }
+            }
+            return cancelled;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Cancels every order the matcher matches, in one pass under one write lock.
+     *
+     * @param market       only look at orders in this market, or null to look at all of them.
+     * @param orderMatcher picks the orders to cancel. It is given a flyweight view - don't hang on to it.
+     * @return number of orders cancelled.
+     */
+    public int cancelMatching(Market market, OrderMatcher orderMatcher) {
+        final long stamp = lock.writeLock();
+        try {
+            if (listener != null) {
+                listener.massCancelStarted(market);
+            }
+            // walk backwards: a removal moves an order we've already looked at into the hole
+            int cancelled = 0;
+            try {
+                if (market == null) {
+                    for (int slot = orderStore.size() - 1; slot >= 0; slot--) {
+                        cancelled += cancelIfMatched(slot, orderMatcher);
+                    }
+                } else {
+                    for (int position = orderStore.marketSize(market) - 1; position >= 0; position--) {
+                        cancelled += cancelIfMatched(orderStore.marketSlot(market, position), orderMatcher);
+                    }
+                }
+            } finally {
+                // a matcher can throw part way through; report what did get cancelled
+                if (listener != null) {
+                    listener.massCancelFinished(market, cancelled);
+                }
+            }
+            return cancelled;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int cancelIfMatched(int slot, OrderMatcher orderMatcher) {
+        if (!orderMatcher.executeQuery(listenerView.moveTo(slot))) {
+            return 0;
+        }
+        if (listener != null) {
+            listener.orderCancelled(listenerView);
+        }
+        orderStore.removeAt(slot);
+        return 1;
+    }
+
+    /**
+     * Fills an order under the write lock. A fill of the whole remaining amount removes the order; a partial fill
+     * reduces its amount and adds one to its trade count, so the listener sees how many trades the order had before
+     * each fill in {@link com.gazbert.java8.common.Order#getTradeCountToFill()}.
+     *
+     * @param msb              most significant bits of the id of the order to fill.
+     * @param lsb              least significant bits of the id of the order to fill.
+     * @param fixedPointAmount the amount filled as a fixed-point value.
+     * @return true if the order was filled, false if it was not found.
+     * @throws IllegalArgumentException if the amount is not positive or is more than the order's remaining amount.
+     */
+    public boolean fill(long msb, long lsb, long fixedPointAmount) {
+        final long stamp = lock.writeLock();
+        try {
+            final int slot = orderStore.slotOf(msb, lsb);
+            if (slot < 0) {
+                return false;
+            }
+            final long remaining = orderStore.getAmount(slot);
+            if (fixedPointAmount <= 0 || fixedPointAmount > remaining) {
+                throw new IllegalArgumentException("Fill amount " + fixedPointAmount
+                        + " must be positive and no more than the remaining amount " + remaining);
+            }
+            if (listener != null) {
+                listener.orderFilled(listenerView.moveTo(slot), fixedPointAmount);
+            }
+            if (fixedPointAmount == remaining) {
+                orderStore.remove(msb, lsb);
+            } else {
+                orderStore.setAmount(slot, remaining - fixedPointAmount);
+                orderStore.setTradeCountToFill(slot, orderStore.getTradeCountToFill(slot) + 1);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies several changes to the store under one write lock, so readers see all of them or none. Changes made
+     * directly on the store are not passed to the listener one by one; it is told the book changed once they are done.
+     *
+     * @param update the changes to make.
+     */
+    public void write(Consumer<? super OffHeapOrderStore> update) {
+        final long stamp = lock.writeLock();
+        try {
+            try {
+                update.accept(orderStore);
+            } finally {
+                // even a failed update may have changed some of the store
+                if (listener != null) {
+                    listener.bookChanged(orderStore);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a query against a consistent view of the store, optimistically if possible.
+     *
+     * @param query the query; see the class docs for the rules it must follow.
+     * @param <R>   the result type.
+     * @return the query result.
+     */
+    public <R> R read(Function<? super OffHeapOrderStore, ? extends R> query) {
+
+        int attempts = 0;
+        while (attempts < maxOptimisticAttempts) {
+            final long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                // a write is in progress - no point starting yet, but it counts so a busy writer can't starve us
+                failedOptimisticReads.increment();
+                attempts++;
+                Thread.yield();
+                continue;
+            }
+            try {
+                final R result = query.apply(orderStore);
+                if (lock.validate(stamp)) {
+                    optimisticReads.increment();
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // a torn read can throw; only pass it on if the read was actually consistent
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+            failedOptimisticReads.increment();
+            attempts++;
+        }
+
+        final long stamp = lock.readLock();
+        try {
+            lockedReads.increment();
+            return query.apply(orderStore);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the store. Only use it directly when no other thread can be changing it.
+     */
+    public OffHeapOrderStore getOrderStore() {
+        return orderStore;
+    }
+
+    /**
+     * @return the number of queries that completed optimistically.
+     */
+    public long getOptimisticReads() {
+        return optimisticReads.sum();
+    }
+
+    /**
+     * @return the number of optimistic attempts thrown away because a write happened during them.
+     */
+    public long getFailedOptimisticReads() {
+        return failedOptimisticReads.sum();
+    }
+
+    /**
+     * @return the number of queries that fell back to the read lock.
+     */
+    public long getLockedReads() {
+        return lockedReads.sum();
+    }
+}
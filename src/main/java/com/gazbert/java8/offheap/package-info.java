@@ -0,0 +1,13 @@
+/**
+ * <h2>Off-Heap Orders</h2>
+ * 
+ * Order storage outside of the Java heap using direct and memory-mapped {@link java.nio.ByteBuffer}s. See the
+ * {@link TestOffHeapOrderStoreUsage} unit test class for usage.
+ * <p>
+ * Orders are held as fixed size records and read through flyweight {@link com.gazbert.java8.common.Order} views, so
+ * the heap footprint stays the same however big the book gets - handy when you have tens of millions of resting
+ * orders and don't fancy the old-gen GC pauses.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.offheap;
\ No newline at end of file
@@ -0,0 +1,291 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.planner;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.index.OrderBitmapIndex;
+import com.gazbert.java8.index.OrderQuery;
+import com.gazbert.java8.lambda.ExecutionPlan;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+import com.gazbert.java8.metrics.QueryMetrics;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Picks how to run each {@link OrderBookAnalyser} query - serially, in parallel, or from an index - so callers don't
+ * have to guess.
+ * <p>
+ * For each query:
+ * <ol>
+ * <li>If the matcher is an {@link OrderQuery} and an up to date {@link OrderBitmapIndex} over the book has been
+ * {@link #addIndex(OrderBitmapIndex) added}, the index answers it.</li>
+ * <li>If the book's size isn't known, or there is only one core, the book is scanned serially.</li>
+ * <li>If the estimated serial scan time - book size times the cost per row - is under the parallel threshold, the
+ * book is scanned serially; forking and joining would cost more than it saves.</li>
+ * <li>Otherwise the plan with the lower observed cost per row for this query is used, trying a parallel scan if
+ * there is nothing to compare yet.</li>
+ * </ol>
+ * The cost per row is learnt from the timings of previous executions of the same query name, so a matcher that turns
+ * out to be expensive moves to parallel scans. Every {@link #EXPLORE_INTERVAL}th execution of a query tries the other
+ * scan plan, so the choice keeps up with the book growing or shrinking.
+ * <p>
+ * Every execution is recorded in the {@link QueryMetrics} with the plan used. Any call can override the plan.
+ * <p>
+ * The planner is thread-safe. Matchers used for parallel scans must be safe to call from many threads at once.
+ *
+ * @author gazbert
+ */
+public final class QueryPlanner {
+
+    /**
+     * Default estimated serial scan time below which parallel scans aren't tried.
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD_NANOS = 200_000;
+
+    /**
+     * Cost per row assumed for a query until it has been timed - a cheap lambda matcher.
+     */
+    public static final double DEFAULT_NANOS_PER_ROW = 10;
+
+    /**
+     * Every nth planned execution of a query tries the other scan plan.
+     */
+    public static final int EXPLORE_INTERVAL = 64;
+
+    /**
+     * Weight of the latest timing in the cost per row moving average.
+     */
+    private static final double FEEDBACK_WEIGHT = 0.2;
+
+    private final QueryMetrics metrics;
+    private final int parallelism;
+    private final long parallelThresholdNanos;
+    private final List<OrderBitmapIndex> indexes = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Feedback> feedback = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a planner for the common fork/join pool, with the default parallel threshold.
+     *
+     * @param metrics records every execution.
+     */
+    public QueryPlanner(QueryMetrics metrics) {
+        this(metrics, ForkJoinPool.getCommonPoolParallelism(), DEFAULT_PARALLEL_THRESHOLD_NANOS);
+    }
+
+    /**
+     * Creates a planner.
+     *
+     * @param metrics                records every execution.
+     * @param parallelism            the number of threads parallel scans get; below 2, books are never scanned in
+     *                               parallel unless a call overrides the plan.
+     * @param parallelThresholdNanos estimated serial scan time below which parallel scans aren't tried.
+     */
+    public QueryPlanner(QueryMetrics metrics, int parallelism, long parallelThresholdNanos) {
+        this.metrics = metrics;
+        this.parallelism = parallelism;
+        this.parallelThresholdNanos = parallelThresholdNanos;
+    }
+
+    /**
+     * Makes an index available for answering {@link OrderQuery}s against its store.
+     *
+     * @param index the index.
+     * @return this planner.
+     */
+    public QueryPlanner addIndex(OrderBitmapIndex index) {
+        indexes.add(index);
+        return this;
+    }
+
+    /**
+     * Returns the plan the next execution of a query would use, without running it.
+     *
+     * @param queryName    the query name.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the plan.
+     */
+    public ExecutionPlan plan(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher) {
+        return plan(queryName, orderBook, orderMatcher, false);
+    }
+
+    /**
+     * Returns the number of matched orders for a query, using the plan the planner picks.
+     *
+     * @param queryName    the name to record the query under; timings are learnt per name.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @return the number of matched orders.
+     */
+    public int getNumberOfMatchedOrders(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher) {
+        return execute(queryName, orderBook, orderMatcher, plan(queryName, orderBook, orderMatcher, true));
+    }
+
+    /**
+     * Returns the number of matched orders for a query, using the given plan.
+     *
+     * @param queryName    the name to record the query under.
+     * @param orderBook    the order book.
+     * @param orderMatcher used to match orders.
+     * @param plan         the plan to use.
+     * @return the number of matched orders.
+     * @throws IllegalArgumentException if the plan is {@link ExecutionPlan#INDEX} but the matcher isn't an
+     *                                  {@link OrderQuery} or no index over the book has been added.
+     */
+    public int getNumberOfMatchedOrders(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher,
+                                        ExecutionPlan plan) {
+        return execute(queryName, orderBook, orderMatcher, plan);
+    }
+
+    /**
+     * Returns the learnt cost per row for a query and scan plan.
+     *
+     * @param queryName the query name.
+     * @param plan      {@link ExecutionPlan#SERIAL} or {@link ExecutionPlan#PARALLEL}.
+     * @return the cost in nanoseconds, or NaN if the query hasn't been run with that plan.
+     */
+    public double getNanosPerRow(String queryName, ExecutionPlan plan) {
+        final Feedback queryFeedback = feedback.get(queryName);
+        if (queryFeedback == null) {
+            return Double.NaN;
+        }
+        return plan == ExecutionPlan.PARALLEL ? queryFeedback.parallelNanosPerRow : queryFeedback.serialNanosPerRow;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Util methods
+    // ------------------------------------------------------------------------------------------------
+
+    private ExecutionPlan plan(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher,
+                               boolean executing) {
+        final OrderBitmapIndex index = indexFor(orderBook, orderMatcher);
+        if (index != null && !index.isStale()) {
+            return ExecutionPlan.INDEX;
+        }
+        final int size = sizeOf(orderBook);
+        if (size < 0 || parallelism < 2) {
+            return ExecutionPlan.SERIAL;
+        }
+
+        final Feedback queryFeedback = feedback.computeIfAbsent(queryName, name -> new Feedback());
+        final double serial = queryFeedback.serialNanosPerRow;
+        final double parallel = queryFeedback.parallelNanosPerRow;
+        final double costPerRow = !Double.isNaN(serial) ? serial
+                : !Double.isNaN(parallel) ? parallel * parallelism : DEFAULT_NANOS_PER_ROW;
+        if (size * costPerRow < parallelThresholdNanos) {
+            return ExecutionPlan.SERIAL;
+        }
+        if (Double.isNaN(serial) || Double.isNaN(parallel)) {
+            return ExecutionPlan.PARALLEL;
+        }
+        final ExecutionPlan best = parallel < serial ? ExecutionPlan.PARALLEL : ExecutionPlan.SERIAL;
+        if (executing && queryFeedback.executions.incrementAndGet() % EXPLORE_INTERVAL == 0) {
+            return best == ExecutionPlan.PARALLEL ? ExecutionPlan.SERIAL : ExecutionPlan.PARALLEL;
+        }
+        return best;
+    }
+
+    private int execute(String queryName, Iterable<Order> orderBook, OrderMatcher orderMatcher, ExecutionPlan plan) {
+        final int size = sizeOf(orderBook);
+        final long start = System.nanoTime();
+        final int orderCount;
+        switch (plan) {
+            case INDEX: {
+                final OrderBitmapIndex index = indexFor(orderBook, orderMatcher);
+                if (index == null) {
+                    throw new IllegalArgumentException("No index for query " + queryName);
+                }
+                synchronized (index) {
+                    orderCount = index.count((OrderQuery) orderMatcher);
+                }
+                break;
+            }
+            case PARALLEL:
+                orderCount = OrderBookAnalyser.getNumberOfMatchedOrdersInParallel(orderBook, orderMatcher);
+                break;
+            default:
+                orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, orderMatcher);
+                break;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        if (plan != ExecutionPlan.INDEX && size > 0) {
+            feedback.computeIfAbsent(queryName, name -> new Feedback()).record(plan, (double) elapsed / size);
+        }
+        metrics.record(queryName, plan, Math.max(size, 0), orderCount, elapsed, 0);
+        return orderCount;
+    }
+
+    private OrderBitmapIndex indexFor(Iterable<Order> orderBook, OrderMatcher orderMatcher) {
+        if (!(orderMatcher instanceof OrderQuery)) {
+            return null;
+        }
+        for (final OrderBitmapIndex index : indexes) {
+            if (index.getStore() == orderBook) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static int sizeOf(Iterable<Order> orderBook) {
+        if (orderBook instanceof Collection) {
+            return ((Collection<Order>) orderBook).size();
+        }
+        if (orderBook instanceof OffHeapOrderStore) {
+            return ((OffHeapOrderStore) orderBook).size();
+        }
+        return -1;
+    }
+
+    /*
+     * Learnt costs for one query. Racing updates can lose a sample, which a moving average doesn't mind.
+     */
+    private static final class Feedback {
+
+        private final AtomicLong executions = new AtomicLong();
+        private volatile double serialNanosPerRow = Double.NaN;
+        private volatile double parallelNanosPerRow = Double.NaN;
+
+        private void record(ExecutionPlan plan, double nanosPerRow) {
+            if (plan == ExecutionPlan.PARALLEL) {
+                parallelNanosPerRow = average(parallelNanosPerRow, nanosPerRow);
+            } else {
+                serialNanosPerRow = average(serialNanosPerRow, nanosPerRow);
+            }
+        }
+
+        private static double average(double current, double latest) {
+            return Double.isNaN(current) ? latest : current + FEEDBACK_WEIGHT * (latest - current);
+        }
+    }
+}
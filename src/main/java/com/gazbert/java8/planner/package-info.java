@@ -0,0 +1,9 @@
+/**
+ * <h2>Query Planning</h2>
+ * 
+ * Adaptive choice between serial scans, parallel scans and index lookups for order book queries, based on book size,
+ * learnt matcher cost and recent timings. See the {@link TestQueryPlannerUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.planner;
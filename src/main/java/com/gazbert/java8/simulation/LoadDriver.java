@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.metrics.LatencyRecordingTradingApi;
+import com.gazbert.java8.metrics.LatencyRecordingTradingApi.Operation;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Runs a synthetic order flow against any {@link TradingApi}, recording throughput and latency.
+ * <p>
+ * Adds go to {@link TradingApi#addOrder}, cancels to {@link TradingApi#cancelOrder}, and a replace is a cancel
+ * followed by an add. If the profile has an event rate, each event is sent when it is due; latencies are then
+ * corrected for coordinated omission, so a stall shows up in the percentiles rather than just slowing the flow down.
+ * <p>
+ * The main method drives an {@link OffHeapTradingApi}:
+ * <pre>
+ * java -cp target/classes com.gazbert.java8.simulation.LoadDriver [events] [eventsPerSecond] [seed]
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class LoadDriver {
+
+    /**
+     * When the next event is due further away than this, park rather than spin.
+     */
+    private static final long PARK_THRESHOLD_NANOS = 100_000;
+
+    private final TradingApi tradingApi;
+
+    /**
+     * Creates a driver.
+     *
+     * @param tradingApi the API to drive.
+     */
+    public LoadDriver(TradingApi tradingApi) {
+        this.tradingApi = tradingApi;
+    }
+
+    /**
+     * Runs events from a generator against the API, on the calling thread.
+     *
+     * @param generator the order flow.
+     * @param events    how many events to run.
+     * @return the report.
+     */
+    public LoadReport run(OrderFlowGenerator generator, long events) {
+        final double eventsPerSecond = generator.getProfile().getEventsPerSecond();
+        final LatencyRecordingTradingApi api = new LatencyRecordingTradingApi(tradingApi,
+                eventsPerSecond == 0 ? 0 : (long) (1e9 / eventsPerSecond));
+
+        long added = 0;
+        long addsRejected = 0;
+        long cancelled = 0;
+        long cancelsFailed = 0;
+
+        final long start = System.nanoTime();
+        for (long i = 0; i < events; i++) {
+            final OrderFlowEvent event = generator.next();
+            awaitDue(start + event.getScheduledNanos());
+            if (event.getCancelledOrderId() != null) {
+                if (api.cancelOrder(event.getCancelledOrderId())) {
+                    cancelled++;
+                } else {
+                    cancelsFailed++;
+                }
+            }
+            if (event.getOrder() != null) {
+                if (api.addOrder(event.getOrder())) {
+                    added++;
+                } else {
+                    addsRejected++;
+                }
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        return new LoadReport(events, added, addsRejected, cancelled, cancelsFailed, elapsed,
+                api.getLatencySnapshot(Operation.ADD_ORDER), api.getLatencySnapshot(Operation.CANCEL_ORDER));
+    }
+
+    /**
+     * Runs a load test against an {@link OffHeapTradingApi} and prints the report.
+     *
+     * @param args optional: number of events (default 1,000,000), events per second (default 0, as fast as
+     *             possible), and random seed (default 42).
+     */
+    public static void main(String... args) {
+        final long events = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        final double eventsPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        final OrderFlowProfile profile = OrderFlowProfile.builder().eventsPerSecond(eventsPerSecond).build();
+        final OrderFlowGenerator generator = new OrderFlowGenerator(profile, seed);
+        final TradingApi tradingApi = new OffHeapTradingApi(
+                OffHeapOrderStore.allocateDirect(profile.getMaxOpenOrders()));
+
+        System.out.println(profile);
+        System.out.println(new LoadDriver(tradingApi).run(generator, events));
+    }
+
+    private static void awaitDue(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            if (remaining > PARK_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - PARK_THRESHOLD_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
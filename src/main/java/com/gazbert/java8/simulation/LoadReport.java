@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import com.gazbert.java8.metrics.LatencySnapshot;
+
+/**
+ * What happened when a {@link LoadDriver} ran an order flow against a trading API.
+ *
+ * @author gazbert
+ */
+public final class LoadReport {
+
+    private final long events;
+    private final long ordersAdded;
+    private final long addsRejected;
+    private final long ordersCancelled;
+    private final long cancelsFailed;
+    private final long elapsedNanos;
+    private final LatencySnapshot addOrderLatency;
+    private final LatencySnapshot cancelOrderLatency;
+
+    LoadReport(long events, long ordersAdded, long addsRejected, long ordersCancelled, long cancelsFailed,
+               long elapsedNanos, LatencySnapshot addOrderLatency, LatencySnapshot cancelOrderLatency) {
+        this.events = events;
+        this.ordersAdded = ordersAdded;
+        this.addsRejected = addsRejected;
+        this.ordersCancelled = ordersCancelled;
+        this.cancelsFailed = cancelsFailed;
+        this.elapsedNanos = elapsedNanos;
+        this.addOrderLatency = addOrderLatency;
+        this.cancelOrderLatency = cancelOrderLatency;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getOrdersAdded() {
+        return ordersAdded;
+    }
+
+    /**
+     * @return adds the API returned false for, e.g. because its book was full.
+     */
+    public long getAddsRejected() {
+        return addsRejected;
+    }
+
+    public long getOrdersCancelled() {
+        return ordersCancelled;
+    }
+
+    /**
+     * @return cancels the API returned false for, e.g. because the order's add had been rejected.
+     */
+    public long getCancelsFailed() {
+        return cancelsFailed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return events run per second.
+     */
+    public double getEventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+    }
+
+    public LatencySnapshot getAddOrderLatency() {
+        return addOrderLatency;
+    }
+
+    public LatencySnapshot getCancelOrderLatency() {
+        return cancelOrderLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoadReport{events=%d, eventsPerSecond=%.0f, ordersAdded=%d, addsRejected=%d, "
+                        + "ordersCancelled=%d, cancelsFailed=%d, addOrderLatency=%s, cancelOrderLatency=%s}",
+                events, getEventsPerSecond(), ordersAdded, addsRejected, ordersCancelled, cancelsFailed,
+                addOrderLatency, cancelOrderLatency);
+    }
+}
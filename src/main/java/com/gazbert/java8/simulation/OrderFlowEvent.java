@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import java.util.UUID;
+
+import com.gazbert.java8.common.Order;
+
+/**
+ * One event in a synthetic order flow.
+ *
+ * @author gazbert
+ */
+public final class OrderFlowEvent {
+
+    /**
+     * What the event does to the book.
+     *
+     * @author gazbert
+     */
+    public enum Kind {
+        /**
+         * A new order is added.
+         */
+        ADD,
+
+        /**
+         * An open order is cancelled.
+         */
+        CANCEL,
+
+        /**
+         * An open order is cancelled and a repriced order for the same market and side added in its place.
+         */
+        REPLACE
+    }
+
+    private final Kind kind;
+    private final Order order;
+    private final UUID cancelledOrderId;
+    private final long scheduledNanos;
+
+    OrderFlowEvent(Kind kind, Order order, UUID cancelledOrderId, long scheduledNanos) {
+        this.kind = kind;
+        this.order = order;
+        this.cancelledOrderId = cancelledOrderId;
+        this.scheduledNanos = scheduledNanos;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the order to add; null for a {@link Kind#CANCEL}.
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the id of the order to cancel; null for an {@link Kind#ADD}.
+     */
+    public UUID getCancelledOrderId() {
+        return cancelledOrderId;
+    }
+
+    /**
+     * @return when the event is due, in nanoseconds from the start of the flow; 0 for unpaced flows.
+     */
+    public long getScheduledNanos() {
+        return scheduledNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderFlowEvent{kind=" + kind + ", order=" + (order == null ? null : order.provideAuditDetails())
+                + ", cancelledOrderId=" + cancelledOrderId + ", scheduledNanos=" + scheduledNanos + "}";
+    }
+}
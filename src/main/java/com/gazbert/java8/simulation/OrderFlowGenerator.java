@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.simulation.OrderFlowEvent.Kind;
+
+/**
+ * Generates a synthetic order flow from an {@link OrderFlowProfile}.
+ * <p>
+ * The flow is deterministic: the same profile and seed always give the same events, order ids included, so a test
+ * or benchmark that fails at a million orders can be rerun exactly. The generator keeps track of which orders it has
+ * added and not yet cancelled, so cancels and replaces always refer to an open order.
+ * <p>
+ * A generator is not thread-safe; give each producer thread its own generator with its own seed.
+ *
+ * @author gazbert
+ */
+public final class OrderFlowGenerator implements Iterator<OrderFlowEvent> {
+
+    private static final Market[] MARKETS = Market.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final OrderFlowProfile profile;
+    private final Random random;
+
+    private final double[] cumulativeMarketWeights = new double[MARKETS.length];
+    private final long[] midPriceTicks = new long[MARKETS.length];
+    private final double medianAmountCents;
+    private final double tradeCountLogBase;
+    private final double meanIntervalNanos;
+
+    // the open orders, kept dense by swap-remove so a random one can be picked in O(1)
+    private UUID[] openIds = new UUID[1024];
+    private byte[] openMarkets = new byte[1024];
+    private byte[] openTypes = new byte[1024];
+    private int openCount;
+
+    private double scheduledNanos;
+
+    /**
+     * Creates a generator.
+     *
+     * @param profile the order flow to generate.
+     * @param seed    the random seed.
+     */
+    public OrderFlowGenerator(OrderFlowProfile profile, long seed) {
+        this.profile = profile;
+        random = new Random(seed);
+
+        double totalWeight = 0;
+        for (final Market market : MARKETS) {
+            totalWeight += profile.getMarketWeight(market);
+            cumulativeMarketWeights[market.ordinal()] = totalWeight;
+            midPriceTicks[market.ordinal()] = profile.getMidPrice(market)
+                    .divide(profile.getTickSize(), 0, RoundingMode.HALF_UP).longValueExact();
+        }
+        for (int i = 0; i < MARKETS.length; i++) {
+            cumulativeMarketWeights[i] /= totalWeight;
+        }
+        medianAmountCents = profile.getMedianAmount().movePointRight(2).doubleValue();
+        final double mean = profile.getMeanTradeCountToFill();
+        tradeCountLogBase = mean == 1 ? 0 : Math.log(1 - 1 / mean);
+        meanIntervalNanos = profile.getEventsPerSecond() == 0 ? 0 : 1e9 / profile.getEventsPerSecond();
+    }
+
+    /**
+     * Always true - the flow never ends.
+     */
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    /**
+     * Generates the next event.
+     *
+     * @return the event.
+     */
+    @Override
+    public OrderFlowEvent next() {
+        if (meanIntervalNanos > 0) {
+            // exponential gaps between events make a Poisson process
+            scheduledNanos += -Math.log(1 - random.nextDouble()) * meanIntervalNanos;
+        }
+        final long due = (long) scheduledNanos;
+
+        final Kind kind;
+        if (openCount == 0) {
+            kind = Kind.ADD;
+        } else if (openCount >= profile.getMaxOpenOrders()) {
+            kind = Kind.CANCEL;
+        } else {
+            final double r = random.nextDouble();
+            if (r < profile.getCancelRatio()) {
+                kind = Kind.CANCEL;
+            } else if (r < profile.getCancelRatio() + profile.getReplaceRatio()) {
+                kind = Kind.REPLACE;
+            } else {
+                kind = Kind.ADD;
+            }
+        }
+
+        switch (kind) {
+            case ADD:
+                return new OrderFlowEvent(kind, addOpenOrder(), null, due);
+            case CANCEL: {
+                final int index = random.nextInt(openCount);
+                final UUID cancelled = openIds[index];
+                removeOpenOrder(index);
+                return new OrderFlowEvent(kind, null, cancelled, due);
+            }
+            default: {
+                final int index = random.nextInt(openCount);
+                final UUID cancelled = openIds[index];
+                final Order replacement = newOrder(MARKETS[openMarkets[index]], TYPES[openTypes[index]]);
+                openIds[index] = replacement.getId();
+                return new OrderFlowEvent(kind, replacement, cancelled, due);
+            }
+        }
+    }
+
+    /**
+     * Returns a sequential stream of the next events.
+     *
+     * @param count how many events.
+     * @return the events, in order.
+     */
+    public Stream<OrderFlowEvent> events(long count) {
+        return LongStream.range(0, count).mapToObj(i -> next());
+    }
+
+    /**
+     * Generates new orders only, e.g. to fill a book before running a flow against it. The orders count as open, so
+     * later cancels and replaces can refer to them.
+     *
+     * @param size how many orders.
+     * @return the orders.
+     */
+    public List<Order> initialBook(int size) {
+        final List<Order> orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(addOpenOrder());
+        }
+        return orders;
+    }
+
+    /**
+     * @return how many orders this generator has added and not yet cancelled.
+     */
+    public int getOpenOrderCount() {
+        return openCount;
+    }
+
+    public OrderFlowProfile getProfile() {
+        return profile;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Util methods
+    // ------------------------------------------------------------------------------------------------
+
+    private Order addOpenOrder() {
+        final Order order = newOrder(nextMarket(), random.nextDouble() < profile.getBuyRatio() ? Type.BUY : Type.SELL);
+        if (openCount == openIds.length) {
+            openIds = Arrays.copyOf(openIds, openCount * 2);
+            openMarkets = Arrays.copyOf(openMarkets, openCount * 2);
+            openTypes = Arrays.copyOf(openTypes, openCount * 2);
+        }
+        openIds[openCount] = order.getId();
+        openMarkets[openCount] = (byte) order.getMarketId().ordinal();
+        openTypes[openCount] = (byte) order.getType().ordinal();
+        openCount++;
+        return order;
+    }
+
+    private void removeOpenOrder(int index) {
+        openCount--;
+        openIds[index] = openIds[openCount];
+        openMarkets[index] = openMarkets[openCount];
+        openTypes[index] = openTypes[openCount];
+        openIds[openCount] = null;
+    }
+
+    private Order newOrder(Market market, Type type) {
+        // version 4 (random) UUID, but from our seeded random
+        final UUID id = new UUID(random.nextLong() & ~0xF000L | 0x4000L,
+                random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L);
+
+        final long distanceTicks = 1 + (long) Math.abs(random.nextGaussian() * profile.getPriceSpreadTicks());
+        final long priceTicks = type == Type.BUY
+                ? Math.max(1, midPriceTicks[market.ordinal()] - distanceTicks)
+                : midPriceTicks[market.ordinal()] + distanceTicks;
+        final BigDecimal price = profile.getTickSize().multiply(BigDecimal.valueOf(priceTicks));
+
+        final long amountCents = Math.max(1,
+                Math.round(medianAmountCents * Math.exp(random.nextGaussian() * profile.getAmountSigma())));
+        final BigDecimal amount = BigDecimal.valueOf(amountCents, 2);
+        final BigDecimal fee = amount.multiply(profile.getFeeRate()).setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+
+        final Order order = new Order(id, market, type, amount, price, fee);
+        order.setTradeCountToFill(nextTradeCountToFill());
+        return order;
+    }
+
+    private Market nextMarket() {
+        final double r = random.nextDouble();
+        for (int i = 0; i < MARKETS.length - 1; i++) {
+            if (r < cumulativeMarketWeights[i]) {
+                return MARKETS[i];
+            }
+        }
+        return MARKETS[MARKETS.length - 1];
+    }
+
+    /*
+     * Geometric distribution starting at 1, by inverting its CDF.
+     */
+    private int nextTradeCountToFill() {
+        if (tradeCountLogBase == 0) {
+            return 1;
+        }
+        return 1 + (int) Math.min(Integer.MAX_VALUE - 1, Math.log(1 - random.nextDouble()) / tradeCountLogBase);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.gazbert.java8.common.Order.Market;
+
+/**
+ * Describes the synthetic order flow an {@link OrderFlowGenerator} produces: where prices sit, how big orders are,
+ * the mix of markets and sides, how often orders are cancelled or replaced, and how fast events arrive.
+ * <p>
+ * Prices are whole ticks away from each market's mid price: buys below it, sells above it, with the distance in ticks
+ * drawn from a half-normal distribution so most of the book is near the touch. Amounts are log-normal around a median,
+ * and tradeCountToFill is geometric with a given mean, like real fills where most orders fill in a trade or two.
+ * <p>
+ * Instances are immutable and thread-safe; use the {@link Builder} to create one.
+ *
+ * @author gazbert
+ */
+public final class OrderFlowProfile {
+
+    private static final Market[] MARKETS = Market.values();
+
+    private final BigDecimal[] midPrices;
+    private final double[] marketWeights;
+    private final BigDecimal tickSize;
+    private final double priceSpreadTicks;
+    private final double buyRatio;
+    private final BigDecimal medianAmount;
+    private final double amountSigma;
+    private final BigDecimal feeRate;
+    private final double cancelRatio;
+    private final double replaceRatio;
+    private final double meanTradeCountToFill;
+    private final double eventsPerSecond;
+    private final int maxOpenOrders;
+
+    private OrderFlowProfile(Builder builder) {
+        midPrices = builder.midPrices.clone();
+        marketWeights = builder.marketWeights.clone();
+        tickSize = builder.tickSize;
+        priceSpreadTicks = builder.priceSpreadTicks;
+        buyRatio = builder.buyRatio;
+        medianAmount = builder.medianAmount;
+        amountSigma = builder.amountSigma;
+        feeRate = builder.feeRate;
+        cancelRatio = builder.cancelRatio;
+        replaceRatio = builder.replaceRatio;
+        meanTradeCountToFill = builder.meanTradeCountToFill;
+        eventsPerSecond = builder.eventsPerSecond;
+        maxOpenOrders = builder.maxOpenOrders;
+    }
+
+    /**
+     * Returns a builder for creating a profile, starting from the defaults.
+     *
+     * @return a new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the default profile: the USD, CNY and EUR markets equally weighted, half buys, 40% cancels, 10% replaces,
+     * and events generated as fast as they are asked for.
+     *
+     * @return the default profile.
+     */
+    public static OrderFlowProfile defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @param market the market.
+     * @return the mid price orders in that market are priced around.
+     */
+    public BigDecimal getMidPrice(Market market) {
+        return midPrices[market.ordinal()];
+    }
+
+    /**
+     * @param market the market.
+     * @return the relative weight of that market in the order flow.
+     */
+    public double getMarketWeight(Market market) {
+        return marketWeights[market.ordinal()];
+    }
+
+    public BigDecimal getTickSize() {
+        return tickSize;
+    }
+
+    public double getPriceSpreadTicks() {
+        return priceSpreadTicks;
+    }
+
+    public double getBuyRatio() {
+        return buyRatio;
+    }
+
+    public BigDecimal getMedianAmount() {
+        return medianAmount;
+    }
+
+    public double getAmountSigma() {
+        return amountSigma;
+    }
+
+    public BigDecimal getFeeRate() {
+        return feeRate;
+    }
+
+    public double getCancelRatio() {
+        return cancelRatio;
+    }
+
+    public double getReplaceRatio() {
+        return replaceRatio;
+    }
+
+    public double getMeanTradeCountToFill() {
+        return meanTradeCountToFill;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    public int getMaxOpenOrders() {
+        return maxOpenOrders;
+    }
+
+    @Override
+    public String toString() {
+        final Map<Market, BigDecimal> mids = new EnumMap<>(Market.class);
+        for (final Market market : MARKETS) {
+            mids.put(market, getMidPrice(market));
+        }
+        return "OrderFlowProfile{midPrices=" + mids + ", tickSize=" + tickSize + ", priceSpreadTicks="
+                + priceSpreadTicks + ", buyRatio=" + buyRatio + ", medianAmount=" + medianAmount + ", cancelRatio="
+                + cancelRatio + ", replaceRatio=" + replaceRatio + ", eventsPerSecond=" + eventsPerSecond
+                + ", maxOpenOrders=" + maxOpenOrders + "}";
+    }
+
+    /**
+     * Builds {@link OrderFlowProfile}s.
+     */
+    public static final class Builder {
+
+        private final BigDecimal[] midPrices = new BigDecimal[MARKETS.length];
+        private final double[] marketWeights = new double[MARKETS.length];
+        private BigDecimal tickSize = new BigDecimal("0.01");
+        private double priceSpreadTicks = 10;
+        private double buyRatio = 0.5;
+        private BigDecimal medianAmount = new BigDecimal("100");
+        private double amountSigma = 1;
+        private BigDecimal feeRate = new BigDecimal("0.002");
+        private double cancelRatio = 0.4;
+        private double replaceRatio = 0.1;
+        private double meanTradeCountToFill = 2;
+        private double eventsPerSecond;
+        private int maxOpenOrders = 100_000;
+
+        private Builder() {
+            midPrices[Market.USD.ordinal()] = new BigDecimal("1.70");
+            midPrices[Market.CNY.ordinal()] = new BigDecimal("11.40");
+            midPrices[Market.EUR.ordinal()] = new BigDecimal("1.55");
+            for (final Market market : MARKETS) {
+                marketWeights[market.ordinal()] = 1;
+            }
+        }
+
+        /**
+         * Sets the mid price orders in a market are priced around.
+         *
+         * @param market   the market.
+         * @param midPrice the mid price; must be positive.
+         * @return this builder.
+         */
+        public Builder midPrice(Market market, BigDecimal midPrice) {
+            if (midPrice.signum() <= 0) {
+                throw new IllegalArgumentException("Mid price for " + market + " must be positive: " + midPrice);
+            }
+            midPrices[market.ordinal()] = midPrice;
+            return this;
+        }
+
+        /**
+         * Sets how much of the order flow goes to a market, relative to the others.
+         *
+         * @param market the market.
+         * @param weight the weight; 0 leaves the market out.
+         * @return this builder.
+         */
+        public Builder marketWeight(Market market, double weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight for " + market + " must not be negative: " + weight);
+            }
+            marketWeights[market.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * Sets the price increment, and how far from the mid prices spread.
+         *
+         * @param tickSize         the price increment; must be positive.
+         * @param priceSpreadTicks standard deviation of the distance from mid, in ticks.
+         * @return this builder.
+         */
+        public Builder prices(BigDecimal tickSize, double priceSpreadTicks) {
+            if (tickSize.signum() <= 0 || priceSpreadTicks < 0) {
+                throw new IllegalArgumentException("Bad tick size " + tickSize + " or spread " + priceSpreadTicks);
+            }
+            this.tickSize = tickSize;
+            this.priceSpreadTicks = priceSpreadTicks;
+            return this;
+        }
+
+        /**
+         * Sets the order sizes.
+         *
+         * @param medianAmount the median amount; must be at least 0.01.
+         * @param amountSigma  the standard deviation of the amount's natural log.
+         * @return this builder.
+         */
+        public Builder amounts(BigDecimal medianAmount, double amountSigma) {
+            if (medianAmount.compareTo(new BigDecimal("0.01")) < 0 || amountSigma < 0) {
+                throw new IllegalArgumentException("Bad median amount " + medianAmount + " or sigma " + amountSigma);
+            }
+            this.medianAmount = medianAmount;
+            this.amountSigma = amountSigma;
+            return this;
+        }
+
+        /**
+         * @param buyRatio the fraction of new orders that are buys.
+         * @return this builder.
+         */
+        public Builder buyRatio(double buyRatio) {
+            this.buyRatio = ratio("buyRatio", buyRatio);
+            return this;
+        }
+
+        /**
+         * @param feeRate the fee charged as a fraction of the order amount.
+         * @return this builder.
+         */
+        public Builder feeRate(BigDecimal feeRate) {
+            if (feeRate.signum() < 0) {
+                throw new IllegalArgumentException("feeRate must not be negative: " + feeRate);
+            }
+            this.feeRate = feeRate;
+            return this;
+        }
+
+        /**
+         * Sets how often an event cancels or replaces an open order rather than adding a new one.
+         *
+         * @param cancelRatio  the fraction of events that cancel an open order.
+         * @param replaceRatio the fraction of events that replace an open order with a repriced one.
+         * @return this builder.
+         */
+        public Builder cancels(double cancelRatio, double replaceRatio) {
+            ratio("cancelRatio", cancelRatio);
+            ratio("replaceRatio", replaceRatio);
+            if (cancelRatio + replaceRatio > 1) {
+                throw new IllegalArgumentException("cancelRatio + replaceRatio must not be more than 1");
+            }
+            this.cancelRatio = cancelRatio;
+            this.replaceRatio = replaceRatio;
+            return this;
+        }
+
+        /**
+         * @param meanTradeCountToFill the mean number of trades it takes to fill an order; at least 1.
+         * @return this builder.
+         */
+        public Builder meanTradeCountToFill(double meanTradeCountToFill) {
+            if (meanTradeCountToFill < 1) {
+                throw new IllegalArgumentException("meanTradeCountToFill must be at least 1: " + meanTradeCountToFill);
+            }
+            this.meanTradeCountToFill = meanTradeCountToFill;
+            return this;
+        }
+
+        /**
+         * Sets the mean event rate. Events are scheduled as a Poisson process, so they arrive in bursts like real
+         * order flow.
+         *
+         * @param eventsPerSecond the mean rate; 0 for as fast as possible.
+         * @return this builder.
+         */
+        public Builder eventsPerSecond(double eventsPerSecond) {
+            if (eventsPerSecond < 0) {
+                throw new IllegalArgumentException("eventsPerSecond must not be negative: " + eventsPerSecond);
+            }
+            this.eventsPerSecond = eventsPerSecond;
+            return this;
+        }
+
+        /**
+         * Caps the open orders. Once the cap is reached, every event cancels an open order, so the flow fits a
+         * fixed-capacity store.
+         *
+         * @param maxOpenOrders the cap; at least 1.
+         * @return this builder.
+         */
+        public Builder maxOpenOrders(int maxOpenOrders) {
+            if (maxOpenOrders < 1) {
+                throw new IllegalArgumentException("maxOpenOrders must be at least 1: " + maxOpenOrders);
+            }
+            this.maxOpenOrders = maxOpenOrders;
+            return this;
+        }
+
+        /**
+         * Builds the profile.
+         *
+         * @return the profile.
+         * @throws IllegalStateException if every market has a weight of 0.
+         */
+        public OrderFlowProfile build() {
+            double totalWeight = 0;
+            for (final double weight : marketWeights) {
+                totalWeight += weight;
+            }
+            if (totalWeight == 0) {
+                throw new IllegalStateException("At least one market needs a weight above 0");
+            }
+            return new OrderFlowProfile(this);
+        }
+
+        private static double ratio(String name, double value) {
+            if (value < 0 || value > 1) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * <h2>Synthetic Order Flow</h2>
+ * 
+ * Seeded, repeatable order flows at realistic scale for tests, benchmarks and load testing: prices spread around a mid,
+ * a mix of markets and sides, cancels and replaces, and a configurable event rate. The {@link LoadDriver} runs a flow
+ * against any {@link com.gazbert.java8.defaultmethods.TradingApi}. See the {@link TestOrderFlowGeneratorUsage} unit
+ * test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.simulation;
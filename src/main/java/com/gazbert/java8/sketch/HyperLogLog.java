@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sketch;
+
+/**
+ * Estimates the number of distinct values seen, in a fixed amount of memory, using the HyperLogLog algorithm.
+ * <p>
+ * Each value is hashed to 64 bits. The top <code>precision</code> bits pick one of <code>2^precision</code>
+ * one-byte registers, and the register keeps the longest run of leading zeros seen in the rest of the hash. The
+ * estimate comes from the harmonic mean of the registers, with linear counting for small cardinalities.
+ * <p>
+ * <b>Error bounds:</b> the relative standard error is <code>1.04 / sqrt(2^precision)</code>; 2/3 of estimates are
+ * within one standard error and 99.7% within three. At the default precision of 14 that is 16KB of registers and a
+ * standard error of 0.81%, whether 1,000 or 1,000,000,000 values were added. Adding the same value again never
+ * changes the estimate.
+ * <p>
+ * Sketches with the same precision can be {@link #merge(HyperLogLog) merged}; the result is exactly what one sketch
+ * would hold had it seen all the values, so serial and parallel streams give the same estimate.
+ * <p>
+ * Not thread-safe; use one sketch per thread and merge them, as {@link SketchCollectors} does.
+ *
+ * @author gazbert
+ */
+public final class HyperLogLog {
+
+    /**
+     * Default precision: 16KB, 0.81% standard error.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Creates a sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param precision number of hash bits used to pick a register, 4 to 18; each extra bit doubles the memory and
+     *                  cuts the error by a factor of sqrt(2).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value, e.g. an account number.
+     */
+    public void add(long value) {
+        addHash(mix(value));
+    }
+
+    /**
+     * Adds a 128-bit value, e.g. the 2 halves of an order's UUID.
+     *
+     * @param mostSignificantBits  the high half.
+     * @param leastSignificantBits the low half.
+     */
+    public void add(long mostSignificantBits, long leastSignificantBits) {
+        addHash(mix(mostSignificantBits ^ mix(leastSignificantBits)));
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other a sketch with the same precision.
+     * @return this sketch.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(
+                    "Can't merge precision " + other.precision + " into precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the estimated number of distinct values added.
+     */
+    public long estimate() {
+        final int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (final byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        final double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros)); // linear counting is better for small counts
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the relative standard error of {@link #estimate()}.
+     */
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{estimate=" + estimate() + ", precision=" + precision + "}";
+    }
+
+    private void addHash(long hash) {
+        final int register = (int) (hash >>> (Long.SIZE - precision));
+        // a sentinel bit stops the run of zeros at the end of the hash bits we have
+        final int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /*
+     * MurmurHash3's 64-bit finalizer: every input bit affects every output bit.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
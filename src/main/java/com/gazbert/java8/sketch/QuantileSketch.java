@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sketch;
+
+/**
+ * Estimates quantiles of a stream of non-negative values, in a fixed amount of memory, with a guaranteed relative
+ * error.
+ * <p>
+ * Values are counted in logarithmic buckets: bucket <code>i</code> holds the values in
+ * <code>(gamma^(i-1), gamma^i]</code> where <code>gamma = (1 + accuracy) / (1 - accuracy)</code>, and a quantile is
+ * answered with the point of its bucket that is the same relative distance from both ends. Zero has a bucket of its
+ * own.
+ * <p>
+ * <b>Error bounds:</b> for any quantile <code>q</code>, if <code>x</code> is the exact value at rank
+ * <code>floor(q * (count - 1))</code> of the sorted input, {@link #getQuantile(double)} returns a value within
+ * <code>accuracy * x</code> of it. This holds for values between {@link #MIN_TRACKED_VALUE} and
+ * {@link #MAX_TRACKED_VALUE}, which covers every fixed-point price, amount, fee and trade count; values outside that
+ * range are clamped to it (though {@link #getMin()} and {@link #getMax()} stay exact). Memory depends only on the
+ * accuracy: about 18KB at the default 1%, whatever the number of values.
+ * <p>
+ * Sketches with the same accuracy can be {@link #merge(QuantileSketch) merged}; bucket counts just add up, so serial
+ * and parallel streams give the same answers.
+ * <p>
+ * Not thread-safe; use one sketch per thread and merge them, as {@link SketchCollectors} does.
+ *
+ * @author gazbert
+ */
+public final class QuantileSketch {
+
+    /**
+     * Default relative accuracy: 1%.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Smallest positive value with a relative error guarantee: one unit at fixed-point scale 8.
+     */
+    public static final double MIN_TRACKED_VALUE = 1e-8;
+
+    /**
+     * Largest value with a relative error guarantee.
+     */
+    public static final double MAX_TRACKED_VALUE = 1e12;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int minIndex;
+    private final long[] counts;
+
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    /**
+     * Creates a sketch with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Creates a sketch.
+     *
+     * @param relativeAccuracy the relative error bound, greater than 0 and less than 1, e.g. 0.01 for 1%. Halving it
+     *                         roughly doubles the memory.
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+        minIndex = rawIndex(MIN_TRACKED_VALUE);
+        counts = new long[rawIndex(MAX_TRACKED_VALUE) - minIndex + 1];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value; must not be negative.
+     */
+    public void add(double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        if (value == 0) {
+            zeroCount++;
+        } else {
+            counts[index(value)]++;
+        }
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other a sketch with the same relative accuracy.
+     * @return this sketch.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Can't merge relative accuracy " + other.relativeAccuracy
+                    + " into relative accuracy " + relativeAccuracy);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Estimates a quantile.
+     *
+     * @param quantile between 0 and 1, e.g. 0.5 for the median or 0.99 for the 99th percentile.
+     * @return the estimated value, or NaN if nothing has been added.
+     */
+    public double getQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final long rank = (long) (quantile * (count - 1));
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                final double estimate = 2 * Math.pow(gamma, i + minIndex) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the exact smallest value added, or NaN if nothing has been added.
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return the exact largest value added, or NaN if nothing has been added.
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return the mean of the values added, or NaN if nothing has been added.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", min=" + getMin() + ", p50=" + getQuantile(0.5)
+                + ", p99=" + getQuantile(0.99) + ", max=" + getMax() + "}";
+    }
+
+    private int index(double value) {
+        final int raw = rawIndex(value);
+        return Math.max(0, Math.min(counts.length - 1, raw - minIndex));
+    }
+
+    private int rawIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+}
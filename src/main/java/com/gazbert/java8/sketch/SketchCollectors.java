@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sketch;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * {@link Collector}s that build {@link HyperLogLog} and {@link QuantileSketch} sketches from streams of orders.
+ * <p>
+ * Counting distinct values with <code>Collectors.toSet()</code>, or finding a percentile by collecting and sorting,
+ * holds every value in memory at once - gigabytes for hundreds of millions of historical orders. These collectors
+ * use a fixed amount of memory per fork/join leaf instead, whatever the size of the stream, in exchange for the error
+ * bounds documented on each sketch. Sketches are merged as the leaves are joined, and merging loses nothing, so a
+ * parallel stream gives exactly the same answer as a serial one.
+ * <p>
+ * Prices, amounts and fees are sketched from the orders' fixed-point values, so no BigDecimals are touched.
+ *
+ * @author gazbert
+ */
+public final class SketchCollectors {
+
+    private static final double ONE = FixedPoint.ONE;
+
+    private SketchCollectors() {
+    }
+
+    /**
+     * @return a collector estimating the number of distinct order ids, at the default precision.
+     */
+    public static Collector<Order, ?, HyperLogLog> distinctOrderIds() {
+        return distinctOrderIds(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision the sketch precision; see {@link HyperLogLog#HyperLogLog(int)}.
+     * @return a collector estimating the number of distinct order ids.
+     */
+    public static Collector<Order, ?, HyperLogLog> distinctOrderIds(int precision) {
+        return Collector.of(
+                () -> new HyperLogLog(precision),
+                (sketch, order) -> sketch.add(order.getIdMostSignificantBits(), order.getIdLeastSignificantBits()),
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Estimates the number of distinct keys, e.g. account numbers, at the default precision.
+     *
+     * @param key maps an element to its key.
+     * @param <T> the element type.
+     * @return the collector.
+     */
+    public static <T> Collector<T, ?, HyperLogLog> distinct(ToLongFunction<? super T> key) {
+        return distinct(key, HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Estimates the number of distinct keys.
+     *
+     * @param key       maps an element to its key.
+     * @param precision the sketch precision; see {@link HyperLogLog#HyperLogLog(int)}.
+     * @param <T>       the element type.
+     * @return the collector.
+     */
+    public static <T> Collector<T, ?, HyperLogLog> distinct(ToLongFunction<? super T> key, int precision) {
+        return Collector.of(
+                () -> new HyperLogLog(precision),
+                (sketch, element) -> sketch.add(key.applyAsLong(element)),
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * @return a collector sketching the distribution of order prices, at the default accuracy.
+     */
+    public static Collector<Order, ?, QuantileSketch> priceQuantiles() {
+        return quantiles(order -> order.getFixedPointPrice() / ONE);
+    }
+
+    /**
+     * @return a collector sketching the distribution of order amounts, at the default accuracy.
+     */
+    public static Collector<Order, ?, QuantileSketch> amountQuantiles() {
+        return quantiles(order -> order.getFixedPointAmount() / ONE);
+    }
+
+    /**
+     * @return a collector sketching the distribution of order fees, at the default accuracy.
+     */
+    public static Collector<Order, ?, QuantileSketch> feeQuantiles() {
+        return quantiles(order -> order.getFixedPointFee() / ONE);
+    }
+
+    /**
+     * @return a collector sketching the distribution of the number of trades it took to fill each order, at the
+     *     default accuracy.
+     */
+    public static Collector<Order, ?, QuantileSketch> tradeCountToFillQuantiles() {
+        return quantiles(Order::getTradeCountToFill);
+    }
+
+    /**
+     * Sketches the distribution of a value, at the default accuracy.
+     *
+     * @param value maps an element to a non-negative value.
+     * @param <T>   the element type.
+     * @return the collector.
+     */
+    public static <T> Collector<T, ?, QuantileSketch> quantiles(ToDoubleFunction<? super T> value) {
+        return quantiles(value, QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Sketches the distribution of a value.
+     *
+     * @param value            maps an element to a non-negative value.
+     * @param relativeAccuracy the sketch accuracy; see {@link QuantileSketch#QuantileSketch(double)}.
+     * @param <T>              the element type.
+     * @return the collector.
+     */
+    public static <T> Collector<T, ?, QuantileSketch> quantiles(ToDoubleFunction<? super T> value,
+                                                                double relativeAccuracy) {
+        return Collector.of(
+                () -> new QuantileSketch(relativeAccuracy),
+                (sketch, element) -> sketch.add(value.applyAsDouble(element)),
+                QuantileSketch::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * <h2>Approximate Analytics</h2>
+ * 
+ * Mergeable, fixed-memory sketches for distinct counts ({@link HyperLogLog}) and quantiles ({@link QuantileSketch})
+ * over very large order streams, collected serially or in parallel with {@link SketchCollectors}. See the
+ * {@link TestSketchCollectorsUsage} unit test class for usage.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.sketch;
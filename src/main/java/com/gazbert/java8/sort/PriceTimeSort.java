@@ -0,0 +1,266 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sort;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.gazbert.java8.common.IndexedSpliterator;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Sorts an order book into price-time priority using primitive keys.
+ * <p>
+ * Each order gets two long keys - its {@link Order#getFixedPointPrice() fixed point price} and its entry sequence -
+ * and a parallel LSD radix sort orders the row indices by (price, sequence). Nothing is boxed and no comparator is
+ * called, so it is several times faster than <code>sorted(Comparator.comparing(Order::getPrice))</code> for large
+ * books. See {@link PriceTimeSortBenchmark} in the test classes.
+ * <p>
+ * The sort works a byte at a time, least significant first: sequence bytes, then price bytes. Each pass is stable,
+ * so orders at the same price stay in sequence order. Passes where every key has the same byte are skipped, so a
+ * narrow price band costs only a few passes. Large inputs are split into chunks: each chunk is counted in parallel,
+ * then scattered in parallel into its own reserved ranges of the output.
+ *
+ * @author gazbert
+ */
+public final class PriceTimeSort {
+
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+    private static final int KEY_BITS = Long.SIZE;
+
+    /**
+     * Inputs smaller than this are sorted on the calling thread.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private PriceTimeSort() {
+    }
+
+    /**
+     * Sorts row indices into price-time priority.
+     *
+     * @param prices          fixed point prices, one per row.
+     * @param sequences       entry sequences, one per row; if null, the row index is used as the sequence.
+     * @param length          number of rows.
+     * @param descendingPrice true for best price first on the bid side (highest price first), false for the ask side
+     *                        (lowest price first). Earliest sequence always comes first within a price.
+     * @return the row indices in priority order.
+     */
+    public static int[] sortIndices(long[] prices, long[] sequences, int length, boolean descendingPrice) {
+
+        final SortBuffers buffers = new SortBuffers(length);
+        boolean inSequenceOrder = true;
+        for (int i = 0; i < length; i++) {
+            buffers.indices[i] = i;
+            // flip the sign bit so signed values sort as unsigned bytes; invert for descending
+            buffers.prices[i] = (descendingPrice ? ~prices[i] : prices[i]) ^ Long.MIN_VALUE;
+            final long sequence = sequences == null ? i : sequences[i];
+            buffers.sequences[i] = sequence ^ Long.MIN_VALUE;
+            if (i > 0 && sequence < (sequences == null ? i - 1 : sequences[i - 1])) {
+                inSequenceOrder = false;
+            }
+        }
+
+        final int chunks = Math.max(1, Math.min(length / MIN_CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors() * 4));
+
+        // already in time order, e.g. an arrival-ordered list - only the price passes are needed
+        if (!inSequenceOrder) {
+            for (int shift = 0; shift < KEY_BITS; shift += RADIX_BITS) {
+                radixPass(buffers, false, shift, chunks);
+            }
+        }
+        for (int shift = 0; shift < KEY_BITS; shift += RADIX_BITS) {
+            radixPass(buffers, true, shift, chunks);
+        }
+        return buffers.indices;
+    }
+
+    /**
+     * Returns a read-only view of an order book in price-time priority. The list position is the entry sequence, so
+     * the book is expected to be in arrival order.
+     *
+     * @param orderBook       the order book.
+     * @param descendingPrice true for highest price first, false for lowest price first.
+     * @return the sorted view; it reads through to the original orders.
+     */
+    public static List<Order> sortedView(List<Order> orderBook, boolean descendingPrice) {
+
+        final List<Order> source = orderBook instanceof RandomAccess ? orderBook : new ArrayList<>(orderBook);
+        final int size = source.size();
+        final long[] prices = new long[size];
+        for (int i = 0; i < size; i++) {
+            prices[i] = source.get(i).getFixedPointPrice();
+        }
+        return new SortedView(source, sortIndices(prices, null, size, descendingPrice));
+    }
+
+    /**
+     * Sorts the slots of an off-heap store into price-time priority, using the store's entry sequence for time.
+     *
+     * @param store           the store.
+     * @param descendingPrice true for highest price first, false for lowest price first.
+     * @return the store slots in priority order; only valid until the store is next changed.
+     */
+    public static int[] sortedSlots(OffHeapOrderStore store, boolean descendingPrice) {
+
+        final int size = store.size();
+        final long[] prices = new long[size];
+        final long[] sequences = new long[size];
+        for (int slot = 0; slot < size; slot++) {
+            prices[slot] = store.getPrice(slot);
+            sequences[slot] = store.getSequence(slot);
+        }
+        return sortIndices(prices, sequences, size, descendingPrice);
+    }
+
+    /*
+     * One stable counting pass on the given byte of the price or sequence key.
+     */
+    private static void radixPass(SortBuffers buffers, boolean priceKey, int shift, int chunks) {
+
+        final int length = buffers.indices.length;
+        final long[] keys = priceKey ? buffers.prices : buffers.sequences;
+        final int[][] counts = new int[chunks][BUCKETS];
+
+        forEachChunk(chunks, chunk -> {
+            final int[] chunkCounts = counts[chunk];
+            for (int i = chunkStart(chunk, chunks, length), end = chunkStart(chunk + 1, chunks, length);
+                    i < end; i++) {
+                chunkCounts[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+            }
+        });
+
+        // turn the counts into each chunk's first write position per bucket
+        int position = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            int bucketTotal = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                bucketTotal += counts[chunk][bucket];
+            }
+            if (bucketTotal == length) {
+                return; // every key has the same byte here - nothing to reorder
+            }
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                final int count = counts[chunk][bucket];
+                counts[chunk][bucket] = position;
+                position += count;
+            }
+        }
+
+        forEachChunk(chunks, chunk -> {
+            final int[] next = counts[chunk];
+            for (int i = chunkStart(chunk, chunks, length), end = chunkStart(chunk + 1, chunks, length);
+                    i < end; i++) {
+                final int to = next[(int) (keys[i] >>> shift) & (BUCKETS - 1)]++;
+                buffers.indicesOut[to] = buffers.indices[i];
+                buffers.pricesOut[to] = buffers.prices[i];
+                buffers.sequencesOut[to] = buffers.sequences[i];
+            }
+        });
+        buffers.swap();
+    }
+
+    private static void forEachChunk(int chunks, IntConsumer action) {
+        if (chunks == 1) {
+            action.accept(0);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(action);
+        }
+    }
+
+    private static int chunkStart(int chunk, int chunks, int length) {
+        return (int) ((long) length * chunk / chunks);
+    }
+
+    /*
+     * Row indices and keys, double buffered so each pass scatters from one set into the other.
+     */
+    private static final class SortBuffers {
+
+        int[] indices;
+        long[] prices;
+        long[] sequences;
+        int[] indicesOut;
+        long[] pricesOut;
+        long[] sequencesOut;
+
+        SortBuffers(int length) {
+            indices = new int[length];
+            prices = new long[length];
+            sequences = new long[length];
+            indicesOut = new int[length];
+            pricesOut = new long[length];
+            sequencesOut = new long[length];
+        }
+
+        void swap() {
+            final int[] indicesIn = indices;
+            indices = indicesOut;
+            indicesOut = indicesIn;
+            final long[] pricesIn = prices;
+            prices = pricesOut;
+            pricesOut = pricesIn;
+            final long[] sequencesIn = sequences;
+            sequences = sequencesOut;
+            sequencesOut = sequencesIn;
+        }
+    }
+
+    /*
+     * Read-only list over the original orders in sorted index order.
+     */
+    private static final class SortedView extends AbstractList<Order> implements RandomAccess {
+
+        private final List<Order> orders;
+        private final int[] order;
+
+        SortedView(List<Order> orders, int[] order) {
+            this.orders = orders;
+            this.order = order;
+        }
+
+        @Override
+        public Order get(int index) {
+            return orders.get(order[index]);
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+
+        @Override
+        public Spliterator<Order> spliterator() {
+            return IndexedSpliterator.of(this::get, order.length);
+        }
+    }
+}
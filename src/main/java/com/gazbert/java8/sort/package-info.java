@@ -0,0 +1,9 @@
+/**
+ * <h2>Price-Time Sorting</h2>
+ * 
+ * Bulk sorting of the order book into price-time priority on primitive keys. See the {@link TestPriceTimeSortUsage}
+ * unit test class for usage, and {@link PriceTimeSortBenchmark} for a comparison with a comparator sort.
+ * 
+ * @author gazbert
+ */
+package com.gazbert.java8.sort;
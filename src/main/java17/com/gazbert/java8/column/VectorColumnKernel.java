@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the {@link ColumnKernel}.
+ * <p>
+ * Each loop compares a whole vector of values at once, using the widest vectors the CPU supports, then finishes off
+ * the tail with a plain loop. Only loaded on Java 17 or later - see {@link ColumnKernels}.
+ *
+ * @author gazbert
+ */
+public final class VectorColumnKernel implements ColumnKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public int countInRange(long[] values, int length, long min, long max) {
+        int count = 0;
+        int i = 0;
+        for (final int upperBound = SPECIES.loopBound(length); i < upperBound; i += SPECIES.length()) {
+            final LongVector vector = LongVector.fromArray(SPECIES, values, i);
+            final VectorMask<Long> inRange = vector.compare(VectorOperators.GE, min)
+                    .and(vector.compare(VectorOperators.LT, max));
+            count += inRange.trueCount();
+        }
+        for (; i < length; i++) {
+            if (values[i] >= min && values[i] < max) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long sumWhereInRange(long[] keys, long[] values, int length, long min, long max) {
+        LongVector sums = LongVector.zero(SPECIES);
+        int i = 0;
+        for (final int upperBound = SPECIES.loopBound(length); i < upperBound; i += SPECIES.length()) {
+            final LongVector keyVector = LongVector.fromArray(SPECIES, keys, i);
+            final VectorMask<Long> inRange = keyVector.compare(VectorOperators.GE, min)
+                    .and(keyVector.compare(VectorOperators.LT, max));
+            sums = sums.add(LongVector.fromArray(SPECIES, values, i), inRange);
+        }
+        long sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            if (keys[i] >= min && keys[i] < max) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.aggregate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Rough benchmark comparing {@link PartitionedCollectors} with groupingByConcurrent and groupingBy, averaging
+ * tradeCountToFill by order type over a parallel stream. The gap grows with the number of cores, as more threads
+ * fight over groupingByConcurrent's 2 hot map buckets.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xmx4g -cp target/classes:target/test-classes com.gazbert.java8.aggregate.PartitionedAggregationBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class PartitionedAggregationBenchmark {
+
+    private static final int ORDERS = 5_000_000;
+    private static final int RUNS = 20;
+
+    private PartitionedAggregationBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final List<Order> orderBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(ORDERS);
+
+        final Supplier<Map<Type, Double>> concurrent = () -> orderBook.parallelStream()
+                .collect(Collectors.groupingByConcurrent(Order::getType,
+                        Collectors.averagingInt(Order::getTradeCountToFill)));
+        final Supplier<Map<Type, Double>> groupingBy = () -> orderBook.parallelStream()
+                .collect(Collectors.groupingBy(Order::getType, Collectors.averagingInt(Order::getTradeCountToFill)));
+        final Supplier<Map<Type, Double>> partitioned = () -> orderBook.parallelStream()
+                .collect(PartitionedCollectors.averagingIntByEnum(Type.class, Order::getType,
+                        Order::getTradeCountToFill));
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            concurrent.get();
+            groupingBy.get();
+            partitioned.get();
+        }
+
+        System.out.printf("%,d orders on %d cores%n", ORDERS, Runtime.getRuntime().availableProcessors());
+        final long concurrentNanos = time(concurrent);
+        System.out.printf("groupingByConcurrent:  %,d us%n", concurrentNanos / 1000);
+        System.out.printf("groupingBy:            %,d us%n", time(groupingBy) / 1000);
+        final long partitionedNanos = time(partitioned);
+        System.out.printf("PartitionedCollectors: %,d us%n", partitionedNanos / 1000);
+        System.out.printf("speedup over groupingByConcurrent: %.1fx%n", (double) concurrentNanos / partitionedNanos);
+    }
+
+    private static long time(Supplier<Map<Type, Double>> aggregation) {
+        double checksum = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += aggregation.get().get(Type.BUY);
+        }
+        final long nanos = (System.nanoTime() - start) / RUNS;
+        if (checksum == 0) {
+            System.out.println("checksum " + checksum);
+        }
+        return nanos;
+    }
+}
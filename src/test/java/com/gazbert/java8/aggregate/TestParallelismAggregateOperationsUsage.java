@@ -31,6 +31,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
@@ -40,6 +41,8 @@ import org.junit.Test;
 import com.gazbert.java8.common.Order;
 import com.gazbert.java8.common.Order.Market;
 import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
 
 /**
  * Test class for demonstrating use of parallel aggregate operation functionality in Java 8.
@@ -151,6 +154,58 @@ public class TestParallelismAggregateOperationsUsage {
         assertEquals(3, averageNumberOfBuyTrades, 0);
     }
 
+    /**
+     * Same as above, but without the contention: {@link PartitionedCollectors} gives each fork/join leaf its own
+     * table of totals, indexed by the enum key, and merges them when the leaves are joined.
+     */
+    @Test
+    public void getMapOfSellAndBuyTradeCountsUsingPartitionedCollectors() {
+
+        order1.setTradeCountToFill(3);
+        order2.setTradeCountToFill(4);
+        order3.setTradeCountToFill(2);
+
+        final Map<Type, Double> averageTradeCountByOrderType = orderBook
+                .parallelStream()
+                .collect(PartitionedCollectors.averagingIntByEnum(
+                        Type.class, Order::getType, Order::getTradeCountToFill));
+
+        assertEquals(3, averageTradeCountByOrderType.get(Type.SELL), 0);
+        assertEquals(3, averageTradeCountByOrderType.get(Type.BUY), 0);
+
+        // any downstream collector can be used, and markets with no orders are left out like groupingBy does
+        final Map<Market, Long> ordersByMarket = orderBook
+                .parallelStream()
+                .filter(order -> order.getMarketId() != Market.CNY)
+                .collect(PartitionedCollectors.groupingByEnum(Market.class, Order::getMarketId, Collectors.counting()));
+
+        assertEquals(2, ordersByMarket.size());
+        assertEquals(Long.valueOf(1), ordersByMarket.get(Market.USD));
+    }
+
+    /**
+     * The partitioned collectors give the same results as groupingByConcurrent on a big generated book.
+     */
+    @Test
+    public void partitionedCollectorsMatchGroupingByConcurrent() {
+
+        final List<Order> bigBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 3).initialBook(200_000);
+
+        assertEquals(bigBook.parallelStream().collect(Collectors.groupingByConcurrent(
+                        Order::getMarketId, Collectors.averagingInt(Order::getTradeCountToFill))),
+                bigBook.parallelStream().collect(PartitionedCollectors.averagingIntByEnum(
+                        Market.class, Order::getMarketId, Order::getTradeCountToFill)));
+
+        assertEquals(bigBook.parallelStream().collect(Collectors.groupingByConcurrent(
+                        Order::getType, Collectors.summingLong(Order::getFixedPointAmount))),
+                bigBook.parallelStream().collect(PartitionedCollectors.summingLongByEnum(
+                        Type.class, Order::getType, Order::getFixedPointAmount)));
+
+        assertEquals(bigBook.stream().collect(Collectors.groupingBy(Order::getMarketId, Collectors.counting())),
+                bigBook.parallelStream().collect(PartitionedCollectors.countingByEnum(
+                        Market.class, Order::getMarketId)));
+    }
+
     /**
      * Ordering when using parallelism.
      * <p>
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.cache;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.SampleOrders;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Test class for demonstrating use of the {@link AnalyserResultCache}.
+ * <p>
+ * Use case is a risk UI asking the same questions of an order book many times a second.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestAnalyserResultCacheUsage {
+
+    private OffHeapOrderStore orderBook;
+    private Order order3;
+
+    /**
+     * Builds the order book up for each test.
+     */
+    @Before
+    public void setupForEachTest() {
+        final List<Order> orders = SampleOrders.threeMarketBook();
+        order3 = orders.get(2);
+
+        orderBook = OffHeapOrderStore.allocateDirect(16);
+        orders.forEach(orderBook::add);
+    }
+
+    /**
+     * Shows repeated queries being served from the cache until the book changes.
+     */
+    @Test
+    public void showCachedResultsGoStaleWhenBookMutates() {
+
+        final AnalyserResultCache cache = new AnalyserResultCache(8);
+        final int[] matcherCalls = new int[1];
+
+        for (int i = 0; i < 5; i++) {
+            final int orderCount = cache.getNumberOfMatchedOrders("priceOver1.70", orderBook, o -> {
+                matcherCalls[0]++;
+                return o.getPrice().compareTo(new BigDecimal("1.70")) >= 0;
+            });
+            assertEquals(2, orderCount);
+        }
+        assertEquals(3, matcherCalls[0]); // only ran once
+        assertEquals(4, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        orderBook.remove(order3.getId());
+
+        final int orderCount = cache.getNumberOfMatchedOrders(
+                "priceOver1.70", orderBook, o -> o.getPrice().compareTo(new BigDecimal("1.70")) >= 0);
+        assertEquals(1, orderCount);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.666, cache.getHitRate(), 0.001);
+    }
+
+    /**
+     * Shows cached audit details, and the least recently used result being evicted when the cache is full.
+     */
+    @Test
+    public void showLeastRecentlyUsedEviction() {
+
+        final AnalyserResultCache cache = new AnalyserResultCache(2);
+
+        final List<String> auditDetails = cache.getAuditDetailsForMatchingOrders(
+                "sellAudit", orderBook, o -> o.getType() == Type.SELL, Order::provideAuditDetails);
+        assertEquals(1, auditDetails.size());
+        cache.getNumberOfMatchedOrders("buys", orderBook, o -> o.getType() == Type.BUY);
+
+        // touch sellAudit so buys is the least recently used
+        assertSame(auditDetails, cache.getAuditDetailsForMatchingOrders(
+                "sellAudit", orderBook, o -> o.getType() == Type.SELL, Order::provideAuditDetails));
+
+        cache.getNumberOfMatchedOrders("usd", orderBook, o -> o.getMarketId() == Market.USD);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        final long misses = cache.getMisses();
+        cache.getNumberOfMatchedOrders("buys", orderBook, o -> o.getType() == Type.BUY);
+        assertEquals(misses + 1, cache.getMisses());
+        System.out.println("cache: " + cache);
+    }
+
+    /**
+     * Shows a count query and an audit query sharing a name being cached separately.
+     */
+    @Test
+    public void showQueriesOfDifferentKindsSharingAName() {
+
+        final AnalyserResultCache cache = new AnalyserResultCache(4);
+
+        assertEquals(1, cache.getNumberOfMatchedOrders("sells", orderBook, o -> o.getType() == Type.SELL));
+        final List<String> auditDetails = cache.getAuditDetailsForMatchingOrders(
+                "sells", orderBook, o -> o.getType() == Type.SELL, Order::provideAuditDetails);
+        assertEquals(1, auditDetails.size());
+        assertEquals(2, cache.size());
+
+        assertEquals(1, cache.getNumberOfMatchedOrders("sells", orderBook, o -> o.getType() == Type.SELL));
+        assertEquals(1, cache.getHits());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.clock;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of the {@link ExchangeClock}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestExchangeClockUsage {
+
+    /**
+     * Shows clocks with a ticker sharing one ticker thread, however many are created.
+     *
+     * @throws Exception if interrupted.
+     */
+    @Test
+    public void showTickerThreadIsShared() throws Exception {
+
+        final AtomicLong millis = new AtomicLong(1_000);
+        final List<ExchangeClock> clocks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            clocks.add(new ExchangeClock(System::nanoTime, millis::get, ZoneOffset.UTC, 1));
+        }
+        assertEquals(1, Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("exchange-clock-ticker")).count());
+
+        millis.set(2_000);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (clocks.stream().anyMatch(clock -> clock.currentTimeMillis() != 2_000) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        clocks.forEach(clock -> assertEquals(2_000, clock.currentTimeMillis()));
+    }
+
+    /**
+     * Shows the 3 timestamps using a clock driven by hand, so we know exactly what it should say.
+     */
+    @Test
+    public void showTimestamps() {
+
+        final AtomicLong nanos = new AtomicLong(5_000);
+        final AtomicLong millis = new AtomicLong(1_600_000_000_000L);
+        final ExchangeClock clock = new ExchangeClock(nanos::get, millis::get, ZoneOffset.UTC, 0);
+
+        assertEquals(1_600_000_000_000_000_000L, clock.epochNanos());
+        nanos.addAndGet(1_234_567);
+        assertEquals(1_600_000_000_001_234_567L, clock.epochNanos());
+        assertEquals(1_600_000_000_001L, clock.millis());
+        assertEquals(Instant.ofEpochSecond(1_600_000_000L, 1_234_567), clock.instant());
+        assertEquals(1_234_567 + 5_000, clock.nanoTime());
+
+        // the coarse clock only moves when ticked
+        millis.addAndGet(10);
+        assertEquals(1_600_000_000_000L, clock.currentTimeMillis());
+        clock.tick();
+        assertEquals(1_600_000_000_010L, clock.currentTimeMillis());
+
+        // the high resolution clock ignores wall-clock jumps - it never goes backwards
+        millis.addAndGet(-60_000);
+        clock.tick();
+        assertEquals(1_600_000_000_001_234_567L, clock.epochNanos());
+
+        assertEquals(ZoneOffset.ofHours(8), clock.withZone(ZoneOffset.ofHours(8)).getZone());
+        assertEquals(clock.epochNanos(), clock.withZone(ZoneOffset.ofHours(8)).epochNanos());
+        assertEquals(Instant.ofEpochSecond(-1, 999_999_999), ExchangeClock.toInstant(-1));
+    }
+
+    /**
+     * The shared clock should track the system clock closely and its cached millis should keep ticking.
+     */
+    @Test
+    public void systemClockTracksWallClock() throws Exception {
+
+        final ExchangeClock clock = ExchangeClock.systemUTC();
+        final long drift = Math.abs(clock.millis() - System.currentTimeMillis());
+        assertTrue("Drift " + drift + "ms", drift < 1000);
+
+        final long before = clock.currentTimeMillis();
+        Thread.sleep(50);
+        assertTrue(clock.currentTimeMillis() > before);
+
+        long previous = clock.epochNanos();
+        for (int i = 0; i < 100_000; i++) {
+            final long next = clock.epochNanos();
+            assertTrue(next >= previous);
+            previous = next;
+        }
+    }
+
+    /**
+     * Shows orders being stamped as they're added, giving their time priority; the caller's order isn't touched.
+     */
+    @Test
+    public void showOrdersStampedOnEntry() {
+
+        final AtomicLong nanos = new AtomicLong();
+        final ExchangeClock clock = new ExchangeClock(nanos::get, () -> 1_000L, ZoneOffset.UTC, 0);
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(4), Runnable::run, clock);
+
+        final Order first = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ZERO);
+        final Order second = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.TEN, BigDecimal.ZERO);
+        api.addOrder(first);
+        nanos.addAndGet(750);
+        api.addOrder(second);
+
+        assertEquals(0, first.getEntryTimestamp());
+        final Order firstCopy = api.getOpenOrders(Market.USD.ordinal()).stream()
+                .filter(o -> o.getId().equals(first.getId())).findFirst().get();
+        final Order secondCopy = api.getOpenOrders(Market.USD.ordinal()).stream()
+                .filter(o -> o.getId().equals(second.getId())).findFirst().get();
+        assertEquals(1_000_000_000L, firstCopy.getEntryTimestamp());
+        assertEquals(Duration.ofNanos(750), Duration.between(ExchangeClock.toInstant(firstCopy.getEntryTimestamp()),
+                ExchangeClock.toInstant(secondCopy.getEntryTimestamp())));
+
+        // copying into another store keeps the stamp
+        final OffHeapOrderStore archive = OffHeapOrderStore.allocateDirect(4);
+        archive.add(firstCopy);
+        assertEquals(firstCopy.getEntryTimestamp(), archive.getEntryTimestamp(0));
+    }
+
+    /**
+     * Reading the clock on the hot path must not create garbage.
+     */
+    @Test
+    public void timestampsDoNotAllocate() {
+
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final ExchangeClock clock = ExchangeClock.systemUTC();
+        long checksum = 0;
+        for (int i = 0; i < 100_000; i++) { // warm up
+            checksum += clock.epochNanos() + clock.nanoTime() + clock.currentTimeMillis() + clock.millis();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            checksum += clock.epochNanos() + clock.nanoTime() + clock.currentTimeMillis() + clock.millis();
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue(checksum != 0);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
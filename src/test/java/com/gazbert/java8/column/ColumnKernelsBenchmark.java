@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+import java.util.Random;
+
+/**
+ * Rough benchmark comparing the scalar and vector {@link ColumnKernel}s on the same data.
+ * <p>
+ * Not a unit test - run the main method from the test classpath on JDK 17+ with
+ * <code>--add-modules jdk.incubator.vector</code> and the <code>META-INF/versions/17</code> classes on the classpath,
+ * e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java --add-modules jdk.incubator.vector \
+ *   -cp target/classes/META-INF/versions/17:target/classes:target/test-classes \
+ *   com.gazbert.java8.column.ColumnKernelsBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class ColumnKernelsBenchmark {
+
+    private static final int ROWS = 10_000_000;
+    private static final int RUNS = 20;
+
+    private ColumnKernelsBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final Random random = new Random(1);
+        final long[] prices = new long[ROWS];
+        final long[] amounts = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            prices[i] = 100 + random.nextInt(1000);
+            amounts[i] = random.nextInt(10_000);
+        }
+
+        System.out.println("Vector kernel available: " + ColumnKernels.isVectorised());
+        run("scalar", new ScalarColumnKernel(), prices, amounts);
+        if (ColumnKernels.isVectorised()) {
+            run("vector", ColumnKernels.get(), prices, amounts);
+        }
+    }
+
+    private static void run(String name, ColumnKernel kernel, long[] prices, long[] amounts) {
+        long checksum = 0;
+        for (int i = 0; i < RUNS; i++) { // warm up
+            checksum += kernel.countInRange(prices, ROWS, 300, 700);
+            checksum += kernel.sumWhereInRange(prices, amounts, ROWS, 300, 700);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += kernel.countInRange(prices, ROWS, 300, 700);
+        }
+        final long countNanos = (System.nanoTime() - start) / RUNS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += kernel.sumWhereInRange(prices, amounts, ROWS, 300, 700);
+        }
+        final long sumNanos = (System.nanoTime() - start) / RUNS;
+
+        System.out.printf("%s: countInRange %.2f ms (%.2f ns/row), sumWhereInRange %.2f ms (%.2f ns/row) [%d]%n",
+                name, countNanos / 1e6, (double) countNanos / ROWS, sumNanos / 1e6, (double) sumNanos / ROWS,
+                checksum);
+    }
+}
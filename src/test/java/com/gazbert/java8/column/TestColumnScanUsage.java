@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.column;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+
+/**
+ * Test class for demonstrating use of {@link OrderColumns} range scans.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestColumnScanUsage {
+
+    /**
+     * Shows price range counts and amount sums over columns agreeing with the row-by-row analyser.
+     */
+    @Test
+    public void showColumnarRangeScans() {
+
+        final Random random = new Random(3);
+        final List<Order> orderBook = new ArrayList<>();
+        for (int i = 0; i < 10_003; i++) { // odd size so the vector loop has a tail
+            orderBook.add(new Order(Market.USD, Type.BUY, BigDecimal.valueOf(random.nextInt(10_000), 2),
+                    BigDecimal.valueOf(100 + random.nextInt(1000), 2), BigDecimal.ZERO));
+        }
+
+        final OrderColumns columns = OrderColumns.of(orderBook);
+        final BigDecimal min = new BigDecimal("1.70");
+        final BigDecimal max = new BigDecimal("5.25");
+
+        final int expectedCount = OrderBookAnalyser.getNumberOfMatchedOrders(
+                orderBook, o -> o.getPrice().compareTo(min) >= 0 && o.getPrice().compareTo(max) < 0);
+        assertEquals(expectedCount, columns.countPriceInRange(min, max));
+
+        final BigDecimal expectedSum = orderBook.stream()
+                .filter(o -> o.getPrice().compareTo(min) >= 0 && o.getPrice().compareTo(max) < 0)
+                .map(Order::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, expectedSum.compareTo(columns.sumAmountWherePriceInRange(min, max)));
+
+        System.out.println("Column scans vectorised: " + ColumnKernels.isVectorised());
+    }
+
+    /**
+     * The active kernel, vector or not, must agree with the scalar one for every length, tails included.
+     */
+    @Test
+    public void activeKernelMatchesScalarKernel() {
+
+        final ColumnKernel scalar = new ScalarColumnKernel();
+        final ColumnKernel active = ColumnKernels.get();
+        final Random random = new Random(11);
+
+        for (int length = 0; length < 70; length++) {
+            final long[] keys = new long[length];
+            final long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                keys[i] = random.nextInt(100);
+                values[i] = random.nextInt(1000);
+            }
+            assertEquals(scalar.countInRange(keys, length, 25, 75), active.countInRange(keys, length, 25, 75));
+            assertEquals(scalar.sumWhereInRange(keys, values, length, 25, 75),
+                    active.sumWhereInRange(keys, values, length, 25, 75));
+        }
+    }
+}
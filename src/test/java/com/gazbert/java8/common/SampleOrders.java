@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+
+/**
+ * The small hand-built order book shared by the unit tests, for checks where each order's values matter. Use the
+ * {@link com.gazbert.java8.simulation.OrderFlowGenerator} where scale matters.
+ *
+ * @author gazbert
+ */
+public final class SampleOrders {
+
+    private SampleOrders() {
+    }
+
+    /**
+     * Builds a new book of 3 orders, one per market, each with a fee of 0.01:
+     * <ol>
+     * <li>EUR BUY 100 @ 1.69</li>
+     * <li>USD BUY 200 @ 1.70</li>
+     * <li>CNY SELL 250 @ 10.58</li>
+     * </ol>
+     *
+     * @return a new, mutable list of new orders, so tests can change them freely.
+     */
+    public static List<Order> threeMarketBook() {
+        final List<Order> orderBook = new ArrayList<>();
+        orderBook.add(new Order(
+                Market.EUR, Type.BUY, new BigDecimal("100.00"), new BigDecimal("1.69"), new BigDecimal("0.01")));
+        orderBook.add(new Order(
+                Market.USD, Type.BUY, new BigDecimal("200.00"), new BigDecimal("1.70"), new BigDecimal("0.01")));
+        orderBook.add(new Order(
+                Market.CNY, Type.SELL, new BigDecimal("250.00"), new BigDecimal("10.58"), new BigDecimal("0.01")));
+        return orderBook;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import static org.junit.Assert.*;
+
+import java.util.ConcurrentModificationException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.gazbert.java8.aggregate.PartitionedCollectors;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Test class for demonstrating use of {@link IndexedSpliterator} and {@link OrderBookSpliterators}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOrderBookSpliteratorsUsage {
+
+    /**
+     * Every split halves the range exactly and knows its size.
+     */
+    @Test
+    public void showExactSplitting() {
+
+        final Spliterator<Integer> right = IndexedSpliterator.of(Integer::valueOf, 1001);
+        assertTrue(right.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED));
+
+        final Spliterator<Integer> left = right.trySplit();
+        assertEquals(500, left.estimateSize());
+        assertEquals(501, right.estimateSize());
+        assertEquals(250, left.trySplit().getExactSizeIfKnown());
+
+        final int[] sum = new int[1];
+        right.forEachRemaining(i -> sum[0] += i);
+        assertEquals((500 + 1000) * 501 / 2, sum[0]);
+        assertFalse(right.tryAdvance(i -> fail()));
+
+        final Spliterator<Integer> single = IndexedSpliterator.of(Integer::valueOf, 1);
+        assertNull(single.trySplit());
+    }
+
+    /**
+     * A LinkedList book streams in parallel with balanced splits, and gives the same results as a serial stream.
+     */
+    @Test
+    public void showBalancedParallelStreamOverLinkedList() {
+
+        final List<Order> orderBook = new LinkedList<>(
+                new OrderFlowGenerator(OrderFlowProfile.defaults(), 5).initialBook(100_000));
+
+        final Spliterator<Order> spliterator = OrderBookSpliterators.of(orderBook);
+        assertEquals(50_000, spliterator.trySplit().estimateSize());
+
+        final Map<Type, Long> expected = orderBook.stream()
+                .collect(Collectors.groupingBy(Order::getType, Collectors.summingLong(Order::getFixedPointAmount)));
+        assertEquals(expected, OrderBookSpliterators.stream(orderBook, true)
+                .collect(PartitionedCollectors.summingLongByEnum(Type.class, Order::getType,
+                        Order::getFixedPointAmount)));
+
+        // encounter order is kept
+        assertEquals(orderBook.get(99_999).getId(), OrderBookSpliterators.stream(orderBook, true)
+                .map(Order::getId).reduce((first, second) -> second).get());
+    }
+
+    /**
+     * The off-heap store streams in parallel, each split reading through its own flyweight view, and fails fast if
+     * it is changed during the stream.
+     */
+    @Test
+    public void showParallelStreamOverOffHeapStore() {
+
+        final List<Order> orders = new OrderFlowGenerator(OrderFlowProfile.defaults(), 6).initialBook(50_000);
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orders.size());
+        orders.forEach(store::add);
+
+        assertEquals(orders.stream().mapToLong(Order::getFixedPointAmount).sum(),
+                store.parallelStream().mapToLong(Order::getFixedPointAmount).sum());
+        assertEquals(orders.size(), store.parallelStream().map(Order::getId).distinct().count());
+
+        try {
+            store.stream().forEach(order -> store.setTradeCountToFill(0, 1));
+            fail("Expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.common;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of the {@link OrderPool} and {@link MutableOrder} on the order entry hot path.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOrderPoolUsage {
+
+    private static final int ORDERS_PER_RUN = 100_000;
+
+    /**
+     * Shows the pool handing out reset orders with new ids, and creating orders when it runs dry.
+     */
+    @Test
+    public void showAcquiringAndReleasingOrders() {
+
+        final OrderPool pool = new OrderPool(2);
+
+        final MutableOrder order1 = pool.acquire();
+        final MutableOrder order2 = pool.acquire();
+        assertNotEquals(order1.getId(), order2.getId());
+        assertEquals(0, pool.getAvailable());
+
+        final MutableOrder order3 = pool.acquire();
+        assertEquals(1, pool.getMisses());
+
+        order1.set(Market.USD, Type.SELL, FixedPoint.ONE, 170 * FixedPoint.ONE / 100, FixedPoint.ONE / 100);
+        assertEquals(0, new BigDecimal("1.70").compareTo(order1.getPrice()));
+
+        final Order copy = order1.toOrder();
+        pool.release(order1);
+        assertNull(order1.getMarketId());
+        assertEquals(Market.USD, copy.getMarketId());
+        assertEquals(0, new BigDecimal("0.01").compareTo(copy.getFee()));
+
+        pool.release(order2);
+        pool.release(order3); // pool is full, left for the GC
+        assertEquals(2, pool.getAvailable());
+    }
+
+    /**
+     * Shows copying a regular order into a pooled one.
+     */
+    @Test
+    public void showCopyingAnOrder() {
+
+        final Order order = new Order(
+                Market.EUR, Type.BUY, new BigDecimal("100.00"), new BigDecimal("1.69"), new BigDecimal("0.01"));
+        order.setTradeCountToFill(3);
+
+        final MutableOrder mutableOrder = new OrderPool(1).acquire().copyFrom(order);
+        assertEquals(order.getId(), mutableOrder.getId());
+        assertEquals(Type.BUY, mutableOrder.getType());
+        assertEquals(0, order.getAmount().compareTo(mutableOrder.getAmount()));
+        assertEquals(3, mutableOrder.getTradeCountToFill());
+    }
+
+    /**
+     * Counts the bytes allocated by the order entry thread once it has warmed up. Add and cancel should create no
+     * garbage at all; we allow a little slack for the measuring itself.
+     */
+    @Test
+    public void steadyStateOrderEntryDoesNotAllocate() {
+
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(1024));
+        final OrderPool pool = new OrderPool(16);
+
+        for (int i = 0; i < 5; i++) { // warm up so the JIT has done its thing
+            enterOrders(api, pool);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        enterOrders(api, pool);
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(0, api.getOrderStore().size());
+        assertEquals(0, pool.getMisses());
+        assertTrue("Allocated " + allocated + " bytes for " + ORDERS_PER_RUN + " orders", allocated < 1024);
+    }
+
+    private static void enterOrders(OffHeapTradingApi api, OrderPool pool) {
+        for (int i = 0; i < ORDERS_PER_RUN; i++) {
+            final MutableOrder order = pool.acquire()
+                    .set(Market.USD, Type.BUY, FixedPoint.ONE, (100 + (i & 63)) * FixedPoint.ONE, 0);
+            final long idMostSignificantBits = order.getIdMostSignificantBits();
+            final long idLeastSignificantBits = order.getIdLeastSignificantBits();
+
+            if (!api.addOrder(order)) {
+                throw new IllegalStateException("Order not added");
+            }
+            pool.release(order); // the store has its own copy
+
+            if (!api.cancelOrder(idMostSignificantBits, idLeastSignificantBits)) {
+                throw new IllegalStateException("Order not cancelled");
+            }
+        }
+    }
+}
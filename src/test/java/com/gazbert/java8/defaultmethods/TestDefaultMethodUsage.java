@@ -24,7 +24,11 @@
 package com.gazbert.java8.defaultmethods;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
 
@@ -61,6 +65,18 @@ public class TestDefaultMethodUsage
         // now invoke the default method
         assertEquals("Default API Impl", api.getImplName());        
     }
+
+    /**
+     * Shows default methods added to an interface that is already out there: MyTradingApi was written before
+     * mass cancels existed, but still gets them - implemented on top of its getOpenOrders and cancelOrder.
+     */
+    @Test
+    public void showDefaultMassCancelUsage()
+    {
+        final TradingApi api = new MyTradingApi();
+        assertEquals(0, api.cancelAll(1));
+        assertEquals(0, api.cancelMatching(order -> true));
+    }
     
     /**
      * Shows how to use static methods on Java 8 interfaces.
@@ -68,9 +84,24 @@ public class TestDefaultMethodUsage
      * Note the use of Date - another demo will cover the new Java 8 java.time API :-)
      */
     @Test
+    @SuppressWarnings("deprecation")
     public void showStaticInterfaceMethodUsage()
     {
         final Date time = TradingApi.getCurrentExchangeTime();
         System.out.println("Exchange clock time: " + time);
     }
+
+    /**
+     * Shows the java.time replacement for getCurrentExchangeTime - an Instant with nanosecond resolution, from a
+     * Clock that works with the rest of java.time.
+     */
+    @Test
+    public void showJavaTimeStaticInterfaceMethodUsage()
+    {
+        final Instant time = TradingApi.getExchangeTime();
+        System.out.println("Exchange clock instant: " + time);
+        System.out.println("Exchange clock in Shanghai: "
+                + LocalDateTime.now(TradingApi.getExchangeClock().withZone(ZoneId.of("Asia/Shanghai"))));
+        assertFalse(time.isAfter(TradingApi.getExchangeTime()));
+    }
 }
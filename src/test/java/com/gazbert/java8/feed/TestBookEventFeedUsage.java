@@ -0,0 +1,381 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.feed;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.feed.BookEvent.Kind;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of the {@link BookEventFeed} through the {@link OffHeapTradingApi}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestBookEventFeedUsage {
+
+    /**
+     * Shows a subscriber getting a snapshot of the price levels, then each add, fill and cancel followed by the new
+     * level totals.
+     */
+    @Test
+    public void showSnapshotThenIncrementalEvents() {
+
+        final ManualExecutor executor = new ManualExecutor();
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), executor);
+        final Order order1 = order(Market.USD, Type.BUY, "100", "1.70");
+        final Order order2 = order(Market.USD, Type.BUY, "50", "1.70");
+        api.addOrder(order1);
+
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        api.subscribe(subscriber, 64);
+        api.addOrder(order2);
+        api.fillOrder(order1.getId(), new BigDecimal("40"));
+        api.cancelOrder(order2.getId());
+        api.fillOrder(order1.getId(), new BigDecimal("60"));
+        executor.runAll();
+
+        subscriber.events.forEach(System.out::println);
+        assertEquals(9, subscriber.events.size());
+
+        assertLevel(subscriber.events.get(0), "100", 1); // snapshot
+        assertOrderEvent(subscriber.events.get(1), Kind.ADD, order2, "50");
+        assertLevel(subscriber.events.get(2), "150", 2);
+        assertOrderEvent(subscriber.events.get(3), Kind.FILL, order1, "40");
+        assertLevel(subscriber.events.get(4), "110", 2);
+        assertOrderEvent(subscriber.events.get(5), Kind.CANCEL, order2, "50");
+        assertLevel(subscriber.events.get(6), "60", 1);
+        assertOrderEvent(subscriber.events.get(7), Kind.FILL, order1, "60");
+        assertLevel(subscriber.events.get(8), "0", 0); // level gone
+
+        for (int i = 1; i < subscriber.events.size(); i++) {
+            assertEquals(subscriber.events.get(i - 1).getSequence() + 1, subscriber.events.get(i).getSequence());
+        }
+        assertEquals(0, api.getOrderStore().size());
+    }
+
+    /**
+     * Shows a mass cancel arriving as one event plus a level change per level, not an event per order.
+     */
+    @Test
+    public void showMassCancelPublishedOnce() {
+
+        final ManualExecutor executor = new ManualExecutor();
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(1000), executor);
+        for (int i = 0; i < 300; i++) {
+            api.addOrder(order(Market.values()[i % 3], Type.SELL, "1", "5." + (i % 4)));
+        }
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        api.subscribe(subscriber, 1000);
+        executor.runAll();
+        final int snapshotEvents = subscriber.events.size();
+        assertEquals(12, snapshotEvents); // 3 markets x 4 prices
+
+        assertEquals(100, api.cancelAll(Market.CNY.ordinal()));
+        executor.runAll();
+
+        final List<BookEvent> massCancelEvents = subscriber.events.subList(snapshotEvents, subscriber.events.size());
+        massCancelEvents.forEach(System.out::println);
+        assertEquals(5, massCancelEvents.size());
+        assertEquals(Kind.MASS_CANCEL, massCancelEvents.get(0).getKind());
+        assertEquals(Market.CNY, massCancelEvents.get(0).getMarket());
+        assertEquals(100, massCancelEvents.get(0).getOrderCount());
+        for (final BookEvent event : massCancelEvents.subList(1, 5)) {
+            assertLevel(event, "0", 0);
+        }
+        assertEquals(depthOf(api), subscriber.depth);
+    }
+
+    /**
+     * Shows orders added straight into the store under the write lock being picked up by the feed, so they can then
+     * be cancelled through the API.
+     */
+    @Test
+    public void showDirectWritesRebuildingLevels() {
+
+        final ManualExecutor executor = new ManualExecutor();
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), executor);
+        final Order order1 = order(Market.USD, Type.BUY, "100", "1.70");
+        final Order order2 = order(Market.USD, Type.BUY, "50", "1.70");
+        final Order order3 = order(Market.EUR, Type.SELL, "25", "1.10");
+        api.addOrder(order1);
+
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        api.subscribe(subscriber, 64);
+        api.getOrderBook().write(store -> {
+            store.add(order2);
+            store.add(order3);
+        });
+        executor.runAll();
+        assertEquals(depthOf(api), subscriber.depth);
+
+        assertTrue(api.cancelOrder(order3.getId()));
+        assertTrue(api.cancelOrder(order2.getId()));
+        executor.runAll();
+        subscriber.events.forEach(System.out::println);
+        assertEquals(depthOf(api), subscriber.depth);
+        assertLevel(subscriber.events.get(subscriber.events.size() - 1), "100", 1);
+    }
+
+    /**
+     * Shows nothing being delivered beyond what the subscriber asked for.
+     */
+    @Test
+    public void showDemandBackpressure() {
+
+        final ManualExecutor executor = new ManualExecutor();
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), executor);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(3);
+        final BookEventSubscription subscription = api.subscribe(subscriber, 64);
+
+        for (int i = 0; i < 5; i++) {
+            api.addOrder(order(Market.EUR, Type.SELL, "1", "2." + i));
+        }
+        executor.runAll();
+        assertEquals(3, subscriber.events.size());
+
+        subscription.request(100);
+        executor.runAll();
+        assertEquals(10, subscriber.events.size());
+        assertEquals(0, subscriber.droppedEvents);
+
+        subscription.cancel();
+        api.addOrder(order(Market.EUR, Type.SELL, "1", "3"));
+        executor.runAll();
+        assertEquals(10, subscriber.events.size());
+    }
+
+    /**
+     * Shows a slow subscriber being conflated - it misses order events but its depth view still ends up matching
+     * the book - while a fast subscriber on the same feed gets every event.
+     */
+    @Test
+    public void showSlowSubscriberConflated() {
+
+        final ManualExecutor executor = new ManualExecutor();
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(1000), executor);
+        final RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+        final RecordingSubscriber slow = new RecordingSubscriber(0);
+        api.subscribe(fast, 10_000);
+        final BookEventSubscription slowSubscription = api.subscribe(slow, 8);
+
+        final Random random = new Random(5);
+        final List<Order> live = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            if (!live.isEmpty() && random.nextInt(3) == 0) {
+                api.cancelOrder(live.remove(random.nextInt(live.size())).getId());
+            } else {
+                final Order order = order(Market.values()[random.nextInt(3)], Type.BUY,
+                        String.valueOf(1 + random.nextInt(100)), "1.0" + random.nextInt(10));
+                api.addOrder(order);
+                live.add(order);
+            }
+            executor.runAll();
+        }
+
+        slowSubscription.request(Long.MAX_VALUE);
+        executor.runAll();
+
+        final Map<String, Long> expectedDepth = depthOf(api);
+        assertEquals(expectedDepth, fast.depth);
+        assertEquals(expectedDepth, slow.depth);
+        assertTrue(slow.droppedEvents > 0);
+        assertEquals(0, fast.droppedEvents);
+        assertTrue(slow.events.size() < fast.events.size());
+        System.out.println("fast subscriber events=" + fast.events.size() + ", slow subscriber events="
+                + slow.events.size() + " dropped=" + slow.droppedEvents);
+    }
+
+    /**
+     * Order entry on one thread, delivery on another, subscriber asking for a few events at a time; once things go
+     * quiet the subscriber's depth view matches the book.
+     */
+    @Test
+    public void showDepthViewKeptCurrentAcrossThreads() throws Exception {
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(10_000), executor);
+            final AtomicLong seen = new AtomicLong();
+            final RecordingSubscriber subscriber = new RecordingSubscriber(16) {
+                @Override
+                public void onEvent(BookEvent event) {
+                    super.onEvent(event);
+                    if (seen.incrementAndGet() % 16 == 0) {
+                        subscription.request(16);
+                    }
+                }
+            };
+            api.subscribe(subscriber, 256);
+
+            final Random random = new Random(17);
+            final List<Order> live = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (!live.isEmpty() && random.nextBoolean()) {
+                    final Order order = live.remove(random.nextInt(live.size()));
+                    api.fillOrder(order.getId(), order.getAmount());
+                } else {
+                    final Order order = order(Market.USD, Type.SELL, String.valueOf(1 + random.nextInt(10)),
+                            "9.9" + random.nextInt(10));
+                    api.addOrder(order);
+                    live.add(order);
+                }
+            }
+
+            // let the subscriber catch up
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!depthOf(api).equals(subscriber.snapshotDepth()) && System.nanoTime() < deadline) {
+                subscriber.subscription.request(Long.MAX_VALUE);
+                Thread.sleep(10);
+            }
+            assertEquals(depthOf(api), subscriber.snapshotDepth());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------------------------------
+
+    private static Order order(Market market, Type type, String amount, String price) {
+        return new Order(market, type, new BigDecimal(amount), new BigDecimal(price), BigDecimal.ZERO);
+    }
+
+    private static void assertOrderEvent(BookEvent event, Kind kind, Order order, String amount) {
+        assertEquals(kind, event.getKind());
+        assertEquals(order.getId(), event.getOrderId());
+        assertEquals(order.getFixedPointPrice(), event.getPrice());
+        assertEquals(FixedPoint.toFixedPoint(new BigDecimal(amount)), event.getAmount());
+    }
+
+    private static void assertLevel(BookEvent event, String amount, int orderCount) {
+        assertEquals(Kind.LEVEL_CHANGE, event.getKind());
+        assertEquals(FixedPoint.toFixedPoint(new BigDecimal(amount)), event.getAmount());
+        assertEquals(orderCount, event.getOrderCount());
+    }
+
+    private static Map<String, Long> depthOf(OffHeapTradingApi api) {
+        final Map<String, Long> depth = new HashMap<>();
+        for (final Order order : api.getOrderStore()) {
+            depth.merge(levelKey(order.getMarketId(), order.getType(), order.getFixedPointPrice()),
+                    order.getFixedPointAmount(), Long::sum);
+        }
+        return depth;
+    }
+
+    private static String levelKey(Market market, Type type, long price) {
+        return market + "/" + type + "/" + price;
+    }
+
+    /**
+     * Runs delivery tasks when told to, so tests control exactly when subscribers see events.
+     */
+    private static final class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Records events and keeps a depth view built from the level changes.
+     */
+    private static class RecordingSubscriber implements BookEventSubscriber {
+
+        final List<BookEvent> events = new ArrayList<>();
+        final Map<String, Long> depth = new HashMap<>();
+        final long initialRequest;
+        volatile BookEventSubscription subscription;
+        long droppedEvents;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(BookEventSubscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onEvent(BookEvent event) {
+            synchronized (this) {
+                events.add(event);
+                if (event.getKind() == Kind.LEVEL_CHANGE) {
+                    final String key = levelKey(event.getMarket(), event.getType(), event.getPrice());
+                    if (event.getOrderCount() == 0) {
+                        depth.remove(key);
+                    } else {
+                        depth.put(key, event.getAmount());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onConflated(long dropped) {
+            droppedEvents += dropped;
+        }
+
+        synchronized Map<String, Long> snapshotDepth() {
+            return new HashMap<>(depth);
+        }
+    }
+}
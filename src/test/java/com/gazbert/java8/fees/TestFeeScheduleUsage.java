@@ -0,0 +1,131 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fees;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.SampleOrders;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+
+/**
+ * Test class for demonstrating use of the tiered {@link FeeSchedule}.
+ * <p>
+ * Use case is for querying orders in a trading exchange order book.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestFeeScheduleUsage {
+
+    private List<Order> orderBook;
+    private FeeSchedule feeSchedule;
+
+    /**
+     * Builds the order book and fee schedule up for each test.
+     */
+    @Before
+    public void setupForEachTest() {
+        orderBook = SampleOrders.threeMarketBook();
+
+        feeSchedule = FeeSchedule.builder()
+                .addTier(Market.EUR, new BigDecimal("0"), new BigDecimal("0.02"))
+                .addTier(Market.EUR, new BigDecimal("150"), new BigDecimal("0.01"))
+                .addTier(Market.USD, Type.BUY, new BigDecimal("0"), new BigDecimal("0.03"))
+                .addTier(Market.USD, Type.BUY, new BigDecimal("200"), new BigDecimal("0.005"))
+                .defaultFee(new BigDecimal("0.04"))
+                .build();
+    }
+
+    /**
+     * Fees are resolved from the band the order amount falls in; orders with no matching tier get the default fee.
+     */
+    @Test
+    public void showFeesResolvedFromTiers() {
+
+        assertEquals(new BigDecimal("0.02"), feeSchedule.getFee(orderBook.get(0)));
+        assertEquals(new BigDecimal("0.005"), feeSchedule.getFee(orderBook.get(1))); // band floor is inclusive
+        assertEquals(new BigDecimal("0.04"), feeSchedule.getFee(orderBook.get(2))); // no CNY tiers
+
+        // fee-adjusted prices are always rounded the same way
+        assertEquals(new BigDecimal("1.71"), feeSchedule.getFeeAdjustedPrice(orderBook.get(0)));
+        assertEquals(new BigDecimal("1.71"), feeSchedule.getFeeAdjustedPrice(orderBook.get(1))); // 1.705 HALF_UP
+        assertEquals(new BigDecimal("10.62"), feeSchedule.getFeeAdjustedPrice(orderBook.get(2)));
+    }
+
+    /**
+     * Shows the schedule being used to supply the fee to an {@link com.gazbert.java8.lambda.OrderMatcherWithFees}
+     * lambda.
+     */
+    @Test
+    public void showCountingMatchedOrdersWithScheduleFees() {
+
+        final int orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(
+                orderBook,
+                feeSchedule,
+                (o, fee) -> o.getPrice().add(fee).compareTo(new BigDecimal("1.71")) >= 0);
+
+        assertEquals(2, orderCount);
+    }
+
+    /**
+     * Shows the bulk API computing fee-adjusted prices for the whole book in one go.
+     */
+    @Test
+    public void showBulkFeeAdjustedPrices() {
+
+        final long[] adjustedPrices = feeSchedule.computeFeeAdjustedPrices(orderBook);
+
+        assertEquals(3, adjustedPrices.length);
+        assertEquals(new BigDecimal("1.71000000"), FixedPoint.toBigDecimal(adjustedPrices[0]));
+        assertEquals(new BigDecimal("1.71000000"), FixedPoint.toBigDecimal(adjustedPrices[1])); // 1.705 HALF_UP
+        assertEquals(new BigDecimal("10.62000000"), FixedPoint.toBigDecimal(adjustedPrices[2]));
+
+        // the bulk and per-order paths always agree
+        for (int i = 0; i < orderBook.size(); i++) {
+            assertEquals(0, feeSchedule.getFeeAdjustedPrice(orderBook.get(i))
+                    .compareTo(FixedPoint.toBigDecimal(adjustedPrices[i])));
+        }
+    }
+
+    /**
+     * A Market/Type can't have 2 tiers starting at the same amount.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateTiersAreRejected() {
+        FeeSchedule.builder()
+                .addTier(Market.USD, Type.SELL, new BigDecimal("10"), new BigDecimal("0.01"))
+                .addTier(Market.USD, Type.SELL, new BigDecimal("10.0"), new BigDecimal("0.02"))
+                .build();
+    }
+}
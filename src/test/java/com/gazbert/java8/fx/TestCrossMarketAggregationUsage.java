@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.fx;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Test class for demonstrating use of the {@link CrossMarketAggregator}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestCrossMarketAggregationUsage {
+
+    private static final FxRateTable USD_RATES = FxRateTable.builder(Market.USD)
+            .rate(Market.CNY, new BigDecimal("0.1385"))
+            .rate(Market.EUR, new BigDecimal("1.0870"))
+            .build();
+
+    /**
+     * Shows global USD totals computed per market partition matching a per-order BigDecimal conversion, from a list,
+     * a parallel stream and an off-heap store.
+     */
+    @Test
+    public void showTotalsInReportingCurrency() {
+
+        final List<Order> orderBook = randomOrders(50_000, 3);
+        final CrossMarketAggregator aggregator = new CrossMarketAggregator(new FxRateCache(USD_RATES));
+
+        BigDecimal expectedVolume = BigDecimal.ZERO;
+        BigDecimal expectedNotional = BigDecimal.ZERO;
+        for (final Order order : orderBook) {
+            final BigDecimal rate = USD_RATES.getRate(order.getMarketId());
+            expectedVolume = expectedVolume.add(order.getAmount().multiply(rate));
+            expectedNotional = expectedNotional.add(order.getAmount().multiply(order.getPrice()).multiply(rate));
+        }
+        expectedVolume = expectedVolume.setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+        expectedNotional = expectedNotional.setScale(FixedPoint.SCALE, RoundingMode.HALF_UP);
+
+        assertEquals(expectedVolume, aggregator.getTotalVolume(orderBook));
+        assertEquals(expectedNotional, aggregator.getTotalNotional(orderBook));
+        assertEquals(expectedNotional, aggregator.getTotalNotionalInParallel(orderBook));
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orderBook.size());
+        orderBook.forEach(store::add);
+        assertEquals(expectedVolume, aggregator.getTotalVolume(store));
+        assertEquals(expectedNotional, aggregator.getTotalNotional(store));
+
+        System.out.println("Global volume: " + expectedVolume + " USD, notional: " + expectedNotional + " USD");
+    }
+
+    /**
+     * Shows per-market totals, and a rate update taking effect for the next query.
+     */
+    @Test
+    public void showRateSwaps() {
+
+        final List<Order> orderBook = new ArrayList<>();
+        orderBook.add(new Order(Market.USD, Type.BUY, new BigDecimal("100"), new BigDecimal("1.50"), BigDecimal.ZERO));
+        orderBook.add(new Order(Market.CNY, Type.BUY, new BigDecimal("1000"), new BigDecimal("2"), BigDecimal.ZERO));
+        orderBook.add(new Order(Market.EUR, Type.SELL, new BigDecimal("10"), new BigDecimal("3"), BigDecimal.ZERO));
+
+        final MarketTotals totals = MarketTotals.of(orderBook);
+        assertEquals(1, totals.getOrderCount(Market.CNY));
+        assertEquals(0, new BigDecimal("2000").compareTo(totals.getNotional(Market.CNY)));
+        assertEquals(0, new BigDecimal("100").compareTo(totals.getVolume(Market.USD)));
+
+        final FxRateCache rates = new FxRateCache(USD_RATES);
+        final CrossMarketAggregator aggregator = new CrossMarketAggregator(rates);
+        // 150 + 2000 * 0.1385 + 30 * 1.087
+        assertEquals(0, new BigDecimal("459.61").compareTo(aggregator.getTotalNotional(orderBook)));
+
+        rates.updateRate(Market.CNY, new BigDecimal("0.14"));
+        // 150 + 2000 * 0.14 + 30 * 1.087
+        assertEquals(0, new BigDecimal("462.61").compareTo(aggregator.getTotalNotional(orderBook)));
+
+        final FxRateTable eurRates = FxRateTable.builder(Market.EUR)
+                .rate(Market.USD, new BigDecimal("0.92"))
+                .rate(Market.CNY, new BigDecimal("0.128"))
+                .build();
+        rates.swap(eurRates);
+        // 100 * 0.92 + 1000 * 0.128 + 10
+        assertEquals(0, new BigDecimal("230").compareTo(aggregator.getTotalVolume(orderBook)));
+    }
+
+    /**
+     * Tables must have a rate for every market, and the reporting currency's rate is fixed at 1.
+     */
+    @Test
+    public void rejectsIncompleteRateTables() {
+
+        try {
+            FxRateTable.builder(Market.USD).rate(Market.CNY, BigDecimal.ONE).build();
+            fail("EUR rate missing");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            USD_RATES.withRate(Market.USD, new BigDecimal("2"));
+            fail("Reporting currency rate changed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Notional sums exceed a long at scale 16 almost immediately; check the 128 bit sums against BigDecimal, with
+     * negative values thrown in.
+     */
+    @Test
+    public void notionalIsExactBeyondLongRange() {
+
+        final Random random = new Random(21);
+        final MarketTotals totals = new MarketTotals();
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int i = 0; i < 10_000; i++) {
+            final long amount = random.nextLong() >> 8;
+            final long price = random.nextLong() >> 8;
+            totals.add(Market.EUR, amount, price);
+            expected = expected.add(FixedPoint.toBigDecimal(amount).multiply(FixedPoint.toBigDecimal(price)));
+        }
+        assertEquals(0, expected.compareTo(totals.getNotional(Market.EUR)));
+    }
+
+    private static List<Order> randomOrders(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(new Order(Market.values()[random.nextInt(3)], Type.BUY,
+                    BigDecimal.valueOf(random.nextInt(1_000_000), 2), BigDecimal.valueOf(random.nextInt(100_000), 4),
+                    BigDecimal.ZERO));
+        }
+        return orders;
+    }
+}
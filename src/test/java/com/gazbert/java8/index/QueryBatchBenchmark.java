@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import java.util.List;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Rough benchmark comparing 30 monitoring queries run one after the other with the same queries run as a
+ * {@link QueryBatch}, against heap and off-heap books.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xmx2g -cp target/classes:target/test-classes com.gazbert.java8.index.QueryBatchBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class QueryBatchBenchmark {
+
+    private static final int ORDERS = 1_000_000;
+    private static final int RUNS = 10;
+
+    private QueryBatchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final List<Order> orderBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(ORDERS);
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(ORDERS);
+        orderBook.forEach(store::add);
+
+        final List<OrderMatcher> queries = TestQueryBatchUsage.monitoringQueries();
+        final List<OrderMatcher> dslQueries = queries.subList(0, 27);
+        final QueryBatch batch = QueryBatch.of(queries);
+        final QueryBatch dslBatch = QueryBatch.of(dslQueries);
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            oneByOne(orderBook, queries);
+            batch.count(orderBook);
+            oneByOne(store, dslQueries);
+            dslBatch.count(store);
+        }
+
+        System.out.printf("%,d orders, %d queries%n", ORDERS, queries.size());
+        report("heap book, all queries", () -> oneByOne(orderBook, queries), () -> batch.count(orderBook));
+        report("off-heap store, DSL queries", () -> oneByOne(store, dslQueries), () -> dslBatch.count(store));
+    }
+
+    private static void report(String name, Runnable oneByOne, Runnable batched) {
+        final long oneByOneNanos = time(oneByOne);
+        final long batchedNanos = time(batched);
+        System.out.printf("%s: one by one %,d us, batched %,d us (%.1fx)%n", name, oneByOneNanos / 1000,
+                batchedNanos / 1000, (double) oneByOneNanos / batchedNanos);
+    }
+
+    private static int[] oneByOne(Iterable<Order> orderBook, List<OrderMatcher> queries) {
+        final int[] counts = new int[queries.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, queries.get(i));
+        }
+        return counts;
+    }
+
+    private static long time(Runnable queries) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            queries.run();
+        }
+        return (System.nanoTime() - start) / RUNS;
+    }
+}
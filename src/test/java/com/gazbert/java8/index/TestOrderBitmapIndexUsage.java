@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Test class for demonstrating use of the {@link OrderBitmapIndex} and {@link CompressedBitmap}.
+ * <p>
+ * Use case is for counting orders in a trading exchange order book without scanning it.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOrderBitmapIndexUsage {
+
+    /**
+     * Shows conjunctive queries answered from the index giving the same counts as a full scan.
+     */
+    @Test
+    public void showCountingOrdersUsingBitmapIndex() {
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(100_001);
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            store.add(new Order(
+                    Market.values()[random.nextInt(3)],
+                    Type.values()[random.nextInt(2)],
+                    BigDecimal.ONE,
+                    BigDecimal.valueOf(100 + random.nextInt(1000), 2), // 1.00 to 10.99
+                    BigDecimal.ZERO));
+        }
+
+        final OrderBitmapIndex index = new OrderBitmapIndex(store, new BigDecimal("0.50"));
+
+        final OrderQuery[] queries = {
+                OrderQuery.anyOrder(),
+                OrderQuery.anyOrder().inMarkets(Market.USD),
+                OrderQuery.anyOrder().inMarkets(Market.USD, Market.EUR).ofType(Type.SELL),
+                OrderQuery.anyOrder().ofType(Type.BUY).priceAtLeast(new BigDecimal("5.00")), // bucket aligned
+                OrderQuery.anyOrder().inMarkets(Market.CNY).priceAtLeast(new BigDecimal("1.70"))
+                        .priceBelow(new BigDecimal("3.33")), // straddles buckets
+                OrderQuery.anyOrder().priceAtLeast(new BigDecimal("20.00"))
+        };
+
+        for (final OrderQuery query : queries) {
+            final int scanned = OrderBookAnalyser.getNumberOfMatchedOrders(store, query);
+            assertEquals(scanned, index.count(query));
+            assertEquals(scanned, index.matching(query).cardinality());
+        }
+
+        System.out.println("USD market bitmap containers: " + index.getMarketBitmap(Market.USD).describeContainers());
+
+        // mutate the book; the index rebuilds itself
+        final OrderQuery usdSells = OrderQuery.anyOrder().inMarkets(Market.USD).ofType(Type.SELL);
+        final int before = index.count(usdSells);
+        store.add(new Order(Market.USD, Type.SELL, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO));
+        assertTrue(index.isStale());
+        assertEquals(before + 1, index.count(usdSells));
+
+        // queries are immutable, so an indexed query can't be changed under the index
+        try {
+            usdSells.getMarkets().add(Market.EUR);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks AND, OR and counts against a BitSet for sparse, dense and run-heavy bitmaps.
+     */
+    @Test
+    public void bitmapOperationsMatchBitSet() {
+
+        final Random random = new Random(7);
+        final CompressedBitmap[] bitmaps = new CompressedBitmap[4];
+        final BitSet[] bitSets = new BitSet[4];
+        for (int b = 0; b < bitmaps.length; b++) {
+            bitmaps[b] = new CompressedBitmap();
+            bitSets[b] = new BitSet();
+        }
+
+        for (int i = 0; i < 2000; i++) { // sparse
+            final int value = random.nextInt(300_000);
+            bitmaps[0].add(value);
+            bitSets[0].set(value);
+        }
+        for (int i = 0; i < 150_000; i++) { // dense
+            final int value = random.nextInt(200_000);
+            bitmaps[1].add(value);
+            bitSets[1].set(value);
+        }
+        bitmaps[2].addRange(1000, 140_000); // runs
+        bitSets[2].set(1000, 140_000);
+        bitmaps[2].addRange(200_000, 200_100);
+        bitSets[2].set(200_000, 200_100);
+        bitmaps[3].addRange(50_000, 250_000);
+        bitSets[3].set(50_000, 250_000);
+        for (int i = 0; i < 100; i++) { // punch some holes
+            final int value = 50_000 + random.nextInt(200_000);
+            bitmaps[3].remove(value);
+            bitSets[3].clear(value);
+        }
+
+        for (final CompressedBitmap bitmap : bitmaps) {
+            bitmap.runOptimize();
+        }
+        assertTrue(bitmaps[2].describeContainers().contains("run"));
+
+        for (int a = 0; a < bitmaps.length; a++) {
+            assertEquals(bitSets[a].cardinality(), bitmaps[a].cardinality());
+            for (int b = 0; b < bitmaps.length; b++) {
+                final BitSet expectedAnd = (BitSet) bitSets[a].clone();
+                expectedAnd.and(bitSets[b]);
+                final BitSet expectedOr = (BitSet) bitSets[a].clone();
+                expectedOr.or(bitSets[b]);
+
+                assertEquals(expectedAnd, toBitSet(bitmaps[a].and(bitmaps[b])));
+                assertEquals(expectedAnd.cardinality(), bitmaps[a].andCardinality(bitmaps[b]));
+                assertEquals(expectedOr, toBitSet(bitmaps[a].or(bitmaps[b])));
+            }
+        }
+
+        assertTrue(bitmaps[2].contains(1000));
+        assertFalse(bitmaps[2].contains(999));
+        bitmaps[2].add(999);
+        assertTrue(bitmaps[2].contains(999));
+    }
+
+    private static BitSet toBitSet(CompressedBitmap bitmap) {
+        final BitSet bitSet = new BitSet();
+        bitmap.forEach(bitSet::set);
+        return bitSet;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.index;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+import com.gazbert.java8.lambda.PrimitiveOrderMatcher;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Test class for demonstrating use of a {@link QueryBatch} to run many monitoring queries in one pass.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestQueryBatchUsage {
+
+    /**
+     * A batch of 30 queries - DSL queries and lambdas mixed - gives the same counts as running each query on its
+     * own, for both heap and off-heap books.
+     */
+    @Test
+    public void showCountingManyQueriesInOnePass() {
+
+        final List<Order> orderBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 4).initialBook(20_000);
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orderBook.size());
+        orderBook.forEach(store::add);
+
+        final List<OrderMatcher> queries = monitoringQueries();
+        final QueryBatch batch = QueryBatch.of(queries);
+        assertEquals(30, batch.size());
+        assertEquals(3, batch.getDistinctPriceRanges()); // the 27 DSL queries only use 3 different price ranges
+
+        final int[] expected = new int[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            expected[i] = OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, queries.get(i));
+        }
+
+        assertArrayEquals(expected, batch.count(orderBook));
+        assertArrayEquals(expected, batch.count(store));
+        assertArrayEquals(expected, OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, queries));
+
+        // all DSL queries against the store - read straight from primitive storage
+        final List<OrderMatcher> dslOnly = queries.subList(0, 27);
+        assertArrayEquals(Arrays.copyOf(expected, 27), QueryBatch.of(dslOnly).count(store));
+    }
+
+    /**
+     * Primitive matchers can be batched against primitive storage too, each row's fields being read once for all of
+     * them.
+     */
+    @Test
+    public void showCountingManyPrimitiveQueriesInOnePass() {
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(5_000);
+        new OrderFlowGenerator(OrderFlowProfile.defaults(), 5).initialBook(5_000).forEach(store::add);
+
+        final List<PrimitiveOrderMatcher> queries = Arrays.asList(
+                PrimitiveOrderMatcher.inMarket(Market.USD),
+                PrimitiveOrderMatcher.ofType(Type.SELL).and(PrimitiveOrderMatcher.priceAtLeast(BigDecimal.TEN)),
+                (market, type, amount, price, fee) -> fee > FixedPoint.ONE);
+
+        final int[] counts = OrderBookAnalyser.getNumberOfMatchedOrders(store, queries);
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(OrderBookAnalyser.getNumberOfMatchedOrders(store, queries.get(i)), counts[i]);
+        }
+    }
+
+    static List<OrderMatcher> monitoringQueries() {
+        final BigDecimal[] bands = {new BigDecimal("1.60"), new BigDecimal("1.70"), new BigDecimal("11.00")};
+        final List<OrderMatcher> queries = new ArrayList<>();
+        for (final Market market : Market.values()) {
+            for (final BigDecimal band : bands) {
+                queries.add(OrderQuery.anyOrder().inMarkets(market).priceAtLeast(band));
+                queries.add(OrderQuery.anyOrder().inMarkets(market).ofType(Type.BUY).priceAtLeast(band));
+                queries.add(OrderQuery.anyOrder().inMarkets(market, Market.EUR).ofType(Type.SELL)
+                        .priceAtLeast(band));
+            }
+        }
+        queries.add(order -> order.getAmount().compareTo(new BigDecimal("500")) > 0);
+        queries.add(order -> order.getTradeCountToFill() > 3);
+        queries.add(order -> order.getFee().signum() == 0);
+        return queries;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.ipc.MappedQueue.Producers;
+import com.gazbert.java8.metrics.LatencyHistogram;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Rough ping-pong benchmark for {@link MappedQueue} between 2 JVMs.
+ * <p>
+ * The main JVM starts a second one on the same classpath. First it bounces a 32 byte message off the other JVM through
+ * a pair of single-producer queues, recording half of each round trip as the one-way hop latency. Then the other JVM
+ * runs an {@link IpcTradingEngine} and this one times add and cancel round trips through an
+ * {@link IpcTradingApiClient}.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.gazbert.java8.ipc.IpcPingPongBenchmark
+ * </pre>
+ * Both JVMs spin while they wait, so give them a core each; with fewer cores they have to take turns and the numbers
+ * are scheduler latencies instead.
+ *
+ * @author gazbert
+ */
+public final class IpcPingPongBenchmark {
+
+    private static final int WARMUP = 100_000;
+    private static final int ROUND_TRIPS = 200_000;
+    private static final int ORDERS = 50_000;
+
+    private IpcPingPongBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark, or one side of it when started with "pong" or "engine" and a directory.
+     *
+     * @param args not used, or the side to run and the queue directory.
+     * @throws Exception if the queues can't be mapped or the other JVM fails.
+     */
+    public static void main(String... args) throws Exception {
+
+        if (args.length == 2) {
+            final Path directory = Paths.get(args[1]);
+            if ("pong".equals(args[0])) {
+                pong(directory);
+            } else {
+                engine(directory);
+            }
+            return;
+        }
+
+        final Path directory = Files.createTempDirectory("ipc-benchmark");
+        directory.toFile().deleteOnExit();
+
+        final MappedQueue ping = queue(directory, "ping.queue");
+        final MappedQueue pong = queue(directory, "pong.queue");
+        final Process pongProcess = startOtherJvm("pong", directory);
+        final LatencyHistogram hops = new LatencyHistogram();
+        final ByteBuffer message = ByteBuffer.allocateDirect(32);
+        for (int i = 0; i < WARMUP + ROUND_TRIPS; i++) {
+            message.clear();
+            final long start = System.nanoTime();
+            while (!ping.offer(message)) {
+                Thread.yield();
+            }
+            while (pong.poll(reply -> { }, 1) == 0) {
+                Thread.yield();
+            }
+            if (i >= WARMUP) {
+                hops.record((System.nanoTime() - start) / 2);
+            }
+        }
+        message.clear();
+        message.putLong(-1).flip(); // tells the other JVM to stop
+        while (!ping.offer(message)) {
+            Thread.yield();
+        }
+        pongProcess.waitFor(10, TimeUnit.SECONDS);
+        System.out.println("one-way hop: " + hops.snapshot());
+
+        final Process engineProcess = startOtherJvm("engine", directory);
+        final IpcTradingApiClient client = IpcTradingApiClient.connect(directory, 1);
+        final LatencyHistogram roundTrips = new LatencyHistogram();
+        for (int run = 0; run < 3; run++) {
+            for (int i = 0; i < ORDERS; i++) {
+                final Order order = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+                final long start = System.nanoTime();
+                client.addOrder(order);
+                client.cancelOrder(order.getId());
+                if (run == 2) {
+                    roundTrips.record((System.nanoTime() - start) / 2);
+                }
+            }
+        }
+        engineProcess.destroy();
+        System.out.println("TradingApi round trip: " + roundTrips.snapshot());
+
+        for (final File file : directory.toFile().listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static void pong(Path directory) throws Exception {
+        final MappedQueue ping = queue(directory, "ping.queue");
+        final MappedQueue pong = queue(directory, "pong.queue");
+        final boolean[] stop = {false};
+        while (!stop[0]) {
+            if (ping.poll(message -> {
+                if (message.remaining() == 8 && message.getLong(message.position()) == -1) {
+                    stop[0] = true;
+                } else {
+                    while (!pong.offer(message)) {
+                        Thread.yield();
+                    }
+                }
+            }, 1) == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void engine(Path directory) throws Exception {
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(ORDERS),
+                Runnable::run);
+        final IpcTradingEngine engine = new IpcTradingEngine(exchange, directory);
+        while (true) {
+            if (engine.doWork(64) == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static MappedQueue queue(Path directory, String name) throws Exception {
+        return MappedQueue.map(directory.resolve(name), 64 * 1024, Producers.SINGLE);
+    }
+
+    private static Process startOtherJvm(String side, Path directory) throws Exception {
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                IpcPingPongBenchmark.class.getName(), side, directory.toString()).inheritIO().start();
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.ipc;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.ipc.MappedQueue.Producers;
+import com.gazbert.java8.net.TradingProtocol;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of a {@link MappedQueue}, and of the trading API over shared memory with an
+ * {@link IpcTradingEngine} and {@link IpcTradingApiClient}s.
+ * <p>
+ * Each side maps the queue file separately, just as 2 processes would.
+ *
+ * @author gazbert
+ */
+public class TestMappedQueueUsage {
+
+    /**
+     * Messages of all sizes go round a small ring many times and come out intact and in order.
+     *
+     * @throws Exception if the file can't be mapped.
+     */
+    @Test
+    public void showSingleProducerSingleConsumer() throws Exception {
+
+        final Path file = Files.createTempFile("spsc", ".queue");
+        try {
+            final MappedQueue producerSide = MappedQueue.map(file, 1024, Producers.SINGLE);
+            final MappedQueue consumerSide = MappedQueue.map(file);
+            assertEquals(1024, consumerSide.getCapacity());
+            assertEquals(Producers.SINGLE, consumerSide.getProducers());
+
+            final int messages = 100_000;
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            final Future<?> producer = executor.submit(() -> {
+                final ByteBuffer message = ByteBuffer.allocate(128);
+                for (int i = 0; i < messages; i++) {
+                    message.clear();
+                    message.putInt(i);
+                    for (int b = 0; b < i % 100; b++) {
+                        message.put((byte) i);
+                    }
+                    message.flip();
+                    while (!producerSide.offer(message)) {
+                        Thread.yield();
+                    }
+                }
+            });
+
+            final int[] expected = {0};
+            while (expected[0] < messages) {
+                final int polled = consumerSide.poll(message -> {
+                    final int i = message.getInt();
+                    assertEquals(expected[0], i);
+                    assertEquals(i % 100, message.remaining());
+                    while (message.hasRemaining()) {
+                        assertEquals((byte) i, message.get());
+                    }
+                    expected[0]++;
+                }, 16);
+                if (polled == 0) {
+                    Thread.yield();
+                }
+            }
+            producer.get();
+            executor.shutdown();
+            assertEquals(0, consumerSide.getQueuedBytes());
+        } finally {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Several producers offer at once; every message arrives once, in order for each producer.
+     *
+     * @throws Exception if the file can't be mapped.
+     */
+    @Test
+    public void showMultipleProducers() throws Exception {
+
+        final Path file = Files.createTempFile("mpsc", ".queue");
+        try {
+            final int producers = 4;
+            final int messagesPerProducer = 25_000;
+            final MappedQueue consumerSide = MappedQueue.map(file, 4096, Producers.MULTIPLE);
+            final ExecutorService executor = Executors.newFixedThreadPool(producers);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int producerId = p;
+                final MappedQueue producerSide = MappedQueue.map(file);
+                futures.add(executor.submit(() -> {
+                    final ByteBuffer message = ByteBuffer.allocateDirect(12);
+                    for (int i = 0; i < messagesPerProducer; i++) {
+                        message.clear();
+                        message.putInt(producerId).putLong(i).flip();
+                        while (!producerSide.offer(message)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+
+            final long[] nextExpected = new long[producers];
+            int received = 0;
+            while (received < producers * messagesPerProducer) {
+                final int polled = consumerSide.poll(message -> {
+                    final int producerId = message.getInt();
+                    assertEquals(nextExpected[producerId]++, message.getLong());
+                }, 64);
+                received += polled;
+                if (polled == 0) {
+                    Thread.yield();
+                }
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            for (final long count : nextExpected) {
+                assertEquals(messagesPerProducer, count);
+            }
+        } finally {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * A full queue refuses messages rather than blocking, and the queue's shape is checked when it is mapped.
+     *
+     * @throws Exception if the file can't be mapped.
+     */
+    @Test
+    public void showFullQueueAndValidation() throws Exception {
+
+        final Path file = Files.createTempFile("full", ".queue");
+        try {
+            final MappedQueue queue = MappedQueue.map(file, 1024, Producers.SINGLE);
+            final ByteBuffer message = ByteBuffer.allocate(120); // 128 bytes with its header
+            int offered = 0;
+            while (queue.offer(message)) {
+                message.clear();
+                offered++;
+            }
+            assertEquals(8, offered);
+            assertEquals(1, queue.poll(m -> { }, 1));
+            message.clear();
+            assertTrue(queue.offer(message));
+
+            try {
+                queue.offer(ByteBuffer.allocate(queue.getMaxMessageLength() + 1));
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                MappedQueue.map(file, 2048, Producers.SINGLE);
+                fail();
+            } catch (IOException e) {
+                // expected - the file holds a 1024 byte queue
+            }
+            try {
+                MappedQueue.map(file, 1024, Producers.MULTIPLE);
+                fail();
+            } catch (IOException e) {
+                // expected - the file holds a single-producer queue
+            }
+        } finally {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Two strategy clients drive one engine through shared memory.
+     *
+     * @throws Exception if the queues can't be mapped.
+     */
+    @Test
+    public void showTradingApiOverSharedMemory() throws Exception {
+
+        final Path directory = Files.createTempDirectory("ipc");
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(1_000),
+                Runnable::run);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (IpcTradingEngine engine = new IpcTradingEngine(exchange, directory)) {
+            engine.start();
+
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int clientId = 1; clientId <= 2; clientId++) {
+                final IpcTradingApiClient client = IpcTradingApiClient.connect(directory, clientId);
+                final Market market = clientId == 1 ? Market.USD : Market.EUR;
+                results.add(executor.submit(() -> {
+                    final List<UUID> ids = new ArrayList<>();
+                    for (int i = 0; i < 200; i++) {
+                        final Order order = new Order(market, Type.SELL, BigDecimal.ONE, new BigDecimal("1.25"),
+                                BigDecimal.ZERO);
+                        assertTrue(client.addOrder(order));
+                        ids.add(order.getId());
+                    }
+                    for (int i = 0; i < 50; i++) {
+                        assertTrue(client.cancelOrder(ids.get(i)));
+                    }
+                    assertFalse(client.cancelOrder(ids.get(0)));
+                    return client.getOpenOrders(market.ordinal()).size();
+                }));
+            }
+            for (final Future<Integer> result : results) {
+                assertEquals(150, (int) result.get());
+            }
+
+            final IpcTradingApiClient client = IpcTradingApiClient.connect(directory, 3);
+            assertEquals(150, client.cancelAll(Market.USD.ordinal()));
+            assertEquals(150, exchange.getOrderStore().size());
+            assertEquals("Shared Memory IPC API Impl", client.getImplName());
+        } finally {
+            executor.shutdown();
+            directory.toFile().deleteOnExit(); // registered first so it is deleted last
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(queueFile -> queueFile.toFile().deleteOnExit());
+            }
+        }
+    }
+
+    /**
+     * A request the API throws on, a malformed one, and one whose response is too big for the client's queue, still
+     * get an answer - an error the client throws on; responses to a client that has stopped polling are dropped rather
+     * than holding up the engine.
+     *
+     * @throws Exception if the queues can't be mapped.
+     */
+    @Test
+    public void showEngineAnsweringFailedRequests() throws Exception {
+
+        final Path directory = Files.createTempDirectory("ipc");
+        final Order order = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+        final TradingApi failingApi = new TradingApi() {
+            @Override
+            public boolean addOrder(Order order) {
+                throw new IllegalStateException("Exchange halted");
+            }
+
+            @Override
+            public boolean cancelOrder(UUID orderId) {
+                return true;
+            }
+
+            @Override
+            public List<Order> getOpenOrders(int marketId) {
+                return Collections.nCopies(20_000, order); // over 1MB encoded
+            }
+        };
+
+        try (IpcTradingEngine engine = new IpcTradingEngine(failingApi, directory, 0)) {
+            engine.start();
+            final IpcTradingApiClient client = IpcTradingApiClient.connect(directory, 1);
+            try {
+                client.addOrder(order);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("Exchange halted"));
+            }
+            try {
+                client.getOpenOrders(Market.USD.ordinal());
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("bigger than the client's response queue"));
+            }
+            assertTrue(client.cancelOrder(order.getId()));
+            assertEquals(0, engine.getDroppedResponses());
+        }
+
+        // a client with a tiny response queue that never polls it
+        final MappedQueue idleClientResponses = MappedQueue.map(
+                directory.resolve(IpcTradingEngine.responseQueueFile(2)), 1024, Producers.SINGLE);
+        final MappedQueue requests = MappedQueue.map(directory.resolve(IpcTradingEngine.REQUEST_QUEUE));
+        try (IpcTradingEngine engine = new IpcTradingEngine(failingApi, directory, 0)) {
+            final ByteBuffer unknownCommand = ByteBuffer.allocate(TradingProtocol.MARKET_REQUEST_SIZE);
+            unknownCommand.putInt(TradingProtocol.HEADER_SIZE + 4).put((byte) 99)
+                    .putLong(IpcTradingEngine.firstCorrelationId(2)).putInt(0).flip();
+            assertTrue(requests.offer(unknownCommand));
+            assertEquals(1, engine.doWork(1));
+            assertEquals(1, idleClientResponses.poll(response -> assertEquals(TradingProtocol.ERROR,
+                    response.get(response.position() + TradingProtocol.LENGTH_SIZE)), 1));
+
+            final ByteBuffer request = ByteBuffer.allocate(TradingProtocol.CANCEL_ORDER_REQUEST_SIZE);
+            for (int i = 1; i <= 200; i++) {
+                request.clear();
+                TradingProtocol.putCancelOrder(request, IpcTradingEngine.firstCorrelationId(2) + i, 1, 2);
+                request.flip();
+                assertTrue(requests.offer(request));
+            }
+            assertEquals(200, engine.doWork(200));
+            assertTrue(engine.getDroppedResponses() > 0);
+            assertEquals(200, engine.getDroppedResponses() + idleClientResponses.poll(response -> { }, 200));
+        } finally {
+            directory.toFile().deleteOnExit(); // registered first so it is deleted last
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(queueFile -> queueFile.toFile().deleteOnExit());
+            }
+        }
+    }
+
+    /**
+     * A call gives up after the response timeout, and neither its late response nor one left over from an earlier
+     * connection with the same client id is taken for the answer to a later call.
+     *
+     * @throws Exception if the queues can't be mapped.
+     */
+    @Test
+    public void showClientTimingOutAndSkippingStaleResponses() throws Exception {
+
+        final Path directory = Files.createTempDirectory("ipc");
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), Runnable::run);
+        try (IpcTradingEngine engine = new IpcTradingEngine(exchange, directory)) {
+
+            // an answer meant for the first request of an earlier connection as client 1
+            final MappedQueue staleResponses = MappedQueue.map(
+                    directory.resolve(IpcTradingEngine.responseQueueFile(1)), IpcTradingApiClient.DEFAULT_CAPACITY,
+                    Producers.SINGLE);
+            assertTrue(staleResponses.offer(TradingProtocol.errorResponse(IpcTradingEngine.firstCorrelationId(1) + 1,
+                    "stale")));
+
+            final IpcTradingApiClient client = IpcTradingApiClient.connect(directory, 1, 50);
+            try {
+                client.cancelAll(Market.USD.ordinal()); // the engine isn't running yet
+                fail();
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+
+            engine.start();
+            final Order order = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+            assertTrue(client.addOrder(order));
+            assertEquals(1, client.getOpenOrders(Market.USD.ordinal()).size());
+        } finally {
+            directory.toFile().deleteOnExit(); // registered first so it is deleted last
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(queueFile -> queueFile.toFile().deleteOnExit());
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.lambda;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Rough benchmark comparing a price threshold query run as a BigDecimal {@link OrderMatcher} and as a
+ * {@link PrimitiveOrderMatcher}.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xmx2g -cp target/classes:target/test-classes com.gazbert.java8.lambda.PrimitiveMatcherBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class PrimitiveMatcherBenchmark {
+
+    private static final int ORDERS = 1_000_000;
+    private static final int RUNS = 50;
+
+    private PrimitiveMatcherBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final List<Order> orderBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(ORDERS);
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(ORDERS);
+        orderBook.forEach(store::add);
+
+        final BigDecimal threshold = new BigDecimal("1.70");
+        final long fixedPointThreshold = FixedPoint.toFixedPoint(threshold);
+
+        final IntSupplier heapBigDecimal = () -> OrderBookAnalyser.getNumberOfMatchedOrders(orderBook,
+                order -> order.getPrice().add(order.getFee()).compareTo(threshold) >= 0);
+        final IntSupplier storeViews = () -> OrderBookAnalyser.getNumberOfMatchedOrders(store,
+                order -> order.getPrice().add(order.getFee()).compareTo(threshold) >= 0);
+        final IntSupplier storePrimitive = () -> OrderBookAnalyser.getNumberOfMatchedOrders(store,
+                (market, type, amount, price, fee) -> price + fee >= fixedPointThreshold);
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            heapBigDecimal.getAsInt();
+            storeViews.getAsInt();
+            storePrimitive.getAsInt();
+        }
+
+        System.out.printf("%,d orders%n", ORDERS);
+        final long heapNanos = time(heapBigDecimal);
+        System.out.printf("OrderMatcher, heap orders:     %,d us%n", heapNanos / 1000);
+        System.out.printf("OrderMatcher, off-heap views:  %,d us%n", time(storeViews) / 1000);
+        final long primitiveNanos = time(storePrimitive);
+        System.out.printf("PrimitiveOrderMatcher:         %,d us%n", primitiveNanos / 1000);
+        System.out.printf("speedup over heap orders: %.1fx%n", (double) heapNanos / primitiveNanos);
+    }
+
+    private static long time(IntSupplier query) {
+        long checksum = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += query.getAsInt();
+        }
+        final long nanos = (System.nanoTime() - start) / RUNS;
+        if (checksum == 0) {
+            System.out.println("checksum " + checksum);
+        }
+        return nanos;
+    }
+}
@@ -34,9 +34,11 @@ import java.util.function.Predicate;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.gazbert.java8.common.FixedPoint;
 import com.gazbert.java8.common.Order;
 import com.gazbert.java8.common.Order.Market;
 import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
 
 /**
  * Test class for demonstrating use of lambdas in Java 8.
@@ -276,4 +278,36 @@ public class TestLambdaUsage {
         assertTrue(auditDetails.get(0).contains("USD")); // eek! But you get the idea ;-)
         assertTrue(auditDetails.get(1).contains("CNY"));
     }
+
+    /**
+     * Same queries as the 2 args example above, but with primitive matchers run against an off-heap store. Prices and
+     * fees are fixed-point longs, so the fee query is a long addition and compare rather than BigDecimal arithmetic.
+     */
+    @Test
+    public void showCountingMatchedOrdersUsingPrimitiveMatchers() {
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orderBook.size());
+        orderBook.forEach(store::add);
+
+        final long minPrice = FixedPoint.toFixedPoint(new BigDecimal("1.70"));
+
+        int orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(
+                store,
+                (market, type, amount, price, fee) -> price >= minPrice);
+        assertEquals(2, orderCount);
+
+        orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(
+                store,
+                (market, type, amount, price, fee) -> price + fee >= minPrice);
+        assertEquals(3, orderCount);
+
+        // the same thing built from the factories, run in parallel, and on the heap book via the adapter
+        final PrimitiveOrderMatcher usdOrCnyAtLeast170 = PrimitiveOrderMatcher.priceAtLeast(new BigDecimal("1.70"))
+                .and(PrimitiveOrderMatcher.inMarket(Market.EUR).negate());
+        assertEquals(2, OrderBookAnalyser.getNumberOfMatchedOrdersInParallel(store, usdOrCnyAtLeast170));
+        assertEquals(2, OrderBookAnalyser.getNumberOfMatchedOrders(orderBook, usdOrCnyAtLeast170.asOrderMatcher()));
+
+        assertEquals(FixedPoint.toFixedPoint(new BigDecimal("300.00")), OrderBookAnalyser.getAmountOfMatchedOrders(
+                store, PrimitiveOrderMatcher.ofType(Type.BUY)));
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.loader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+
+/**
+ * Rough benchmark comparing {@link OrderFileLoader} with reading lines and splitting Strings, printing the time and
+ * throughput of each path. Loading as orders is dominated by allocating the orders themselves, so it runs at about the
+ * same speed as reading lines and splitting Strings; loading as columns shows the parsing alone.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xms4g -Xmx4g -XX:+UseParallelGC -cp target/classes:target/test-classes com.gazbert.java8.loader.OrderFileLoaderBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class OrderFileLoaderBenchmark {
+
+    private static final int ORDERS = 2_000_000;
+    private static final int RUNS = 10;
+
+    private OrderFileLoaderBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     * @throws IOException if the order file can't be written or read.
+     */
+    public static void main(String... args) throws IOException {
+
+        final Path file = TestOrderFileLoaderUsage.writeOrderFile(
+                TestOrderFileLoaderUsage.randomOrders(ORDERS, 1), "\n");
+        try {
+            final OrderFileLoader loader = new OrderFileLoader();
+            long checksum = 0;
+
+            for (int i = 0; i < RUNS; i++) { // warm up
+                checksum += loader.loadOrders(file).size() + readAndSplit(file).size();
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                checksum += readAndSplit(file).size();
+            }
+            final long splitNanos = (System.nanoTime() - start) / RUNS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                checksum += loader.loadOrders(file).size();
+            }
+            final long loaderNanos = (System.nanoTime() - start) / RUNS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                checksum += loader.loadColumns(file).size();
+            }
+            final long columnsNanos = (System.nanoTime() - start) / RUNS;
+
+            final long bytes = Files.size(file);
+            System.out.printf("%,d orders (%,d bytes)%n", ORDERS, bytes);
+            System.out.printf("BufferedReader + split:  %,d us, %,.0f MB/s%n", splitNanos / 1000,
+                    megabytesPerSecond(bytes, splitNanos));
+            System.out.printf("OrderFileLoader orders:  %,d us, %,.0f MB/s (%.1fx)%n", loaderNanos / 1000,
+                    megabytesPerSecond(bytes, loaderNanos), (double) splitNanos / loaderNanos);
+            System.out.printf("OrderFileLoader columns: %,d us, %,.0f MB/s (%.1fx)%n", columnsNanos / 1000,
+                    megabytesPerSecond(bytes, columnsNanos), (double) splitNanos / columnsNanos);
+            System.out.printf("checksum %d%n", checksum);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    private static List<Order> readAndSplit(Path file) throws IOException {
+        final List<Order> orders = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(",");
+                orders.add(new Order(UUID.fromString(fields[0]), Market.valueOf(fields[1]), Type.valueOf(fields[2]),
+                        new BigDecimal(fields[3]), new BigDecimal(fields[4]), new BigDecimal(fields[5])));
+            }
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.loader;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gazbert.java8.column.OrderColumns;
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Test class for demonstrating use of {@link OrderFileLoader}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOrderFileLoaderUsage {
+
+    /**
+     * Shows a file being loaded as orders. The chunk size is tiny so the file is split into lots of chunks, and every
+     * chunk boundary has to land on a line end.
+     *
+     * @throws Exception if the file can't be written or loaded.
+     */
+    @Test
+    public void showLoadingOrders() throws Exception {
+
+        final List<Order> orderBook = randomOrders(5_000, 3);
+        final Path file = writeOrderFile(orderBook, "\r\n");
+        try {
+            final List<Order> loaded = new OrderFileLoader(1_000).loadOrders(file);
+
+            assertEquals(orderBook.size(), loaded.size());
+            for (int i = 0; i < orderBook.size(); i++) {
+                final Order expected = orderBook.get(i);
+                final Order actual = loaded.get(i);
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getMarketId(), actual.getMarketId());
+                assertEquals(expected.getType(), actual.getType());
+                assertEquals(0, expected.getAmount().compareTo(actual.getAmount()));
+                assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+                assertEquals(0, expected.getFee().compareTo(actual.getFee()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Shows a file being loaded as columns and into an off-heap store for analysis.
+     *
+     * @throws Exception if the file can't be written or loaded.
+     */
+    @Test
+    public void showLoadingColumnsAndOffHeapStore() throws Exception {
+
+        final List<Order> orderBook = randomOrders(2_000, 11);
+        final Path file = writeOrderFile(orderBook, "\n");
+        try {
+            final OrderFileLoader loader = new OrderFileLoader(777);
+
+            final OrderColumns columns = loader.loadColumns(file);
+            assertEquals(orderBook.size(), columns.size());
+            assertEquals(OrderColumns.of(orderBook).sumAmountWherePriceInRange(BigDecimal.ONE, BigDecimal.TEN),
+                    columns.sumAmountWherePriceInRange(BigDecimal.ONE, BigDecimal.TEN));
+
+            final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orderBook.size());
+            assertEquals(orderBook.size(), loader.loadInto(file, store));
+            final Order last = orderBook.get(orderBook.size() - 1);
+            final int slot = store.slotOf(last.getId());
+            assertEquals(last.getMarketId(), store.getMarketId(slot));
+            assertEquals(FixedPoint.toFixedPoint(last.getPrice()), store.getPrice(slot));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Numbers can have any number of decimal places and are rounded like {@link FixedPoint#toFixedPoint}. Blank lines
+     * are skipped, and the last line doesn't need a line end.
+     *
+     * @throws Exception if the file can't be written or loaded.
+     */
+    @Test
+    public void parsesDecimalsLikeBigDecimal() throws Exception {
+
+        final String[] amounts = {"7", "0.5", "1.123456785", "1.123456784999", "12.", "-2.25", "00.00000001"};
+        final StringBuilder lines = new StringBuilder();
+        for (String amount : amounts) {
+            lines.append("\n00000000-0000-0000-0000-000000000001,EUR,SELL,").append(amount).append(",1,0\n");
+        }
+        final Path file = Files.createTempFile("orders", ".csv");
+        try {
+            Files.write(file, lines.substring(0, lines.length() - 1).getBytes(StandardCharsets.US_ASCII));
+
+            final List<Order> loaded = new OrderFileLoader().loadOrders(file);
+
+            assertEquals(amounts.length, loaded.size());
+            for (int i = 0; i < amounts.length; i++) {
+                assertEquals(FixedPoint.toFixedPoint(new BigDecimal(amounts[i])),
+                        FixedPoint.toFixedPoint(loaded.get(i).getAmount()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A malformed line is reported with its byte offset in the file.
+     *
+     * @throws Exception if the file can't be written.
+     */
+    @Test
+    public void reportsMalformedLineOffset() throws Exception {
+
+        final String good = "00000000-0000-0000-0000-000000000001,USD,BUY,1,2,0\n";
+        final String bad = "00000000-0000-0000-0000-000000000002,XYZ,BUY,1,2,0\n";
+        final Path file = Files.createTempFile("orders", ".csv");
+        try {
+            Files.write(file, (good + good + bad).getBytes(StandardCharsets.US_ASCII));
+            new OrderFileLoader(10).loadOrders(file);
+            fail("Expected malformed line to be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("byte " + 2 * good.length()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Util methods
+    // ------------------------------------------------------------------------------------------------
+
+    static List<Order> randomOrders(int count, long seed) {
+        final Random random = new Random(seed);
+        final Market[] markets = Market.values();
+        final Type[] types = Type.values();
+        final List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(new Order(markets[random.nextInt(markets.length)], types[random.nextInt(types.length)],
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), random.nextInt(9)),
+                    BigDecimal.valueOf(1 + random.nextInt(1_000_000), 5),
+                    BigDecimal.valueOf(random.nextInt(100), 2)));
+        }
+        return orders;
+    }
+
+    static Path writeOrderFile(List<Order> orders, String lineEnd) throws IOException {
+        final Path file = Files.createTempFile("orders", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write("id,market,type,amount,price,fee" + lineEnd);
+            for (final Order order : orders) {
+                writer.write(order.getId() + "," + order.getMarketId() + "," + order.getType() + ","
+                        + order.getAmount().toPlainString() + "," + order.getPrice().toPlainString() + ","
+                        + order.getFee().toPlainString() + lineEnd);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.defaultmethods.TradingApi;
+
+/**
+ * Rough benchmark of what {@link LatencyRecordingTradingApi} adds to each call: a do-nothing API called directly,
+ * against the same API decorated. The cost of the 2 {@link System#nanoTime()} calls on their own is printed too, as
+ * on many hosts they are most of it.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.gazbert.java8.metrics.LatencyRecordingBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class LatencyRecordingBenchmark {
+
+    private static final int CALLS = 20_000_000;
+    private static final int RUNS = 5;
+
+    private static long sink; // keeps the JIT from dropping the calls
+
+    private LatencyRecordingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final TradingApi direct = new TradingApi() {
+            @Override
+            public boolean addOrder(Order order) {
+                return true;
+            }
+
+            @Override
+            public boolean cancelOrder(UUID orderId) {
+                return true;
+            }
+
+            @Override
+            public List<Order> getOpenOrders(int marketId) {
+                return Collections.emptyList();
+            }
+        };
+        final TradingApi decorated = new LatencyRecordingTradingApi(direct);
+        final Order order = new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO);
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            sink += calls(direct, order) + calls(decorated, order) + nanoTimePairs();
+        }
+
+        final double directNanos = time(() -> calls(direct, order), "direct");
+        final double decoratedNanos = time(() -> calls(decorated, order), "decorated");
+        final double nanoTimeNanos = time(LatencyRecordingBenchmark::nanoTimePairs, "2 x nanoTime");
+        System.out.printf("recording adds %.1f ns per call, of which nanoTime is %.1f ns (%d)%n",
+                decoratedNanos - directNanos, nanoTimeNanos, sink % 10);
+    }
+
+    private static long calls(TradingApi api, Order order) {
+        long added = 0;
+        for (int i = 0; i < CALLS; i++) {
+            if (api.addOrder(order)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static long nanoTimePairs() {
+        long total = 0;
+        for (int i = 0; i < CALLS; i++) {
+            final long start = System.nanoTime();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    private static double time(LongSupplier run, String name) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            sink += run.getAsLong();
+        }
+        final double nanosPerCall = (double) (System.nanoTime() - start) / RUNS / CALLS;
+        System.out.printf("%s: %.1f ns per call%n", name, nanosPerCall);
+        return nanosPerCall;
+    }
+}
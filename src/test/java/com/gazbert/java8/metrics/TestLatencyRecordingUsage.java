@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.metrics.LatencyRecordingTradingApi.Operation;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of the {@link LatencyRecordingTradingApi} and {@link LatencyHistogram}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestLatencyRecordingUsage {
+
+    /**
+     * Percentiles are accurate to within the bucket precision.
+     */
+    @Test
+    public void showHistogramPercentiles() {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000); // 1us to 100ms
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(50_000_000, snapshot.getP50Nanos(), 50_000_000 / 64.0);
+        assertEquals(99_000_000, snapshot.getP99Nanos(), 99_000_000 / 64.0);
+        assertEquals(99_990_000, snapshot.getP9999Nanos(), 99_990_000 / 64.0);
+        assertEquals(100_000_000, snapshot.getMaxNanos(), 100_000_000 / 64.0);
+
+        // values under 128ns are exact
+        final LatencyHistogram small = new LatencyHistogram();
+        small.record(42);
+        assertEquals(42, small.snapshot().getMaxNanos());
+    }
+
+    /**
+     * Shows coordinated omission correction filling in the requests a stall held up.
+     */
+    @Test
+    public void showCoordinatedOmissionCorrection() {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.recordWithExpectedInterval(1_000, 10_000);
+        }
+        histogram.recordWithExpectedInterval(1_000_000, 10_000); // 1ms stall when we expect a call every 10us
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(199, snapshot.getCount()); // the stall plus the 99 calls it held up
+        assertTrue(snapshot.getP50Nanos() > 1_000); // without correction the median would be 1us
+    }
+
+    /**
+     * Shows the decorator recording latencies, taking intervals and publishing over JMX.
+     *
+     * @throws Exception if the MBean can't be registered or read.
+     */
+    @Test
+    public void showRecordingTradingApiLatencies() throws Exception {
+
+        final LatencyRecordingTradingApi api = new LatencyRecordingTradingApi(
+                new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16)));
+        final Order order = new Order(
+                Market.USD, Type.BUY, new BigDecimal("200.00"), new BigDecimal("1.70"), new BigDecimal("0.01"));
+
+        api.addOrder(order);
+        api.getOpenOrders(Market.USD.ordinal());
+        api.cancelOrder(order.getId());
+
+        Map<Operation, LatencySnapshot> interval = api.snapshotInterval();
+        assertEquals(1, interval.get(Operation.ADD_ORDER).getCount());
+        assertEquals(1, interval.get(Operation.CANCEL_ORDER).getCount());
+
+        api.getOpenOrders(Market.USD.ordinal());
+        interval = api.snapshotInterval();
+        assertEquals(0, interval.get(Operation.ADD_ORDER).getCount());
+        assertEquals(1, interval.get(Operation.GET_OPEN_ORDERS).getCount());
+        assertEquals(2, api.getLatencySnapshot(Operation.GET_OPEN_ORDERS).getCount());
+
+        // mass cancels go to the decorated API as one call each
+        api.addOrder(order);
+        assertEquals(1, api.cancelAll(Market.USD.ordinal()));
+        assertEquals(0, api.cancelMatching(o -> o.getType() == Type.SELL));
+        assertEquals(1, api.getLatencySnapshot(Operation.CANCEL_ALL).getCount());
+        assertEquals(1, api.getLatencySnapshot(Operation.CANCEL_MATCHING).getCount());
+        assertEquals(2, api.getLatencySnapshot(Operation.GET_OPEN_ORDERS).getCount());
+        assertEquals(1, api.getLatencySnapshot(Operation.CANCEL_ORDER).getCount());
+
+        final ObjectName name = api.registerMBean();
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final CompositeData total = (CompositeData) server.getAttribute(name, "GetOpenOrdersLatency");
+            assertEquals(2L, total.get("count"));
+            final CompositeData lastInterval =
+                    (CompositeData) server.getAttribute(name, "GetOpenOrdersIntervalLatency");
+            assertEquals(1L, lastInterval.get("count"));
+            System.out.println("getOpenOrders latency: " + api.getGetOpenOrdersLatency());
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Shows intervals being published periodically.
+     *
+     * @throws Exception if interrupted.
+     */
+    @Test
+    public void showPublishingIntervals() throws Exception {
+
+        final TradingApi api = new LatencyRecordingTradingApi(
+                new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16)));
+        api.getOpenOrders(Market.EUR.ordinal());
+
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        final CountDownLatch published = new CountDownLatch(2);
+        try {
+            ((LatencyRecordingTradingApi) api).publishIntervals(executor, 10, TimeUnit.MILLISECONDS, interval -> {
+                System.out.println("interval: " + interval);
+                published.countDown();
+            });
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.SampleOrders;
+
+/**
+ * Test class for demonstrating use of {@link QueryMetrics} to instrument order book queries.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestQueryMetricsUsage {
+
+    private List<Order> orderBook;
+
+    /**
+     * Builds the order book up for each test.
+     */
+    @Before
+    public void setupForEachTest() {
+        orderBook = SampleOrders.threeMarketBook();
+    }
+
+    /**
+     * Shows queries being recorded under their names.
+     */
+    @Test
+    public void showRecordingQueryStatistics() {
+
+        final QueryMetrics metrics = new QueryMetrics(1); // time every matcher call
+
+        for (int i = 0; i < 10; i++) {
+            final int orderCount = metrics.getNumberOfMatchedOrders(
+                    "priceOver1.70", orderBook, o -> o.getPrice().compareTo(new BigDecimal("1.70")) >= 0);
+            assertEquals(2, orderCount);
+        }
+
+        final List<String> auditDetails = metrics.getAuditDetailsForMatchingOrders(
+                "sellAudit", orderBook, o -> o.getType() == Type.SELL, Order::provideAuditDetails);
+        assertEquals(1, auditDetails.size());
+
+        final QueryStatistics priceQuery = metrics.getStatistics("priceOver1.70");
+        assertEquals(10, priceQuery.getExecutions());
+        assertEquals(30, priceQuery.getRowsScanned());
+        assertEquals(20, priceQuery.getRowsMatched());
+        assertEquals(2.0 / 3, priceQuery.getSelectivity(), 0.0001);
+        assertTrue(priceQuery.getMaxElapsedNanos() > 0);
+        assertTrue(priceQuery.getMatcherNanos() <= priceQuery.getTotalElapsedNanos());
+        System.out.println(priceQuery);
+
+        final QueryStatistics auditQuery = metrics.getStatistics("sellAudit");
+        assertEquals(1, auditQuery.getExecutions());
+        assertEquals(3, auditQuery.getRowsScanned());
+        assertEquals(1, auditQuery.getRowsMatched());
+
+        assertNull(metrics.getStatistics("neverRun"));
+        assertEquals(2, metrics.getQueryStatistics().size());
+
+        metrics.reset();
+        assertTrue(metrics.getQueryStatistics().isEmpty());
+    }
+
+    /**
+     * Shows the statistics being read over JMX.
+     *
+     * @throws Exception if the MBean can't be registered or read.
+     */
+    @Test
+    public void showQueryStatisticsOverJmx() throws Exception {
+
+        final QueryMetrics metrics = new QueryMetrics();
+        metrics.getNumberOfMatchedOrders("sells", orderBook, o -> o.getType() == Type.SELL);
+
+        final ObjectName name = metrics.registerMBean("risk");
+        try {
+            final TabularData statistics =
+                    (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "QueryStatistics");
+            assertEquals(1, statistics.size());
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.metrics;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+
+/**
+ * Test class for demonstrating use of the {@link TradeCountHistogram} to follow the tail of trades-to-fill per market
+ * and type, rather than averaging over the book.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestTradeCountHistogramUsage {
+
+    /**
+     * The average hides the slow fills; p99 and max show them.
+     */
+    @Test
+    public void showPercentilesPerMarketAndType() {
+
+        final TradeCountHistogram histogram = new TradeCountHistogram(64);
+        for (int i = 0; i < 980; i++) {
+            histogram.record(Market.USD, Type.SELL, 1 + i % 3); // most fill in 1 to 3 trades
+        }
+        for (int i = 0; i < 20; i++) {
+            histogram.record(Market.USD, Type.SELL, 40 + i); // a tail of 40 to 59
+        }
+        histogram.record(Market.USD, Type.BUY, 500); // above the highest trackable value
+
+        final TradeCountSnapshot usdSells = histogram.snapshot(Market.USD, Type.SELL);
+        System.out.println("USD SELL: " + usdSells);
+        assertEquals(1000, usdSells.getCount());
+        assertEquals(2, usdSells.getP50());
+        assertEquals(3, usdSells.getValueAtPercentile(98.0));
+        assertEquals(49, usdSells.getP99());
+        assertEquals(59, usdSells.getMax());
+        assertTrue(usdSells.getMean() < 3.0); // the average says nothing about the tail
+
+        final TradeCountSnapshot usdBuys = histogram.snapshot(Market.USD, Type.BUY);
+        assertEquals(500, usdBuys.getMax()); // max is exact even above the highest trackable value
+        assertEquals(500, usdBuys.getP50());
+
+        assertEquals(1001, histogram.snapshot(Market.USD).getCount());
+        assertEquals(0, histogram.snapshot(Market.EUR).getCount());
+        assertEquals(0, histogram.snapshot(Market.EUR).getP99());
+        assertEquals(1001, histogram.snapshot().getCount());
+    }
+
+    /**
+     * Fills from several threads - one per book shard - are all counted, and the shards' snapshots combine into the
+     * same totals one histogram would have had.
+     */
+    @Test
+    public void showMergingShardsRecordedConcurrently() throws Exception {
+
+        final int shards = 4;
+        final int fillsPerShard = 50_000;
+        final List<TradeCountHistogram> histograms = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(shards);
+        final TradeCountHistogram shared = new TradeCountHistogram();
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int shard = 0; shard < shards; shard++) {
+            final TradeCountHistogram histogram = new TradeCountHistogram();
+            histograms.add(histogram);
+            final int offset = shard;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < fillsPerShard; i++) {
+                    final int tradeCount = 1 + (i + offset) % 100;
+                    histogram.record(Market.CNY, Type.BUY, tradeCount);
+                    shared.record(Market.CNY, Type.BUY, tradeCount);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        TradeCountSnapshot merged = histograms.get(0).snapshot(Market.CNY, Type.BUY);
+        for (int shard = 1; shard < shards; shard++) {
+            merged = merged.plus(histograms.get(shard).snapshot(Market.CNY, Type.BUY));
+        }
+        final TradeCountSnapshot all = shared.snapshot(Market.CNY, Type.BUY);
+
+        assertEquals(shards * fillsPerShard, merged.getCount());
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getP50(), merged.getP50());
+        assertEquals(all.getP99(), merged.getP99());
+        assertEquals(100, merged.getMax());
+
+        try {
+            merged.plus(new TradeCountHistogram(10).snapshot(Market.CNY, Type.BUY));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The off-heap API counts partial fills against each order and records the total when the order is filled. The
+     * count starts from zero when an order is added, whatever the order said before.
+     */
+    @Test
+    public void showHistogramUpdatedOnEachFill() {
+
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), Runnable::run);
+        final Order order1 = new Order(Market.EUR, Type.BUY, new BigDecimal("100"), new BigDecimal("1.10"),
+                BigDecimal.ZERO);
+        final Order order2 = new Order(Market.EUR, Type.BUY, new BigDecimal("10"), new BigDecimal("1.10"),
+                BigDecimal.ZERO);
+        order1.setTradeCountToFill(5);
+        order2.setTradeCountToFill(40);
+        api.addOrder(order1);
+        api.addOrder(order2);
+        assertEquals(0, api.getOpenOrders(Market.EUR.ordinal()).get(1).getTradeCountToFill());
+
+        api.fillOrder(order1.getId(), new BigDecimal("25"));
+        api.fillOrder(order1.getId(), new BigDecimal("25"));
+        assertEquals(2, api.getOpenOrders(Market.EUR.ordinal()).get(0).getTradeCountToFill());
+        assertEquals(0, api.getTradeCountHistogram().snapshot().getCount()); // partial fills aren't recorded
+
+        api.fillOrder(order1.getId(), new BigDecimal("50"));
+        api.fillOrder(order2.getId(), new BigDecimal("10"));
+
+        final TradeCountSnapshot eurBuys = api.getTradeCountHistogram().snapshot(Market.EUR, Type.BUY);
+        assertEquals(2, eurBuys.getCount());
+        assertEquals(1, eurBuys.getP50());
+        assertEquals(3, eurBuys.getMax());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Rough benchmark comparing a blocking request/response client with the pipelined {@link NioTradingApiClient}, adding
+ * and then cancelling orders on a {@link StubExchangeServer} over loopback.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -cp target/classes:target/test-classes com.gazbert.java8.net.NioTradingApiBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class NioTradingApiBenchmark {
+
+    private static final int ORDERS = 50_000;
+    private static final int RUNS = 5;
+
+    private NioTradingApiBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     * @throws Exception if the loopback connections fail.
+     */
+    public static void main(String... args) throws Exception {
+
+        final List<Order> orders = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(ORDERS);
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(ORDERS),
+                Runnable::run);
+
+        try (StubExchangeServer server = StubExchangeServer.start(exchange);
+             BlockingClient blocking = new BlockingClient(server.getAddress());
+             NioTradingApiClient pipelined = NioTradingApiClient.connect(server.getAddress())) {
+
+            for (int i = 0; i < RUNS; i++) { // warm up
+                blocking.addThenCancel(orders);
+                pipelined(pipelined, orders);
+            }
+
+            final long blockingNanos = time(() -> blocking.addThenCancel(orders));
+            final long pipelinedNanos = time(() -> pipelined(pipelined, orders));
+            System.out.printf("%,d adds and %,d cancels%n", ORDERS, ORDERS);
+            System.out.printf("blocking:  %,d us, %,.0f requests/s%n", blockingNanos / 1000,
+                    2.0 * ORDERS * 1e9 / blockingNanos);
+            System.out.printf("pipelined: %,d us, %,.0f requests/s (%.1fx)%n", pipelinedNanos / 1000,
+                    2.0 * ORDERS * 1e9 / pipelinedNanos, (double) blockingNanos / pipelinedNanos);
+        }
+    }
+
+    private static void pipelined(NioTradingApiClient client, List<Order> orders) {
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>(orders.size());
+        for (final Order order : orders) {
+            results.add(client.addOrderAsync(order));
+        }
+        for (final Order order : orders) {
+            results.add(client.cancelOrderAsync(order.getId()));
+        }
+        for (final CompletableFuture<Boolean> result : results) {
+            if (!result.join()) {
+                throw new IllegalStateException("Request failed");
+            }
+        }
+    }
+
+    private static long time(IoRunnable run) throws IOException {
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            run.run();
+        }
+        return (System.nanoTime() - start) / RUNS;
+    }
+
+    @FunctionalInterface
+    private interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    /**
+     * Sends one request at a time and waits for its response - the classic blocking socket client.
+     */
+    private static final class BlockingClient implements AutoCloseable {
+
+        private final SocketChannel channel;
+        private final ByteBuffer request = ByteBuffer.allocateDirect(TradingProtocol.ADD_ORDER_REQUEST_SIZE);
+        private final ByteBuffer response = ByteBuffer.allocateDirect(64);
+        private long correlationId;
+
+        BlockingClient(InetSocketAddress address) throws IOException {
+            channel = SocketChannel.open(address);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        void addThenCancel(List<Order> orders) throws IOException {
+            for (final Order order : orders) {
+                request.clear();
+                TradingProtocol.putAddOrder(request, ++correlationId, order);
+                call();
+            }
+            for (final Order order : orders) {
+                request.clear();
+                TradingProtocol.putCancelOrder(request, ++correlationId, order.getIdMostSignificantBits(),
+                        order.getIdLeastSignificantBits());
+                call();
+            }
+        }
+
+        private void call() throws IOException {
+            request.flip();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            response.clear();
+            response.limit(TradingProtocol.LENGTH_SIZE + TradingProtocol.HEADER_SIZE + 1);
+            while (response.hasRemaining()) {
+                if (channel.read(response) < 0) {
+                    throw new EOFException();
+                }
+            }
+            if (response.get(response.limit() - 1) == 0) {
+                throw new IllegalStateException("Request failed");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.net;
+
+import static org.junit.Assert.*;
+
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Test class for demonstrating use of the {@link NioTradingApiClient} against a {@link StubExchangeServer} over
+ * loopback.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestNioTradingApiClientUsage {
+
+    /**
+     * An order survives the round trip through the binary encoding.
+     */
+    @Test
+    public void showOrderEncoding() {
+
+        final Order order = new Order(Market.CNY, Type.SELL, new BigDecimal("12.5"), new BigDecimal("6.83"),
+                new BigDecimal("0.0025"));
+        order.setTradeCountToFill(7);
+        order.setEntryTimestamp(1_234_567_890L);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(TradingProtocol.ORDER_SIZE);
+        TradingProtocol.putOrder(buffer, order);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        final Order decoded = TradingProtocol.getOrder(buffer);
+        assertSameOrder(order, decoded);
+        assertEquals(new BigDecimal("6.83"), decoded.getPrice().stripTrailingZeros());
+        assertEquals(1_234_567_890L, decoded.getEntryTimestamp());
+
+        // a corrupt count is caught before anything is allocated for it
+        final ByteBuffer payload = ByteBuffer.allocate(4 + TradingProtocol.ORDER_SIZE);
+        payload.putInt(Integer.MAX_VALUE);
+        payload.flip();
+        try {
+            TradingProtocol.readOrders(payload);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Thousands of requests in flight on one connection, each future completed by its own response.
+     */
+    @Test
+    public void showPipelinedRequests() throws Exception {
+
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(10_000),
+                Runnable::run);
+        final List<Order> orders = new OrderFlowGenerator(OrderFlowProfile.defaults(), 5).initialBook(5_000);
+
+        try (StubExchangeServer server = StubExchangeServer.start(exchange);
+             NioTradingApiClient client = NioTradingApiClient.connect(server.getAddress(), 256)) {
+
+            final List<CompletableFuture<Boolean>> adds = new ArrayList<>();
+            for (final Order order : orders) {
+                adds.add(client.addOrderAsync(order));
+            }
+            CompletableFuture.allOf(adds.toArray(new CompletableFuture<?>[0])).join();
+            assertTrue(adds.stream().allMatch(CompletableFuture::join));
+            assertEquals(orders.size(), exchange.getOrderStore().size());
+            assertEquals(0, client.getInFlightCount());
+
+            // cancel every other order, then check what is left
+            final List<CompletableFuture<Boolean>> cancels = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i += 2) {
+                cancels.add(client.cancelOrderAsync(orders.get(i).getId()));
+            }
+            assertTrue(cancels.stream().allMatch(CompletableFuture::join));
+            assertFalse(client.cancelOrder(orders.get(0).getId())); // already gone
+
+            int open = 0;
+            for (final Market market : Market.values()) {
+                final List<Order> openOrders = client.getOpenOrders(market.ordinal());
+                openOrders.forEach(order -> assertEquals(market, order.getMarketId()));
+                open += openOrders.size();
+            }
+            assertEquals(orders.size() / 2, open);
+
+            final Order sent = orders.get(1);
+            sent.setTradeCountToFill(0); // the exchange counts an order's fills from zero
+            final Order received = client.getOpenOrders(sent.getMarketId().ordinal()).stream()
+                    .filter(order -> order.getId().equals(sent.getId())).findFirst().get();
+            assertSameOrder(sent, received);
+
+            final int eurOrders = exchange.getOpenOrders(Market.EUR.ordinal()).size();
+            assertEquals(eurOrders, client.cancelAll(Market.EUR.ordinal()));
+            assertTrue(client.getOpenOrders(Market.EUR.ordinal()).isEmpty());
+            assertTrue(client.getOpenOrders(99).isEmpty());
+        }
+    }
+
+    /**
+     * Many threads share one client; the responses all find their way back to the right caller.
+     */
+    @Test
+    public void showConcurrentCallersSharingOneConnection() throws Exception {
+
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(4_000),
+                Runnable::run);
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try (StubExchangeServer server = StubExchangeServer.start(exchange);
+             NioTradingApiClient client = NioTradingApiClient.connect(server.getAddress())) {
+
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final Market market = Market.values()[thread % Market.values().length];
+                results.add(executor.submit(() -> {
+                    int placed = 0;
+                    for (int i = 0; i < 500; i++) {
+                        final Order order = new Order(market, Type.BUY, BigDecimal.ONE, new BigDecimal("1.5"),
+                                BigDecimal.ZERO);
+                        if (client.addOrder(order) && client.getOpenOrders(market.ordinal()).stream()
+                                .anyMatch(open -> open.getId().equals(order.getId()))) {
+                            placed++;
+                        }
+                    }
+                    return placed;
+                }));
+            }
+            for (final Future<Integer> result : results) {
+                assertEquals(500, (int) result.get());
+            }
+            assertEquals(threads * 500, exchange.getOrderStore().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * When the exchange goes away, requests fail rather than hang.
+     */
+    @Test
+    public void showRequestsFailingWhenExchangeCloses() throws Exception {
+
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), Runnable::run);
+        final StubExchangeServer server = StubExchangeServer.start(exchange);
+        try (NioTradingApiClient client = NioTradingApiClient.connect(server.getAddress())) {
+
+            assertTrue(client.getOpenOrders(Market.USD.ordinal()).isEmpty());
+            server.close();
+
+            try {
+                client.getOpenOrders(Market.USD.ordinal());
+                fail();
+            } catch (UncheckedIOException e) {
+                // expected
+            }
+            assertTrue(client.addOrderAsync(new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE,
+                    BigDecimal.ZERO)).isCompletedExceptionally());
+        }
+    }
+
+    /**
+     * A request the exchange can't carry out fails with the exchange's message rather than looking like a false.
+     */
+    @Test
+    public void showExchangeErrorsFailingRequests() throws Exception {
+
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), Runnable::run) {
+            @Override
+            public boolean addOrder(Order order) {
+                throw new IllegalStateException("Exchange halted");
+            }
+        };
+        try (StubExchangeServer server = StubExchangeServer.start(exchange);
+             NioTradingApiClient client = NioTradingApiClient.connect(server.getAddress())) {
+
+            try {
+                client.addOrder(new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ZERO));
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("Exchange halted"));
+            }
+            assertTrue(client.getOpenOrders(Market.USD.ordinal()).isEmpty()); // the connection is still good
+        }
+    }
+
+    /**
+     * A blocking call gives up after the request timeout and frees its slot; the late response is ignored.
+     */
+    @Test
+    public void showRequestTimingOut() throws Exception {
+
+        final CountDownLatch stalled = new CountDownLatch(1);
+        final OffHeapTradingApi exchange = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16), Runnable::run) {
+            @Override
+            public List<Order> getOpenOrders(int marketId) {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getOpenOrders(marketId);
+            }
+        };
+        try (StubExchangeServer server = StubExchangeServer.start(exchange);
+             NioTradingApiClient client = NioTradingApiClient.connect(server.getAddress(), 1, 100)) {
+
+            try {
+                client.getOpenOrders(Market.USD.ordinal());
+                fail();
+            } catch (UncheckedIOException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+            assertEquals(0, client.getInFlightCount());
+
+            stalled.countDown();
+            assertTrue(client.addOrder(new Order(Market.USD, Type.BUY, BigDecimal.ONE, BigDecimal.ONE,
+                    BigDecimal.ZERO)));
+            assertEquals(1, client.getOpenOrders(Market.USD.ordinal()).size());
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Private utils
+    // ------------------------------------------------------------------------------------------------
+
+    private static void assertSameOrder(Order expected, Order actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getMarketId(), actual.getMarketId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getFixedPointAmount(), actual.getFixedPointAmount());
+        assertEquals(expected.getFixedPointPrice(), actual.getFixedPointPrice());
+        assertEquals(expected.getFixedPointFee(), actual.getFixedPointFee());
+        assertEquals(expected.getTradeCountToFill(), actual.getTradeCountToFill());
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.common.SampleOrders;
+import com.gazbert.java8.defaultmethods.TradingApi;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+
+/**
+ * Test class for demonstrating use of the {@link OffHeapOrderStore}.
+ * <p>
+ * Use case is for querying orders in a trading exchange order book.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOffHeapOrderStoreUsage {
+
+    private Order order1;
+    private Order order2;
+    private Order order3;
+
+    /**
+     * Builds the orders up for each test.
+     */
+    @Before
+    public void setupForEachTest() {
+        final List<Order> orderBook = SampleOrders.threeMarketBook();
+        order1 = orderBook.get(0);
+        order2 = orderBook.get(1);
+        order3 = orderBook.get(2);
+        order3.setTradeCountToFill(2);
+    }
+
+    /**
+     * Shows the store being queried in place by the analyser - it's just an Iterable of flyweight orders.
+     */
+    @Test
+    public void showAnalysingOrdersHeldOffHeap() {
+
+        final TradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(16));
+        api.addOrder(order1);
+        api.addOrder(order2);
+        api.addOrder(order3);
+
+        final OffHeapOrderStore store = ((OffHeapTradingApi) api).getOrderStore();
+
+        final int orderCount = OrderBookAnalyser.getNumberOfMatchedOrders(
+                store, o -> o.getPrice().compareTo(new BigDecimal("1.70")) >= 0);
+        assertEquals(2, orderCount);
+
+        final List<String> auditDetails = OrderBookAnalyser.getAuditDetailsForMatchingOrders(
+                store, o -> o.getType() == Type.SELL, Order::provideAuditDetails);
+        assertEquals(1, auditDetails.size());
+        assertTrue(auditDetails.get(0).contains(order3.getId().toString()));
+
+        // views write through to the store
+        final long entryTimestamp = store.getEntryTimestamp(store.slotOf(order3.getId()));
+        for (final Order order : store) {
+            order.setTradeCountToFill(order.getTradeCountToFill() + 1);
+            order.setEntryTimestamp(order.getEntryTimestamp() + 1_000);
+        }
+        assertEquals(1, store.getTradeCountToFill(store.slotOf(order3.getId())));
+        assertEquals(entryTimestamp + 1_000, store.getEntryTimestamp(store.slotOf(order3.getId())));
+    }
+
+    /**
+     * Shows the TradingApi handing back on-heap copies of the open orders.
+     */
+    @Test
+    public void showAddingAndCancellingOrders() {
+
+        final TradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(2));
+        assertTrue(api.addOrder(order1));
+        assertFalse(api.addOrder(order1)); // already there
+        assertTrue(api.addOrder(order3));
+        assertFalse(api.addOrder(order2)); // full
+
+        final List<Order> openOrders = api.getOpenOrders(Market.CNY.ordinal());
+        assertEquals(1, openOrders.size());
+        final Order copy = openOrders.get(0);
+        assertEquals(order3.getId(), copy.getId());
+        assertEquals(Type.SELL, copy.getType());
+        assertEquals(0, new BigDecimal("250.00").compareTo(copy.getAmount()));
+        assertEquals(0, new BigDecimal("10.58").compareTo(copy.getPrice()));
+        assertEquals(0, copy.getTradeCountToFill()); // the book counts the order's fills from zero
+
+        assertTrue(api.cancelOrder(order1.getId()));
+        assertFalse(api.cancelOrder(order1.getId()));
+        assertTrue(api.addOrder(order2));
+        assertEquals(1, api.getOpenOrders(Market.USD.ordinal()).size());
+        assertEquals(0, api.getOpenOrders(Market.EUR.ordinal()).size());
+        assertEquals(0, api.getOpenOrders(99).size());
+    }
+
+    /**
+     * Fills the store, then removes every other order, checking the id index keeps up as records get moved around.
+     */
+    @Test
+    public void showIndexSurvivesRemovals() {
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(1000);
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final Order order = new Order(Market.USD, Type.BUY, BigDecimal.ONE, new BigDecimal(i), BigDecimal.ZERO);
+            ids.add(order.getId());
+            assertTrue(store.add(order));
+        }
+
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertTrue(store.remove(ids.get(i)));
+        }
+        assertEquals(500, store.size());
+
+        for (int i = 0; i < ids.size(); i++) {
+            final int slot = store.slotOf(ids.get(i));
+            if (i % 2 == 0) {
+                assertEquals(-1, slot);
+            } else {
+                assertEquals(ids.get(i), store.getId(slot));
+                assertEquals(0, new BigDecimal(i).compareTo(store.copyOf(slot).getPrice()));
+            }
+        }
+    }
+
+    /**
+     * Shows a kill switch: pulling every order in a market, then every large order left, each in one call. The
+     * market partitions must still line up with the records afterwards.
+     */
+    @Test
+    public void showMassCancels() {
+
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(3000));
+        final Random random = new Random(9);
+        final List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            final Order order = new Order(Market.values()[random.nextInt(3)], Type.BUY,
+                    BigDecimal.valueOf(random.nextInt(1000)), BigDecimal.ONE, BigDecimal.ZERO);
+            orders.add(order);
+            api.addOrder(order);
+        }
+        final long usdOrders = orders.stream().filter(o -> o.getMarketId() == Market.USD).count();
+        final long bigNonUsdOrders = orders.stream()
+                .filter(o -> o.getMarketId() != Market.USD && o.getAmount().intValue() >= 500).count();
+        final long bigEurOrders = orders.stream()
+                .filter(o -> o.getMarketId() == Market.EUR && o.getAmount().intValue() >= 500).count();
+
+        assertEquals(usdOrders, api.cancelAll(Market.USD.ordinal()));
+        assertEquals(0, api.getOpenOrders(Market.USD.ordinal()).size());
+        assertEquals(0, api.cancelAll(Market.USD.ordinal()));
+
+        assertEquals(bigEurOrders, api.cancelMatching(Market.EUR.ordinal(),
+                o -> o.getAmount().compareTo(new BigDecimal("500")) >= 0));
+        assertEquals(bigNonUsdOrders - bigEurOrders,
+                api.cancelMatching(o -> o.getAmount().compareTo(new BigDecimal("500")) >= 0));
+
+        final OffHeapOrderStore store = api.getOrderStore();
+        assertEquals(orders.size() - usdOrders - bigNonUsdOrders, store.size());
+        int partitioned = 0;
+        for (final Market market : Market.values()) {
+            for (int position = 0; position < store.marketSize(market); position++) {
+                final int slot = store.marketSlot(market, position);
+                assertEquals(market, store.getMarketId(slot));
+                assertTrue(store.getAmount(slot) < 500 * FixedPoint.ONE);
+                partitioned++;
+            }
+        }
+        assertEquals(store.size(), partitioned);
+        for (final Order order : orders) {
+            final boolean kept = order.getMarketId() != Market.USD && order.getAmount().intValue() < 500;
+            assertEquals(kept, store.slotOf(order.getId()) >= 0);
+        }
+    }
+
+    /**
+     * Shows a store backed by a memory-mapped file being reopened.
+     *
+     * @throws Exception if the file can't be mapped.
+     */
+    @Test
+    public void showMemoryMappedStore() throws Exception {
+
+        final Path file = Files.createTempFile("orders", ".dat");
+        try {
+            final OffHeapOrderStore store = OffHeapOrderStore.map(file, 8);
+            store.add(order1);
+            store.add(order2);
+
+            final OffHeapOrderStore reopened = OffHeapOrderStore.map(file, 8);
+            assertEquals(2, reopened.size());
+            assertEquals(Market.USD, reopened.getMarketId(reopened.slotOf(order2.getId())));
+            assertEquals(1, reopened.marketSize(Market.USD));
+        } finally {
+            file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.offheap;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+
+/**
+ * Test class for demonstrating use of the {@link StampedOrderBook} - analysing a live book while orders are entered.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestStampedOrderBookUsage {
+
+    private static final int BOOK_SIZE = 2_000;
+    private static final BigDecimal THRESHOLD = new BigDecimal("1.00");
+    private static final long RUN_MILLIS = 500;
+
+    /**
+     * Stress test: a writer keeps replacing orders - cancel one, add another with the same amount and price, in one
+     * write - while reader threads run the analyser over the book. Cancels move the last order into the cancelled
+     * order's slot, so an unchecked scan can count an order twice or miss one. Every result a reader gets back must
+     * match the book's invariants: same order count, same total amount, same number of orders at or over the price
+     * threshold.
+     */
+    @Test
+    public void analyserQueriesSeeConsistentBookDuringOrderEntry() throws Exception {
+
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(BOOK_SIZE + 1));
+        final StampedOrderBook orderBook = api.getOrderBook();
+        final Random random = new Random(7);
+        final List<Order> live = new ArrayList<>();
+        long totalAmount = 0;
+        int overThreshold = 0;
+        for (int i = 0; i < BOOK_SIZE; i++) {
+            final Order order = randomOrder(random);
+            api.addOrder(order);
+            live.add(order);
+            totalAmount += order.getFixedPointAmount();
+            overThreshold += order.getPrice().compareTo(THRESHOLD) >= 0 ? 1 : 0;
+        }
+        final long expectedTotalAmount = totalAmount;
+        final int expectedOverThreshold = overThreshold;
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong writes = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        final int readerCount = 3;
+        final CountDownLatch done = new CountDownLatch(readerCount + 1);
+
+        final Thread writer = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    final int victim = random.nextInt(live.size());
+                    final Order old = live.get(victim);
+                    final Order replacement = new Order(old.getMarketId(), old.getType(), old.getAmount(),
+                            old.getPrice(), old.getFee());
+                    orderBook.write(store -> {
+                        assertTrue(store.remove(old.getId()));
+                        assertTrue(store.add(replacement));
+                    });
+                    live.set(victim, replacement);
+                    writes.incrementAndGet();
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                done.countDown();
+            }
+        });
+        writer.start();
+
+        for (int r = 0; r < readerCount; r++) {
+            new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        final long[] result = orderBook.read(store -> {
+                            long amount = 0;
+                            for (int slot = 0; slot < store.size(); slot++) {
+                                amount += store.getAmount(slot);
+                            }
+                            final int matched = OrderBookAnalyser.getNumberOfMatchedOrders(
+                                    store, o -> o.getPrice().compareTo(THRESHOLD) >= 0);
+                            return new long[]{store.size(), amount, matched};
+                        });
+                        assertEquals(BOOK_SIZE, result[0]);
+                        assertEquals(expectedTotalAmount, result[1]);
+                        assertEquals(expectedOverThreshold, result[2]);
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw new AssertionError("Inconsistent read", failure.get());
+        }
+
+        assertTrue(writes.get() > 0);
+        assertTrue(reads.get() > 0);
+        assertEquals(reads.get(), orderBook.getOptimisticReads() + orderBook.getLockedReads());
+        System.out.println("writes=" + writes + " reads=" + reads + " optimistic=" + orderBook.getOptimisticReads()
+                + " failedOptimistic=" + orderBook.getFailedOptimisticReads()
+                + " locked=" + orderBook.getLockedReads());
+    }
+
+    /**
+     * Order copies taken across every market in one read must also come from a consistent book: a writer moves orders
+     * between markets, one pair at a time, so the number of open orders across all markets never changes.
+     */
+    @Test
+    public void openOrderCopiesAreConsistentDuringOrderEntry() throws Exception {
+
+        final OffHeapTradingApi api = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(BOOK_SIZE + 1));
+        final Random random = new Random(13);
+        final List<Order> live = new ArrayList<>();
+        for (int i = 0; i < BOOK_SIZE; i++) {
+            final Order order = randomOrder(random);
+            api.addOrder(order);
+            live.add(order);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            while (running.get()) {
+                final int victim = random.nextInt(live.size());
+                final UUID oldId = live.get(victim).getId();
+                final Order moved = randomOrder(random);
+                api.getOrderBook().write(store -> {
+                    store.remove(oldId);
+                    store.add(moved);
+                });
+                live.set(victim, moved);
+            }
+        });
+        writer.start();
+
+        try {
+            final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+            while (System.nanoTime() < end) {
+                final List<Order> openOrders = api.getOrderBook().read(store -> {
+                    final List<Order> copies = new ArrayList<>();
+                    for (final Market market : Market.values()) {
+                        for (int position = 0; position < store.marketSize(market); position++) {
+                            copies.add(store.copyOf(store.marketSlot(market, position)));
+                        }
+                    }
+                    return copies;
+                });
+                assertEquals(BOOK_SIZE, openOrders.size());
+            }
+        } catch (Throwable t) {
+            failure.set(t);
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    /**
+     * A reader that keeps losing to the writer falls back to the read lock rather than spinning forever.
+     */
+    @Test
+    public void fallsBackToReadLockAfterFailedOptimisticAttempts() {
+
+        final StampedOrderBook orderBook = new StampedOrderBook(OffHeapOrderStore.allocateDirect(16), 2);
+        final Random random = new Random(1);
+
+        // the query itself writes (on this thread, not allowed in real use) so every optimistic attempt is invalid
+        final AtomicLong attempts = new AtomicLong();
+        final int size = orderBook.read(store -> {
+            if (attempts.incrementAndGet() <= 2) {
+                orderBook.add(randomOrder(random));
+            }
+            return store.size();
+        });
+
+        assertEquals(2, size);
+        assertEquals(0, orderBook.getOptimisticReads());
+        assertEquals(2, orderBook.getFailedOptimisticReads());
+        assertEquals(1, orderBook.getLockedReads());
+    }
+
+    private static Order randomOrder(Random random) {
+        final Market market = Market.values()[random.nextInt(Market.values().length)];
+        return new Order(market, random.nextBoolean() ? Type.BUY : Type.SELL,
+                BigDecimal.valueOf(1 + random.nextInt(100_000), 2), BigDecimal.valueOf(50 + random.nextInt(100), 2),
+                BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.planner;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.index.OrderBitmapIndex;
+import com.gazbert.java8.index.OrderQuery;
+import com.gazbert.java8.lambda.ExecutionPlan;
+import com.gazbert.java8.lambda.OrderBookAnalyser;
+import com.gazbert.java8.lambda.OrderMatcher;
+import com.gazbert.java8.metrics.QueryMetrics;
+import com.gazbert.java8.metrics.QueryStatistics;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Test class for demonstrating use of the {@link QueryPlanner}.
+ * <p>
+ * The planners here are told they have 4 cores, so the plans don't depend on the machine running the tests.
+ *
+ * @author gazbert
+ */
+public class TestQueryPlannerUsage {
+
+    private static final OrderMatcher BIG_BUYS = order -> order.getType() == Type.BUY
+            && order.getAmount().compareTo(new BigDecimal("100")) > 0;
+
+    /**
+     * Cheap matchers on small books are scanned serially; big books are scanned in parallel. The plan used is
+     * recorded in the query metrics.
+     */
+    @Test
+    public void showPlanDependsOnBookSize() {
+
+        final QueryMetrics metrics = new QueryMetrics();
+        final QueryPlanner planner = new QueryPlanner(metrics, 4, QueryPlanner.DEFAULT_PARALLEL_THRESHOLD_NANOS);
+        final List<Order> bigBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(100_000);
+        final List<Order> smallBook = bigBook.subList(0, 100);
+
+        assertEquals(OrderBookAnalyser.getNumberOfMatchedOrders(smallBook, BIG_BUYS),
+                planner.getNumberOfMatchedOrders("small", smallBook, BIG_BUYS));
+        assertEquals(ExecutionPlan.SERIAL, metrics.getStatistics("small").getLastPlan());
+
+        assertEquals(OrderBookAnalyser.getNumberOfMatchedOrders(bigBook, BIG_BUYS),
+                planner.getNumberOfMatchedOrders("big", bigBook, BIG_BUYS));
+        assertEquals(ExecutionPlan.PARALLEL, metrics.getStatistics("big").getLastPlan());
+        assertFalse(Double.isNaN(planner.getNanosPerRow("big", ExecutionPlan.PARALLEL)));
+
+        // once both scans have been timed, the cheaper one per row is used
+        planner.getNumberOfMatchedOrders("big", bigBook, BIG_BUYS, ExecutionPlan.SERIAL);
+        final double parallelCost = planner.getNanosPerRow("big", ExecutionPlan.PARALLEL);
+        final double serialCost = planner.getNanosPerRow("big", ExecutionPlan.SERIAL);
+        final ExecutionPlan expected = parallelCost < serialCost ? ExecutionPlan.PARALLEL : ExecutionPlan.SERIAL;
+        assertEquals(expected, planner.plan("big", bigBook, BIG_BUYS));
+
+        final QueryStatistics statistics = metrics.getStatistics("big");
+        assertEquals(2, statistics.getExecutions());
+        assertEquals(1, statistics.getSerialExecutions());
+        assertEquals(1, statistics.getParallelExecutions());
+    }
+
+    /**
+     * An expensive matcher is learnt from its first serial run, and moves to parallel scans even on a small book.
+     */
+    @Test
+    public void showExpensiveMatcherGoesParallel() {
+
+        final QueryMetrics metrics = new QueryMetrics();
+        final QueryPlanner planner = new QueryPlanner(metrics, 4, QueryPlanner.DEFAULT_PARALLEL_THRESHOLD_NANOS);
+        final List<Order> book = new OrderFlowGenerator(OrderFlowProfile.defaults(), 2).initialBook(500);
+        final OrderMatcher expensive = order -> {
+            final long until = System.nanoTime() + 2_000;
+            while (System.nanoTime() < until) {
+                Thread.yield(); // stands in for a costly risk check
+            }
+            return order.getMarketId() == Market.USD;
+        };
+
+        assertEquals(ExecutionPlan.SERIAL, planner.plan("risk", book, expensive));
+        planner.getNumberOfMatchedOrders("risk", book, expensive);
+        assertTrue(planner.getNanosPerRow("risk", ExecutionPlan.SERIAL) >= 2_000);
+        assertEquals(ExecutionPlan.PARALLEL, planner.plan("risk", book, expensive));
+
+        // with a single core there's no point
+        assertEquals(ExecutionPlan.SERIAL, new QueryPlanner(metrics, 1, QueryPlanner.DEFAULT_PARALLEL_THRESHOLD_NANOS)
+                .plan("risk", book, expensive));
+    }
+
+    /**
+     * Queries the index can answer use it while it is up to date, and the plan can be overridden per call.
+     */
+    @Test
+    public void showIndexPlanAndOverrides() {
+
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(10_001);
+        new OrderFlowGenerator(OrderFlowProfile.defaults(), 3).initialBook(10_000).forEach(store::add);
+        final OrderBitmapIndex index = new OrderBitmapIndex(store, new BigDecimal("0.10"));
+        final QueryMetrics metrics = new QueryMetrics();
+        final QueryPlanner planner = new QueryPlanner(metrics).addIndex(index);
+        final OrderQuery usdSells = OrderQuery.anyOrder().inMarkets(Market.USD).ofType(Type.SELL);
+        final int expected = OrderBookAnalyser.getNumberOfMatchedOrders(store, usdSells);
+
+        // not built yet, so stale
+        assertNotEquals(ExecutionPlan.INDEX, planner.plan("usdSells", store, usdSells));
+        assertEquals(expected, planner.getNumberOfMatchedOrders("usdSells", store, usdSells, ExecutionPlan.INDEX));
+        assertEquals(ExecutionPlan.INDEX, planner.plan("usdSells", store, usdSells));
+        assertEquals(expected, planner.getNumberOfMatchedOrders("usdSells", store, usdSells));
+        assertEquals(2, metrics.getStatistics("usdSells").getIndexExecutions());
+
+        assertEquals(expected, planner.getNumberOfMatchedOrders("usdSells", store, usdSells, ExecutionPlan.PARALLEL));
+        assertEquals(ExecutionPlan.PARALLEL, metrics.getStatistics("usdSells").getLastPlan());
+
+        // lambdas aren't OrderQuerys, so the index can't answer them
+        try {
+            planner.getNumberOfMatchedOrders("bigBuys", store, BIG_BUYS, ExecutionPlan.INDEX);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.simulation;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+import com.gazbert.java8.offheap.OffHeapTradingApi;
+import com.gazbert.java8.simulation.OrderFlowEvent.Kind;
+
+/**
+ * Test class for demonstrating use of {@link OrderFlowGenerator} and {@link LoadDriver}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestOrderFlowGeneratorUsage {
+
+    /**
+     * The same profile and seed give the same flow, ids included; a different seed gives a different flow.
+     */
+    @Test
+    public void showFlowIsRepeatable() {
+
+        final OrderFlowProfile profile = OrderFlowProfile.defaults();
+
+        final List<String> first = new OrderFlowGenerator(profile, 7).events(10_000)
+                .map(OrderFlowEvent::toString).collect(Collectors.toList());
+        final List<String> again = new OrderFlowGenerator(profile, 7).events(10_000)
+                .map(OrderFlowEvent::toString).collect(Collectors.toList());
+        final List<String> other = new OrderFlowGenerator(profile, 8).events(10_000)
+                .map(OrderFlowEvent::toString).collect(Collectors.toList());
+
+        assertEquals(first, again);
+        assertNotEquals(first, other);
+    }
+
+    /**
+     * Shows the generated flow following the profile: market mix, cancel and replace ratios, buys below the mid and
+     * sells above it in whole ticks, and the mean tradeCountToFill.
+     */
+    @Test
+    public void showFlowFollowsProfile() {
+
+        final OrderFlowProfile profile = OrderFlowProfile.builder()
+                .marketWeight(Market.CNY, 0)
+                .marketWeight(Market.EUR, 3)
+                .cancels(0.3, 0.2)
+                .meanTradeCountToFill(4)
+                .build();
+        final List<OrderFlowEvent> events = new OrderFlowGenerator(profile, 1).events(100_000)
+                .collect(Collectors.toList());
+
+        final Map<Kind, Long> kinds = events.stream()
+                .collect(Collectors.groupingBy(OrderFlowEvent::getKind, Collectors.counting()));
+        assertEquals(0.3, kinds.get(Kind.CANCEL) / 100_000.0, 0.01);
+        assertEquals(0.2, kinds.get(Kind.REPLACE) / 100_000.0, 0.01);
+
+        final List<Order> orders = events.stream()
+                .filter(e -> e.getOrder() != null)
+                .map(OrderFlowEvent::getOrder)
+                .collect(Collectors.toList());
+        final Map<Market, Long> markets = orders.stream()
+                .collect(Collectors.groupingBy(Order::getMarketId, Collectors.counting()));
+        assertNull(markets.get(Market.CNY));
+        assertEquals(3.0, (double) markets.get(Market.EUR) / markets.get(Market.USD), 0.1);
+
+        for (final Order order : orders) {
+            final BigDecimal mid = profile.getMidPrice(order.getMarketId());
+            assertEquals(order.getType() == Type.BUY ? -1 : 1, order.getPrice().compareTo(mid));
+            assertEquals(0, order.getPrice().remainder(profile.getTickSize()).signum());
+            assertTrue(order.getAmount().signum() > 0);
+        }
+        assertEquals(4.0, orders.stream().mapToInt(Order::getTradeCountToFill).average().getAsDouble(), 0.1);
+    }
+
+    /**
+     * Shows an initial book being built, then a paced flow being run against it with the load driver. The API's
+     * book ends up holding exactly the orders the generator thinks are open.
+     */
+    @Test
+    public void showLoadDriverUsage() {
+
+        final OrderFlowProfile profile = OrderFlowProfile.builder()
+                .eventsPerSecond(200_000)
+                .maxOpenOrders(5_000)
+                .build();
+        final OrderFlowGenerator generator = new OrderFlowGenerator(profile, 99);
+        final OffHeapTradingApi tradingApi = new OffHeapTradingApi(OffHeapOrderStore.allocateDirect(5_000),
+                Runnable::run);
+
+        generator.initialBook(1_000).forEach(tradingApi::addOrder);
+        final LoadReport report = new LoadDriver(tradingApi).run(generator, 20_000);
+
+        assertEquals(20_000, report.getEvents());
+        assertEquals(0, report.getAddsRejected());
+        assertEquals(0, report.getCancelsFailed());
+        // paced, so latencies are corrected for coordinated omission and there can be more samples than adds
+        assertTrue(report.getAddOrderLatency().getCount() >= report.getOrdersAdded());
+        assertTrue(report.getElapsedNanos() >= 90_000_000); // ~100ms of events at 200k/s
+
+        final Map<Market, Integer> openOrders = Arrays.stream(Market.values())
+                .collect(Collectors.toMap(Function.identity(), m -> tradingApi.getOpenOrders(m.ordinal()).size()));
+        assertEquals(generator.getOpenOrderCount(),
+                openOrders.values().stream().mapToInt(Integer::intValue).sum());
+    }
+}
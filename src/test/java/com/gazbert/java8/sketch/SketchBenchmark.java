@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sketch;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Rough benchmark comparing exact distinct order id counts and p99 prices, computed with <code>toSet()</code> and a
+ * sort, against the same figures from {@link SketchCollectors} on a parallel stream.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xmx4g -cp target/classes:target/test-classes com.gazbert.java8.sketch.SketchBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class SketchBenchmark {
+
+    private static final int ORDERS = 2_000_000;
+    private static final int RUNS = 5;
+
+    private SketchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final List<Order> orderBook = new OrderFlowGenerator(OrderFlowProfile.defaults(), 1).initialBook(ORDERS);
+
+        final Supplier<String> exact = () -> {
+            final int ids = orderBook.parallelStream().map(Order::getId).collect(Collectors.toSet()).size();
+            final long[] prices = orderBook.parallelStream().mapToLong(Order::getFixedPointPrice).sorted().toArray();
+            return ids + " ids, p99 " + (double) prices[(int) (0.99 * (prices.length - 1))] / FixedPoint.ONE;
+        };
+        final Supplier<String> sketched = () -> {
+            final long ids = orderBook.parallelStream().collect(SketchCollectors.distinctOrderIds()).estimate();
+            final double p99 = orderBook.parallelStream().collect(SketchCollectors.priceQuantiles()).getQuantile(0.99);
+            return ids + " ids, p99 " + p99;
+        };
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            exact.get();
+            sketched.get();
+        }
+
+        System.out.printf("%,d orders%n", ORDERS);
+        final long exactNanos = time(exact, "exact");
+        final long sketchedNanos = time(sketched, "sketched");
+        System.out.printf("sketches %.1fx faster%n", (double) exactNanos / sketchedNanos);
+    }
+
+    private static long time(Supplier<String> query, String name) {
+        String result = null;
+        final long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            result = query.get();
+        }
+        final long nanos = (System.nanoTime() - start) / RUNS;
+        System.out.printf("%s: %s in %,d us%n", name, result, nanos / 1000);
+        return nanos;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sketch;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.FixedPoint;
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.simulation.OrderFlowGenerator;
+import com.gazbert.java8.simulation.OrderFlowProfile;
+
+/**
+ * Test class for demonstrating use of sketches to approximate distinct counts and quantiles over large order books.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestSketchCollectorsUsage {
+
+    private static final double ONE = FixedPoint.ONE;
+
+    /**
+     * Distinct order ids and distinct accounts are estimated within 3 standard errors, and parallel streams give the
+     * same estimate as serial ones.
+     */
+    @Test
+    public void showEstimatingDistinctCounts() {
+
+        final List<Order> orderBook = orderBook(200_000);
+
+        final HyperLogLog ids = orderBook.stream().collect(SketchCollectors.distinctOrderIds());
+        assertWithinStandardErrors(orderBook.size(), ids.estimate(), ids.getStandardError());
+        assertEquals(ids.estimate(),
+                orderBook.parallelStream().collect(SketchCollectors.distinctOrderIds()).estimate());
+
+        // the same orders twice over don't change the estimate
+        final HyperLogLog twice = orderBook.stream().collect(SketchCollectors.distinctOrderIds())
+                .merge(orderBook.stream().collect(SketchCollectors.distinctOrderIds()));
+        assertEquals(ids.estimate(), twice.estimate());
+
+        // 1,000,000 fills from 50,000 accounts
+        final Random random = new Random(7);
+        final long[] accountFills = LongStream.generate(() -> 10_000_000L + random.nextInt(50_000))
+                .limit(1_000_000).toArray();
+        final long exactAccounts = Arrays.stream(accountFills).distinct().count();
+        final HyperLogLog accounts = Arrays.stream(accountFills).boxed().parallel()
+                .collect(SketchCollectors.distinct(Long::longValue));
+        assertWithinStandardErrors(exactAccounts, accounts.estimate(), accounts.getStandardError());
+
+        // small counts are near exact; seeded so the few collisions are the same every run
+        final Random idBits = new Random(5);
+        final HyperLogLog few = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            few.add(idBits.nextLong(), i);
+        }
+        assertEquals(100, few.estimate(), 1);
+    }
+
+    /**
+     * Price, amount, fee and trade count quantiles are within the sketch's relative accuracy of the exact values.
+     */
+    @Test
+    public void showEstimatingQuantiles() {
+
+        final List<Order> orderBook = orderBook(200_000);
+        final Random random = new Random(3);
+        orderBook.forEach(order -> order.setTradeCountToFill(1 + random.nextInt(40)));
+
+        final QuantileSketch prices = orderBook.parallelStream().collect(SketchCollectors.priceQuantiles());
+        final QuantileSketch amounts = orderBook.stream().collect(SketchCollectors.amountQuantiles());
+        final QuantileSketch fees = orderBook.parallelStream().collect(SketchCollectors.feeQuantiles());
+        final QuantileSketch trades = orderBook.parallelStream()
+                .collect(SketchCollectors.tradeCountToFillQuantiles());
+
+        final double[] exactPrices = orderBook.stream().mapToDouble(o -> o.getFixedPointPrice() / ONE).sorted()
+                .toArray();
+        final double[] exactAmounts = orderBook.stream().mapToDouble(o -> o.getFixedPointAmount() / ONE).sorted()
+                .toArray();
+        final double[] exactFees = orderBook.stream().mapToDouble(o -> o.getFixedPointFee() / ONE).sorted().toArray();
+        final double[] exactTrades = orderBook.stream().mapToDouble(Order::getTradeCountToFill).sorted().toArray();
+
+        for (final double q : new double[]{0, 0.25, 0.5, 0.9, 0.99, 0.999, 1}) {
+            assertWithinRelativeAccuracy(exact(exactPrices, q), prices, q);
+            assertWithinRelativeAccuracy(exact(exactAmounts, q), amounts, q);
+            assertWithinRelativeAccuracy(exact(exactFees, q), fees, q);
+            assertWithinRelativeAccuracy(exact(exactTrades, q), trades, q);
+        }
+
+        assertEquals(orderBook.size(), prices.getCount());
+        assertEquals(exactAmounts[0], amounts.getMin(), 0);
+        assertEquals(exactAmounts[exactAmounts.length - 1], amounts.getMax(), 0);
+
+        // serial and parallel sketches are identical
+        final QuantileSketch serialPrices = orderBook.stream().collect(SketchCollectors.priceQuantiles());
+        assertEquals(serialPrices.getQuantile(0.99), prices.getQuantile(0.99), 0);
+        assertEquals(serialPrices.getQuantile(0.5), prices.getQuantile(0.5), 0);
+    }
+
+    /**
+     * Tighter accuracy costs memory but keeps the same guarantee; sketches of different accuracy can't be merged.
+     */
+    @Test
+    public void showChoosingAccuracy() {
+
+        final List<Order> orderBook = orderBook(50_000);
+        final QuantileSketch fine = orderBook.stream()
+                .collect(SketchCollectors.quantiles(o -> o.getFixedPointPrice() / ONE, 0.001));
+        final double[] exactPrices = orderBook.stream().mapToDouble(o -> o.getFixedPointPrice() / ONE).sorted()
+                .toArray();
+        assertWithinRelativeAccuracy(exact(exactPrices, 0.5), fine, 0.5);
+        assertWithinRelativeAccuracy(exact(exactPrices, 0.99), fine, 0.99);
+
+        final QuantileSketch empty = new QuantileSketch();
+        assertTrue(Double.isNaN(empty.getQuantile(0.5)));
+        empty.add(0);
+        assertEquals(0, empty.getQuantile(0.5), 0);
+
+        try {
+            fine.merge(new QuantileSketch());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new HyperLogLog().merge(new HyperLogLog(10));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Private utils
+    // ------------------------------------------------------------------------------------------------
+
+    private static List<Order> orderBook(int size) {
+        return new OrderFlowGenerator(OrderFlowProfile.defaults(), 11).initialBook(size);
+    }
+
+    private static double exact(double[] sorted, double quantile) {
+        return sorted[(int) (quantile * (sorted.length - 1))];
+    }
+
+    private static void assertWithinRelativeAccuracy(double exact, QuantileSketch sketch, double quantile) {
+        final double estimate = sketch.getQuantile(quantile);
+        assertEquals("q" + quantile, exact, estimate, exact * sketch.getRelativeAccuracy() + 1e-12);
+    }
+
+    private static void assertWithinStandardErrors(long exact, long estimate, double standardError) {
+        assertEquals(exact, estimate, 3 * standardError * exact);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sort;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.gazbert.java8.common.Order;
+
+/**
+ * Rough benchmark comparing {@link PriceTimeSort} with a comparator sort of the same order book.
+ * <p>
+ * Not a unit test - run the main method from the test classpath, e.g. after <code>mvn test-compile</code>:
+ * <pre>
+ * java -Xmx4g -cp target/classes:target/test-classes com.gazbert.java8.sort.PriceTimeSortBenchmark
+ * </pre>
+ *
+ * @author gazbert
+ */
+public final class PriceTimeSortBenchmark {
+
+    private static final int ORDERS = 2_000_000;
+    private static final int RUNS = 10;
+
+    private PriceTimeSortBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args not used.
+     */
+    public static void main(String... args) {
+
+        final List<Order> orderBook = TestPriceTimeSortUsage.randomOrders(ORDERS, 1);
+        long checksum = 0;
+
+        for (int i = 0; i < RUNS; i++) { // warm up
+            checksum += comparatorSort(orderBook).get(0).hashCode();
+            checksum += PriceTimeSort.sortedView(orderBook, false).get(0).hashCode();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += comparatorSort(orderBook).get(ORDERS - 1).hashCode();
+        }
+        final long comparatorNanos = (System.nanoTime() - start) / RUNS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            checksum += PriceTimeSort.sortedView(orderBook, false).get(ORDERS - 1).hashCode();
+        }
+        final long radixNanos = (System.nanoTime() - start) / RUNS;
+
+        System.out.printf("%,d orders: comparator sort %.1f ms, price-time radix sort %.1f ms (%.1fx) [%d]%n",
+                ORDERS, comparatorNanos / 1e6, radixNanos / 1e6, (double) comparatorNanos / radixNanos, checksum);
+    }
+
+    private static List<Order> comparatorSort(List<Order> orderBook) {
+        return orderBook.stream().sorted(Comparator.comparing(Order::getPrice)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Gareth Jon Lynch
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.gazbert.java8.sort;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.gazbert.java8.common.Order;
+import com.gazbert.java8.common.Order.Market;
+import com.gazbert.java8.common.Order.Type;
+import com.gazbert.java8.offheap.OffHeapOrderStore;
+
+/**
+ * Test class for demonstrating use of {@link PriceTimeSort}.
+ * <p>
+ *
+ * @author gazbert
+ */
+public class TestPriceTimeSortUsage {
+
+    /**
+     * Shows the radix sort giving the same order as a stable comparator sort, for both sides of the book. The book is
+     * big enough to be sorted in parallel chunks and has lots of orders at the same price.
+     */
+    @Test
+    public void showSortedViewMatchesComparatorSort() {
+
+        final List<Order> orderBook = randomOrders(300_001, 5);
+
+        // stream sorting is stable, so orders at the same price stay in list (arrival) order
+        final List<Order> expectedAsks = orderBook.stream()
+                .sorted(Comparator.comparing(Order::getPrice))
+                .collect(Collectors.toList());
+        assertEquals(expectedAsks, PriceTimeSort.sortedView(orderBook, false));
+
+        final List<Order> expectedBids = orderBook.stream()
+                .sorted(Comparator.comparing(Order::getPrice).reversed())
+                .collect(Collectors.toList());
+        assertEquals(expectedBids, PriceTimeSort.sortedView(orderBook, true));
+    }
+
+    /**
+     * Negative keys and extreme values must sort correctly too.
+     */
+    @Test
+    public void sortsSignedKeys() {
+
+        final long[] prices = {5, -3, Long.MAX_VALUE, Long.MIN_VALUE, 0, -3, 5};
+        final long[] sequences = {7, 2, 1, 0, 3, -1, 4};
+
+        assertArrayEquals(new int[]{3, 5, 1, 4, 6, 0, 2}, PriceTimeSort.sortIndices(prices, sequences, 7, false));
+        assertArrayEquals(new int[]{2, 6, 0, 4, 5, 1, 3}, PriceTimeSort.sortIndices(prices, sequences, 7, true));
+        assertEquals(0, PriceTimeSort.sortIndices(new long[0], null, 0, false).length);
+    }
+
+    /**
+     * Shows store slots sorted by price then entry sequence, after removals have swapped records out of arrival order.
+     */
+    @Test
+    public void showSortedStoreSlots() {
+
+        final List<Order> orders = randomOrders(1000, 9);
+        final OffHeapOrderStore store = OffHeapOrderStore.allocateDirect(orders.size());
+        orders.forEach(store::add);
+        for (int i = 0; i < orders.size(); i += 3) {
+            store.remove(orders.get(i).getId());
+        }
+
+        final List<Order> remaining = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            if (i % 3 != 0) {
+                remaining.add(orders.get(i));
+            }
+        }
+        final List<Order> expected = remaining.stream()
+                .sorted(Comparator.comparing(Order::getPrice))
+                .collect(Collectors.toList());
+
+        final int[] slots = PriceTimeSort.sortedSlots(store, false);
+        assertEquals(expected.size(), slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            assertEquals(expected.get(i).getId(), store.getId(slots[i]));
+            if (i > 0 && store.getPrice(slots[i]) == store.getPrice(slots[i - 1])) {
+                assertTrue(store.getSequence(slots[i]) > store.getSequence(slots[i - 1]));
+            }
+        }
+    }
+
+    static List<Order> randomOrders(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orders.add(new Order(Market.USD, Type.SELL, BigDecimal.valueOf(1 + random.nextInt(1000), 2),
+                    BigDecimal.valueOf(10_000 + random.nextInt(500), 2), BigDecimal.ZERO));
+        }
+        return orders;
+    }
+}